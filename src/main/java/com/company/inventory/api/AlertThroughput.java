@@ -0,0 +1,131 @@
+package com.company.inventory.api;
+
+import com.company.inventory.model.Item;
+import com.company.inventory.model.MovementType;
+import com.company.inventory.model.Sku;
+import com.company.inventory.model.dto.MovementEvent;
+import com.company.inventory.service.AlertEngine;
+import com.company.inventory.service.AlertRule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Movements per second the {@link AlertEngine} evaluates in-stream, and whether its state stays
+ * within bounds while doing so.
+ * <p>
+ * Writer threads hand synthetic committed movements to the engine, one per call as the service
+ * does for single stock changes: mostly sales and receipts of random items among {@code items},
+ * with a few adjustments, and random stock levels around the reorder level. Item lookups are
+ * answered from memory, as with the inventory cache, so the engine itself is measured. With
+ * more items than {@code maxKeys} the windowed rules have to evict. Afterwards every movement
+ * must have been counted, no rule may track more than {@code maxKeys} items, and every alert
+ * fired must have been delivered to the sink or counted as dropped.
+ * Run it with {@code ConsoleApp --alert-bench [threads=4] [movements=1000000] [items=100000]
+ * [maxKeys=10000] [queueSize=10000]}, which uses the alerts.rule.* settings.
+ */
+public final class AlertThroughput {
+
+    private static final int REORDER_LEVEL = 20;
+
+    private final List<AlertRule> rules;
+    private final int threads;
+    private final int movements;
+    private final int items;
+    private final int maxKeys;
+    private final int queueSize;
+
+    public AlertThroughput(List<AlertRule> rules, int threads, int movements, int items, int maxKeys, int queueSize) {
+        if (threads < 1 || movements < threads || items < 1) {
+            throw new IllegalArgumentException("threads and items must be >= 1 and movements >= threads");
+        }
+        this.rules = List.copyOf(rules);
+        this.threads = threads;
+        this.movements = movements;
+        this.items = items;
+        this.maxKeys = maxKeys;
+        this.queueSize = queueSize;
+    }
+
+    /** Outcome of one run; {@code problems} is empty when the counts agree and state stayed bounded. */
+    public record Report(int rules, int threads, long movements, double seconds, long alerts, long delivered,
+                         AlertEngine.Stats stats, List<String> problems) {
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "rules=%d threads=%d%n%d movements in %.2f s, %.0f movements/s%n"
+                            + "alerts: %d fired, %d delivered, %d dropped; evicted keys: %d; tracked keys: %s%n%s",
+                    rules, threads, movements, seconds, movements / seconds, alerts, delivered, stats.dropped(),
+                    stats.evictedKeys(), stats.trackedKeys(),
+                    problems.isEmpty() ? "consistent: all movements counted, state within bounds" : "PROBLEMS: " + problems);
+        }
+    }
+
+    public Report run() throws InterruptedException {
+        Optional<Item> item = Optional.of(new Item(1L, "Alerted item", new Sku("ALERT-BENCH"), null, null, 150.0, 200.0, REORDER_LEVEL));
+        LongAdder delivered = new LongAdder();
+        AlertEngine engine = new AlertEngine(rules, id -> item, new ArrayList<>(List.of(alert -> delivered.increment())),
+                maxKeys, queueSize);
+
+        CountDownLatch go = new CountDownLatch(1);
+        List<Writer> writers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) writers.add(new Writer(t, engine, movements / threads + (t < movements % threads ? 1 : 0), go));
+        for (Writer w : writers) w.start();
+        long start = System.nanoTime();
+        go.countDown();
+        for (Writer w : writers) w.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        AlertEngine.Stats stats = engine.stats();
+        engine.close(); // delivers what is still queued
+
+        List<String> problems = new ArrayList<>();
+        if (stats.movements() != movements) problems.add("engine counted " + stats.movements() + " of " + movements + " movements");
+        for (Map.Entry<String, Integer> e : stats.trackedKeys().entrySet()) {
+            if (e.getValue() > maxKeys) problems.add(e.getKey() + " tracks " + e.getValue() + " items, more than " + maxKeys);
+        }
+        long fired = stats.alerts();
+        if (delivered.sum() + stats.dropped() != fired) {
+            problems.add(fired + " alerts fired but " + delivered.sum() + " delivered and " + stats.dropped() + " dropped");
+        }
+        return new Report(rules.size(), threads, stats.movements(), seconds, fired, delivered.sum(), stats, problems);
+    }
+
+    private final class Writer extends Thread {
+        private final AlertEngine engine;
+        private final MovementEvent[] events;
+        private final CountDownLatch go;
+
+        Writer(int index, AlertEngine engine, int count, CountDownLatch go) {
+            super("alert-writer-" + index);
+            this.engine = engine;
+            this.go = go;
+            // generated up front so that only the engine is timed
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            long now = System.currentTimeMillis();
+            events = new MovementEvent[count];
+            for (int i = 0; i < count; i++) {
+                int roll = rnd.nextInt(100);
+                MovementType type = roll < 60 || roll >= 99 ? MovementType.OUT : MovementType.IN;
+                String reason = roll >= 99 ? "cycle count adjustment" : type == MovementType.OUT ? "sale" : "PO receipt";
+                events[i] = new MovementEvent(1 + rnd.nextInt(items), 1 + rnd.nextInt(5), type, reason, null,
+                        rnd.nextInt(REORDER_LEVEL * 3), now + i / 1000);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                go.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (MovementEvent event : events) engine.onMovements(List.of(event));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.company.inventory.api;
+
+import com.company.inventory.config.SqlDiagnostics;
+import com.company.inventory.dao.ItemDao;
+import com.company.inventory.model.Item;
+import com.company.inventory.model.Sku;
+import com.company.inventory.service.InventoryService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntSupplier;
+
+/**
+ * Round trips and time of looking items up one key at a time against the multi-get methods,
+ * at several key counts: {@code findById} per key against one {@link ItemDao#findByIds}, and
+ * {@code findBySku} per key against one {@link ItemDao#findBySkus}.
+ * <p>
+ * Statements are counted with {@link SqlDiagnostics}, which must be enabled; every single
+ * lookup is one statement on its own connection, a multi-get one statement per IN-list chunk.
+ * Each case runs once to warm up and then {@code rounds} times, and reports the statements and
+ * the time of one lookup of all keys.
+ * Run it with {@code ConsoleApp --lookup-bench [keys=10,100,10000] [rounds=3]}, which turns
+ * statement timing on unless diagnostics.enabled is set.
+ */
+public final class BulkLookupBenchmark {
+
+    private final InventoryService service;
+    private final ItemDao itemDao;
+    private final int rounds;
+
+    public BulkLookupBenchmark(InventoryService service, ItemDao itemDao, int rounds) {
+        if (rounds < 1) throw new IllegalArgumentException("rounds must be >= 1");
+        this.service = service;
+        this.itemDao = itemDao;
+        this.rounds = rounds;
+    }
+
+    /**
+     * Creates as many items as the largest key count and measures each count in turn; returns
+     * two lines per count, by id and by SKU.
+     */
+    public List<String> run(int[] keyCounts) {
+        if (!SqlDiagnostics.isEnabled()) throw new IllegalStateException("Statement counting needs -Ddiagnostics.enabled=true");
+        int max = 0;
+        for (int n : keyCounts) max = Math.max(max, n);
+        String prefix = "BL" + Long.toString(System.nanoTime(), 36).toUpperCase() + "-";
+        List<Item> batch = new ArrayList<>(max);
+        for (int i = 0; i < max; i++) batch.add(new Item(null, "Lookup item " + i, new Sku(prefix + i), null, null, 1.0, 2.0, 0));
+        List<Item> items = service.createItems(batch);
+
+        List<String> lines = new ArrayList<>();
+        for (int n : keyCounts) {
+            List<Long> ids = items.subList(0, n).stream().map(Item::getId).toList();
+            List<String> skus = items.subList(0, n).stream().map(i -> i.getSku().value()).toList();
+            lines.add(compare(n, "by id",
+                    measure(n, () -> {
+                        int found = 0;
+                        for (Long id : ids) if (itemDao.findById(id).isPresent()) found++;
+                        return found;
+                    }),
+                    measure(n, () -> itemDao.findByIds(ids).size())));
+            lines.add(compare(n, "by sku",
+                    measure(n, () -> {
+                        int found = 0;
+                        for (String sku : skus) if (itemDao.findBySku(sku).isPresent()) found++;
+                        return found;
+                    }),
+                    measure(n, () -> itemDao.findBySkus(skus).size())));
+        }
+        return lines;
+    }
+
+    private record Result(double statements, double millis) {}
+
+    private static String compare(int keys, String kind, Result single, Result multi) {
+        return String.format(Locale.ROOT,
+                "keys=%-6d %-6s  one per key: %7.0f statements %9.2f ms   multi-get: %4.0f statements %8.2f ms   %6.1fx fewer round trips, %6.1fx faster",
+                keys, kind, single.statements(), single.millis(), multi.statements(), multi.millis(),
+                single.statements() / multi.statements(), single.millis() / multi.millis());
+    }
+
+    // statements and milliseconds per lookup of all keys, averaged over the rounds
+    private Result measure(int keys, IntSupplier lookup) {
+        check(keys, lookup.getAsInt());
+        SqlDiagnostics.reset();
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) check(keys, lookup.getAsInt());
+        double millis = (System.nanoTime() - start) / 1e6 / rounds;
+        long statements = SqlDiagnostics.topByTotalTime(Integer.MAX_VALUE).stream().mapToLong(SqlDiagnostics.SqlTotals::count).sum();
+        return new Result((double) statements / rounds, millis);
+    }
+
+    private static void check(int keys, int found) {
+        if (found != keys) throw new IllegalStateException("found " + found + " of " + keys + " items");
+    }
+}
@@ -0,0 +1,97 @@
+package com.company.inventory.api;
+
+import com.company.inventory.model.Item;
+import com.company.inventory.model.Stock;
+import com.company.inventory.model.StockMovement;
+import com.company.inventory.service.InventoryService;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Executes one line of the inventory wire protocol against {@link InventoryService}.
+ * <pre>
+ *   PING
+ *   ITEM &lt;id&gt;            SKU &lt;sku&gt;            SEARCH &lt;query&gt;
+ *   STOCK &lt;itemId&gt;       MOVES &lt;itemId&gt;
+ *   IN &lt;itemId&gt; &lt;qty&gt; [reason]      OUT &lt;itemId&gt; &lt;qty&gt; [reason]
+ * </pre>
+ * Every request gets exactly one response line: {@code OK <json>} or {@code ERR <message>}.
+ */
+public class CommandHandler {
+
+    private final InventoryService service;
+
+    public CommandHandler(InventoryService service) {
+        this.service = service;
+    }
+
+    public String handle(String line) {
+        try {
+            String[] parts = line.trim().split("\\s+", 4);
+            String cmd = parts[0].toUpperCase();
+            return switch (cmd) {
+                case "PING" -> "OK \"PONG\"";
+                case "ITEM" -> ok(service.findItemById(parseLong(parts, 1)));
+                case "SKU" -> ok(service.findItemBySku(arg(parts, 1)));
+                case "SEARCH" -> okItems(service.searchItems(rest(line)));
+                case "STOCK" -> okStock(parseLong(parts, 1), service.viewStock(parseLong(parts, 1)));
+                case "MOVES" -> okMovements(service.listMovements(parseLong(parts, 1)));
+                case "IN" -> okStock(parseLong(parts, 1),
+                        Optional.of(service.increaseStock(parseLong(parts, 1), parseInt(parts, 2), parts.length > 3 ? parts[3] : null)));
+                case "OUT" -> okStock(parseLong(parts, 1),
+                        Optional.of(service.decreaseStock(parseLong(parts, 1), parseInt(parts, 2), parts.length > 3 ? parts[3] : null)));
+                default -> "ERR unknown command " + cmd;
+            };
+        } catch (Exception e) {
+            String msg = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            return "ERR " + msg.replace('\n', ' ');
+        }
+    }
+
+    // everything after the command word, so queries may contain spaces
+    private static String rest(String line) {
+        String t = line.trim();
+        int sp = t.indexOf(' ');
+        return sp < 0 ? "" : t.substring(sp + 1).trim();
+    }
+
+    private static String arg(String[] parts, int i) {
+        if (parts.length <= i) throw new IllegalArgumentException("missing argument " + i);
+        return parts[i];
+    }
+
+    private static long parseLong(String[] parts, int i) {
+        return Long.parseLong(arg(parts, i));
+    }
+
+    private static int parseInt(String[] parts, int i) {
+        return Integer.parseInt(arg(parts, i));
+    }
+
+    private static String ok(Optional<Item> item) {
+        return item.map(i -> "OK " + Json.item(i)).orElse("OK null");
+    }
+
+    private static String okItems(List<Item> items) {
+        StringBuilder sb = new StringBuilder("OK [");
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(Json.item(items.get(i)));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String okStock(long itemId, Optional<Stock> stock) {
+        return "OK {\"itemId\":" + itemId + ",\"quantity\":" + stock.map(Stock::getQuantity).orElse(0) + "}";
+    }
+
+    private static String okMovements(List<StockMovement> movements) {
+        StringBuilder sb = new StringBuilder("OK [");
+        for (int i = 0; i < movements.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(Json.movement(movements.get(i)));
+        }
+        return sb.append(']').toString();
+    }
+}
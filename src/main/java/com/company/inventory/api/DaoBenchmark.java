@@ -0,0 +1,75 @@
+package com.company.inventory.api;
+
+import com.company.inventory.dao.ItemDao;
+import com.company.inventory.dao.StockDao;
+import com.company.inventory.dao.StockMovementDao;
+import com.company.inventory.model.Item;
+import com.company.inventory.model.Sku;
+import com.company.inventory.service.InventoryService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+
+/**
+ * Single-threaded throughput and latency of the basic DAO operations of one storage backend:
+ * item creation, lookups by id and SKU, stock increases and decreases, and movement history.
+ * Run it with {@code ConsoleApp --dao-bench [operations]}, which measures the JDBC and the kv
+ * DAOs one after the other with the same operation counts, so the two lines compare directly.
+ * <p>
+ * Each operation kind first runs a tenth of its count unmeasured to warm up the JIT and caches.
+ */
+public final class DaoBenchmark {
+
+    private final ItemDao itemDao;
+    private final StockDao stockDao;
+    private final StockMovementDao movementDao;
+    private final InventoryService service;
+    private final String prefix = "DB" + Long.toString(System.nanoTime(), 36).toUpperCase() + "-";
+
+    public DaoBenchmark(InventoryService service, ItemDao itemDao, StockDao stockDao, StockMovementDao movementDao) {
+        this.service = service;
+        this.itemDao = itemDao;
+        this.stockDao = stockDao;
+        this.movementDao = movementDao;
+    }
+
+    /**
+     * Runs {@code operations} of each kind and returns one line per kind.
+     */
+    public List<String> run(int operations) {
+        if (operations < 10) throw new IllegalArgumentException("operations must be >= 10");
+        int warmup = operations / 10;
+        List<Long> ids = new ArrayList<>(operations + warmup);
+        List<String> lines = new ArrayList<>();
+        lines.add(measure("create", operations, warmup, n -> {
+            ids.add(itemDao.create(new Item(null, "Bench " + n, new Sku(prefix + n), null, null, 1.0, 2.0, 0)).getId());
+        }));
+        lines.add(measure("findById", operations, warmup, n -> itemDao.findById(pick(ids))));
+        lines.add(measure("findBySku", operations, warmup, n -> itemDao.findBySku(prefix + (n % ids.size()))));
+        lines.add(measure("increase", operations, warmup, n -> service.increaseStock(ids.get((int) (n % ids.size())), 10, "bench in")));
+        lines.add(measure("decrease", operations, warmup, n -> service.decreaseStock(ids.get((int) (n % ids.size())), 1, "bench out")));
+        lines.add(measure("getStock", operations, warmup, n -> stockDao.getStock(pick(ids))));
+        lines.add(measure("listByItem", operations, warmup, n -> movementDao.listByItem(pick(ids))));
+        return lines;
+    }
+
+    private static Long pick(List<Long> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    private static String measure(String name, int operations, int warmup, LongConsumer op) {
+        long n = 0;
+        for (int i = 0; i < warmup; i++) op.accept(n++);
+        LatencyRecorder latency = new LatencyRecorder();
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            long t = System.nanoTime();
+            op.accept(n++);
+            latency.record(System.nanoTime() - t);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return String.format("%-10s %10.0f ops/s  %s", name, operations / seconds, latency.summary());
+    }
+}
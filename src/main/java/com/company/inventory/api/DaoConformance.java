@@ -0,0 +1,170 @@
+package com.company.inventory.api;
+
+import com.company.inventory.dao.DataAccessException;
+import com.company.inventory.dao.ItemDao;
+import com.company.inventory.dao.OptimisticLockException;
+import com.company.inventory.dao.StockDao;
+import com.company.inventory.dao.StockMovementDao;
+import com.company.inventory.model.*;
+import com.company.inventory.service.InventoryService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The behavior every storage backend has to show, checked the same way against any set of
+ * DAOs: lookups, batch lookups, optimistic locking, duplicate SKUs, and stock changes with
+ * their movements (through {@link InventoryService}, which is how the backends differ most).
+ * Run it with {@code ConsoleApp --dao-check}, which checks the JDBC and the kv DAOs in turn.
+ * <p>
+ * Every run uses SKUs of its own, so it can run against a database that already has data.
+ */
+public final class DaoConformance {
+
+    private final ItemDao itemDao;
+    private final StockDao stockDao;
+    private final StockMovementDao movementDao;
+    private final InventoryService service;
+    private final String prefix = "DC" + Long.toString(System.nanoTime(), 36).toUpperCase() + "-";
+    private final List<String> failures = new ArrayList<>();
+    private int checks;
+
+    public DaoConformance(InventoryService service, ItemDao itemDao, StockDao stockDao, StockMovementDao movementDao) {
+        this.service = service;
+        this.itemDao = itemDao;
+        this.stockDao = stockDao;
+        this.movementDao = movementDao;
+    }
+
+    /**
+     * Runs all checks and returns the failed ones; empty when the backend conforms.
+     */
+    public List<String> run() {
+        itemLookups();
+        batchOperations();
+        optimisticLocking();
+        duplicateSku();
+        stockAndMovements();
+        return List.copyOf(failures);
+    }
+
+    public int checks() {
+        return checks;
+    }
+
+    private void itemLookups() {
+        Item created = itemDao.create(item("lookup", "Conformance lookup widget"));
+        check("create assigns an id", created.getId() != null);
+        Optional<Item> byId = itemDao.findById(created.getId());
+        check("findById returns the item", byId.isPresent() && sameFields(created, byId.get()));
+        check("findBySku returns the item",
+                itemDao.findBySku(sku("lookup")).map(Item::getId).equals(Optional.of(created.getId())));
+        check("findBySku of an unknown SKU is empty", itemDao.findBySku(sku("missing")).isEmpty());
+        check("findById of an unknown id is empty", itemDao.findById(Long.MAX_VALUE - 1).isEmpty());
+        check("search finds the item by part of its name",
+                itemDao.search("Conformance lookup").stream().anyMatch(i -> i.getId().equals(created.getId())));
+    }
+
+    private void batchOperations() {
+        List<Item> created = itemDao.createAll(List.of(item("batch-a", "a"), item("batch-b", "b"), item("batch-c", "c")));
+        check("createAll returns the items in input order",
+                created.size() == 3 && created.get(0).getSku().value().equals(sku("batch-a"))
+                        && created.get(2).getSku().value().equals(sku("batch-c")));
+        check("createAll assigns distinct ids",
+                created.stream().map(Item::getId).filter(Objects::nonNull).distinct().count() == 3);
+        List<Long> ids = new ArrayList<>(created.stream().map(Item::getId).toList());
+        ids.add(Long.MAX_VALUE - 1);
+        Map<Long, Item> byIds = itemDao.findByIds(ids);
+        check("findByIds returns the existing ids only", byIds.size() == 3 && !byIds.containsKey(Long.MAX_VALUE - 1));
+        Map<String, Item> bySkus = itemDao.findBySkus(List.of(sku("batch-a"), sku("batch-b"), sku("missing")));
+        check("findBySkus returns the existing SKUs only",
+                bySkus.size() == 2 && bySkus.get(sku("batch-b")).getId().equals(created.get(1).getId()));
+    }
+
+    private void optimisticLocking() {
+        Item created = itemDao.create(item("version", "Versioned"));
+        Item edit = copy(created);
+        edit.setName("Versioned, renamed");
+        Item updated = itemDao.update(edit);
+        check("update increments the version", updated.getVersion() == created.getVersion() + 1);
+        check("update is visible", itemDao.findById(created.getId()).map(Item::getName).orElse("").equals("Versioned, renamed"));
+        Item stale = copy(created);
+        stale.setName("Lost update");
+        check("update with a stale version throws OptimisticLockException",
+                throwsType(() -> itemDao.update(stale), OptimisticLockException.class));
+        Item patched = itemDao.patch(created.getId(), updated.getVersion(), new ItemPatch().reorderLevel(42));
+        check("patch changes only the patched field",
+                patched.getReorderLevel() == 42 && patched.getName().equals("Versioned, renamed"));
+        check("patch with a stale version throws OptimisticLockException",
+                throwsType(() -> itemDao.patch(created.getId(), updated.getVersion(), new ItemPatch().reorderLevel(1)),
+                        OptimisticLockException.class));
+    }
+
+    private void duplicateSku() {
+        itemDao.create(item("dup", "First"));
+        check("a duplicate SKU is rejected with DataAccessException",
+                throwsType(() -> itemDao.create(item("dup", "Second")), DataAccessException.class));
+        check("the rejected item was not stored", itemDao.findBySku(sku("dup")).map(Item::getName).orElse("").equals("First"));
+    }
+
+    private void stockAndMovements() {
+        Item created = itemDao.create(item("stock", "Stocked"));
+        Long id = created.getId();
+        check("an item without stock has no stock row", stockDao.getStock(id).isEmpty());
+        service.increaseStock(id, 10, "conformance in");
+        service.decreaseStock(id, 3, "conformance out");
+        check("stock reflects increase and decrease", quantity(id) == 7);
+        check("taking more than on hand throws IllegalStateException",
+                throwsType(() -> service.decreaseStock(id, 8, "too much"), IllegalStateException.class));
+        check("a rejected decrease changes nothing", quantity(id) == 7);
+        List<StockMovement> moves = movementDao.listByItem(id);
+        check("each change records one movement", moves.size() == 2);
+        check("movements carry direction, quantity and reason", moves.size() == 2
+                && moves.stream().anyMatch(m -> m.getType() == MovementType.IN && m.getQty() == 10 && "conformance in".equals(m.getReason()))
+                && moves.stream().anyMatch(m -> m.getType() == MovementType.OUT && m.getQty() == 3 && "conformance out".equals(m.getReason())));
+        Map<Long, Stock> stocks = stockDao.getStocks(List.of(id, Long.MAX_VALUE - 1));
+        check("getStocks returns existing rows only", stocks.size() == 1 && stocks.get(id).getQuantity() == 7);
+        stockDao.upsertStock(new Stock(id, 20));
+        check("upsertStock sets the quantity", quantity(id) == 20);
+    }
+
+    private int quantity(Long itemId) {
+        return stockDao.getStock(itemId).map(Stock::getQuantity).orElse(-1);
+    }
+
+    private Item item(String suffix, String name) {
+        return new Item(null, name, new Sku(sku(suffix)), null, null, 1.5, 2.5, 5);
+    }
+
+    private String sku(String suffix) {
+        return prefix + suffix.toUpperCase();
+    }
+
+    private static Item copy(Item i) {
+        return new Item(i.getId(), i.getName(), i.getSku(), i.getCategoryId(), i.getSupplierId(),
+                i.getPurchasePrice(), i.getSalePrice(), i.getReorderLevel(), i.getVersion());
+    }
+
+    private static boolean sameFields(Item a, Item b) {
+        return Objects.equals(a.getId(), b.getId()) && Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getSku(), b.getSku()) && Objects.equals(a.getPurchasePrice(), b.getPurchasePrice())
+                && Objects.equals(a.getSalePrice(), b.getSalePrice()) && Objects.equals(a.getReorderLevel(), b.getReorderLevel());
+    }
+
+    private static boolean throwsType(Runnable action, Class<? extends RuntimeException> type) {
+        try {
+            action.run();
+            return false;
+        } catch (RuntimeException e) {
+            return type.isInstance(e);
+        }
+    }
+
+    private void check(String name, boolean ok) {
+        checks++;
+        if (!ok) failures.add(name);
+    }
+}
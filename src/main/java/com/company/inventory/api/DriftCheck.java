@@ -0,0 +1,139 @@
+package com.company.inventory.api;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.dao.DataAccessException;
+import com.company.inventory.model.Item;
+import com.company.inventory.model.Sku;
+import com.company.inventory.service.IntegrityVerifier;
+import com.company.inventory.service.InventoryService;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Injects a known drift between stock rows and movements and checks that
+ * {@link IntegrityVerifier} finds exactly that drift and that its corrections remove it.
+ * <p>
+ * Items are created with a few increases and decreases each, so they have movements to replay.
+ * Then the stock rows of {@code drift} of them are changed directly by a known non-zero amount,
+ * without a movement, like a lost update would. The verifier, split into ranges of
+ * {@code rangeSize} item ids, must then report each of these items with that difference and no
+ * other of the created items; a run with corrections must write one correction per drifting
+ * item, after which the created items must verify clean. Drift of items the check did not
+ * create is left alone and ignored.
+ * Run it with {@code ConsoleApp --drift-check [items=1000] [drift=25] [rangeSize=100]}.
+ */
+public final class DriftCheck {
+
+    private static final String SHIFT_STOCK_SQL = "UPDATE stock SET quantity = quantity + ? WHERE item_id = ?";
+
+    private final InventoryService service;
+    private final int items;
+    private final int drift;
+    private final int rangeSize;
+
+    public DriftCheck(InventoryService service, int items, int drift, int rangeSize) {
+        if (items < 1 || drift < 1 || drift > items || rangeSize < 1) {
+            throw new IllegalArgumentException("items, drift and rangeSize must be >= 1 and drift <= items");
+        }
+        this.service = service;
+        this.items = items;
+        this.drift = drift;
+        this.rangeSize = rangeSize;
+    }
+
+    /** Outcome of the check: one line per step; {@code problems} is empty when the verifier saw exactly the injected drift. */
+    public record Report(List<String> steps, List<String> problems) {
+
+        @Override
+        public String toString() {
+            return String.join(System.lineSeparator(), steps) + System.lineSeparator()
+                    + (problems.isEmpty() ? "drift found and corrected as injected" : "PROBLEMS: " + problems);
+        }
+    }
+
+    public Report run() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        String prefix = "DC" + Long.toString(System.nanoTime(), 36).toUpperCase() + "-";
+        List<Item> batch = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) batch.add(new Item(null, "Drift item " + i, new Sku(prefix + i), null, null, 1.0, 2.0, 0));
+        List<Long> ids = service.createItems(batch).stream().map(Item::getId).toList();
+        for (long id : ids) {
+            service.increaseStock(id, 50, "drift check");
+            service.decreaseStock(id, 1 + rnd.nextInt(20), "drift check");
+            service.increaseStock(id, 1 + rnd.nextInt(10), "drift check");
+        }
+        Set<Long> created = new HashSet<>(ids);
+        IntegrityVerifier verifier = new IntegrityVerifier(null, Math.min(Runtime.getRuntime().availableProcessors(), 8),
+                rangeSize, Integer.MAX_VALUE);
+
+        List<String> steps = new ArrayList<>();
+        List<String> problems = new ArrayList<>();
+        Map<Long, Long> before = driftOf(verifier.verify(false), created, steps, "before injecting");
+        if (!before.isEmpty()) problems.add("created items drift before anything was injected: " + before);
+
+        Map<Long, Long> injected = new HashMap<>();
+        List<Long> shuffled = new ArrayList<>(ids);
+        Collections.shuffle(shuffled);
+        for (long id : shuffled.subList(0, drift)) {
+            long delta = (rnd.nextBoolean() ? 1 : -1) * (1L + rnd.nextInt(5));
+            shiftStock(id, delta);
+            injected.put(id, delta);
+        }
+        steps.add("injected drift into " + injected.size() + " stock rows");
+
+        Map<Long, Long> found = driftOf(verifier.verify(false), created, steps, "after injecting");
+        if (!found.equals(injected)) {
+            for (Map.Entry<Long, Long> e : injected.entrySet()) {
+                Long seen = found.get(e.getKey());
+                if (seen == null) problems.add("item " + e.getKey() + ": drift " + e.getValue() + " not reported");
+                else if (!seen.equals(e.getValue())) problems.add("item " + e.getKey() + ": drift " + e.getValue() + " reported as " + seen);
+            }
+            for (Long id : found.keySet()) {
+                if (!injected.containsKey(id)) problems.add("item " + id + ": reported drift " + found.get(id) + " that was not injected");
+            }
+        }
+
+        IntegrityVerifier.Report corrected = verifier.verify(true);
+        Map<Long, Long> correctedDrift = driftOf(corrected, created, steps, "with corrections");
+        steps.add("  corrections written: " + corrected.corrections());
+        if (!correctedDrift.equals(injected)) problems.add("correcting run saw " + correctedDrift.size() + " drifting items, expected " + drift);
+        if (corrected.corrections() < drift) problems.add(corrected.corrections() + " corrections written, expected " + drift);
+
+        Map<Long, Long> after = driftOf(verifier.verify(false), created, steps, "after correcting");
+        if (!after.isEmpty()) problems.add("still drifting after correction: " + after);
+        return new Report(steps, problems);
+    }
+
+    // drift (stock row minus replay) of the created items in the report, and one step line
+    private static Map<Long, Long> driftOf(IntegrityVerifier.Report report, Set<Long> created, List<String> steps, String step) {
+        Map<Long, Long> drift = new HashMap<>();
+        for (IntegrityVerifier.Drift d : report.drifts()) {
+            if (created.contains(d.itemId())) drift.put(d.itemId(), d.difference());
+        }
+        steps.add(String.format("%s: %d items, %d movements in %d ranges, %d ms; %d of the created items drift",
+                step, report.itemsChecked(), report.movementsReplayed(), report.ranges(), report.elapsedMillis(), drift.size()));
+        return drift;
+    }
+
+    private static void shiftStock(long itemId, long delta) {
+        try (Connection c = DbConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(SHIFT_STOCK_SQL)) {
+            ps.setLong(1, delta);
+            ps.setLong(2, itemId);
+            if (ps.executeUpdate() != 1) throw new IllegalStateException("No stock row for item " + itemId);
+            DbConnectionManager.markWrite();
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+}
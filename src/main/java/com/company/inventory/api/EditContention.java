@@ -0,0 +1,147 @@
+package com.company.inventory.api;
+
+import com.company.inventory.dao.OptimisticLockException;
+import com.company.inventory.model.Item;
+import com.company.inventory.model.ItemPatch;
+import com.company.inventory.model.Sku;
+import com.company.inventory.service.InventoryService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent editors on a few items, to measure the conflict rate and throughput of optimistic
+ * item updates and to check that none of them is lost.
+ * <p>
+ * Each editor thread repeats a read-modify-write of a random item: it reads the item, adds one
+ * to its reorder level and writes it back with the version it read, either as a patch of that
+ * one field or as a full update. On {@link OptimisticLockException} it reads again and retries,
+ * as a user would after a conflict. Because every committed edit adds exactly one, the reorder
+ * levels must have grown by the number of committed edits and each version by the number of
+ * edits of its item; anything less is a lost update. Fewer items means more conflicts.
+ * Run it with {@code ConsoleApp --edit-contention [threads=8] [edits=500] [items=1] [mode=patch|update]}.
+ */
+public final class EditContention {
+
+    public enum Mode { PATCH, UPDATE }
+
+    private final InventoryService service;
+    private final int threads;
+    private final int editsPerThread;
+    private final int items;
+    private final Mode mode;
+
+    public EditContention(InventoryService service, int threads, int editsPerThread, int items, Mode mode) {
+        if (threads < 1 || editsPerThread < 1 || items < 1) {
+            throw new IllegalArgumentException("threads, edits and items must be >= 1");
+        }
+        this.service = service;
+        this.threads = threads;
+        this.editsPerThread = editsPerThread;
+        this.items = items;
+        this.mode = mode;
+    }
+
+    /** Outcome of one run. {@code lostUpdates} is 0 when every committed edit is in the data. */
+    public record Report(int threads, int items, Mode mode, long edits, long conflicts, double seconds,
+                         long lostUpdates, String latency) {
+
+        public double conflictRate() {
+            return edits + conflicts == 0 ? 0 : (double) conflicts / (edits + conflicts);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "threads=%d items=%d mode=%s%nedits=%d conflicts=%d (%.1f%% of attempts) throughput=%.0f edits/s%n"
+                            + "edit latency incl. retries: %s%nlost updates: %d",
+                    threads, items, mode.name().toLowerCase(), edits, conflicts, conflictRate() * 100,
+                    edits / seconds, latency, lostUpdates);
+        }
+    }
+
+    public Report run() throws InterruptedException {
+        String prefix = "EC" + Long.toString(System.currentTimeMillis(), 36).toUpperCase() + "-";
+        List<Item> batch = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            batch.add(new Item(null, "Contended item " + i, new Sku(prefix + i), null, null, 1.0, 2.0, 0));
+        }
+        List<Item> created = service.createItems(batch);
+        long[] ids = created.stream().mapToLong(Item::getId).toArray();
+
+        LongAdder conflicts = new LongAdder();
+        long[] editsByItem = new long[items];
+        List<Editor> editors = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) editors.add(new Editor(t, ids, conflicts));
+        long start = System.nanoTime();
+        for (Editor e : editors) e.start();
+        LatencyRecorder latency = new LatencyRecorder();
+        for (Editor e : editors) {
+            e.join();
+            if (e.failure != null) throw new IllegalStateException("Editor failed", e.failure);
+            latency.merge(e.latency);
+            for (int i = 0; i < items; i++) editsByItem[i] += e.editsByItem[i];
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long edits = 0;
+        long lost = 0;
+        for (int i = 0; i < items; i++) {
+            Item before = created.get(i);
+            Item after = service.findItemById(ids[i]).orElseThrow();
+            edits += editsByItem[i];
+            lost += Math.max(editsByItem[i] - (after.getReorderLevel() - before.getReorderLevel()),
+                    editsByItem[i] - (after.getVersion() - before.getVersion()));
+        }
+        return new Report(threads, items, mode, edits, conflicts.sum(), seconds, lost, latency.summary());
+    }
+
+    private final class Editor extends Thread {
+        private final long[] ids;
+        private final LongAdder conflicts;
+        final long[] editsByItem;
+        final LatencyRecorder latency = new LatencyRecorder();
+        volatile RuntimeException failure;
+
+        Editor(int index, long[] ids, LongAdder conflicts) {
+            super("editor-" + index);
+            this.ids = ids;
+            this.conflicts = conflicts;
+            this.editsByItem = new long[ids.length];
+        }
+
+        @Override
+        public void run() {
+            try {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int n = 0; n < editsPerThread; n++) {
+                    int i = rnd.nextInt(ids.length);
+                    long t = System.nanoTime();
+                    while (!tryEdit(ids[i])) conflicts.increment();
+                    latency.record(System.nanoTime() - t);
+                    editsByItem[i]++;
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        private boolean tryEdit(long id) {
+            Item current = service.findItemById(id).orElseThrow();
+            try {
+                if (mode == Mode.PATCH) {
+                    service.patchItem(id, current.getVersion(), new ItemPatch().reorderLevel(current.getReorderLevel() + 1));
+                } else {
+                    current.setReorderLevel(current.getReorderLevel() + 1);
+                    service.updateItem(current);
+                }
+                return true;
+            } catch (OptimisticLockException e) {
+                return false;
+            }
+        }
+    }
+}
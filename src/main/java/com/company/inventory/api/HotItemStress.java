@@ -0,0 +1,181 @@
+package com.company.inventory.api;
+
+import com.company.inventory.model.Item;
+import com.company.inventory.model.MovementType;
+import com.company.inventory.model.Sku;
+import com.company.inventory.model.Stock;
+import com.company.inventory.model.StockMovement;
+import com.company.inventory.service.HotItemCoordinator;
+import com.company.inventory.service.InventoryService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Flash sale on one item: many threads decrease its stock at once until it sells out, to
+ * measure decrease throughput and to check that no unit is sold twice.
+ * <p>
+ * Each thread makes {@code attempts} decreases of 1 to {@code maxQty} units; together they ask
+ * for more than the stock, so the last units are fought over and many decreases are rejected.
+ * Once sold out, a restocking thread keeps adding a few units at a time, so the item stays near
+ * empty: takes then have to gather units from several buckets and often give them back, which
+ * is where a partial take and its rollback can meet a consolidation. Afterwards the coordinator
+ * (if any) is closed, which writes the remaining sales back, and the stock row and the OUT
+ * movements must agree with the units the callers were told they got: nothing oversold,
+ * nothing written twice or lost.
+ * Run it with {@code ConsoleApp --hot-stress [threads=256] [stock=50000] [attempts=100] [maxQty=5]
+ * [flushMs=10] [baseline=true]}, which runs it once on the stock row lock and once with hot buckets.
+ */
+public final class HotItemStress {
+
+    private final InventoryService service;
+    private final HotItemCoordinator hotItems; // null to measure the database path alone
+    private final int threads;
+    private final int stock;
+    private final int attempts;
+    private final int maxQty;
+
+    public HotItemStress(InventoryService service, HotItemCoordinator hotItems, int threads, int stock, int attempts, int maxQty) {
+        if (threads < 1 || stock < 1 || attempts < 1 || maxQty < 1) {
+            throw new IllegalArgumentException("threads, stock, attempts and maxQty must be >= 1");
+        }
+        this.service = service;
+        this.hotItems = hotItems;
+        this.threads = threads;
+        this.stock = stock;
+        this.attempts = attempts;
+        this.maxQty = maxQty;
+    }
+
+    /** Outcome of one run; {@code problems} is empty when stock, movements and sales agree. */
+    public record Report(String mode, int threads, long supplied, long sold, long decreases, long rejected, long errors,
+                         boolean wasHot, double seconds, String latency, List<String> problems) {
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%s: threads=%d supplied=%d%n  sold=%d units in %d decreases, %d rejected, %d errors, %.0f decreases/s%s%n"
+                            + "  latency: %s%n  %s",
+                    mode, threads, supplied, sold, decreases, rejected, errors, (decreases + rejected) / seconds,
+                    wasHot ? " (served from hot buckets)" : "", latency,
+                    problems.isEmpty() ? "consistent: no oversell, stock row and movements match the sales" : "PROBLEMS: " + problems);
+        }
+    }
+
+    public Report run() throws InterruptedException {
+        String sku = "HS" + Long.toString(System.nanoTime(), 36).toUpperCase();
+        Item item = service.createItem(new Item(null, "Flash sale item", new Sku(sku), null, null, 1.0, 2.0, 0));
+        long itemId = item.getId();
+        service.increaseStock(itemId, stock, "flash sale stock");
+
+        CountDownLatch go = new CountDownLatch(1);
+        List<Buyer> buyers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) buyers.add(new Buyer(t, itemId, go));
+        for (Buyer b : buyers) b.start();
+        Restocker restocker = new Restocker(itemId, go, buyers);
+        restocker.start();
+        long start = System.nanoTime();
+        go.countDown();
+        long sold = 0, decreases = 0, rejected = 0, errors = 0;
+        LatencyRecorder latency = new LatencyRecorder();
+        boolean wasHot = false;
+        for (Buyer b : buyers) {
+            b.join();
+            sold += b.sold;
+            decreases += b.decreases;
+            rejected += b.rejected;
+            errors += b.errors;
+            wasHot |= b.sawHot;
+            latency.merge(b.latency);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        restocker.join();
+        long supplied = stock + restocker.restocked;
+        if (hotItems != null) hotItems.close(); // writes the remaining sales back
+
+        List<String> problems = new ArrayList<>();
+        if (sold > supplied) problems.add("oversold: " + sold + " units sold from " + supplied);
+        int row = service.viewStock(itemId).map(Stock::getQuantity).orElse(0);
+        if (row != supplied - sold) problems.add("stock row is " + row + ", expected " + (supplied - sold));
+        long movedOut = 0;
+        for (StockMovement m : service.listMovements(itemId)) {
+            if (m.getType() == MovementType.OUT) movedOut += m.getQty();
+        }
+        if (movedOut != sold) problems.add("OUT movements total " + movedOut + ", expected " + sold);
+        return new Report(hotItems == null ? "row lock" : "hot buckets", threads, supplied, sold, decreases, rejected, errors,
+                wasHot, seconds, latency.summary(), problems);
+    }
+
+    // tops the item up by a few units whenever it is sold out, until every buyer is done
+    private final class Restocker extends Thread {
+        private final long itemId;
+        private final CountDownLatch go;
+        private final List<Buyer> buyers;
+        long restocked;
+
+        Restocker(long itemId, CountDownLatch go, List<Buyer> buyers) {
+            super("restocker");
+            this.itemId = itemId;
+            this.go = go;
+            this.buyers = buyers;
+        }
+
+        @Override
+        public void run() {
+            try {
+                go.await();
+                while (buyers.stream().anyMatch(Thread::isAlive)) {
+                    if (service.viewStock(itemId).map(Stock::getQuantity).orElse(0) < maxQty) {
+                        service.increaseStock(itemId, maxQty, "flash sale restock");
+                        restocked += maxQty;
+                    }
+                    Thread.sleep(1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final class Buyer extends Thread {
+        private final long itemId;
+        private final CountDownLatch go;
+        final LatencyRecorder latency = new LatencyRecorder();
+        long sold, decreases, rejected, errors;
+        boolean sawHot;
+
+        Buyer(int index, long itemId, CountDownLatch go) {
+            super("buyer-" + index);
+            this.itemId = itemId;
+            this.go = go;
+        }
+
+        @Override
+        public void run() {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            try {
+                go.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (int n = 0; n < attempts; n++) {
+                int qty = 1 + rnd.nextInt(maxQty);
+                long t = System.nanoTime();
+                try {
+                    service.decreaseStock(itemId, qty, "flash sale");
+                    sold += qty;
+                    decreases++;
+                } catch (IllegalStateException e) {
+                    rejected++;
+                } catch (RuntimeException e) {
+                    errors++;
+                }
+                latency.record(System.nanoTime() - t);
+                if (hotItems != null && !sawHot) sawHot = hotItems.isHot(itemId);
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.company.inventory.api;
+
+import com.company.inventory.config.AppConfig;
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.service.InventoryService;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Line-protocol server over non-blocking I/O (see {@link CommandHandler} for the commands).
+ * <p>
+ * One event-loop thread owns all sockets. Complete request lines are queued per connection,
+ * and whatever is queued is handed to a virtual thread as one batch, so a client may pipeline
+ * many requests without waiting. Responses are written back in request order; a connection
+ * never has more than one batch running, which keeps its operations ordered. Each connection has
+ * its own {@link DbConnectionManager.WriteSession}, so reads in one batch see the writes of the
+ * batches before it even though every batch runs on a new thread.
+ * <p>
+ * With {@code -Dserver.traceFile=<path>} every request is also written to a
+ * {@link WorkloadTrace} with its arrival time, for replaying the traffic later.
+ */
+public class InventoryServer implements AutoCloseable {
+
+    private static final int MAX_LINE = 8192;
+    private static final int MAX_PENDING = 1024; // stop reading a connection that pipelines further ahead
+
+    private final CommandHandler handler;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Queue<Runnable> loopTasks = new ConcurrentLinkedQueue<>();
+    private final WorkloadTrace.Recorder trace;
+    private volatile boolean running = true;
+
+    public InventoryServer(InventoryService service, int port) throws IOException {
+        this.handler = new CommandHandler(service);
+        String traceFile = AppConfig.get("server.traceFile", null);
+        this.trace = traceFile == null || traceFile.isBlank() ? null : new WorkloadTrace.Recorder(Path.of(traceFile));
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Runs the event loop on the calling thread until {@link #close()}.
+     */
+    public void serve() throws IOException {
+        try {
+            loop();
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                try { key.channel().close(); } catch (IOException ignore) {}
+            }
+            selector.close();
+            if (trace != null) trace.close();
+        }
+    }
+
+    private void loop() throws IOException {
+        while (running) {
+            selector.select();
+            Runnable task;
+            while ((task = loopTasks.poll()) != null) task.run();
+
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                if (!key.isValid()) continue;
+                try {
+                    if (key.isAcceptable()) accept();
+                    if (key.isValid() && key.isReadable()) read(key);
+                    if (key.isValid() && key.isWritable()) write(key);
+                } catch (IOException e) {
+                    closeQuietly(key);
+                }
+            }
+        }
+    }
+
+    public Thread start() {
+        Thread t = new Thread(() -> {
+            try {
+                serve();
+            } catch (IOException e) {
+                if (running) throw new RuntimeException("Inventory server stopped", e);
+            }
+        }, "inventory-server");
+        t.start();
+        return t;
+    }
+
+    private void accept() throws IOException {
+        SocketChannel ch;
+        while ((ch = server.accept()) != null) {
+            ch.configureBlocking(false);
+            ch.socket().setTcpNoDelay(true);
+            ch.register(selector, SelectionKey.OP_READ, new Conn());
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Conn conn = (Conn) key.attachment();
+        SocketChannel ch = (SocketChannel) key.channel();
+        int n = ch.read(conn.in);
+        if (n < 0) {
+            closeQuietly(key);
+            return;
+        }
+        conn.in.flip();
+        while (conn.in.hasRemaining()) {
+            byte b = conn.in.get();
+            if (b == '\n') {
+                int len = conn.line.position();
+                String line = new String(conn.line.array(), 0, len, StandardCharsets.UTF_8).strip();
+                conn.line.clear();
+                if (!line.isEmpty()) {
+                    if (trace != null) trace.record(line);
+                    conn.pending.add(line);
+                }
+            } else if (conn.line.hasRemaining()) {
+                conn.line.put(b);
+            } else {
+                closeQuietly(key); // line too long
+                return;
+            }
+        }
+        conn.in.clear();
+        if (conn.pending.size() >= MAX_PENDING) key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        dispatch(key, conn);
+    }
+
+    private void dispatch(SelectionKey key, Conn conn) {
+        if (conn.busy || conn.pending.isEmpty()) return;
+        conn.busy = true;
+        List<String> batch = new ArrayList<>(conn.pending);
+        conn.pending.clear();
+        workers.execute(() -> {
+            StringBuilder out = DbConnectionManager.inSession(conn.session, () -> {
+                StringBuilder sb = new StringBuilder(batch.size() * 64);
+                for (String line : batch) sb.append(handler.handle(line)).append('\n');
+                return sb;
+            });
+            ByteBuffer bytes = ByteBuffer.wrap(out.toString().getBytes(StandardCharsets.UTF_8));
+            loopTasks.add(() -> {
+                conn.busy = false;
+                if (!key.isValid()) return;
+                conn.out.add(bytes);
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE | SelectionKey.OP_READ);
+                dispatch(key, conn);
+            });
+            selector.wakeup();
+        });
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Conn conn = (Conn) key.attachment();
+        SocketChannel ch = (SocketChannel) key.channel();
+        while (!conn.out.isEmpty()) {
+            ByteBuffer buf = conn.out.peek();
+            ch.write(buf);
+            if (buf.hasRemaining()) return; // socket buffer full; wait for next OP_WRITE
+            conn.out.poll();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    private void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try { key.channel().close(); } catch (IOException ignore) {}
+    }
+
+    /**
+     * Stops the event loop; open connections are closed by the loop thread on its way out.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        workers.shutdown();
+    }
+
+    /** Per-connection state, only touched on the event-loop thread. */
+    private static final class Conn {
+        final ByteBuffer in = ByteBuffer.allocate(16 * 1024);
+        final ByteBuffer line = ByteBuffer.allocate(MAX_LINE);
+        final Queue<String> pending = new ArrayDeque<>();
+        final Queue<ByteBuffer> out = new ArrayDeque<>();
+        final DbConnectionManager.WriteSession session = new DbConnectionManager.WriteSession();
+        boolean busy;
+    }
+}
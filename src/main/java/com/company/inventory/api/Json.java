@@ -0,0 +1,52 @@
+package com.company.inventory.api;
+
+import com.company.inventory.model.Item;
+import com.company.inventory.model.StockMovement;
+
+/**
+ * Minimal JSON rendering for the wire protocol (the project has no JSON library).
+ */
+final class Json {
+
+    private Json() {}
+
+    static String item(Item i) {
+        return "{\"id\":" + i.getId()
+                + ",\"name\":" + string(i.getName())
+                + ",\"sku\":" + string(i.getSku() == null ? null : i.getSku().value())
+                + ",\"categoryId\":" + i.getCategoryId()
+                + ",\"supplierId\":" + i.getSupplierId()
+                + ",\"purchasePrice\":" + i.getPurchasePrice()
+                + ",\"salePrice\":" + i.getSalePrice()
+                + ",\"reorderLevel\":" + i.getReorderLevel() + "}";
+    }
+
+    static String movement(StockMovement m) {
+        return "{\"id\":" + m.getId()
+                + ",\"itemId\":" + m.getItemId()
+                + ",\"qty\":" + m.getQty()
+                + ",\"type\":\"" + m.getType() + "\""
+                + ",\"reason\":" + string(m.getReason())
+                + ",\"timestamp\":\"" + m.getTimestamp() + "\"}";
+    }
+
+    static String string(String s) {
+        if (s == null) return "null";
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
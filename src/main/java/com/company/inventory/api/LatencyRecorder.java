@@ -0,0 +1,53 @@
+package com.company.inventory.api;
+
+import java.util.Arrays;
+
+/**
+ * Collects latency samples (nanoseconds) and reports percentiles.
+ * Samples are kept exactly in a growable long array; one recorder per thread, merged at the end.
+ */
+public final class LatencyRecorder {
+
+    private long[] samples = new long[4096];
+    private int count;
+    private boolean sorted;
+
+    public void record(long nanos) {
+        if (count == samples.length) samples = Arrays.copyOf(samples, samples.length * 2);
+        samples[count++] = nanos;
+        sorted = false;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public void merge(LatencyRecorder other) {
+        if (count + other.count > samples.length) samples = Arrays.copyOf(samples, Math.max(samples.length * 2, count + other.count));
+        System.arraycopy(other.samples, 0, samples, count, other.count);
+        count += other.count;
+        sorted = false;
+    }
+
+    /**
+     * Percentile in nanoseconds, e.g. {@code percentile(99.9)}. Sorts the samples on first use.
+     */
+    public long percentile(double p) {
+        if (count == 0) return 0;
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+        int idx = (int) Math.ceil(p / 100.0 * count) - 1;
+        return samples[Math.max(0, Math.min(count - 1, idx))];
+    }
+
+    public long max() {
+        return percentile(100);
+    }
+
+    public String summary() {
+        return String.format("n=%d p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms",
+                count, percentile(50) / 1e6, percentile(99) / 1e6, percentile(99.9) / 1e6, max() / 1e6);
+    }
+}
@@ -0,0 +1,109 @@
+package com.company.inventory.api;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Closed-loop load generator for {@link InventoryServer}.
+ * Each connection sends a window of pipelined requests, then reads the responses,
+ * and repeats until the duration is over. Prints requests/sec and latency percentiles
+ * for lookups (STOCK/ITEM) and stock decrements (OUT) separately.
+ * <pre>
+ *   java ... LoadGenerator [host] [port] [connections] [seconds] [pipelineDepth] [outPercent] [maxItemId]
+ * </pre>
+ * Decrements need stock: seed items 1..maxItemId with plenty of quantity first.
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int depth = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+        int outPercent = args.length > 5 ? Integer.parseInt(args[5]) : 10;
+        long maxItemId = args.length > 6 ? Long.parseLong(args[6]) : 100;
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Worker w = new Worker(i, host, port, depth, outPercent, maxItemId, deadline);
+            workers.add(w);
+            w.start();
+        }
+
+        LatencyRecorder lookups = new LatencyRecorder();
+        LatencyRecorder decrements = new LatencyRecorder();
+        long errors = 0;
+        for (Worker w : workers) {
+            w.join();
+            lookups.merge(w.lookups);
+            decrements.merge(w.decrements);
+            errors += w.errors;
+        }
+
+        int total = lookups.count() + decrements.count();
+        System.out.printf("connections=%d pipeline=%d out=%d%% duration=%ds%n", connections, depth, outPercent, seconds);
+        System.out.printf("throughput: %.0f req/s (%d requests, %d errors)%n", (double) total / seconds, total, errors);
+        System.out.println("lookup:    " + lookups.summary());
+        System.out.println("decrement: " + decrements.summary());
+    }
+
+    private static final class Worker extends Thread {
+        private final String host;
+        private final int port;
+        private final int depth;
+        private final int outPercent;
+        private final long maxItemId;
+        private final long deadline;
+        final LatencyRecorder lookups = new LatencyRecorder();
+        final LatencyRecorder decrements = new LatencyRecorder();
+        long errors;
+
+        Worker(int index, String host, int port, int depth, int outPercent, long maxItemId, long deadline) {
+            super("load-" + index);
+            this.host = host;
+            this.port = port;
+            this.depth = depth;
+            this.outPercent = outPercent;
+            this.maxItemId = maxItemId;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            boolean[] isOut = new boolean[depth];
+            try (Socket socket = new Socket(host, port)) {
+                socket.setTcpNoDelay(true);
+                Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                while (System.nanoTime() < deadline) {
+                    StringBuilder window = new StringBuilder(depth * 24);
+                    for (int i = 0; i < depth; i++) {
+                        long itemId = 1 + rnd.nextLong(maxItemId);
+                        isOut[i] = rnd.nextInt(100) < outPercent;
+                        if (isOut[i]) window.append("OUT ").append(itemId).append(" 1 load\n");
+                        else window.append(rnd.nextBoolean() ? "STOCK " : "ITEM ").append(itemId).append('\n');
+                    }
+                    long sent = System.nanoTime();
+                    out.write(window.toString());
+                    out.flush();
+                    for (int i = 0; i < depth; i++) {
+                        String resp = in.readLine();
+                        if (resp == null) return;
+                        long latency = System.nanoTime() - sent;
+                        if (!resp.startsWith("OK")) errors++;
+                        (isOut[i] ? decrements : lookups).record(latency);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("connection failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.company.inventory.api;
+
+import com.company.inventory.dao.PurchaseOrderDao;
+import com.company.inventory.model.Item;
+import com.company.inventory.model.PurchaseOrder;
+import com.company.inventory.model.PurchaseOrderLine;
+import com.company.inventory.model.PurchaseOrderStatus;
+import com.company.inventory.model.Sku;
+import com.company.inventory.model.Stock;
+import com.company.inventory.service.InventoryService;
+import com.company.inventory.service.ReceivingService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Receives one large purchase order in a single receipt, such as a container manifest, to
+ * measure the receiving pipeline and to check what it booked.
+ * <p>
+ * An order with one line per item is created for {@code lines} new items, and a receipt with
+ * the ordered quantity of every line is run through {@link ReceivingService#receive}. Afterwards
+ * every line must be received, the order must be RECEIVED, and the stock of the items must add
+ * up to the units received. For comparison the same number of items can first be stocked with
+ * one {@code increaseStock} per line, which is what receiving amounted to before the pipeline.
+ * Run it with {@code ConsoleApp --receiving-bench [lines=10000] [qty=12] [baseline=true]}.
+ */
+public final class ReceivingThroughput {
+
+    private final InventoryService service;
+    private final ReceivingService receiving;
+    private final PurchaseOrderDao purchaseOrderDao;
+    private final int lines;
+    private final int qty;
+
+    public ReceivingThroughput(InventoryService service, ReceivingService receiving, PurchaseOrderDao purchaseOrderDao,
+                               int lines, int qty) {
+        if (lines < 1 || qty < 1) throw new IllegalArgumentException("lines and qty must be >= 1");
+        this.service = service;
+        this.receiving = receiving;
+        this.purchaseOrderDao = purchaseOrderDao;
+        this.lines = lines;
+        this.qty = qty;
+    }
+
+    /** Outcome of one receipt; {@code problems} is empty when lines, order status and stock agree. */
+    public record Report(String mode, int lines, long units, double seconds, List<String> problems) {
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %d lines, %d units in %.2f s, %.0f lines/s%s",
+                    mode, lines, units, seconds, lines / seconds,
+                    problems.isEmpty() ? "" : System.lineSeparator() + "  PROBLEMS: " + problems);
+        }
+    }
+
+    /** One increaseStock per line on fresh items: the receiving the pipeline replaces. */
+    public Report runPerLine() {
+        List<Item> items = createItems("RP");
+        long start = System.nanoTime();
+        for (Item item : items) service.increaseStock(item.getId(), qty, "per-line receipt");
+        double seconds = (System.nanoTime() - start) / 1e9;
+        List<String> problems = new ArrayList<>();
+        checkStock(items, (long) lines * qty, problems);
+        return new Report("increaseStock per line", lines, (long) lines * qty, seconds, problems);
+    }
+
+    public Report runPipeline() {
+        List<Item> items = createItems("RR");
+        List<PurchaseOrderLine> orderLines = new ArrayList<>(lines);
+        List<ReceivingService.ReceiptLine> receipt = new ArrayList<>(lines);
+        for (Item item : items) {
+            orderLines.add(new PurchaseOrderLine(item.getId(), qty, 1.0));
+            receipt.add(new ReceivingService.ReceiptLine(item.getSku().value(), qty));
+        }
+        PurchaseOrder order = purchaseOrderDao.create(new PurchaseOrder(1L, orderLines));
+
+        long start = System.nanoTime();
+        ReceivingService.Result result = receiving.receive(order.getId(), receipt);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        List<String> problems = new ArrayList<>();
+        if (result.linesReceived() != lines) problems.add(result.linesReceived() + " of " + lines + " lines received");
+        if (!result.rejected().isEmpty()) problems.add(result.rejected().size() + " lines rejected, first " + result.rejected().get(0));
+        if (result.status() != PurchaseOrderStatus.RECEIVED) problems.add("order status is " + result.status());
+        checkStock(items, result.unitsReceived(), problems);
+        if (result.unitsReceived() != (long) lines * qty) {
+            problems.add(result.unitsReceived() + " units received, expected " + (long) lines * qty);
+        }
+        return new Report("receiving pipeline", lines, result.unitsReceived(), seconds, problems);
+    }
+
+    private List<Item> createItems(String tag) {
+        String prefix = tag + Long.toString(System.nanoTime(), 36).toUpperCase() + "-";
+        List<Item> batch = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) batch.add(new Item(null, "Received item " + i, new Sku(prefix + i), null, null, 1.0, 2.0, 0));
+        return service.createItems(batch);
+    }
+
+    private void checkStock(List<Item> items, long expected, List<String> problems) {
+        Map<Long, Stock> stocks = service.viewStocks(items.stream().map(Item::getId).toList());
+        long total = stocks.values().stream().mapToLong(Stock::getQuantity).sum();
+        if (total != expected) problems.add("stock of the items adds up to " + total + ", expected " + expected);
+    }
+}
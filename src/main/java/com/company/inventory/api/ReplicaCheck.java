@@ -0,0 +1,282 @@
+package com.company.inventory.api;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.dao.DataAccessException;
+import com.company.inventory.dao.StockDaoJdbc;
+import com.company.inventory.model.Item;
+import com.company.inventory.model.Sku;
+import com.company.inventory.model.Stock;
+import com.company.inventory.service.InventoryService;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Replica routing check: where {@link DbConnectionManager#getReadConnection} sends reads as the
+ * replica falls behind, with a replicator whose lag can be set.
+ * <p>
+ * The replicator copies the item, stock and heartbeat tables from the primary to the replica
+ * every few milliseconds, but applies each copy only once it is {@code lag} old, like a replica
+ * that is that far behind. The check then runs through these phases and samples where reads
+ * go (the database that answers {@code SELECT DATABASE()}):
+ * <ul>
+ *   <li>no lag: reads are served by the replica;</li>
+ *   <li>lag below db.replica.maxStalenessMs: still the replica, and a stock read right after a
+ *       write from another session returns the old quantity, the staleness that is accepted;</li>
+ *   <li>lag above it: once the heartbeat is too old every read falls back to the primary and
+ *       returns the new quantity;</li>
+ *   <li>no lag again: reads return to the replica;</li>
+ *   <li>read-your-writes: right after a write of its own a session reads from the primary, and
+ *       from the replica again once the replica has caught up with that write.</li>
+ * </ul>
+ * Run it with {@code ConsoleApp --replica-check [maxStalenessMs=1000]}, which uses two embedded
+ * H2 databases as primary and replica.
+ */
+public final class ReplicaCheck {
+
+    private static final List<String> TABLES = List.of("item", "stock", "replica_heartbeat"); // parents first
+    private static final long COPY_EVERY_MS = 20;
+    private static final long SAMPLE_MS = 500;
+
+    private final InventoryService service;
+    private final String primaryUrl;
+    private final String replicaUrl;
+    private final String user;
+    private final String password;
+    private final long maxStalenessMs;
+
+    public ReplicaCheck(InventoryService service, String primaryUrl, String replicaUrl, String user, String password,
+                        long maxStalenessMs) {
+        this.service = service;
+        this.primaryUrl = primaryUrl;
+        this.replicaUrl = replicaUrl;
+        this.user = user;
+        this.password = password;
+        this.maxStalenessMs = maxStalenessMs;
+    }
+
+    /** Outcome of the check: one line per phase; {@code problems} is empty when every phase routed as expected. */
+    public record Report(List<String> phases, List<String> problems) {
+
+        @Override
+        public String toString() {
+            return String.join(System.lineSeparator(), phases) + System.lineSeparator()
+                    + (problems.isEmpty() ? "routing as expected" : "PROBLEMS: " + problems);
+        }
+    }
+
+    public Report run() throws InterruptedException {
+        String replicaName = databaseName(replicaUrl);
+        Item item = service.createItem(new Item(null, "Replicated item",
+                new Sku("RC" + Long.toString(System.nanoTime(), 36).toUpperCase()), null, null, 1.0, 2.0, 0));
+        long itemId = item.getId();
+        service.increaseStock(itemId, 10, "replica check");
+
+        List<String> phases = new ArrayList<>();
+        List<String> problems = new ArrayList<>();
+        Replicator replicator = new Replicator();
+        replicator.start();
+        try {
+            // the heartbeat starts with the first replica read; wait until the replica has one
+            replicator.lag = 0;
+            awaitReplica(replicaName, maxStalenessMs * 5);
+            sample("no lag", replicaName, 1.0, phases, problems);
+
+            // well within the bound: lag, plus up to two heartbeat intervals of detection, stays below it
+            replicator.lag = maxStalenessMs / 4;
+            Thread.sleep(maxStalenessMs);
+            sample("lag " + replicator.lag + "ms", replicaName, 1.0, phases, problems);
+            int before = stockOnPrimary(itemId);
+            writeFromOtherSession(itemId);
+            int seen = new StockDaoJdbc().getStock(itemId).map(Stock::getQuantity).orElse(-1);
+            phases.add("  stock read right after a write elsewhere: " + seen + " (primary has " + (before + 1) + ")");
+            if (seen != before) problems.add("lag " + replicator.lag + "ms: expected the replica's old quantity " + before + ", read " + seen);
+
+            replicator.lag = maxStalenessMs * 3;
+            Thread.sleep(maxStalenessMs * 2);
+            sample("lag " + replicator.lag + "ms", replicaName, 0.0, phases, problems);
+            writeFromOtherSession(itemId);
+            seen = new StockDaoJdbc().getStock(itemId).map(Stock::getQuantity).orElse(-1);
+            phases.add("  stock read right after a write elsewhere: " + seen + " (primary has " + stockOnPrimary(itemId) + ")");
+            if (seen != stockOnPrimary(itemId)) problems.add("lag " + replicator.lag + "ms: expected the primary's quantity, read " + seen);
+
+            replicator.lag = 0;
+            awaitReplica(replicaName, maxStalenessMs * 5);
+            sample("no lag again", replicaName, 1.0, phases, problems);
+
+            service.increaseStock(itemId, 1, "replica check"); // a write of this session
+            boolean primaryFirst = !replicaName.equals(readDatabase());
+            phases.add(String.format(Locale.ROOT, "read-your-writes: read right after own write from %s",
+                    primaryFirst ? "primary" : "replica"));
+            if (!primaryFirst) problems.add("read-your-writes: read right after own write was served by the replica");
+            long waited = awaitReplica(replicaName, maxStalenessMs * 5);
+            phases.add("  back on the replica after " + waited + "ms");
+            if (waited < 0) problems.add("read-your-writes: reads did not return to the replica");
+        } finally {
+            replicator.interrupt();
+            replicator.join();
+        }
+        return new Report(phases, problems);
+    }
+
+    // samples reads for SAMPLE_MS and compares the replica's share with the expected one
+    private void sample(String phase, String replicaName, double expected, List<String> phases, List<String> problems)
+            throws InterruptedException {
+        int reads = 0, fromReplica = 0;
+        long end = System.currentTimeMillis() + SAMPLE_MS;
+        while (System.currentTimeMillis() < end) {
+            reads++;
+            if (replicaName.equals(readDatabase())) fromReplica++;
+            Thread.sleep(5);
+        }
+        double share = (double) fromReplica / reads;
+        phases.add(String.format(Locale.ROOT, "%s: %d of %d reads from the replica (%.0f%%)", phase, fromReplica, reads, share * 100));
+        if (share != expected) {
+            problems.add(String.format(Locale.ROOT, "%s: expected %.0f%% of reads from the replica, got %.0f%%",
+                    phase, expected * 100, share * 100));
+        }
+    }
+
+    // milliseconds until a read is served by the replica, or -1 after the timeout
+    private long awaitReplica(String replicaName, long timeoutMs) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (System.currentTimeMillis() - start < timeoutMs) {
+            if (replicaName.equals(readDatabase())) return System.currentTimeMillis() - start;
+            Thread.sleep(10);
+        }
+        return -1;
+    }
+
+    private void writeFromOtherSession(long itemId) {
+        DbConnectionManager.inSession(new DbConnectionManager.WriteSession(),
+                () -> service.increaseStock(itemId, 1, "replica check"));
+    }
+
+    private int stockOnPrimary(long itemId) {
+        try (Connection c = DriverManager.getConnection(primaryUrl, user, password);
+             PreparedStatement ps = c.prepareStatement("SELECT quantity FROM stock WHERE item_id = ?")) {
+            ps.setLong(1, itemId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    private static String readDatabase() {
+        try (Connection c = DbConnectionManager.getReadConnection()) {
+            return databaseName(c);
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    private String databaseName(String url) {
+        try (Connection c = DriverManager.getConnection(url, user, password)) {
+            return databaseName(c);
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    private static String databaseName(Connection c) throws SQLException {
+        try (Statement s = c.createStatement();
+             ResultSet rs = s.executeQuery("SELECT DATABASE()")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    /**
+     * Copies the tables from the primary every COPY_EVERY_MS and applies each copy to the replica
+     * once it is {@code lag} milliseconds old. A whole-table copy is enough for the few rows of
+     * the check.
+     */
+    private final class Replicator extends Thread {
+        private record Snapshot(long takenMillis, List<List<Object[]>> tables) {}
+
+        volatile long lag;
+        private final Deque<Snapshot> pending = new ArrayDeque<>();
+
+        Replicator() {
+            super("replicator");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try (Connection primary = DriverManager.getConnection(primaryUrl, user, password);
+                 Connection replica = DriverManager.getConnection(replicaUrl, user, password)) {
+                replica.setAutoCommit(false);
+                while (!isInterrupted()) {
+                    long now = System.currentTimeMillis();
+                    pending.addLast(new Snapshot(now, copy(primary)));
+                    Snapshot due = null;
+                    while (!pending.isEmpty() && now - pending.peekFirst().takenMillis() >= lag) due = pending.pollFirst();
+                    if (due != null) apply(replica, due);
+                    Thread.sleep(COPY_EVERY_MS);
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            } catch (SQLException e) {
+                throw new DataAccessException(e);
+            }
+        }
+
+        private List<List<Object[]>> copy(Connection primary) throws SQLException {
+            List<List<Object[]>> tables = new ArrayList<>(TABLES.size());
+            try (Statement s = primary.createStatement()) {
+                for (String table : TABLES) {
+                    List<Object[]> rows = new ArrayList<>();
+                    try (ResultSet rs = s.executeQuery("SELECT * FROM " + table)) {
+                        ResultSetMetaData md = rs.getMetaData();
+                        while (rs.next()) {
+                            Object[] row = new Object[md.getColumnCount()];
+                            for (int i = 0; i < row.length; i++) row[i] = rs.getObject(i + 1);
+                            rows.add(row);
+                        }
+                    }
+                    tables.add(rows);
+                }
+            }
+            return tables;
+        }
+
+        private void apply(Connection replica, Snapshot snapshot) throws SQLException {
+            try (Statement s = replica.createStatement()) {
+                List<String> reversed = new ArrayList<>(TABLES);
+                Collections.reverse(reversed);
+                for (String table : reversed) s.executeUpdate("DELETE FROM " + table);
+                for (int t = 0; t < TABLES.size(); t++) {
+                    List<Object[]> rows = snapshot.tables().get(t);
+                    if (rows.isEmpty()) continue;
+                    String sql = "INSERT INTO " + TABLES.get(t) + " VALUES ("
+                            + String.join(", ", Collections.nCopies(rows.get(0).length, "?")) + ")";
+                    try (PreparedStatement ps = replica.prepareStatement(sql)) {
+                        for (Object[] row : rows) {
+                            for (int i = 0; i < row.length; i++) ps.setObject(i + 1, row[i]);
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                }
+                replica.commit();
+            } catch (SQLException e) {
+                replica.rollback();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.company.inventory.api;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.dao.DataAccessException;
+import com.company.inventory.dao.ItemDao;
+import com.company.inventory.model.Item;
+import com.company.inventory.model.Sku;
+import com.company.inventory.service.InventoryService;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bytes allocated per mapped item row, before and after the allocation-light row mapping.
+ * <p>
+ * All passes load the same item ids with the same {@code SELECT * FROM item WHERE id IN (...)}
+ * chunks that {@link ItemDao#findByIds} runs, and count the bytes the measuring thread allocated
+ * (HotSpot's per-thread allocation counter):
+ * <ul>
+ *   <li>read only: steps through the rows without mapping them, the JDBC share of the cost;</li>
+ *   <li>by name: the former mapping, with column lookups by name, {@code getObject} before each
+ *       nullable id and the SKU checked with {@code String.matches};</li>
+ *   <li>by index: {@link ItemDao#findByIds} itself, with column indexes resolved once per result
+ *       set, {@code getLong} plus {@code wasNull} and the hand-written SKU check.</li>
+ * </ul>
+ * The mapping cost of a path is its bytes per row minus those of the read-only pass.
+ * Run it with {@code ConsoleApp --mapping-alloc [rows=10000] [rounds=20]}.
+ */
+public final class RowMappingAllocation {
+
+    private static final int CHUNK = 500; // keys per IN list, as in the item DAO
+    private static final String SKU_PATTERN = "[A-Za-z0-9-]+";
+
+    private final InventoryService service;
+    private final ItemDao itemDao;
+    private final int rows;
+    private final int rounds;
+
+    public RowMappingAllocation(InventoryService service, ItemDao itemDao, int rows, int rounds) {
+        if (rows < 1 || rounds < 1) throw new IllegalArgumentException("rows and rounds must be >= 1");
+        this.service = service;
+        this.itemDao = itemDao;
+        this.rows = rows;
+        this.rounds = rounds;
+    }
+
+    /** Bytes allocated and time taken per row for one path. */
+    public record Pass(String name, double bytesPerRow, double rowsPerSecond) {}
+
+    /** Outcome of one run: the read-only pass first, then the two mappings. */
+    public record Report(int rows, int rounds, List<Pass> passes) {
+
+        @Override
+        public String toString() {
+            double base = passes.get(0).bytesPerRow();
+            StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "rows=%d rounds=%d%n", rows, rounds));
+            for (Pass p : passes) {
+                sb.append(String.format(Locale.ROOT, "%-10s %8.0f bytes/row (mapping %6.0f) %10.0f rows/s%n",
+                        p.name(), p.bytesPerRow(), p.bytesPerRow() - base, p.rowsPerSecond()));
+            }
+            return sb.toString().stripTrailing();
+        }
+    }
+
+    private interface Loader {
+        int load(List<Long> ids) throws SQLException;
+    }
+
+    public Report run() {
+        List<Long> ids = createItems();
+        List<Pass> passes = new ArrayList<>();
+        passes.add(measure("read only", ids, chunk -> query(chunk, rs -> null).size()));
+        passes.add(measure("by name", ids, chunk -> {
+            Map<Long, Item> result = new HashMap<>(Math.max(16, chunk.size() * 2));
+            for (Item item : query(chunk, RowMappingAllocation::mapByName)) result.put(item.getId(), item);
+            return result.size();
+        }));
+        passes.add(measure("by index", ids, chunk -> itemDao.findByIds(chunk).size()));
+        return new Report(rows, rounds, passes);
+    }
+
+    private List<Long> createItems() {
+        String prefix = "MA" + Long.toString(System.nanoTime(), 36).toUpperCase() + "-";
+        List<Item> batch = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Item(null, "Mapped item " + i, new Sku(prefix + i), null, null, 1.0, 2.0, i % 50));
+        }
+        return service.createItems(batch).stream().map(Item::getId).toList();
+    }
+
+    // two untimed rounds to warm up, then bytes and time over the measured rounds
+    private Pass measure(String name, List<Long> ids, Loader loader) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        try {
+            for (int r = 0; r < 2; r++) loadAll(ids, loader);
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            long loaded = 0;
+            for (int r = 0; r < rounds; r++) loaded += loadAll(ids, loader);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+            return new Pass(name, (double) bytes / loaded, loaded / seconds);
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    private long loadAll(List<Long> ids, Loader loader) throws SQLException {
+        long loaded = 0;
+        for (int from = 0; from < ids.size(); from += CHUNK) {
+            loaded += loader.load(ids.subList(from, Math.min(ids.size(), from + CHUNK)));
+        }
+        if (loaded != ids.size()) throw new IllegalStateException("loaded " + loaded + " of " + ids.size() + " items");
+        return loaded;
+    }
+
+    private interface RowMapper {
+        Item map(ResultSet rs) throws SQLException;
+    }
+
+    // rows of the chunk, mapped by the mapper (which may return null for the read-only pass)
+    private static List<Item> query(List<Long> chunk, RowMapper mapper) throws SQLException {
+        String sql = "SELECT * FROM item WHERE id IN (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+        try (Connection c = DbConnectionManager.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            for (int i = 0; i < chunk.size(); i++) ps.setLong(i + 1, chunk.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Item> items = new ArrayList<>(chunk.size());
+                while (rs.next()) items.add(mapper.map(rs));
+                return items;
+            }
+        }
+    }
+
+    // the row mapping the item DAO used before ItemRowMapper
+    private static Item mapByName(ResultSet rs) throws SQLException {
+        Long id = rs.getLong("id");
+        String name = rs.getString("name");
+        String skuValue = rs.getString("sku");
+        if (!skuValue.trim().matches(SKU_PATTERN)) throw new IllegalArgumentException("Invalid SKU format");
+        Sku sku = new Sku(skuValue);
+        Long categoryId = rs.getObject("category_id") == null ? null : rs.getLong("category_id");
+        Long supplierId = rs.getObject("supplier_id") == null ? null : rs.getLong("supplier_id");
+        return new Item(id, name, sku, categoryId, supplierId, rs.getDouble("purchase_price"),
+                rs.getDouble("sale_price"), rs.getInt("reorder_level"), rs.getLong("version"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.company.inventory.api;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.config.ShardRouter;
+import com.company.inventory.dao.ItemDaoJdbc;
+import com.company.inventory.dao.ShardedStockDao;
+import com.company.inventory.dao.ShardedStockMovementDao;
+import com.company.inventory.service.InventoryService;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stock write throughput by shard count, to show how writes scale as shards are added.
+ * <p>
+ * For each shard count the same number of threads run {@code increaseStock} on random item ids
+ * for a fixed time, through {@link ShardedStockDao}, {@link ShardedStockMovementDao} and the
+ * sharded transaction path of {@link InventoryService}. Stock writes never read the item table,
+ * so the item ids need not exist. Each line reports writes/s and the speedup over the first
+ * shard count.
+ * <p>
+ * Without urls every shard is an embedded in-memory H2 database in this process, which shows
+ * the routing and how lock contention spreads, but all shards share this machine's CPUs. To
+ * measure scale-out, pass the JDBC urls of separate database servers; the first N are used for
+ * N shards, and their stock tables receive the benchmark writes.
+ * Run it with {@code ConsoleApp --shard-bench [shards=1,2,4] [threads=32] [items=10000]
+ * [seconds=10] [urls=jdbc:...,jdbc:...]}.
+ */
+public final class ShardWriteScaling {
+
+    private final int threads;
+    private final int items;
+    private final int seconds;
+    private final List<String> urls; // empty for embedded shards
+
+    public ShardWriteScaling(int threads, int items, int seconds, List<String> urls) {
+        if (threads < 1 || items < 1 || seconds < 1) throw new IllegalArgumentException("threads, items and seconds must be >= 1");
+        this.threads = threads;
+        this.items = items;
+        this.seconds = seconds;
+        this.urls = List.copyOf(urls);
+    }
+
+    /**
+     * Measures each shard count in turn and returns one line per count.
+     */
+    public List<String> run(int[] shardCounts) throws InterruptedException {
+        String run = Long.toString(System.nanoTime(), 36);
+        List<String> lines = new ArrayList<>();
+        double baseline = 0;
+        for (int shards : shardCounts) {
+            if (!urls.isEmpty() && shards > urls.size()) {
+                lines.add("shards=" + shards + ": skipped, only " + urls.size() + " urls given");
+                continue;
+            }
+            List<DataSource> dataSources = new ArrayList<>(shards);
+            for (int i = 0; i < shards; i++) {
+                String url = urls.isEmpty() ? "jdbc:h2:mem:scale-" + run + "-" + shards + "-" + i + ";DB_CLOSE_DELAY=-1;MODE=MySQL" : urls.get(i);
+                dataSources.add(DbConnectionManager.dataSource(url, "sa", ""));
+            }
+            try (ShardRouter router = new ShardRouter(dataSources)) {
+                router.initSchema();
+                InventoryService service = new InventoryService(new ItemDaoJdbc(), new ShardedStockDao(router),
+                        new ShardedStockMovementDao(router), router);
+                Measured m = measure(service);
+                double rate = m.writes() / (double) seconds;
+                if (baseline == 0) baseline = rate;
+                lines.add(String.format(Locale.ROOT, "shards=%d %10.0f writes/s  speedup=%.2fx  errors=%d  %s",
+                        shards, rate, rate / baseline, m.errors(), m.latency().summary()));
+            }
+        }
+        return lines;
+    }
+
+    private record Measured(long writes, long errors, LatencyRecorder latency) {}
+
+    private Measured measure(InventoryService service) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Writer> writers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) writers.add(new Writer(t, service, deadline));
+        for (Writer w : writers) w.start();
+        long writes = 0, errors = 0;
+        LatencyRecorder latency = new LatencyRecorder();
+        for (Writer w : writers) {
+            w.join();
+            writes += w.writes;
+            errors += w.errors;
+            latency.merge(w.latency);
+        }
+        return new Measured(writes, errors, latency);
+    }
+
+    private final class Writer extends Thread {
+        private final InventoryService service;
+        private final long deadline;
+        final LatencyRecorder latency = new LatencyRecorder();
+        long writes, errors;
+
+        Writer(int index, InventoryService service, long deadline) {
+            super("shard-writer-" + index);
+            this.service = service;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                long t = System.nanoTime();
+                try {
+                    service.increaseStock(1 + (long) rnd.nextInt(items), 1, "shard benchmark");
+                    writes++;
+                } catch (RuntimeException e) {
+                    errors++;
+                }
+                latency.record(System.nanoTime() - t);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.company.inventory.api;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Sequence of requests with the time each one is due, relative to the start of a run.
+ * Requests are due on their own schedule no matter how fast earlier ones complete (open loop),
+ * which is what lets {@link WorkloadRunner} see queueing delay instead of hiding it.
+ * Implementations are thread-safe.
+ */
+public abstract class Workload {
+
+    /** One request: when it is due, its operation name for reporting, and the protocol line. */
+    public record Op(long offsetNanos, String kind, String command) {}
+
+    /** The next request, or null when the workload is over. */
+    public abstract Op next();
+
+    /** Requests per second the workload aims for, or 0 when it follows a trace. */
+    public abstract double targetRate();
+
+    /**
+     * Replays recorded requests at their recorded times divided by {@code speed}
+     * (2.0 replays twice as fast).
+     */
+    public static Workload replay(List<WorkloadTrace.Entry> entries, double speed) {
+        if (speed <= 0) throw new IllegalArgumentException("speed must be > 0");
+        return new Workload() {
+            private int next;
+
+            @Override
+            public synchronized Op next() {
+                if (next == entries.size()) return null;
+                WorkloadTrace.Entry e = entries.get(next++);
+                return new Op((long) (e.offsetNanos() / speed), kindOf(e.command()), e.command());
+            }
+
+            @Override
+            public double targetRate() {
+                return 0;
+            }
+        };
+    }
+
+    /** Operations of a synthetic workload, named after their protocol commands. */
+    public enum Operation { ITEM, STOCK, SKU, SEARCH, MOVES, IN, OUT }
+
+    /**
+     * Operation mix of a synthetic workload: relative weights per operation, e.g.
+     * {@code item:40,stock:30,sku:5,search:5,moves:5,in:7,out:8}.
+     */
+    public static EnumMap<Operation, Integer> parseMix(String mix) {
+        EnumMap<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            if (kv.length != 2) throw new IllegalArgumentException("Bad mix entry '" + part + "', expected op:weight");
+            int w = Integer.parseInt(kv[1].trim());
+            if (w < 0) throw new IllegalArgumentException("Negative weight in mix: " + part);
+            weights.put(Operation.valueOf(kv[0].trim().toUpperCase()), w);
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("Mix has no operations: " + mix);
+        }
+        return weights;
+    }
+
+    /**
+     * Generated requests at {@code rate} per second for {@code duration}.
+     * <p>
+     * Items are picked with a Zipf distribution of exponent {@code zipf} over {@code itemIds}
+     * (0 is uniform, around 1 is typical of catalog traffic: a few items get most requests).
+     * The popularity ranks are assigned to the items in a shuffled order, so hot items are not
+     * neighbours in the id space. Arrivals are a Poisson process when {@code poisson} is set
+     * (random gaps with the given mean, like independent users), otherwise evenly spaced.
+     *
+     * @param skus SKU of each entry of {@code itemIds}, used for SKU lookups and searches
+     */
+    public static Workload synthetic(List<Long> itemIds, List<String> skus, EnumMap<Operation, Integer> mix,
+                                     double rate, Duration duration, double zipf, boolean poisson, long seed) {
+        if (itemIds.isEmpty()) throw new IllegalArgumentException("no items to run against");
+        if (skus.size() != itemIds.size()) throw new IllegalArgumentException("one SKU per item id expected");
+        if (rate <= 0) throw new IllegalArgumentException("rate must be > 0");
+        return new Synthetic(itemIds, skus, mix, rate, duration.toNanos(), zipf, poisson, seed);
+    }
+
+    static String kindOf(String command) {
+        int sp = command.indexOf(' ');
+        return (sp < 0 ? command : command.substring(0, sp)).toUpperCase();
+    }
+
+    private static final class Synthetic extends Workload {
+        private final long[] itemIds;
+        private final String[] skus;
+        private final Operation[] ops;
+        private final int[] cumulativeWeights;
+        private final double rate;
+        private final long durationNanos;
+        private final boolean poisson;
+        private final ZipfSampler zipf;
+        private final SplittableRandom rnd;
+        private double nextOffset; // nanos
+
+        Synthetic(List<Long> itemIds, List<String> skus, EnumMap<Operation, Integer> mix,
+                  double rate, long durationNanos, double zipf, boolean poisson, long seed) {
+            this.rnd = new SplittableRandom(seed);
+            // shuffle item and SKU together so that popularity rank is unrelated to id
+            Integer[] order = new Integer[itemIds.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Collections.shuffle(Arrays.asList(order), new Random(seed));
+            this.itemIds = new long[order.length];
+            this.skus = new String[order.length];
+            for (int i = 0; i < order.length; i++) {
+                this.itemIds[i] = itemIds.get(order[i]);
+                this.skus[i] = skus.get(order[i]);
+            }
+            this.ops = mix.keySet().toArray(new Operation[0]);
+            this.cumulativeWeights = new int[ops.length];
+            int sum = 0;
+            for (int i = 0; i < ops.length; i++) cumulativeWeights[i] = sum += mix.get(ops[i]);
+            this.rate = rate;
+            this.durationNanos = durationNanos;
+            this.poisson = poisson;
+            this.zipf = new ZipfSampler(order.length, zipf);
+        }
+
+        @Override
+        public synchronized Op next() {
+            double gap = 1e9 / rate;
+            nextOffset += poisson ? -Math.log(1 - rnd.nextDouble()) * gap : gap;
+            if (nextOffset > durationNanos) return null;
+
+            int pick = rnd.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            int o = 0;
+            while (cumulativeWeights[o] <= pick) o++;
+            int rank = zipf.sample(rnd.nextDouble());
+            long id = itemIds[rank];
+            String command = switch (ops[o]) {
+                case ITEM -> "ITEM " + id;
+                case STOCK -> "STOCK " + id;
+                case SKU -> "SKU " + skus[rank];
+                // a prefix of a real SKU, so the search has something to find
+                case SEARCH -> "SEARCH " + skus[rank].substring(0, Math.max(1, skus[rank].length() - 1));
+                case MOVES -> "MOVES " + id;
+                case IN -> "IN " + id + " " + (1 + rnd.nextInt(10)) + " workload";
+                case OUT -> "OUT " + id + " 1 workload";
+            };
+            return new Op((long) nextOffset, ops[o].name(), command);
+        }
+
+        @Override
+        public double targetRate() {
+            return rate;
+        }
+    }
+
+    /**
+     * Zipf distribution over ranks 0..n-1 (rank 0 most popular) by inverse transform
+     * sampling on the precomputed cumulative distribution.
+     */
+    static final class ZipfSampler {
+        private final double[] cdf;
+
+        ZipfSampler(int n, double exponent) {
+            if (exponent < 0) throw new IllegalArgumentException("zipf exponent must be >= 0");
+            cdf = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) cdf[i] = sum += 1.0 / Math.pow(i + 1, exponent);
+            for (int i = 0; i < n; i++) cdf[i] /= sum;
+        }
+
+        int sample(double u) {
+            int i = Arrays.binarySearch(cdf, u);
+            i = i >= 0 ? i : -i - 1;
+            return Math.min(i, cdf.length - 1);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.company.inventory.api;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Result of a {@link WorkloadRunner} run: per operation, the response time (from when the
+ * request was due) and the service time (from when it actually started), rendered as JSON for
+ * tooling or as a self-contained HTML page. Times are in microseconds.
+ */
+public final class WorkloadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final String description;
+    private final int threads;
+    private final double targetRate;
+    private final Duration warmup;
+    private final long measuredNanos;
+    private final long executed;
+    private final long maxLagNanos;
+    private final Map<String, WorkloadRunner.KindStats> byKind;
+    private final WorkloadRunner.KindStats total = new WorkloadRunner.KindStats();
+
+    private WorkloadReport(String description, int threads, double targetRate, Duration warmup, long measuredNanos,
+                           long executed, long maxLagNanos, Map<String, WorkloadRunner.KindStats> byKind) {
+        this.description = description;
+        this.threads = threads;
+        this.targetRate = targetRate;
+        this.warmup = warmup;
+        this.measuredNanos = measuredNanos;
+        this.executed = executed;
+        this.maxLagNanos = maxLagNanos;
+        this.byKind = byKind;
+        byKind.values().forEach(total::merge);
+    }
+
+    static WorkloadReport of(String description, int threads, double targetRate, Duration warmup, long measuredNanos,
+                             long executed, long maxLagNanos, Map<String, WorkloadRunner.KindStats> byKind) {
+        return new WorkloadReport(description, threads, targetRate, warmup, measuredNanos, executed, maxLagNanos, byKind);
+    }
+
+    /** Measured requests per second, warm-up excluded. */
+    public double throughput() {
+        return total.response.count() / (measuredNanos / 1e9);
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%s: %d requests measured, %.0f req/s (target %s), max schedule lag %.3fms%n",
+                description, total.response.count(), throughput(),
+                targetRate > 0 ? String.format(Locale.ROOT, "%.0f", targetRate) : "trace", maxLagNanos / 1e6));
+        byKind.forEach((kind, s) -> sb.append(String.format(Locale.ROOT, "  %-7s errors=%d response %s | service p99=%.3fms%n",
+                kind, s.errors, s.response.summary(), s.service.percentile(99) / 1e6)));
+        sb.append(String.format(Locale.ROOT, "  %-7s errors=%d response %s | service p99=%.3fms",
+                "ALL", total.errors, total.response.summary(), total.service.percentile(99) / 1e6));
+        return sb.toString();
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{");
+        sb.append("\"description\":").append(Json.string(description));
+        sb.append(",\"threads\":").append(threads);
+        sb.append(",\"targetRate\":").append(fmt(targetRate));
+        sb.append(",\"warmupSeconds\":").append(fmt(warmup.toMillis() / 1000.0));
+        sb.append(",\"measuredSeconds\":").append(fmt(measuredNanos / 1e9));
+        sb.append(",\"executed\":").append(executed);
+        sb.append(",\"throughput\":").append(fmt(throughput()));
+        sb.append(",\"maxLagMicros\":").append(fmt(maxLagNanos / 1e3));
+        sb.append(",\"total\":");
+        appendJson(sb, total);
+        sb.append(",\"operations\":{");
+        boolean first = true;
+        for (Map.Entry<String, WorkloadRunner.KindStats> e : byKind.entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append(Json.string(e.getKey())).append(':');
+            appendJson(sb, e.getValue());
+        }
+        return sb.append("}}").toString();
+    }
+
+    private static void appendJson(StringBuilder sb, WorkloadRunner.KindStats s) {
+        sb.append("{\"count\":").append(s.response.count()).append(",\"errors\":").append(s.errors);
+        sb.append(",\"responseMicros\":");
+        appendPercentiles(sb, s.response);
+        sb.append(",\"serviceMicros\":");
+        appendPercentiles(sb, s.service);
+        sb.append('}');
+    }
+
+    private static void appendPercentiles(StringBuilder sb, LatencyRecorder r) {
+        sb.append('{');
+        for (double p : PERCENTILES) sb.append('"').append(label(p)).append("\":").append(fmt(r.percentile(p) / 1e3)).append(',');
+        sb.append("\"max\":").append(fmt(r.max() / 1e3)).append('}');
+    }
+
+    /**
+     * The report as one HTML page: run parameters, then a row per operation with its
+     * percentiles and a bar scaled to the largest p99 response time in the table.
+     */
+    public String toHtml() {
+        long scale = Math.max(1, total.response.percentile(99));
+        StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>Workload report</title>\n<style>\n")
+          .append("body{font-family:sans-serif;margin:2em}table{border-collapse:collapse}\n")
+          .append("td,th{padding:4px 10px;text-align:right;border-bottom:1px solid #ddd}th:first-child,td:first-child{text-align:left}\n")
+          .append(".bar{background:#4a90d9;height:10px}.svc{background:#a7c8ee;height:10px}\n")
+          .append("</style></head><body>\n");
+        sb.append("<h1>").append(escape(description)).append("</h1>\n<p>")
+          .append(threads).append(" threads, target ")
+          .append(targetRate > 0 ? fmt(targetRate) + " req/s" : "recorded trace")
+          .append(", achieved ").append(fmt(throughput())).append(" req/s over ").append(fmt(measuredNanos / 1e9))
+          .append(" s (").append(fmt(warmup.toMillis() / 1000.0)).append(" s warm-up excluded), max schedule lag ")
+          .append(fmt(maxLagNanos / 1e3)).append(" &micro;s</p>\n");
+        sb.append("<p>Response time is measured from when a request was due and includes time spent waiting ")
+          .append("for a worker; service time starts when a worker picked it up. Times in &micro;s.</p>\n");
+        sb.append("<table>\n<tr><th>operation</th><th>count</th><th>errors</th>");
+        for (double p : PERCENTILES) sb.append("<th>p").append(label(p)).append("</th>");
+        sb.append("<th>max</th><th>service p99</th><th></th></tr>\n");
+        byKind.forEach((kind, s) -> appendRow(sb, kind, s, scale));
+        appendRow(sb, "ALL", total, scale);
+        sb.append("</table>\n</body></html>\n");
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, String kind, WorkloadRunner.KindStats s, long scale) {
+        sb.append("<tr><td>").append(escape(kind)).append("</td><td>").append(s.response.count())
+          .append("</td><td>").append(s.errors).append("</td>");
+        for (double p : PERCENTILES) sb.append("<td>").append(fmt(s.response.percentile(p) / 1e3)).append("</td>");
+        sb.append("<td>").append(fmt(s.response.max() / 1e3)).append("</td><td>")
+          .append(fmt(s.service.percentile(99) / 1e3)).append("</td><td style=\"width:300px\">");
+        long width = Math.min(300, s.response.percentile(99) * 300 / scale);
+        long svcWidth = Math.min(300, s.service.percentile(99) * 300 / scale);
+        sb.append("<div class=\"bar\" style=\"width:").append(width).append("px\"></div>")
+          .append("<div class=\"svc\" style=\"width:").append(svcWidth).append("px\"></div></td></tr>\n");
+    }
+
+    private static String label(double p) {
+        return p == Math.rint(p) ? Long.toString((long) p) : Double.toString(p);
+    }
+
+    private static String fmt(double v) {
+        return String.format(Locale.ROOT, "%.1f", v);
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,106 @@
+package com.company.inventory.api;
+
+import com.company.inventory.service.InventoryService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a {@link Workload} in-process against {@link InventoryService}, through the same
+ * {@link CommandHandler} the server uses, and measures it.
+ * <p>
+ * Worker threads take the requests in schedule order, wait until each one is due and execute
+ * it. Latency is measured from when the request was due, not from when a worker got to it:
+ * when the system falls behind, requests wait for a free worker just as they would queue in
+ * front of a real server, and that wait is part of their latency. Measuring from the actual
+ * start instead (as closed-loop tools do) leaves out exactly the slow periods, the
+ * "coordinated omission" problem; that number is reported separately as service time.
+ * <p>
+ * Requests due during the warm-up period run but are not measured.
+ */
+public final class WorkloadRunner {
+
+    private final CommandHandler handler;
+    private final int threads;
+    private final Duration warmup;
+
+    public WorkloadRunner(InventoryService service, int threads, Duration warmup) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        this.handler = new CommandHandler(service);
+        this.threads = threads;
+        this.warmup = warmup;
+    }
+
+    /** Latencies and outcome counts of one operation kind, per worker and then merged. */
+    static final class KindStats {
+        final LatencyRecorder response = new LatencyRecorder();
+        final LatencyRecorder service = new LatencyRecorder();
+        long errors;
+
+        void merge(KindStats other) {
+            response.merge(other.response);
+            service.merge(other.service);
+            errors += other.errors;
+        }
+    }
+
+    private final class Worker extends Thread {
+        private final Workload workload;
+        private final long start;
+        private final long warmupNanos;
+        final Map<String, KindStats> stats = new TreeMap<>();
+        long executed;
+        long maxLag;
+        long lastEnd;
+
+        Worker(int index, Workload workload, long start) {
+            super("workload-" + index);
+            this.workload = workload;
+            this.start = start;
+            this.warmupNanos = warmup.toNanos();
+        }
+
+        @Override
+        public void run() {
+            Workload.Op op;
+            while ((op = workload.next()) != null) {
+                long due = start + op.offsetNanos();
+                long now;
+                while ((now = System.nanoTime()) < due) LockSupport.parkNanos(due - now);
+                String response = handler.handle(op.command());
+                long end = System.nanoTime();
+                executed++;
+                lastEnd = end;
+                if (op.offsetNanos() < warmupNanos) continue;
+                maxLag = Math.max(maxLag, now - due);
+                KindStats s = stats.computeIfAbsent(op.kind(), k -> new KindStats());
+                s.response.record(end - due);
+                s.service.record(end - now);
+                if (response.startsWith("ERR")) s.errors++;
+            }
+        }
+    }
+
+    public WorkloadReport run(Workload workload, String description) throws InterruptedException {
+        long start = System.nanoTime() + 10_000_000L; // let all workers get ready for the first request
+        List<Worker> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) workers.add(new Worker(i, workload, start));
+        for (Worker w : workers) w.start();
+
+        Map<String, KindStats> merged = new TreeMap<>();
+        long executed = 0, maxLag = 0, end = start;
+        for (Worker w : workers) {
+            w.join();
+            w.stats.forEach((kind, s) -> merged.computeIfAbsent(kind, k -> new KindStats()).merge(s));
+            executed += w.executed;
+            maxLag = Math.max(maxLag, w.maxLag);
+            end = Math.max(end, w.lastEnd);
+        }
+        long measuredNanos = Math.max(1, end - start - warmup.toNanos());
+        return WorkloadReport.of(description, threads, workload.targetRate(), warmup, measuredNanos, executed, maxLag, merged);
+    }
+}
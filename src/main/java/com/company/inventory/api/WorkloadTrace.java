@@ -0,0 +1,80 @@
+package com.company.inventory.api;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recorded request traffic: one request per line as {@code <offsetMicros> <command>}, where the
+ * offset is the arrival time relative to the start of the recording and the command is a line
+ * of the wire protocol (see {@link CommandHandler}). Lines starting with '#' are comments.
+ * {@link InventoryServer} writes this format when started with {@code -Dserver.traceFile=<path>},
+ * and {@link Workload#replay} plays it back.
+ */
+public final class WorkloadTrace {
+
+    public record Entry(long offsetNanos, String command) {}
+
+    private WorkloadTrace() {}
+
+    public static List<Entry> read(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                int sp = line.indexOf(' ');
+                if (sp < 0) throw new IOException("Line " + lineNo + " of " + file + ": expected <offsetMicros> <command>");
+                try {
+                    entries.add(new Entry(Long.parseLong(line.substring(0, sp)) * 1000, line.substring(sp + 1).strip()));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Line " + lineNo + " of " + file + ": bad offset", e);
+                }
+            }
+        }
+        // requests from different connections may have been written slightly out of order
+        entries.sort((a, b) -> Long.compare(a.offsetNanos(), b.offsetNanos()));
+        return entries;
+    }
+
+    /**
+     * Appends requests to a trace file. Not thread-safe: the server records from its event-loop thread.
+     */
+    public static final class Recorder implements AutoCloseable {
+        private final BufferedWriter out;
+        private final long start = System.nanoTime();
+
+        public Recorder(Path file) throws IOException {
+            this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            out.write("# offsetMicros command\n");
+        }
+
+        public void record(String command) {
+            try {
+                out.write(Long.toString((System.nanoTime() - start) / 1000));
+                out.write(' ');
+                out.write(command);
+                out.write('\n');
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to write trace", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close trace: " + e.getMessage());
+            }
+        }
+    }
+}
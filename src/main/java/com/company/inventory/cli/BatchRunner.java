@@ -0,0 +1,211 @@
+package com.company.inventory.cli;
+
+import com.company.inventory.model.Item;
+import com.company.inventory.model.Sku;
+import com.company.inventory.model.dto.StockChange;
+import com.company.inventory.model.dto.StockChangeResult;
+import com.company.inventory.service.InventoryService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Headless mode: executes a stream of comma separated commands without prompts.
+ * <pre>
+ *   create,&lt;sku&gt;,&lt;name&gt;,&lt;categoryId&gt;,&lt;supplierId&gt;,&lt;purchasePrice&gt;,&lt;salePrice&gt;,&lt;reorderLevel&gt;
+ *   increase,&lt;itemId|sku&gt;,&lt;qty&gt;[,reason]
+ *   decrease,&lt;itemId|sku&gt;,&lt;qty&gt;[,reason]
+ *   search,&lt;query&gt;
+ * </pre>
+ * Empty category/supplier fields mean null; an all-digit item reference is an id, anything else a SKU.
+ * Blank lines and lines starting with '#' are ignored.
+ * Creates and stock changes are queued and flushed in batches (one JDBC batch for creates,
+ * one transaction for stock changes); a search flushes the queue first so it sees earlier lines.
+ * Lines take effect in input order: the queue only ever holds creates followed by changes, so a
+ * create after queued changes flushes those changes first, and a change never sees an item that
+ * is created on a later line. Files that alternate creates and changes get smaller batches.
+ * Item references are checked before the changes run; unknown ids and SKUs are reported per line.
+ * Output is buffered and ends with a throughput summary.
+ */
+public class BatchRunner {
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final InventoryService service;
+    private final PrintWriter out;
+    private final int batchSize;
+
+    private final List<Item> pendingCreates = new ArrayList<>();
+    private final List<Integer> pendingCreateLines = new ArrayList<>();
+    private final List<PendingChange> pendingChanges = new ArrayList<>();
+
+    private long ops;
+    private long errors;
+
+    // itemId is set for an id reference (parsed when queued, so a bad one fails its own line), else null
+    private record PendingChange(int lineNo, String itemRef, Long itemId, int delta, String reason) {}
+
+    public BatchRunner(InventoryService service, PrintWriter out) {
+        this(service, out, DEFAULT_BATCH_SIZE);
+    }
+
+    public BatchRunner(InventoryService service, PrintWriter out, int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+        this.service = service;
+        this.out = out;
+        this.batchSize = batchSize;
+    }
+
+    public void run(BufferedReader in) throws IOException {
+        long start = System.nanoTime();
+        String line;
+        int lineNo = 0;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            ops++;
+            try {
+                execute(lineNo, line);
+            } catch (RuntimeException e) {
+                error(lineNo, e.getMessage());
+            }
+        }
+        flush();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        out.printf("Processed %d operations in %.3f s (%.0f ops/s), %d errors%n",
+                ops, seconds, seconds == 0 ? 0.0 : ops / seconds, errors);
+        out.flush();
+    }
+
+    private void execute(int lineNo, String line) {
+        String[] f = line.split(",", -1);
+        switch (f[0].trim().toLowerCase()) {
+            case "create" -> {
+                require(f, 8);
+                if (!pendingChanges.isEmpty()) flush(); // keep line order: the queued lines came first
+                pendingCreates.add(new Item(null, f[2].trim(), new Sku(f[1]), optionalLong(f[3]), optionalLong(f[4]),
+                        Double.parseDouble(f[5].trim()), Double.parseDouble(f[6].trim()), Integer.parseInt(f[7].trim())));
+                pendingCreateLines.add(lineNo);
+            }
+            case "increase", "decrease" -> {
+                require(f, 3);
+                int qty = Integer.parseInt(f[2].trim());
+                if (qty <= 0) throw new IllegalArgumentException("qty must be > 0");
+                String reason = f.length > 3 ? String.join(",", Arrays.copyOfRange(f, 3, f.length)).trim() : null;
+                String ref = f[1].trim();
+                pendingChanges.add(new PendingChange(lineNo, ref, isNumeric(ref) ? Long.valueOf(ref) : null,
+                        f[0].trim().equalsIgnoreCase("increase") ? qty : -qty, reason));
+            }
+            case "search" -> {
+                require(f, 2);
+                flush();
+                List<Item> items = service.searchItems(line.substring(line.indexOf(',') + 1).trim());
+                out.println("line " + lineNo + ": " + items.size() + " item(s)");
+                for (Item i : items) out.println("  " + i.getId() + " | " + i.getName() + " | " + i.getSku());
+            }
+            default -> throw new IllegalArgumentException("unknown command '" + f[0] + "'");
+        }
+        if (pendingCreates.size() + pendingChanges.size() >= batchSize) flush();
+    }
+
+    private void flush() {
+        flushCreates();
+        flushChanges();
+    }
+
+    private void flushCreates() {
+        if (pendingCreates.isEmpty()) return;
+        try {
+            List<Item> created = service.createItems(pendingCreates);
+            for (int i = 0; i < created.size(); i++) {
+                out.println("line " + pendingCreateLines.get(i) + ": created item " + created.get(i).getId());
+            }
+        } catch (RuntimeException batchFailure) {
+            // one bad row (e.g. duplicate SKU) fails the whole JDBC batch; redo row by row to report it
+            for (int i = 0; i < pendingCreates.size(); i++) {
+                try {
+                    Item created = service.createItem(pendingCreates.get(i));
+                    out.println("line " + pendingCreateLines.get(i) + ": created item " + created.getId());
+                } catch (RuntimeException e) {
+                    error(pendingCreateLines.get(i), e.getMessage());
+                }
+            }
+        }
+        pendingCreates.clear();
+        pendingCreateLines.clear();
+    }
+
+    private void flushChanges() {
+        if (pendingChanges.isEmpty()) return;
+
+        // resolve SKU references and check id references, one lookup each
+        Set<String> skus = new HashSet<>();
+        Set<Long> ids = new HashSet<>();
+        for (PendingChange p : pendingChanges) {
+            if (p.itemId() != null) ids.add(p.itemId());
+            else skus.add(p.itemRef());
+        }
+        Map<String, Item> bySku = skus.isEmpty() ? Map.of() : service.findItemsBySkus(skus);
+        Map<Long, Item> byId = ids.isEmpty() ? Map.of() : service.findItemsByIds(ids);
+
+        List<StockChange> changes = new ArrayList<>(pendingChanges.size());
+        List<PendingChange> resolved = new ArrayList<>(pendingChanges.size());
+        for (PendingChange p : pendingChanges) {
+            Long itemId;
+            if (p.itemId() != null) {
+                itemId = p.itemId();
+                if (!byId.containsKey(itemId)) {
+                    error(p.lineNo(), "unknown item id " + itemId);
+                    continue;
+                }
+            } else {
+                Item item = bySku.get(p.itemRef());
+                if (item == null) {
+                    error(p.lineNo(), "unknown SKU " + p.itemRef());
+                    continue;
+                }
+                itemId = item.getId();
+            }
+            changes.add(new StockChange(itemId, p.delta(), p.reason()));
+            resolved.add(p);
+        }
+        pendingChanges.clear();
+        if (changes.isEmpty()) return;
+
+        try {
+            List<StockChangeResult> results = service.applyStockChanges(changes);
+            for (int i = 0; i < results.size(); i++) {
+                StockChangeResult r = results.get(i);
+                if (r.ok()) {
+                    out.println("line " + resolved.get(i).lineNo() + ": item " + r.change().itemId() + " qty=" + r.quantity());
+                } else {
+                    error(resolved.get(i).lineNo(), r.error());
+                }
+            }
+        } catch (RuntimeException e) {
+            for (PendingChange p : resolved) error(p.lineNo(), "batch rolled back: " + e.getMessage());
+        }
+    }
+
+    private void error(int lineNo, String message) {
+        errors++;
+        out.println("line " + lineNo + ": ERROR " + message);
+    }
+
+    private static void require(String[] fields, int n) {
+        if (fields.length < n) throw new IllegalArgumentException("expected at least " + n + " fields");
+    }
+
+    private static Long optionalLong(String s) {
+        return s.isBlank() ? null : Long.parseLong(s.trim());
+    }
+
+    private static boolean isNumeric(String s) {
+        if (s.isEmpty()) return false;
+        for (int i = 0; i < s.length(); i++) if (!Character.isDigit(s.charAt(i))) return false;
+        return true;
+    }
+}
@@ -1,15 +1,64 @@
 package com.company.inventory.cli;
 
+import com.company.inventory.api.AlertThroughput;
+import com.company.inventory.api.BulkLookupBenchmark;
+import com.company.inventory.api.DaoBenchmark;
+import com.company.inventory.api.DaoConformance;
+import com.company.inventory.api.DriftCheck;
+import com.company.inventory.api.EditContention;
+import com.company.inventory.api.HotItemStress;
+import com.company.inventory.api.InventoryServer;
+import com.company.inventory.api.ReceivingThroughput;
+import com.company.inventory.api.ReplicaCheck;
+import com.company.inventory.api.RowMappingAllocation;
+import com.company.inventory.api.ShardWriteScaling;
+import com.company.inventory.api.Workload;
+import com.company.inventory.api.WorkloadReport;
+import com.company.inventory.api.WorkloadRunner;
+import com.company.inventory.api.WorkloadTrace;
+import com.company.inventory.config.AppConfig;
 import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.config.ShardRouter;
+import com.company.inventory.config.SqlDiagnostics;
 import com.company.inventory.dao.*;
 import com.company.inventory.model.*;
+import com.company.inventory.model.dto.CategoryStock;
+import com.company.inventory.model.dto.ItemPrice;
+import com.company.inventory.model.dto.PriceChange;
+import com.company.inventory.model.dto.StockChange;
+import com.company.inventory.service.Alert;
+import com.company.inventory.service.AlertEngine;
+import com.company.inventory.service.AlertRule;
+import com.company.inventory.service.AnalyticsService;
+import com.company.inventory.service.CycleCountService;
+import com.company.inventory.service.HotItemCoordinator;
+import com.company.inventory.service.IntegrityVerifier;
+import com.company.inventory.service.InventoryCache;
 import com.company.inventory.service.InventoryService;
+import com.company.inventory.service.MovementArchiver;
+import com.company.inventory.service.ReceivingService;
+import com.company.inventory.service.RepricingService;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Scanner;
 
@@ -22,35 +71,524 @@ public class ConsoleApp {
     private final ItemDao itemDao;
     private final StockDao stockDao;
     private final StockMovementDao movementDao;
+    private final PurchaseOrderDao purchaseOrderDao = new PurchaseOrderDaoJdbc();
+    private final CategoryDao categoryDao = new CategoryDaoJdbc();
+    private final SupplierDao supplierDao = new SupplierDaoJdbc();
+    private final PriceHistoryDao priceHistoryDao = new PriceHistoryDaoJdbc();
     private final Scanner scanner = new Scanner(System.in);
+    private AlertEngine alerts; // null unless alerts.enabled
 
     private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String NOT_ON_KV = "Not available with the kv storage backend.";
+    private static final String NOT_ON_SHARDS = "Not available with sharded stock.";
 
     public ConsoleApp(ItemDao itemDao, StockDao stockDao, StockMovementDao movementDao) {
+        this(new InventoryService(itemDao, stockDao, movementDao), itemDao, stockDao, movementDao);
+    }
+
+    public ConsoleApp(InventoryService service, ItemDao itemDao, StockDao stockDao, StockMovementDao movementDao) {
         this.itemDao = itemDao;
         this.stockDao = stockDao;
         this.movementDao = movementDao;
-        this.service = new InventoryService(itemDao, stockDao, movementDao);
+        this.service = service;
     }
 
     public static void main(String[] args) {
-        // Create JDBC DAO implementations
-        var itemDao = new ItemDaoJdbc();
-        var stockDao = new StockDaoJdbc();
-        var movementDao = new StockMovementDaoJdbc();
+        if (args.length > 0 && (args[0].equals("--dao-check") || args[0].equals("--dao-bench"))) {
+            // the same checks or measurements against the JDBC and the kv DAOs, whatever storage.backend says
+            compareBackends(args[0].equals("--dao-bench"), args.length > 1 ? Integer.parseInt(args[1]) : 2000);
+            return;
+        }
 
-        // Initialize DB schema (H2 default)
-        initDb();
+        if (args.length > 0 && args[0].equals("--hot-stress")) {
+            // flash sale on one item, on the stock row lock and with hot buckets: key=value options, see runHotStress
+            if (!runHotStress(parseOptions(List.of(args).subList(1, args.length)))) System.exit(1);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--shard-bench")) {
+            // stock write throughput by shard count: key=value options, see runShardBenchmark
+            runShardBenchmark(parseOptions(List.of(args).subList(1, args.length)));
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--drift-check")) {
+            // injected stock drift must be reported and corrected by the integrity verifier: key=value options, see runDriftCheck
+            if (!runDriftCheck(parseOptions(List.of(args).subList(1, args.length)))) System.exit(1);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--alert-bench")) {
+            // in-stream alert rule evaluation throughput: key=value options, see runAlertBenchmark
+            if (!runAlertBenchmark(parseOptions(List.of(args).subList(1, args.length)))) System.exit(1);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--receiving-bench")) {
+            // one large purchase order receipt through the receiving pipeline: key=value options, see runReceivingBenchmark
+            if (!runReceivingBenchmark(parseOptions(List.of(args).subList(1, args.length)))) System.exit(1);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--lookup-bench")) {
+            // single against multi-get item lookups: key=value options, see runLookupBenchmark
+            runLookupBenchmark(parseOptions(List.of(args).subList(1, args.length)));
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--mapping-alloc")) {
+            // bytes allocated per mapped item row, former and current mapping: key=value options, see runMappingAllocation
+            runMappingAllocation(parseOptions(List.of(args).subList(1, args.length)));
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--replica-check")) {
+            // replica routing under injected lag, on two embedded databases: key=value options, see runReplicaCheck
+            if (!runReplicaCheck(parseOptions(List.of(args).subList(1, args.length)))) System.exit(1);
+            return;
+        }
+
+        // storage.backend in config/app.properties, overridable with -Dstorage.backend
+        String backend = AppConfig.get("storage.backend", "jdbc").trim();
+        ConsoleApp app = switch (backend) {
+            case "jdbc" -> openJdbc();
+            case "kv" -> openKv();
+            default -> throw new IllegalArgumentException("Unknown storage.backend: " + backend + " (expected jdbc or kv)");
+        };
+        if (AppConfig.getBoolean("alerts.enabled", false)) app.enableAlerts();
+
+        if (args.length > 1 && args[0].equals("--batch")) {
+            // headless mode: commands from a file, or stdin when the file is "-"
+            app.runBatch(args[1]);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--serve")) {
+            // network mode: line protocol instead of the interactive menu
+            app.serve(args.length > 1 ? Integer.parseInt(args[1]) : 7070);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--workload")) {
+            // load test: key=value options, see runWorkload
+            app.runWorkload(List.of(args).subList(1, args.length));
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--edit-contention")) {
+            // concurrent editors on the configured backend: key=value options, see runEditContention
+            if (!app.runEditContention(List.of(args).subList(1, args.length))) System.exit(1);
+            return;
+        }
 
         // Start CLI
-        ConsoleApp app = new ConsoleApp(itemDao, stockDao, movementDao);
         app.run();
     }
 
+    private static ConsoleApp openJdbc() {
+        // Initialize DB schema (H2 default)
+        initDb();
+
+        // Create JDBC DAO implementations; stock goes to shards when -Ddb.shards is set
+        var itemDao = new ItemDaoJdbc();
+        ShardRouter router = ShardRouter.fromConfig();
+        ConsoleApp app;
+        if (router == null) {
+            // movement history is served from the live table plus the cold archive file
+            var archive = new MovementArchive(Path.of(AppConfig.get("archive.file", "./data/movement-archive.bin")));
+            var stockDao = new StockDaoJdbc();
+            var movementDao = new ArchivingStockMovementDao(new StockMovementDaoJdbc(), archive);
+            var service = new InventoryService(itemDao, stockDao, movementDao);
+            HotItemCoordinator hotItems = null;
+            if (AppConfig.getBoolean("hot.items", false)) {
+                // flash-sale mode: contended items are sold from memory
+                hotItems = new HotItemCoordinator();
+                service.setHotItemCoordinator(hotItems);
+            }
+            String snapshot = AppConfig.get("cache.snapshot", null);
+            if (snapshot != null && !snapshot.isBlank()) {
+                // warm start: lookups are served from memory, loaded from the snapshot file when it is valid
+                long start = System.nanoTime();
+                InventoryCache cache = InventoryCache.load(Path.of(snapshot), itemDao);
+                service.setInventoryCache(cache);
+                System.out.printf("Inventory cache ready (%s start, %d items, %d ms)%n",
+                        cache.isWarmStart() ? "warm" : "cold", cache.size(), (System.nanoTime() - start) / 1_000_000);
+            }
+            HotItemCoordinator flushOnExit = hotItems;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                // flush pending hot-item sales first so the snapshot sees them
+                if (flushOnExit != null) flushOnExit.close();
+                if (snapshot != null && !snapshot.isBlank()) {
+                    try {
+                        InventoryCache.saveSnapshot(Path.of(snapshot), itemDao);
+                    } catch (RuntimeException e) {
+                        System.err.println("Failed to save inventory snapshot: " + e.getMessage());
+                    }
+                }
+            }, "inventory-shutdown"));
+            app = new ConsoleApp(service, itemDao, stockDao, movementDao);
+        } else {
+            router.initSchema();
+            var stockDao = new ShardedStockDao(router);
+            var movementDao = new ShardedStockMovementDao(router);
+            app = new ConsoleApp(new InventoryService(itemDao, stockDao, movementDao, router), itemDao, stockDao, movementDao);
+        }
+        return app;
+    }
+
+    // items, stock and movements in the embedded log store; no database is touched
+    private static ConsoleApp openKv() {
+        LogStore store = new LogStore(Path.of(AppConfig.get("kv.dir", "./data/kv")),
+                AppConfig.getInt("kv.segmentMb", 64) << 20,
+                AppConfig.getBoolean("kv.sync", false),
+                Duration.ofSeconds(AppConfig.getInt("kv.compactIntervalSec", 60)));
+        Runtime.getRuntime().addShutdownHook(new Thread(store::close, "kv-shutdown"));
+        var itemDao = new KvItemDao(store);
+        var stockDao = new KvStockDao(store);
+        var movementDao = new KvStockMovementDao(store);
+        return new ConsoleApp(new InventoryService(itemDao, stockDao, movementDao), itemDao, stockDao, movementDao);
+    }
+
+    // JDBC DAOs on db.url, kv DAOs on a store in a temporary directory that is removed afterwards
+    private static void compareBackends(boolean benchmark, int operations) {
+        initDb();
+        boolean ok = runOn("jdbc", new ItemDaoJdbc(), new StockDaoJdbc(), new StockMovementDaoJdbc(), benchmark, operations);
+        Path dir;
+        try {
+            dir = Files.createTempDirectory("kv-compare");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create a directory for the kv store", e);
+        }
+        try (LogStore store = new LogStore(dir, AppConfig.getInt("kv.segmentMb", 64) << 20,
+                AppConfig.getBoolean("kv.sync", false), Duration.ofSeconds(AppConfig.getInt("kv.compactIntervalSec", 60)))) {
+            ok &= runOn("kv", new KvItemDao(store), new KvStockDao(store), new KvStockMovementDao(store), benchmark, operations);
+        } finally {
+            try (var files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+            } catch (IOException e) {
+                System.err.println("Could not remove " + dir + ": " + e.getMessage());
+            }
+        }
+        if (!ok) System.exit(1);
+    }
+
+    private static boolean runOn(String backend, ItemDao itemDao, StockDao stockDao, StockMovementDao movementDao,
+                                 boolean benchmark, int operations) {
+        var service = new InventoryService(itemDao, stockDao, movementDao);
+        if (benchmark) {
+            System.out.println("== " + backend + " (" + operations + " operations each)");
+            new DaoBenchmark(service, itemDao, stockDao, movementDao).run(operations).forEach(System.out::println);
+            return true;
+        }
+        DaoConformance check = new DaoConformance(service, itemDao, stockDao, movementDao);
+        List<String> failures = check.run();
+        System.out.printf("%s: %d of %d checks passed%n", backend, check.checks() - failures.size(), check.checks());
+        failures.forEach(f -> System.out.println("  FAILED: " + f));
+        return failures.isEmpty();
+    }
+
+    // HotItemStress on db.url: once without hot-item handling (unless baseline=false), once with a fresh coordinator
+    private static boolean runHotStress(Map<String, String> opt) {
+        initDb();
+        int threads = Integer.parseInt(opt.getOrDefault("threads", "256"));
+        int stock = Integer.parseInt(opt.getOrDefault("stock", "50000"));
+        int attempts = Integer.parseInt(opt.getOrDefault("attempts", "100"));
+        int maxQty = Integer.parseInt(opt.getOrDefault("maxQty", "5"));
+        Duration flush = Duration.ofMillis(Long.parseLong(opt.getOrDefault("flushMs", "10")));
+        boolean ok = true;
+        try {
+            if (Boolean.parseBoolean(opt.getOrDefault("baseline", "true"))) {
+                var service = new InventoryService(new ItemDaoJdbc(), new StockDaoJdbc(), new StockMovementDaoJdbc());
+                HotItemStress.Report report = new HotItemStress(service, null, threads, stock, attempts, maxQty).run();
+                System.out.println(report);
+                ok = report.problems().isEmpty();
+            }
+            var service = new InventoryService(new ItemDaoJdbc(), new StockDaoJdbc(), new StockMovementDaoJdbc());
+            HotItemCoordinator hotItems = new HotItemCoordinator(8, Math.max(4, Runtime.getRuntime().availableProcessors()), flush);
+            service.setHotItemCoordinator(hotItems);
+            HotItemStress.Report report = new HotItemStress(service, hotItems, threads, stock, attempts, maxQty).run();
+            System.out.println(report);
+            return ok && report.problems().isEmpty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // ReplicaCheck with an embedded primary and replica; the urls must be set before DbConnectionManager reads them
+    private static boolean runReplicaCheck(Map<String, String> opt) {
+        String primaryUrl = "jdbc:h2:mem:replica-check-primary;DB_CLOSE_DELAY=-1;MODE=MySQL";
+        String replicaUrl = "jdbc:h2:mem:replica-check-replica;DB_CLOSE_DELAY=-1;MODE=MySQL";
+        System.setProperty("db.url", primaryUrl);
+        System.setProperty("db.replica.url", replicaUrl);
+        if (opt.containsKey("maxStalenessMs")) System.setProperty("db.replica.maxStalenessMs", opt.get("maxStalenessMs"));
+        String user = AppConfig.get("db.user", "sa");
+        String password = AppConfig.get("db.password", "");
+        initDb();
+        try (Connection c = DriverManager.getConnection(replicaUrl, user, password)) {
+            createSchema(c);
+        } catch (SQLException ex) {
+            throw new RuntimeException("Failed to initialize replica schema", ex);
+        }
+        var service = new InventoryService(new ItemDaoJdbc(), new StockDaoJdbc(), new StockMovementDaoJdbc());
+        try {
+            ReplicaCheck.Report report = new ReplicaCheck(service, primaryUrl, replicaUrl, user, password,
+                    AppConfig.getLong("db.replica.maxStalenessMs", 1000L)).run();
+            System.out.println(report);
+            return report.problems().isEmpty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // DriftCheck on the configured database; only the items it creates are checked
+    private static boolean runDriftCheck(Map<String, String> opt) {
+        initDb();
+        var service = new InventoryService(new ItemDaoJdbc(), new StockDaoJdbc(), new StockMovementDaoJdbc());
+        DriftCheck.Report report = new DriftCheck(service,
+                Integer.parseInt(opt.getOrDefault("items", "1000")),
+                Integer.parseInt(opt.getOrDefault("drift", "25")),
+                Integer.parseInt(opt.getOrDefault("rangeSize", "100"))).run();
+        System.out.println(report);
+        return report.problems().isEmpty();
+    }
+
+    // AlertThroughput with the alerts.rule.* settings; no database involved
+    private static boolean runAlertBenchmark(Map<String, String> opt) {
+        List<AlertRule> rules = new ArrayList<>();
+        AppConfig.getByPrefix("alerts.rule.").forEach((name, spec) -> rules.add(AlertRule.parse(name, spec)));
+        try {
+            AlertThroughput.Report report = new AlertThroughput(rules,
+                    Integer.parseInt(opt.getOrDefault("threads", "4")),
+                    Integer.parseInt(opt.getOrDefault("movements", "1000000")),
+                    Integer.parseInt(opt.getOrDefault("items", "100000")),
+                    Integer.parseInt(opt.getOrDefault("maxKeys", "10000")),
+                    Integer.parseInt(opt.getOrDefault("queueSize", "10000"))).run();
+            System.out.println(report);
+            return report.problems().isEmpty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // ReceivingThroughput on the configured database, after per-line increases for comparison unless baseline=false
+    private static boolean runReceivingBenchmark(Map<String, String> opt) {
+        initDb();
+        ItemDaoJdbc itemDao = new ItemDaoJdbc();
+        StockDaoJdbc stockDao = new StockDaoJdbc();
+        var service = new InventoryService(itemDao, stockDao, new StockMovementDaoJdbc());
+        PurchaseOrderDaoJdbc purchaseOrderDao = new PurchaseOrderDaoJdbc();
+        ReceivingThroughput bench = new ReceivingThroughput(service,
+                new ReceivingService(itemDao, purchaseOrderDao, stockDao), purchaseOrderDao,
+                Integer.parseInt(opt.getOrDefault("lines", "10000")),
+                Integer.parseInt(opt.getOrDefault("qty", "12")));
+        boolean ok = true;
+        if (Boolean.parseBoolean(opt.getOrDefault("baseline", "true"))) {
+            ReceivingThroughput.Report report = bench.runPerLine();
+            System.out.println(report);
+            ok = report.problems().isEmpty();
+        }
+        ReceivingThroughput.Report report = bench.runPipeline();
+        System.out.println(report);
+        return ok && report.problems().isEmpty();
+    }
+
+    // BulkLookupBenchmark on the configured database; statements are counted by SqlDiagnostics, so it is turned on first
+    private static void runLookupBenchmark(Map<String, String> opt) {
+        if (System.getProperty("diagnostics.enabled") == null) System.setProperty("diagnostics.enabled", "true");
+        initDb();
+        int[] keys = Arrays.stream(opt.getOrDefault("keys", "10,100,10000").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        ItemDaoJdbc itemDao = new ItemDaoJdbc();
+        var service = new InventoryService(itemDao, new StockDaoJdbc(), new StockMovementDaoJdbc());
+        new BulkLookupBenchmark(service, itemDao, Integer.parseInt(opt.getOrDefault("rounds", "3")))
+                .run(keys).forEach(System.out::println);
+    }
+
+    // RowMappingAllocation on the configured database
+    private static void runMappingAllocation(Map<String, String> opt) {
+        initDb();
+        ItemDaoJdbc itemDao = new ItemDaoJdbc();
+        var service = new InventoryService(itemDao, new StockDaoJdbc(), new StockMovementDaoJdbc());
+        System.out.println(new RowMappingAllocation(service, itemDao,
+                Integer.parseInt(opt.getOrDefault("rows", "10000")),
+                Integer.parseInt(opt.getOrDefault("rounds", "20"))).run());
+    }
+
+    // ShardWriteScaling on embedded shards, or on the comma separated urls
+    private static void runShardBenchmark(Map<String, String> opt) {
+        int[] shards = Arrays.stream(opt.getOrDefault("shards", "1,2,4").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        String urls = opt.getOrDefault("urls", "");
+        ShardWriteScaling bench = new ShardWriteScaling(
+                Integer.parseInt(opt.getOrDefault("threads", "32")),
+                Integer.parseInt(opt.getOrDefault("items", "10000")),
+                Integer.parseInt(opt.getOrDefault("seconds", "10")),
+                urls.isBlank() ? List.of() : List.of(urls.split(",")));
+        try {
+            bench.run(shards).forEach(System.out::println);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // movement alert rules from the alerts.* settings, evaluated as stock is written
+    private void enableAlerts() {
+        alerts = AlertEngine.fromConfig(service::findItemById);
+        service.setMovementListener(alerts);
+        Runtime.getRuntime().addShutdownHook(new Thread(alerts::close, "alerts-shutdown"));
+        System.out.println("Alert rules active: " + alerts.rules().size());
+        if (alerts.needsItemLookups() && !service.hasInventoryCache() && !(stockDao instanceof KvStockDao)) {
+            System.out.println("Note: value and reorder-level rules read the item from the database on every matching"
+                    + " movement; set cache.snapshot to serve those reads from memory.");
+        }
+    }
+
+    public void runBatch(String file) {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+        try (BufferedReader in = file.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+            new BatchRunner(service, out).run(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read batch input " + file, e);
+        } finally {
+            out.flush();
+        }
+    }
+
+    public void serve(int port) {
+        try (InventoryServer server = new InventoryServer(service, port)) {
+            System.out.println("Inventory server listening on port " + server.getPort());
+            server.serve();
+        } catch (IOException e) {
+            throw new RuntimeException("Inventory server failed", e);
+        }
+    }
+
+    /**
+     * Drives the service in-process with a synthetic or recorded workload and writes the report
+     * to {@code <out>.json} and {@code <out>.html}. Options, all {@code key=value}:
+     * rate (req/s, default 1000), duration (s, 30), warmup (s, 5), threads (16),
+     * mix (default item:40,stock:30,sku:5,search:5,moves:5,in:7,out:8), zipf (exponent, 1.0),
+     * arrival (poisson or uniform), randomSeed, out (default ./workload-report);
+     * items (how many items to address, 1000) with seed=true to create them with stock first,
+     * otherwise items 1..items must exist;
+     * or trace=&lt;file&gt; with speed (1.0) to replay recorded server traffic instead.
+     */
+    public void runWorkload(List<String> options) {
+        Map<String, String> opt = parseOptions(options);
+        int threads = Integer.parseInt(opt.getOrDefault("threads", "16"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(opt.getOrDefault("warmup", "5")));
+        Workload workload;
+        String description;
+        try {
+            if (opt.containsKey("trace")) {
+                double speed = Double.parseDouble(opt.getOrDefault("speed", "1.0"));
+                List<WorkloadTrace.Entry> entries = WorkloadTrace.read(Path.of(opt.get("trace")));
+                workload = Workload.replay(entries, speed);
+                description = "Replay of " + opt.get("trace") + " (" + entries.size() + " requests, speed " + speed + ")";
+            } else {
+                int items = Integer.parseInt(opt.getOrDefault("items", "1000"));
+                double rate = Double.parseDouble(opt.getOrDefault("rate", "1000"));
+                Duration duration = Duration.ofSeconds(Long.parseLong(opt.getOrDefault("duration", "30")));
+                double zipf = Double.parseDouble(opt.getOrDefault("zipf", "1.0"));
+                String mix = opt.getOrDefault("mix", "item:40,stock:30,sku:5,search:5,moves:5,in:7,out:8");
+                boolean poisson = !opt.getOrDefault("arrival", "poisson").equals("uniform");
+                List<Long> ids = new ArrayList<>(items);
+                List<String> skus = new ArrayList<>(items);
+                if (Boolean.parseBoolean(opt.getOrDefault("seed", "false"))) {
+                    seedWorkloadItems(items, ids, skus);
+                } else {
+                    List<Long> wanted = new ArrayList<>(items);
+                    for (long id = 1; id <= items; id++) wanted.add(id);
+                    service.findItemsByIds(wanted).forEach((id, item) -> {
+                        ids.add(id);
+                        skus.add(item.getSku().value());
+                    });
+                }
+                workload = Workload.synthetic(ids, skus, Workload.parseMix(mix), rate, duration.plus(warmup), zipf, poisson,
+                        Long.parseLong(opt.getOrDefault("randomSeed", "42")));
+                description = String.format("Synthetic %s, %d items, zipf %s, %s arrivals",
+                        mix, ids.size(), zipf, poisson ? "poisson" : "uniform");
+            }
+            System.out.println("Running " + description + " on " + threads + " threads...");
+            WorkloadReport report = new WorkloadRunner(service, threads, warmup).run(workload, description);
+            System.out.println(report.summary());
+            String out = opt.getOrDefault("out", "./workload-report");
+            Files.writeString(Path.of(out + ".json"), report.toJson(), StandardCharsets.UTF_8);
+            Files.writeString(Path.of(out + ".html"), report.toHtml(), StandardCharsets.UTF_8);
+            System.out.println("Report written to " + out + ".json and " + out + ".html");
+        } catch (IOException e) {
+            throw new RuntimeException("Workload run failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs {@link EditContention} and prints its report. Options, all {@code key=value}:
+     * threads (default 8), edits per thread (500), items (1), mode (patch or update).
+     * Returns false when an update was lost.
+     */
+    public boolean runEditContention(List<String> options) {
+        Map<String, String> opt = parseOptions(options);
+        EditContention.Mode mode = EditContention.Mode.valueOf(opt.getOrDefault("mode", "patch").toUpperCase());
+        try {
+            EditContention.Report report = new EditContention(service,
+                    Integer.parseInt(opt.getOrDefault("threads", "8")),
+                    Integer.parseInt(opt.getOrDefault("edits", "500")),
+                    Integer.parseInt(opt.getOrDefault("items", "1")), mode).run();
+            System.out.println(report);
+            return report.lostUpdates() == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Map<String, String> parseOptions(List<String> options) {
+        Map<String, String> opt = new HashMap<>();
+        for (String o : options) {
+            int eq = o.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Expected key=value, got: " + o);
+            opt.put(o.substring(0, eq), o.substring(eq + 1));
+        }
+        return opt;
+    }
+
+    // fresh items with plenty of stock, under a run-specific SKU prefix so repeated runs do not collide
+    private void seedWorkloadItems(int count, List<Long> ids, List<String> skus) {
+        String prefix = "WL" + Long.toString(System.currentTimeMillis(), 36).toUpperCase() + "-";
+        for (int from = 0; from < count; from += 1000) {
+            List<Item> batch = new ArrayList<>();
+            for (int i = from; i < Math.min(count, from + 1000); i++) {
+                batch.add(new Item(null, "Workload item " + i, new Sku(prefix + i), null, null, 1.0, 2.0, 0));
+            }
+            List<StockChange> stock = new ArrayList<>(batch.size());
+            for (Item created : service.createItems(batch)) {
+                ids.add(created.getId());
+                skus.add(created.getSku().value());
+                stock.add(new StockChange(created.getId(), 100_000, "workload seed"));
+            }
+            service.applyStockChanges(stock);
+        }
+    }
+
     private static void initDb() {
         // Runs DDL to create tables if not exists. Uses DbConnectionManager.
-        try (Connection c = DbConnectionManager.getConnection();
-             Statement s = c.createStatement()) {
+        try (Connection c = DbConnectionManager.getConnection()) {
+            createSchema(c);
+            System.out.println("Database initialized.");
+        } catch (SQLException ex) {
+            throw new RuntimeException("Failed to initialize DB schema", ex);
+        }
+    }
+
+    private static void createSchema(Connection c) throws SQLException {
+        try (Statement s = c.createStatement()) {
 
             // item table
             s.execute("""
@@ -65,6 +603,8 @@ public class ConsoleApp {
                       reorder_level INT NOT NULL
                     );
                     """);
+            // row version for optimistic locking of item edits
+            s.execute("ALTER TABLE item ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0");
 
             // stock table - one row per item
             s.execute("""
@@ -88,10 +628,137 @@ public class ConsoleApp {
                       FOREIGN KEY (item_id) REFERENCES item(id) ON DELETE CASCADE
                     );
                     """);
+            // streams movements in (item_id, id) order without a sort, for the integrity replay
+            s.execute("CREATE INDEX IF NOT EXISTS idx_stock_movement_item_id ON stock_movement(item_id, id)");
 
-            System.out.println("Database initialized.");
-        } catch (SQLException ex) {
-            throw new RuntimeException("Failed to initialize DB schema", ex);
+            // stock per lot for items tracked by lot/expiry; the index yields a item's open lots in expiry order
+            s.execute("""
+                    CREATE TABLE IF NOT EXISTS stock_lot (
+                      id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                      item_id BIGINT NOT NULL,
+                      lot_code VARCHAR(64) NOT NULL,
+                      expiry_date DATE NOT NULL,
+                      quantity INT NOT NULL,
+                      depleted BOOLEAN NOT NULL DEFAULT FALSE,
+                      UNIQUE (item_id, lot_code),
+                      FOREIGN KEY (item_id) REFERENCES item(id) ON DELETE CASCADE
+                    );
+                    """);
+            s.execute("CREATE INDEX IF NOT EXISTS idx_stock_lot_fefo ON stock_lot(item_id, depleted, expiry_date, id)");
+            s.execute("ALTER TABLE stock_movement ADD COLUMN IF NOT EXISTS lot_id BIGINT");
+
+            // monthly per-item totals of movements that were moved to the archive file
+            s.execute("""
+                    CREATE TABLE IF NOT EXISTS stock_movement_summary (
+                      item_id BIGINT NOT NULL,
+                      period_start DATE NOT NULL,
+                      type VARCHAR(10) NOT NULL,
+                      total_qty BIGINT NOT NULL,
+                      movement_count BIGINT NOT NULL,
+                      PRIMARY KEY (item_id, period_start, type)
+                    );
+                    """);
+
+            // units in/out per item per day, maintained with every movement insert
+            s.execute("""
+                    CREATE TABLE IF NOT EXISTS movement_daily_rollup (
+                      item_id BIGINT NOT NULL,
+                      bucket_day DATE NOT NULL,
+                      qty_in BIGINT NOT NULL,
+                      qty_out BIGINT NOT NULL,
+                      PRIMARY KEY (item_id, bucket_day)
+                    );
+                    """);
+            s.execute("CREATE INDEX IF NOT EXISTS idx_rollup_day ON movement_daily_rollup(bucket_day)");
+
+            // supplier purchase orders and the quantities received against each line
+            s.execute("""
+                    CREATE TABLE IF NOT EXISTS purchase_order (
+                      id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                      supplier_id BIGINT NOT NULL,
+                      status VARCHAR(20) NOT NULL,
+                      created_at TIMESTAMP NOT NULL
+                    );
+                    """);
+            s.execute("""
+                    CREATE TABLE IF NOT EXISTS purchase_order_line (
+                      id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                      po_id BIGINT NOT NULL,
+                      item_id BIGINT NOT NULL,
+                      qty_ordered INT NOT NULL,
+                      qty_received INT NOT NULL,
+                      unit_cost DOUBLE NOT NULL,
+                      FOREIGN KEY (po_id) REFERENCES purchase_order(id) ON DELETE CASCADE,
+                      FOREIGN KEY (item_id) REFERENCES item(id)
+                    );
+                    """);
+            s.execute("CREATE INDEX IF NOT EXISTS idx_po_line_po ON purchase_order_line(po_id)");
+
+            // category tree, its closure (every ancestor/descendant pair) and per-category stock totals
+            s.execute("""
+                    CREATE TABLE IF NOT EXISTS category (
+                      id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                      name VARCHAR(255) NOT NULL,
+                      parent_id BIGINT NULL,
+                      FOREIGN KEY (parent_id) REFERENCES category(id)
+                    );
+                    """);
+            s.execute("""
+                    CREATE TABLE IF NOT EXISTS category_path (
+                      ancestor_id BIGINT NOT NULL,
+                      descendant_id BIGINT NOT NULL,
+                      depth INT NOT NULL,
+                      PRIMARY KEY (descendant_id, ancestor_id)
+                    );
+                    """);
+            s.execute("CREATE INDEX IF NOT EXISTS idx_category_path_ancestor ON category_path(ancestor_id)");
+            s.execute("""
+                    CREATE TABLE IF NOT EXISTS category_stock (
+                      category_id BIGINT NOT NULL,
+                      stripe INT NOT NULL,
+                      quantity BIGINT NOT NULL,
+                      stock_value DOUBLE NOT NULL,
+                      PRIMARY KEY (category_id, stripe)
+                    );
+                    """);
+            s.execute("""
+                    CREATE TABLE IF NOT EXISTS supplier (
+                      id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                      name VARCHAR(255) NOT NULL,
+                      contact_email VARCHAR(255) NULL
+                    );
+                    """);
+
+            // append-only price changes: prices before and after, effective from the given time;
+            // the primary key finds the change in force at any date with one index seek
+            s.execute("""
+                    CREATE TABLE IF NOT EXISTS item_price_history (
+                      item_id BIGINT NOT NULL,
+                      effective_from TIMESTAMP NOT NULL,
+                      change_id BIGINT NOT NULL,
+                      old_purchase_price DOUBLE NOT NULL,
+                      old_sale_price DOUBLE NOT NULL,
+                      new_purchase_price DOUBLE NOT NULL,
+                      new_sale_price DOUBLE NOT NULL,
+                      reason VARCHAR(255),
+                      PRIMARY KEY (item_id, effective_from, change_id),
+                      FOREIGN KEY (item_id) REFERENCES item(id) ON DELETE CASCADE
+                    );
+                    """);
+            s.execute("CREATE INDEX IF NOT EXISTS idx_price_history_change ON item_price_history(change_id, item_id)");
+            s.execute("CREATE SEQUENCE IF NOT EXISTS price_change_seq");
+            // target prices of a repricing run, staged before they are applied in chunks
+            s.execute("""
+                    CREATE TABLE IF NOT EXISTS price_change_stage (
+                      change_id BIGINT NOT NULL,
+                      item_id BIGINT NOT NULL,
+                      purchase_price DOUBLE NOT NULL,
+                      sale_price DOUBLE NOT NULL,
+                      PRIMARY KEY (change_id, item_id)
+                    );
+                    """);
+            // written on the primary while a read replica is configured; its age on the replica is the replica lag
+            s.execute("CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT PRIMARY KEY, beat_millis BIGINT NOT NULL)");
         }
     }
 
@@ -110,6 +777,17 @@ public class ConsoleApp {
                     case "5" -> increaseStockFlow();
                     case "6" -> decreaseStockFlow();
                     case "7" -> listMovementsFlow();
+                    case "8" -> cycleCountFlow();
+                    case "9" -> archiveMovementsFlow();
+                    case "10" -> createPurchaseOrderFlow();
+                    case "11" -> receivePurchaseOrderFlow();
+                    case "12" -> verifyStockFlow();
+                    case "13" -> categoriesFlow();
+                    case "14" -> suppliersFlow();
+                    case "15" -> sqlDiagnosticsFlow();
+                    case "16" -> pricesFlow();
+                    case "17" -> alertsFlow();
+                    case "18" -> analyticsFlow();
                     case "0" -> {
                         running = false;
                         System.out.println("Exiting. Bye!");
@@ -132,6 +810,17 @@ public class ConsoleApp {
         System.out.println("5. Increase stock (IN)");
         System.out.println("6. Decrease stock (OUT)");
         System.out.println("7. List stock movements for item");
+        System.out.println("8. Reconcile cycle count file");
+        System.out.println("9. Archive old stock movements");
+        System.out.println("10. Create purchase order");
+        System.out.println("11. Receive purchase order");
+        System.out.println("12. Verify stock against movements");
+        System.out.println("13. Categories and category stock");
+        System.out.println("14. Suppliers");
+        System.out.println("15. SQL diagnostics");
+        System.out.println("16. Prices and repricing");
+        System.out.println("17. Movement alerts");
+        System.out.println("18. Demand analytics");
         System.out.println("0. Exit");
     }
 
@@ -169,9 +858,18 @@ public class ConsoleApp {
         double salePrice = readDoubleOrDefault("Sale price", existing.getSalePrice());
         int reorder = readInt("Reorder level", existing.getReorderLevel());
 
-        Item updated = new Item(existing.getId(), name, new Sku(skuStr), nullable(categoryId), nullable(supplierId), purchasePrice, salePrice, reorder);
-        service.updateItem(updated);
-        System.out.println("Updated item: " + updated);
+        Item edited = new Item(existing.getId(), name, new Sku(skuStr), nullable(categoryId), nullable(supplierId), purchasePrice, salePrice, reorder);
+        ItemPatch patch = ItemPatch.diff(existing, edited);
+        if (patch.isEmpty()) {
+            System.out.println("Nothing changed.");
+            return;
+        }
+        try {
+            Item updated = service.patchItem(existing.getId(), existing.getVersion(), patch);
+            System.out.println("Updated item: " + updated);
+        } catch (OptimisticLockException e) {
+            System.out.println("Item was changed by someone else while you were editing; nothing saved. Reload it and try again.");
+        }
     }
 
     private void searchItemsFlow() {
@@ -182,7 +880,10 @@ public class ConsoleApp {
             System.out.println("No items found.");
             return;
         }
-        items.forEach(i -> System.out.println(i.getId() + " | " + i.getName() + " | " + i.getSku() + " | stock=" + stockDao.getStock(i.getId()).map(Stock::getQuantity).orElse(0)));
+        // one batch lookup for all results; with sharded stock that is one query per shard, not per row
+        Map<Long, Stock> stocks = service.viewStocks(items.stream().map(Item::getId).toList());
+        items.forEach(i -> System.out.println(i.getId() + " | " + i.getName() + " | " + i.getSku() + " | stock="
+                + (stocks.containsKey(i.getId()) ? stocks.get(i.getId()).getQuantity() : 0)));
     }
 
     private void viewStockFlow() {
@@ -192,6 +893,7 @@ public class ConsoleApp {
         if (st.isPresent()) {
             Stock stock = st.get();
             System.out.println("Item " + itemId + " stock = " + stock.getQuantity());
+            for (StockLot lot : service.listLots(itemId)) System.out.println("  " + lot);
         } else {
             System.out.println("No stock record. (interpreted as 0)");
         }
@@ -202,7 +904,14 @@ public class ConsoleApp {
         Long itemId = readLong("Item id");
         int qty = readInt("Quantity to add");
         String reason = readLine("Reason (optional)");
-        Stock s = service.increaseStock(itemId, qty, reason);
+        String lot = readLine("Lot code (enter if not tracked by lot)").trim();
+        Stock s;
+        if (lot.isEmpty()) {
+            s = service.increaseStock(itemId, qty, reason);
+        } else {
+            String expiry = readLine("Expiry date yyyy-MM-dd (enter for none)").trim();
+            s = service.increaseStock(itemId, qty, reason, lot, expiry.isEmpty() ? null : LocalDate.parse(expiry));
+        }
         System.out.println("Stock updated: item=" + itemId + " qty=" + s.getQuantity());
     }
 
@@ -224,19 +933,351 @@ public class ConsoleApp {
             return;
         }
         for (StockMovement m : movements) {
-            System.out.printf("%d | %s | %d | %s | %s%n",
+            System.out.printf("%d | %s | %d | %s | %s%s%n",
                     m.getId() == null ? -1L : m.getId(),
                     m.getType(),
                     m.getQty(),
                     m.getReason(),
-                    m.getTimestamp().format(DF));
+                    m.getTimestamp().format(DF),
+                    m.getLotId() == null ? "" : " | lot " + m.getLotId());
         }
     }
+
+    private void cycleCountFlow() {
+        System.out.println("--- Cycle Count ---");
+        if (stockDao instanceof KvStockDao) {
+            System.out.println(NOT_ON_KV);
+            return;
+        }
+        String file = readLine("Count file (sku,qty per line)");
+        CycleCountService counts = new CycleCountService(itemDao, stockDao);
+        counts.setMovementListener(alerts);
+        counts.setHotItemCoordinator(service.getHotItemCoordinator());
+        CycleCountService.Result result = counts.reconcile(Path.of(file.trim()));
+        service.refreshCache(); // adjustments were written directly, not through the service
+        System.out.printf("Lines=%d, items counted=%d, items adjusted=%d%n",
+                result.linesRead(), result.itemsCounted(), result.itemsAdjusted());
+        result.varianceByCategory().forEach((category, variance) ->
+                System.out.println("Category " + (category == null ? "-" : category) + ": " + variance));
+        if (!result.unknownSkus().isEmpty()) {
+            System.out.println("Unknown SKUs (" + result.unknownSkus().size() + "): " + result.unknownSkus());
+        }
+    }
+
+    private void archiveMovementsFlow() {
+        System.out.println("--- Archive Movements ---");
+        if (!(movementDao instanceof ArchivingStockMovementDao archiving)) {
+            System.out.println("Archiving is not enabled for this storage setup.");
+            return;
+        }
+        int days = readInt("Keep movements of the last N days");
+        long moved = new MovementArchiver(archiving.getArchive()).archiveOlderThan(Duration.ofDays(days));
+        System.out.println("Archived " + moved + " movements to " + archiving.getArchive().getFile());
+    }
+
+    private void createPurchaseOrderFlow() {
+        System.out.println("--- Create Purchase Order ---");
+        if (stockDao instanceof KvStockDao) {
+            System.out.println(NOT_ON_KV);
+            return;
+        }
+        Long supplierId = readLong("Supplier id");
+        List<PurchaseOrderLine> lines = new ArrayList<>();
+        while (true) {
+            String line = readLine("Line as sku,qty,unitCost (enter to finish)").trim();
+            if (line.isEmpty()) break;
+            String[] parts = line.split(",");
+            if (parts.length != 3) {
+                System.out.println("Expected sku,qty,unitCost");
+                continue;
+            }
+            Optional<Item> item = service.findItemBySku(parts[0].trim());
+            if (item.isEmpty()) {
+                System.out.println("Unknown SKU: " + parts[0].trim());
+                continue;
+            }
+            try {
+                lines.add(new PurchaseOrderLine(item.get().getId(), Integer.parseInt(parts[1].trim()), Double.parseDouble(parts[2].trim())));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid line: " + e.getMessage());
+            }
+        }
+        PurchaseOrder created = purchaseOrderDao.create(new PurchaseOrder(supplierId, lines));
+        System.out.println("Created " + created);
+    }
+
+    private void receivePurchaseOrderFlow() {
+        System.out.println("--- Receive Purchase Order ---");
+        if (stockDao instanceof KvStockDao) {
+            System.out.println(NOT_ON_KV);
+            return;
+        }
+        if (stockDao instanceof ShardedStockDao) {
+            // order lines are in the primary database and stock on the shards; one transaction cannot cover both
+            System.out.println(NOT_ON_SHARDS);
+            return;
+        }
+        Long poId = readLong("Purchase order id");
+        String file = readLine("Receipt file (sku,qty per line)");
+        ReceivingService receiving = new ReceivingService(itemDao, purchaseOrderDao, stockDao);
+        receiving.setHotItemCoordinator(service.getHotItemCoordinator());
+        ReceivingService.Result result = receiving.receive(poId, Path.of(file.trim()));
+        service.refreshCache(); // stock was written directly, not through the service
+        System.out.printf("Lines=%d, received=%d, units=%d, status=%s%n",
+                result.linesRead(), result.linesReceived(), result.unitsReceived(), result.status());
+        for (ReceivingService.Rejection r : result.rejected()) {
+            System.out.printf("Rejected line %d (%s x%d): %s%n", r.lineNo(), r.sku(), r.qty(), r.reason());
+        }
+    }
+
+    private void verifyStockFlow() {
+        System.out.println("--- Verify Stock ---");
+        if (stockDao instanceof KvStockDao) {
+            System.out.println(NOT_ON_KV);
+            return;
+        }
+        boolean correct = readLine("Write correction movements for drift? (y/N)").trim().equalsIgnoreCase("y");
+        IntegrityVerifier verifier = stockDao instanceof ShardedStockDao sharded
+                ? new IntegrityVerifier(sharded.getRouter())
+                : new IntegrityVerifier();
+        verifier.setMovementListener(alerts);
+        IntegrityVerifier.Report report = verifier.verify(correct);
+        System.out.printf("Items=%d, movements=%d, drifting=%d, corrections=%d, ranges=%d, %d ms%n",
+                report.itemsChecked(), report.movementsReplayed(), report.driftCount(),
+                report.corrections(), report.ranges(), report.elapsedMillis());
+        for (IntegrityVerifier.Drift d : report.drifts()) {
+            System.out.printf("Item %d: stock=%d, movements say %d (%+d)%s%n", d.itemId(), d.actual(), d.expected(),
+                    d.difference(), d.wentNegative() ? ", went negative" : "");
+        }
+        if (report.driftCount() > report.drifts().size()) {
+            System.out.println("... " + (report.driftCount() - report.drifts().size()) + " more");
+        }
+    }
+
+    private void categoriesFlow() {
+        System.out.println("--- Categories ---");
+        if (stockDao instanceof KvStockDao) {
+            System.out.println(NOT_ON_KV);
+            return;
+        }
+        // the totals are kept by stock writes in the primary database; writes on shards do not reach them
+        boolean totals = !(stockDao instanceof ShardedStockDao);
+        String action = readLine("(l)ist children, (a)dd, (m)ove, (t)otals").trim().toLowerCase();
+        switch (action) {
+            case "l" -> {
+                Long parentId = nullable(readLongNullable("Parent category id (enter for roots)"));
+                List<Category> children = categoryDao.listChildren(parentId);
+                if (children.isEmpty()) System.out.println("No categories.");
+                for (Category cat : children) {
+                    if (!totals) {
+                        System.out.printf("%d | %s%n", cat.getId(), cat.getName());
+                        continue;
+                    }
+                    CategoryStock st = categoryDao.getStock(cat.getId());
+                    System.out.printf("%d | %s | qty=%d | value=%.2f%n", cat.getId(), cat.getName(), st.quantity(), st.value());
+                }
+            }
+            case "a" -> {
+                String name = readLine("Name");
+                Long parentId = nullable(readLongNullable("Parent category id (enter for a root)"));
+                System.out.println("Created " + categoryDao.create(new Category(null, name, parentId)));
+            }
+            case "m" -> {
+                Long id = readLong("Category id");
+                Long parentId = nullable(readLongNullable("New parent category id (enter for a root)"));
+                System.out.println("Moved " + categoryDao.move(id, parentId));
+            }
+            case "t" -> {
+                if (!totals) {
+                    System.out.println("Category totals: " + NOT_ON_SHARDS);
+                    return;
+                }
+                CategoryStock st = categoryDao.getStock(readLong("Category id"));
+                System.out.printf("Category %d: qty=%d, value=%.2f%n", st.categoryId(), st.quantity(), st.value());
+            }
+            default -> System.out.println("Unknown action");
+        }
+    }
+
+    private void suppliersFlow() {
+        System.out.println("--- Suppliers ---");
+        if (stockDao instanceof KvStockDao) {
+            System.out.println(NOT_ON_KV);
+            return;
+        }
+        String action = readLine("(l)ist, (a)dd").trim().toLowerCase();
+        switch (action) {
+            case "l" -> supplierDao.findAll().forEach(System.out::println);
+            case "a" -> {
+                String name = readLine("Name");
+                String email = readLine("Contact email (optional)");
+                System.out.println("Created " + supplierDao.create(new Supplier(null, name, email)));
+            }
+            default -> System.out.println("Unknown action");
+        }
+    }
+
+    private void pricesFlow() {
+        System.out.println("--- Prices ---");
+        if (stockDao instanceof KvStockDao) {
+            System.out.println(NOT_ON_KV);
+            return;
+        }
+        String action = readLine("(h)istory, price (a)s of, (v)alue current stock at prices as of, reprice by (r)ule, reprice from (f)ile")
+                .trim().toLowerCase();
+        switch (action) {
+            case "h" -> {
+                List<PriceChange> changes = priceHistoryDao.listByItem(readLong("Item id"));
+                if (changes.isEmpty()) System.out.println("No price changes.");
+                for (PriceChange ch : changes) {
+                    System.out.printf("%s | purchase %.2f -> %.2f | sale %.2f -> %.2f | %s%n", DF.format(ch.effectiveFrom()),
+                            ch.oldPurchasePrice(), ch.newPurchasePrice(), ch.oldSalePrice(), ch.newSalePrice(), ch.reason());
+                }
+            }
+            case "a" -> {
+                Long itemId = readLong("Item id");
+                LocalDateTime at = readDateTime("As of (yyyy-MM-dd or yyyy-MM-dd HH:mm:ss)");
+                Optional<ItemPrice> price = priceHistoryDao.priceAsOf(itemId, at);
+                if (price.isEmpty()) System.out.println("Item not found.");
+                else System.out.printf("Purchase %.2f, sale %.2f%n", price.get().purchasePrice(), price.get().salePrice());
+            }
+            case "v" -> {
+                LocalDateTime at = readDateTime("As of (yyyy-MM-dd or yyyy-MM-dd HH:mm:ss)");
+                System.out.printf("Current stock at purchase prices as of %s: %.2f%n", DF.format(at),
+                        priceHistoryDao.currentStockValueAtPricesAsOf(at));
+            }
+            case "r" -> {
+                RepricingService.Scope scope = RepricingService.Scope.valueOf(
+                        readLine("Scope (ALL, CATEGORY, SUPPLIER, SKU_PREFIX)").trim().toUpperCase());
+                String scopeValue = scope == RepricingService.Scope.ALL ? null : readLine("Category id, supplier id or SKU prefix");
+                RepricingService.Target target = RepricingService.Target.valueOf(
+                        readLine("Price (PURCHASE, SALE, BOTH)").trim().toUpperCase());
+                RepricingService.Adjustment adjustment = RepricingService.Adjustment.valueOf(
+                        readLine("Adjustment (PERCENT, DELTA, SET, MARKUP)").trim().toUpperCase());
+                double amount = readDouble("Amount");
+                String reason = readLine("Reason");
+                printRepricing(new RepricingService(service).apply(
+                        new RepricingService.Rule(scope, scopeValue, target, adjustment, amount), reason));
+            }
+            case "f" -> {
+                Path file = Path.of(readLine("Price file (sku,purchasePrice,salePrice per line)").trim());
+                String reason = readLine("Reason");
+                printRepricing(new RepricingService(service).apply(file, reason));
+            }
+            default -> System.out.println("Unknown action");
+        }
+    }
+
+    private static void printRepricing(RepricingService.Result result) {
+        System.out.printf("Change %d: %d items matched, %d repriced, %d ms%n",
+                result.changeId(), result.itemsMatched(), result.itemsChanged(), result.elapsedMillis());
+        if (!result.unknownSkus().isEmpty()) System.out.println("Unknown SKUs: " + result.unknownSkus());
+    }
+
+    private void sqlDiagnosticsFlow() {
+        System.out.println("--- SQL Diagnostics ---");
+        System.out.println("Transactions: " + service.getTransactionMetrics());
+        if (!SqlDiagnostics.isEnabled()) {
+            System.out.println("Statement timing is off; start with -Ddiagnostics.enabled=true.");
+            return;
+        }
+        String action = readLine("(t)op statements by total time, (s)low statements, (r)eset").trim().toLowerCase();
+        switch (action) {
+            case "t" -> {
+                List<SqlDiagnostics.SqlTotals> top = SqlDiagnostics.topByTotalTime(20);
+                if (top.isEmpty()) System.out.println("No statements recorded.");
+                top.forEach(System.out::println);
+            }
+            case "s" -> {
+                List<SqlDiagnostics.SlowStatement> slow = SqlDiagnostics.recentSlow();
+                if (slow.isEmpty()) System.out.println("No slow statements.");
+                slow.stream().limit(50).forEach(System.out::println);
+                if (slow.size() > 50) System.out.println("... " + (slow.size() - 50) + " more (see the slow query log)");
+            }
+            case "r" -> {
+                SqlDiagnostics.reset();
+                System.out.println("Statement totals cleared.");
+            }
+            default -> System.out.println("Unknown action");
+        }
+    }
+
+    private void alertsFlow() {
+        System.out.println("--- Movement Alerts ---");
+        if (alerts == null) {
+            System.out.println("Alerts are off; start with -Dalerts.enabled=true and alerts.rule.<name> settings.");
+            return;
+        }
+        List<AlertRule> rules = alerts.rules();
+        if (rules.isEmpty()) System.out.println("No rules configured.");
+        rules.forEach(r -> System.out.println("  " + r));
+        System.out.println(alerts.stats());
+        List<Alert> recent = alerts.recentAlerts();
+        if (recent.isEmpty()) System.out.println("No alerts yet.");
+        recent.stream().limit(20).forEach(System.out::println);
+    }
+
+    private void analyticsFlow() {
+        System.out.println("--- Demand Analytics ---");
+        if (stockDao instanceof KvStockDao) {
+            System.out.println(NOT_ON_KV);
+            return;
+        }
+        AnalyticsService analytics = new AnalyticsService(stockDao);
+        String action = readLine("(d)aily usage, (w)eekly usage, (t)op movers, (c)over below reorder level, (r)ebuild rollups")
+                .trim().toLowerCase();
+        switch (action) {
+            case "d", "w" -> {
+                Long itemId = readLong("Item id");
+                List<AnalyticsService.DailyUsage> usage = action.equals("d")
+                        ? analytics.dailyUsage(itemId, readInt("Days", 30))
+                        : analytics.weeklyUsage(itemId, readInt("Weeks", 12));
+                if (usage.isEmpty()) System.out.println("No movements in that period.");
+                for (AnalyticsService.DailyUsage u : usage) {
+                    System.out.printf("%s | in %d | out %d%n", u.day(), u.unitsIn(), u.unitsOut());
+                }
+            }
+            case "t" -> {
+                int days = readInt("Days", 30);
+                List<AnalyticsService.Mover> movers = analytics.topMovers(days, readInt("How many", 20));
+                if (movers.isEmpty()) System.out.println("No outbound movements in that period.");
+                for (AnalyticsService.Mover m : movers) System.out.printf("Item %d | out %d%n", m.itemId(), m.unitsOut());
+            }
+            case "c" -> {
+                List<AnalyticsService.Cover> covers = analytics.daysOfCoverBelowReorder(readInt("Look back days", 30));
+                if (covers.isEmpty()) System.out.println("No items below their reorder level.");
+                for (AnalyticsService.Cover c : covers) {
+                    System.out.printf("Item %d | qty %d | reorder at %d | %.2f out/day | %s days of cover%n",
+                            c.itemId(), c.quantity(), c.reorderLevel(), c.averageDailyOut(),
+                            Double.isInfinite(c.daysOfCover()) ? "unlimited" : String.format("%.1f", c.daysOfCover()));
+                }
+            }
+            case "r" -> {
+                analytics.rebuildRollups();
+                System.out.println("Rollups rebuilt from the live movements.");
+            }
+            default -> System.out.println("Unknown action");
+        }
+    }
+
     private String readLine(String prompt) {
         System.out.print(prompt + ": ");
         return scanner.nextLine();
     }
 
+    // a date alone means the end of that day
+    private LocalDateTime readDateTime(String prompt) {
+        while (true) {
+            String s = readLine(prompt).trim();
+            try {
+                if (s.length() == 10) return LocalDate.parse(s).atTime(LocalTime.MAX);
+                return LocalDateTime.parse(s, DF);
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date, try again.");
+            }
+        }
+    }
+
     private String readLineOrDefault(String prompt, String defaultVal) {
         System.out.print(prompt + " [" + defaultVal + "]: ");
         String s = scanner.nextLine();
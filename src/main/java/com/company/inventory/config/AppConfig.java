@@ -0,0 +1,65 @@
+package com.company.inventory.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Settings from {@code config/app.properties} on the classpath. A system property with the
+ * same name wins, so any setting can be overridden with {@code -Dkey=value}.
+ */
+public final class AppConfig {
+
+    private static final String RESOURCE = "/config/app.properties";
+    private static final Properties FILE = load();
+
+    private AppConfig() {}
+
+    public static String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value != null) return value;
+        return FILE.getProperty(key, defaultValue);
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key, null);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key, null);
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key, null);
+        return value == null || value.isBlank() ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * All settings whose name starts with the prefix, keyed by the rest of the name, from the
+     * file and from system properties (which win).
+     */
+    public static Map<String, String> getByPrefix(String prefix) {
+        Map<String, String> result = new TreeMap<>();
+        for (String key : FILE.stringPropertyNames()) {
+            if (key.startsWith(prefix)) result.put(key.substring(prefix.length()), FILE.getProperty(key));
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith(prefix)) result.put(key.substring(prefix.length()), System.getProperty(key));
+        }
+        return result;
+    }
+
+    private static Properties load() {
+        Properties props = new Properties();
+        try (InputStream in = AppConfig.class.getResourceAsStream(RESOURCE)) {
+            if (in != null) props.load(in);
+        } catch (IOException e) {
+            System.err.println("Could not read " + RESOURCE + ": " + e.getMessage());
+        }
+        return props;
+    }
+}
@@ -1,19 +1,159 @@
 package com.company.inventory.config;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 
 public final class DbConnectionManager {
-    private static final String URL = System.getProperty("db.url",
+    private static final String URL = AppConfig.get("db.url",
             "jdbc:h2:file:./data/inventory;MODE=MYSQL");
-    private static final String USER = System.getProperty("db.user", "sa");
-    private static final String PASSWORD = System.getProperty("db.password", "");
+    private static final String USER = AppConfig.get("db.user", "sa");
+    private static final String PASSWORD = AppConfig.get("db.password", "");
+
+    // Optional read replica. Reads go to it only while its measured lag is within STALENESS_MS:
+    // a heartbeat row is written to the primary every HEARTBEAT_MS and read back from the replica.
+    private static final String REPLICA_URL = AppConfig.get("db.replica.url", null);
+    private static final long STALENESS_MS = AppConfig.getLong("db.replica.maxStalenessMs", 1000L);
+    private static final boolean READ_YOUR_WRITES = AppConfig.getBoolean("db.replica.readYourWrites", true);
+    private static final long HEARTBEAT_MS = Math.max(50, STALENESS_MS / 4);
+
+    private static final String UPDATE_HEARTBEAT_SQL = "UPDATE replica_heartbeat SET beat_millis = ? WHERE id = 1";
+    private static final String INSERT_HEARTBEAT_SQL = "INSERT INTO replica_heartbeat (id, beat_millis) VALUES (1, ?)";
+    private static final String SELECT_HEARTBEAT_SQL = "SELECT beat_millis FROM replica_heartbeat WHERE id = 1";
+
+    private static final ThreadLocal<WriteSession> SESSION = ThreadLocal.withInitial(WriteSession::new);
+    private static volatile DataSource replica;
+    // [checked at millis, heartbeat seen on the replica (0 = unknown)]
+    private static volatile long[] replicaBeat = {0, 0};
 
     private DbConnectionManager() {}
 
+    /**
+     * When the reads of one client last committed a write, for read-your-writes. Each thread has
+     * its own by default; work that hops between threads, like the batches of one server
+     * connection, binds its session with {@link #inSession} so its reads see its earlier writes.
+     */
+    public static final class WriteSession {
+        private volatile long lastWriteMillis; // 0 = none
+    }
+
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        return SqlDiagnostics.open(() -> DriverManager.getConnection(URL, USER, PASSWORD));
+    }
+
+    /**
+     * Connection for query-only work. Goes to the replica when one is configured and its last
+     * heartbeat is at most db.replica.maxStalenessMs old, and, with read-your-writes on, only
+     * once the replica has a heartbeat written after the current session's last write.
+     * Otherwise, or when the heartbeat cannot be read, the primary is used.
+     * Heartbeats carry the writing host's clock, so the hosts' clocks need to be in sync.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        if (REPLICA_URL == null || REPLICA_URL.isBlank()) return getConnection();
+        long beat = replicaHeartbeat();
+        long now = System.currentTimeMillis();
+        if (beat == 0 || now - beat > STALENESS_MS) return getConnection();
+        if (READ_YOUR_WRITES && SESSION.get().lastWriteMillis >= beat) return getConnection();
+        return SqlDiagnostics.open(() -> replicaDataSource().getConnection());
+    }
+
+    /**
+     * Records that the current session just committed a write to the primary.
+     */
+    public static void markWrite() {
+        SESSION.get().lastWriteMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Runs the work with the given session bound to the current thread.
+     */
+    public static <T> T inSession(WriteSession session, Supplier<T> work) {
+        WriteSession previous = SESSION.get();
+        SESSION.set(session);
+        try {
+            return work.get();
+        } finally {
+            SESSION.set(previous);
+        }
+    }
+
+    // the replica's heartbeat, re-read at most once per HEARTBEAT_MS
+    private static long replicaHeartbeat() {
+        long[] seen = replicaBeat;
+        long now = System.currentTimeMillis();
+        if (now - seen[0] < HEARTBEAT_MS) return seen[1];
+        long beat = 0;
+        try (Connection c = replicaDataSource().getConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_HEARTBEAT_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            if (rs.next()) beat = rs.getLong(1);
+        } catch (SQLException e) {
+            // unknown lag: reads go to the primary until the heartbeat is readable again
+        }
+        replicaBeat = new long[]{now, beat};
+        return beat;
+    }
+
+    private static DataSource replicaDataSource() {
+        DataSource ds = replica;
+        if (ds == null) {
+            synchronized (DbConnectionManager.class) {
+                ds = replica;
+                if (ds == null) {
+                    ds = dataSource(REPLICA_URL, USER, PASSWORD);
+                    startHeartbeat();
+                    replica = ds;
+                }
+            }
+        }
+        return ds;
+    }
+
+    private static void startHeartbeat() {
+        ScheduledExecutorService beats = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        beats.scheduleWithFixedDelay(DbConnectionManager::writeHeartbeat, 0, HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void writeHeartbeat() {
+        try (Connection c = DriverManager.getConnection(URL, USER, PASSWORD)) {
+            long now = System.currentTimeMillis();
+            try (PreparedStatement ps = c.prepareStatement(UPDATE_HEARTBEAT_SQL)) {
+                ps.setLong(1, now);
+                if (ps.executeUpdate() > 0) return;
+            }
+            try (PreparedStatement ps = c.prepareStatement(INSERT_HEARTBEAT_SQL)) {
+                ps.setLong(1, now);
+                ps.executeUpdate();
+            }
+        } catch (SQLException e) {
+            // a missed beat only makes the replica look stale, which sends reads to the primary
+        }
+    }
+
+    /**
+     * Pooled DataSource for an additional database (e.g. a stock shard).
+     */
+    public static DataSource dataSource(String url, String user, String password) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setUsername(user);
+        config.setPassword(password);
+        config.setMaximumPoolSize(AppConfig.getInt("db.pool.size", 10));
+        return new HikariDataSource(config);
     }
 }
@@ -0,0 +1,168 @@
+package com.company.inventory.config;
+
+import com.company.inventory.dao.DataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Routes stock data to one of N shards by item id.
+ * Each shard is a separate DataSource holding its own stock and stock_movement tables.
+ */
+public final class ShardRouter implements AutoCloseable {
+
+    private final List<DataSource> shards;
+    private final ExecutorService scatterPool;
+
+    public ShardRouter(List<DataSource> shards) {
+        Objects.requireNonNull(shards, "shards");
+        if (shards.isEmpty()) throw new IllegalArgumentException("at least one shard is required");
+        this.shards = List.copyOf(shards);
+        this.scatterPool = Executors.newFixedThreadPool(this.shards.size(), r -> {
+            Thread t = new Thread(r, "shard-scatter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Builds a router from the comma separated JDBC urls in the "db.shards" setting (see {@link AppConfig}).
+     * Returns null when sharding is not configured.
+     */
+    public static ShardRouter fromConfig() {
+        String urls = AppConfig.get("db.shards", null);
+        if (urls == null || urls.isBlank()) return null;
+        String user = AppConfig.get("db.user", "sa");
+        String password = AppConfig.get("db.password", "");
+        List<DataSource> dataSources = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (!url.isBlank()) dataSources.add(DbConnectionManager.dataSource(url.trim(), user, password));
+        }
+        return new ShardRouter(dataSources);
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Shard index for an item. Ids are spread with a mix function so that
+     * sequential auto-increment ids do not land on the same shard in runs.
+     */
+    public int shardFor(long itemId) {
+        long h = itemId * 0x9E3779B97F4A7C15L;
+        h ^= (h >>> 32);
+        return (int) Math.floorMod(h, (long) shards.size());
+    }
+
+    public Connection getConnection(long itemId) throws SQLException {
+        return SqlDiagnostics.open(shards.get(shardFor(itemId))::getConnection);
+    }
+
+    public Connection getConnectionForShard(int shard) throws SQLException {
+        return SqlDiagnostics.open(shards.get(shard)::getConnection);
+    }
+
+    /**
+     * Runs the query on every shard in parallel and concatenates the results (scatter-gather).
+     */
+    public <T> List<T> scatter(ShardQuery<T> query) {
+        List<Future<List<T>>> futures = new ArrayList<>(shards.size());
+        for (DataSource ds : shards) {
+            futures.add(scatterPool.submit(() -> {
+                try (Connection c = SqlDiagnostics.open(ds::getConnection)) {
+                    return query.run(c);
+                }
+            }));
+        }
+        List<T> all = new ArrayList<>();
+        try {
+            for (Future<List<T>> f : futures) all.addAll(f.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Interrupted during shard scatter", e);
+        } catch (ExecutionException e) {
+            throw new DataAccessException("Shard query failed", e.getCause());
+        }
+        return all;
+    }
+
+    /**
+     * Creates the stock, stock_movement, stock_lot and movement_daily_rollup tables on every shard.
+     * Shards do not hold the item table, so there are no foreign keys to it here.
+     */
+    public void initSchema() {
+        for (DataSource ds : shards) {
+            try (Connection c = SqlDiagnostics.open(ds::getConnection);
+                 Statement s = c.createStatement()) {
+                s.execute("""
+                        CREATE TABLE IF NOT EXISTS stock (
+                          id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                          item_id BIGINT NOT NULL UNIQUE,
+                          quantity INT NOT NULL
+                        );
+                        """);
+                s.execute("""
+                        CREATE TABLE IF NOT EXISTS stock_movement (
+                          id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                          item_id BIGINT NOT NULL,
+                          qty INT NOT NULL,
+                          type VARCHAR(10) NOT NULL,
+                          reason VARCHAR(255),
+                          timestamp TIMESTAMP NOT NULL
+                        );
+                        """);
+                s.execute("CREATE INDEX IF NOT EXISTS idx_stock_movement_item ON stock_movement(item_id)");
+                s.execute("CREATE INDEX IF NOT EXISTS idx_stock_movement_item_id ON stock_movement(item_id, id)");
+                s.execute("ALTER TABLE stock_movement ADD COLUMN IF NOT EXISTS lot_id BIGINT");
+                s.execute("""
+                        CREATE TABLE IF NOT EXISTS stock_lot (
+                          id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                          item_id BIGINT NOT NULL,
+                          lot_code VARCHAR(64) NOT NULL,
+                          expiry_date DATE NOT NULL,
+                          quantity INT NOT NULL,
+                          depleted BOOLEAN NOT NULL DEFAULT FALSE,
+                          UNIQUE (item_id, lot_code)
+                        );
+                        """);
+                s.execute("CREATE INDEX IF NOT EXISTS idx_stock_lot_fefo ON stock_lot(item_id, depleted, expiry_date, id)");
+                s.execute("""
+                        CREATE TABLE IF NOT EXISTS movement_daily_rollup (
+                          item_id BIGINT NOT NULL,
+                          bucket_day DATE NOT NULL,
+                          qty_in BIGINT NOT NULL,
+                          qty_out BIGINT NOT NULL,
+                          PRIMARY KEY (item_id, bucket_day)
+                        );
+                        """);
+            } catch (SQLException e) {
+                throw new DataAccessException("Failed to initialize shard schema", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scatterPool.shutdownNow();
+        for (DataSource ds : shards) {
+            if (ds instanceof AutoCloseable closeable) {
+                try { closeable.close(); } catch (Exception ignore) {}
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface ShardQuery<T> {
+        List<T> run(Connection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,495 @@
+package com.company.inventory.config;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Per-statement timing for JDBC, for finding out where a slow operation spends its time.
+ * <p>
+ * When {@code diagnostics.enabled} is set, connections from {@link DbConnectionManager} and
+ * {@link ShardRouter} are wrapped in proxies that time each statement in phases: connect
+ * (getting the connection, including waiting for a pooled one; charged to the first statement
+ * run on it), prepare, execute and fetch (time spent inside {@code ResultSet.next()}), and count
+ * the rows returned or changed. The JDBC driver does not report lock waits separately: for
+ * statements that take row locks (DML and {@code SELECT ... FOR UPDATE}, marked "locking") the
+ * execute phase includes waiting for those locks, and a lock timeout shows up as the
+ * statement's SQL state. Commits and rollbacks are timed as statements of their own.
+ * <p>
+ * Every statement is added to per-SQL totals ({@link #topByTotalTime}); statements slower than
+ * {@code diagnostics.slowQueryMs} are also kept in a ring buffer of the last
+ * {@code diagnostics.ringSize} ({@link #recentSlow}) and appended to {@code diagnostics.logFile},
+ * which is rotated at {@code diagnostics.logMaxKb} keeping {@code diagnostics.logFiles} files.
+ * The file is written by a background thread from a queue of {@code diagnostics.logQueueSize}
+ * entries, so a statement never waits for the disk; when the queue is full, entries are dropped
+ * and their number is logged once the writer catches up. Bind values are never recorded, only
+ * their types.
+ */
+public final class SqlDiagnostics {
+
+    private static final boolean ENABLED = AppConfig.getBoolean("diagnostics.enabled", false);
+    private static final long THRESHOLD_NANOS = AppConfig.getInt("diagnostics.slowQueryMs", 50) * 1_000_000L;
+    private static final int RING_SIZE = Math.max(1, AppConfig.getInt("diagnostics.ringSize", 1000));
+    private static final Path LOG_FILE = Path.of(AppConfig.get("diagnostics.logFile", "./data/slow-queries.log"));
+    private static final long LOG_MAX_BYTES = AppConfig.getInt("diagnostics.logMaxKb", 1024) * 1024L;
+    private static final int LOG_FILES = Math.max(1, AppConfig.getInt("diagnostics.logFiles", 5));
+    private static final int LOG_QUEUE_SIZE = Math.max(1, AppConfig.getInt("diagnostics.logQueueSize", 10_000));
+    // distinct statements tracked in the totals; literal SQL from plain Statements could otherwise grow it without bound
+    private static final int MAX_DISTINCT_SQL = 10_000;
+    private static final String OTHER_SQL = "(other statements)";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern LOCKING = Pattern.compile("^(?:INSERT|UPDATE|DELETE|MERGE)\\b|\\bFOR\\s+UPDATE\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final ConcurrentHashMap<String, Totals> TOTALS = new ConcurrentHashMap<>();
+    private static final SlowStatement[] RING = new SlowStatement[RING_SIZE];
+    private static final AtomicLong RING_NEXT = new AtomicLong();
+    private static final Object LOG_LOCK = new Object();
+    private static final BlockingQueue<SlowStatement> LOG_QUEUE = new ArrayBlockingQueue<>(LOG_QUEUE_SIZE);
+    private static final LongAdder LOG_DROPPED = new LongAdder();
+
+    static {
+        if (ENABLED) startLogWriter();
+    }
+
+    private SqlDiagnostics() {}
+
+    /**
+     * One statement execution over the threshold. Times are in nanoseconds; rows is -1 when
+     * unknown, sqlState is set when the statement failed.
+     */
+    public record SlowStatement(Instant at, String thread, String sql, String params, int batchSize, boolean locking,
+                                long connectNanos, long prepareNanos, long executeNanos, long fetchNanos,
+                                long rows, String sqlState) {
+
+        public long totalNanos() {
+            return connectNanos + prepareNanos + executeNanos + fetchNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(at).append(" [").append(thread).append("] ").append(millis(totalNanos())).append(" ms")
+              .append(" (connect ").append(millis(connectNanos))
+              .append(", prepare ").append(millis(prepareNanos))
+              .append(", execute ").append(millis(executeNanos)).append(locking ? " incl. lock wait" : "")
+              .append(", fetch ").append(millis(fetchNanos)).append(") rows=").append(rows);
+            if (batchSize > 0) sb.append(" batch=").append(batchSize);
+            if (sqlState != null) sb.append(" failed sqlState=").append(sqlState);
+            if (!params.isEmpty()) sb.append(" params=").append(params);
+            return sb.append(" sql=").append(sql).toString();
+        }
+    }
+
+    /** Accumulated cost of one SQL text across all its executions. */
+    public record SqlTotals(String sql, long count, long totalNanos, long maxNanos, long rows, long slowCount) {
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%10.1f ms total  %8d x  avg %8.3f ms  max %8.1f ms  %6d slow  %10d rows  %s",
+                    totalNanos / 1e6, count, count == 0 ? 0 : totalNanos / 1e6 / count, maxNanos / 1e6, slowCount, rows, sql);
+        }
+    }
+
+    private static final class Totals {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder slow = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /** Opens a connection, wrapped for timing when diagnostics are enabled. */
+    public static Connection open(Connector connector) throws SQLException {
+        if (!ENABLED) return connector.connect();
+        long start = System.nanoTime();
+        Connection c = connector.connect();
+        return (Connection) Proxy.newProxyInstance(SqlDiagnostics.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(c, System.nanoTime() - start));
+    }
+
+    @FunctionalInterface
+    public interface Connector {
+        Connection connect() throws SQLException;
+    }
+
+    /** The {@code limit} statements with the most total time, most expensive first. */
+    public static List<SqlTotals> topByTotalTime(int limit) {
+        List<SqlTotals> all = new ArrayList<>(TOTALS.size());
+        TOTALS.forEach((sql, t) -> all.add(new SqlTotals(sql, t.count.sum(), t.totalNanos.sum(), t.maxNanos.get(),
+                t.rows.sum(), t.slow.sum())));
+        all.sort(Comparator.comparingLong(SqlTotals::totalNanos).reversed());
+        return all.size() > limit ? all.subList(0, limit) : all;
+    }
+
+    /** Slow statements still in the ring buffer, newest first. */
+    public static List<SlowStatement> recentSlow() {
+        long next = RING_NEXT.get();
+        List<SlowStatement> res = new ArrayList<>();
+        for (long i = next - 1; i >= Math.max(0, next - RING_SIZE); i--) {
+            SlowStatement s = RING[(int) (i % RING_SIZE)];
+            if (s != null) res.add(s);
+        }
+        return res;
+    }
+
+    /** Clears the totals and the ring buffer; the log file is kept. */
+    public static void reset() {
+        TOTALS.clear();
+        Arrays.fill(RING, null);
+        RING_NEXT.set(0);
+    }
+
+    private static void record(String sql, String params, int batchSize, long connectNanos, long prepareNanos,
+                               long executeNanos, long fetchNanos, long rows, String sqlState) {
+        long total = connectNanos + prepareNanos + executeNanos + fetchNanos;
+        String key = normalize(sql);
+        Totals t = TOTALS.get(key);
+        if (t == null) {
+            t = TOTALS.size() < MAX_DISTINCT_SQL ? TOTALS.computeIfAbsent(key, k -> new Totals())
+                    : TOTALS.computeIfAbsent(OTHER_SQL, k -> new Totals());
+        }
+        t.count.increment();
+        t.totalNanos.add(total);
+        if (rows > 0) t.rows.add(rows);
+        t.maxNanos.accumulateAndGet(total, Math::max);
+        if (total < THRESHOLD_NANOS) return;
+
+        t.slow.increment();
+        SlowStatement s = new SlowStatement(Instant.now(), Thread.currentThread().getName(), key, params, batchSize,
+                LOCKING.matcher(key).find(), connectNanos, prepareNanos, executeNanos, fetchNanos, rows, sqlState);
+        RING[(int) (RING_NEXT.getAndIncrement() % RING_SIZE)] = s;
+        log(s);
+    }
+
+    // literals replaced by '?', so statements built as strings group like prepared ones
+    static String normalize(String sql) {
+        String s = STRING_LITERAL.matcher(sql).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        return WHITESPACE.matcher(s).replaceAll(" ").trim();
+    }
+
+    // called on the statement's thread: only hands the entry to the writer
+    private static void log(SlowStatement s) {
+        if (!LOG_QUEUE.offer(s)) LOG_DROPPED.increment();
+    }
+
+    private static void startLogWriter() {
+        Thread writer = new Thread(() -> {
+            List<SlowStatement> batch = new ArrayList<>();
+            while (true) {
+                try {
+                    batch.add(LOG_QUEUE.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                LOG_QUEUE.drainTo(batch);
+                write(batch);
+                batch.clear();
+            }
+        }, "slow-query-log");
+        writer.setDaemon(true);
+        writer.start();
+        // the writer is a daemon; whatever is still queued at exit is written by the hook
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            List<SlowStatement> rest = new ArrayList<>();
+            LOG_QUEUE.drainTo(rest);
+            write(rest);
+        }, "slow-query-log-flush"));
+    }
+
+    private static void write(List<SlowStatement> batch) {
+        long dropped = LOG_DROPPED.sumThenReset();
+        if (batch.isEmpty() && dropped == 0) return;
+        StringBuilder text = new StringBuilder();
+        for (SlowStatement s : batch) text.append(s).append(System.lineSeparator());
+        if (dropped > 0) {
+            text.append(Instant.now()).append(' ').append(dropped)
+                .append(" slow statement(s) not logged: the log queue was full").append(System.lineSeparator());
+        }
+        synchronized (LOG_LOCK) {
+            try {
+                if (Files.exists(LOG_FILE) && Files.size(LOG_FILE) >= LOG_MAX_BYTES) rotate();
+                Path dir = LOG_FILE.toAbsolutePath().getParent();
+                if (dir != null) Files.createDirectories(dir);
+                Files.writeString(LOG_FILE, text, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println("Failed to write slow query log: " + e.getMessage());
+            }
+        }
+    }
+
+    // file -> file.1 -> file.2 ...; the oldest one falls off
+    private static void rotate() throws IOException {
+        Files.deleteIfExists(rotated(LOG_FILES - 1));
+        for (int i = LOG_FILES - 2; i >= 1; i--) {
+            if (Files.exists(rotated(i))) Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (LOG_FILES > 1) Files.move(LOG_FILE, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        else Files.delete(LOG_FILE);
+    }
+
+    private static Path rotated(int i) {
+        return LOG_FILE.resolveSibling(LOG_FILE.getFileName() + "." + i);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String sqlState(Throwable t) {
+        return t instanceof SQLException e && e.getSQLState() != null ? e.getSQLState() : t.getClass().getSimpleName();
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final List<StatementHandler> statements = new ArrayList<>();
+        private long unchargedConnectNanos;
+
+        ConnectionHandler(Connection target, long connectNanos) {
+            this.target = target;
+            this.unchargedConnectNanos = connectNanos;
+        }
+
+        long takeConnectNanos() {
+            long n = unchargedConnectNanos;
+            unchargedConnectNanos = 0;
+            return n;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "prepareStatement", "prepareCall" -> {
+                    long start = System.nanoTime();
+                    Statement st = (Statement) call(target, method, args);
+                    return wrap(st, (String) args[0], System.nanoTime() - start);
+                }
+                case "createStatement" -> {
+                    return wrap((Statement) call(target, method, args), null, 0);
+                }
+                case "commit", "rollback" -> {
+                    if (args != null && args.length > 0) return call(target, method, args); // rollback(Savepoint)
+                    long start = System.nanoTime();
+                    try {
+                        Object res = call(target, method, args);
+                        record(name.toUpperCase(), "", 0, takeConnectNanos(), 0, System.nanoTime() - start, 0, -1, null);
+                        return res;
+                    } catch (Throwable t) {
+                        record(name.toUpperCase(), "", 0, takeConnectNanos(), 0, System.nanoTime() - start, 0, -1, sqlState(t));
+                        throw t;
+                    }
+                }
+                case "close" -> {
+                    // closing the connection closes its statements without going through their proxies
+                    for (StatementHandler st : statements) st.finishOpen();
+                    statements.clear();
+                    return call(target, method, args);
+                }
+                case "unwrap" -> {
+                    return ((Class<?>) args[0]).isInstance(proxy) ? proxy : call(target, method, args);
+                }
+                case "isWrapperFor" -> {
+                    return ((Class<?>) args[0]).isInstance(proxy) || (Boolean) call(target, method, args);
+                }
+                default -> {
+                    return call(target, method, args);
+                }
+            }
+        }
+
+        private Object wrap(Statement st, String sql, long prepareNanos) {
+            Class<?> type = st instanceof CallableStatement ? CallableStatement.class
+                    : st instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            StatementHandler handler = new StatementHandler(st, sql, prepareNanos, this);
+            statements.add(handler);
+            return Proxy.newProxyInstance(SqlDiagnostics.class.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+    }
+
+    /** An execution whose result set is still being read. */
+    private static final class Execution {
+        final String sql;
+        final String params;
+        final long connectNanos;
+        final long prepareNanos;
+        final long executeNanos;
+        long fetchNanos;
+        long rows;
+        boolean done;
+
+        Execution(String sql, String params, long connectNanos, long prepareNanos, long executeNanos) {
+            this.sql = sql;
+            this.params = params;
+            this.connectNanos = connectNanos;
+            this.prepareNanos = prepareNanos;
+            this.executeNanos = executeNanos;
+        }
+
+        void finish() {
+            if (done) return;
+            done = true;
+            record(sql, params, 0, connectNanos, prepareNanos, executeNanos, fetchNanos, rows, null);
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String sql; // null for plain statements, which pass SQL to each execute
+        private final ConnectionHandler conn;
+        private final TreeMap<Integer, String> params = new TreeMap<>();
+        private long unchargedPrepareNanos;
+        private int batchSize;
+        private String batchSql;
+        private Execution open;
+
+        StatementHandler(Statement target, String sql, long prepareNanos, ConnectionHandler conn) {
+            this.target = target;
+            this.sql = sql;
+            this.unchargedPrepareNanos = prepareNanos;
+            this.conn = conn;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                params.put(index, shape(name, args[1]));
+                return call(target, method, args);
+            }
+            switch (name) {
+                case "clearParameters" -> params.clear();
+                case "addBatch" -> {
+                    batchSize++;
+                    if (args != null && args.length == 1) batchSql = (String) args[0];
+                }
+                case "clearBatch" -> batchSize = 0;
+                case "close" -> finishOpen();
+                case "executeQuery", "executeUpdate", "executeLargeUpdate", "execute", "executeBatch", "executeLargeBatch" -> {
+                    return execute(method, args);
+                }
+                default -> { }
+            }
+            return call(target, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            finishOpen();
+            String name = method.getName();
+            boolean batch = name.endsWith("Batch");
+            String text = args != null && args.length > 0 && args[0] instanceof String s ? s
+                    : sql != null ? sql : batchSql != null ? batchSql : "(batch)";
+            String shape = params.isEmpty() ? "" : "(" + String.join(", ", params.values()) + ")";
+            int batched = batch ? batchSize : 0;
+            long connectNanos = conn.takeConnectNanos();
+            long prepareNanos = unchargedPrepareNanos;
+            unchargedPrepareNanos = 0;
+            long start = System.nanoTime();
+            Object res;
+            try {
+                res = call(target, method, args);
+            } catch (Throwable t) {
+                record(text, shape, batched, connectNanos, prepareNanos, System.nanoTime() - start, 0, -1, sqlState(t));
+                throw t;
+            } finally {
+                if (batch) {
+                    batchSize = 0;
+                    batchSql = null;
+                }
+            }
+            long executeNanos = System.nanoTime() - start;
+            if (res instanceof ResultSet rs) {
+                Execution e = new Execution(text, shape, connectNanos, prepareNanos, executeNanos);
+                open = e;
+                return Proxy.newProxyInstance(SqlDiagnostics.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                        new ResultSetHandler(rs, e));
+            }
+            long rows = switch (res) {
+                case Integer n -> n;
+                case Long n -> n;
+                case int[] counts -> Arrays.stream(counts).filter(c -> c >= 0).asLongStream().sum();
+                case long[] counts -> Arrays.stream(counts).filter(c -> c >= 0).sum();
+                case null, default -> -1; // execute(): the result, if any, is fetched through getResultSet
+            };
+            record(text, shape, batched, connectNanos, prepareNanos, executeNanos, 0, rows, null);
+            return res;
+        }
+
+        private void finishOpen() {
+            if (open != null) {
+                open.finish();
+                open = null;
+            }
+        }
+
+        private static String shape(String setter, Object value) {
+            if (setter.equals("setNull") || value == null) return "null";
+            if (setter.equals("setObject")) return value.getClass().getSimpleName();
+            return setter.substring(3);
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final Execution execution;
+
+        ResultSetHandler(ResultSet target, Execution execution) {
+            this.target = target;
+            this.execution = execution;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next" -> {
+                    long start = System.nanoTime();
+                    Object res = call(target, method, args);
+                    execution.fetchNanos += System.nanoTime() - start;
+                    if ((Boolean) res) execution.rows++;
+                    return res;
+                }
+                case "close" -> {
+                    Object res = call(target, method, args);
+                    execution.finish();
+                    return res;
+                }
+                default -> {
+                    return call(target, method, args);
+                }
+            }
+        }
+    }
+}
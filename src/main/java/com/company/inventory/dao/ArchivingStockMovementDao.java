@@ -0,0 +1,48 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.model.StockMovement;
+
+import java.util.*;
+
+/**
+ * Movement DAO that serves history from both the live table and the cold archive.
+ * Writes go to the live DAO only; archived movements come from {@link MovementArchive}.
+ */
+public class ArchivingStockMovementDao implements StockMovementDao {
+
+    private final StockMovementDao live;
+    private final MovementArchive archive;
+
+    public ArchivingStockMovementDao(StockMovementDao live, MovementArchive archive) {
+        this.live = live;
+        this.archive = archive;
+    }
+
+    @Override
+    public void recordMovement(StockMovement movement) {
+        live.recordMovement(movement);
+    }
+
+    /**
+     * Live and archived movements, newest first. A movement can briefly exist in both places
+     * if an archive run was interrupted between writing the file and deleting the rows,
+     * so duplicates are dropped by id.
+     */
+    @Override
+    public List<StockMovement> listByItem(Long itemId) {
+        List<StockMovement> recent = live.listByItem(itemId);
+        List<StockMovement> archived = archive.read(itemId);
+        if (archived.isEmpty()) return recent;
+
+        Set<Long> seen = new HashSet<>();
+        List<StockMovement> res = new ArrayList<>(recent.size() + archived.size());
+        for (StockMovement m : recent) if (seen.add(m.getId())) res.add(m);
+        for (StockMovement m : archived) if (seen.add(m.getId())) res.add(m);
+        res.sort(Comparator.comparing(StockMovement::getTimestamp).reversed());
+        return res;
+    }
+
+    public MovementArchive getArchive() {
+        return archive;
+    }
+}
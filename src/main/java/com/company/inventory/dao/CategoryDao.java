@@ -0,0 +1,39 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.model.Category;
+import com.company.inventory.model.dto.CategoryStock;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface CategoryDao {
+
+    /**
+     * Inserts the category under its parent (or as a root). Returns it with the generated id.
+     */
+    Category create(Category category);
+
+    Optional<Category> findById(Long id);
+
+    /**
+     * Direct children of a category, or the root categories when {@code parentId} is null.
+     */
+    List<Category> listChildren(Long parentId);
+
+    /**
+     * Moves a category with its whole subtree under another parent (null makes it a root).
+     * The stock totals of the old and new ancestors are adjusted in the same transaction.
+     */
+    Category move(Long id, Long newParentId);
+
+    /**
+     * Stock totals of the category including all of its subcategories. They are maintained by
+     * stock writes in the primary database only, so with sharded stock they are not meaningful.
+     */
+    CategoryStock getStock(Long categoryId);
+
+    /**
+     * Recomputes all category stock totals from the stock table.
+     */
+    void rebuildStockTotals();
+}
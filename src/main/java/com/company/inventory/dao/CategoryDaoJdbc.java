@@ -0,0 +1,362 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.config.AppConfig;
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.model.Category;
+import com.company.inventory.model.dto.CategoryStock;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Category tree with per-category stock totals.
+ * <p>
+ * The tree is also stored as a closure table, category_path, with one row per
+ * (ancestor, descendant) pair including each category itself at depth 0. That makes "all
+ * ancestors of the item's category" a single indexed lookup.
+ * <p>
+ * category_stock holds the on-hand units and value of every category including its subtree.
+ * It is kept up to date by the stock writers through {@link #recordStockTx} in the same
+ * transaction that changes the stock row, so reading a total is a lookup of a few rows instead
+ * of a join over all items below the category. Each category has up to {@code STRIPES} rows
+ * and a write only touches the row of its item's stripe, so concurrent stock changes of items
+ * in the same category do not all queue on one row lock; a read sums the stripes.
+ * Value is quantity times the item's current purchase price.
+ */
+public class CategoryDaoJdbc implements CategoryDao {
+
+    private static final int STRIPES = Math.max(1, AppConfig.getInt("category.stockStripes", 16));
+
+    private static final String INSERT_SQL = "INSERT INTO category (name, parent_id) VALUES (?, ?)";
+    private static final String INSERT_SELF_PATH_SQL =
+            "INSERT INTO category_path (ancestor_id, descendant_id, depth) VALUES (?, ?, 0)";
+    private static final String INSERT_PARENT_PATHS_SQL =
+            "INSERT INTO category_path (ancestor_id, descendant_id, depth) " +
+                    "SELECT ancestor_id, ?, depth + 1 FROM category_path WHERE descendant_id = ?";
+    private static final String SELECT_BY_ID = "SELECT id, name, parent_id FROM category WHERE id = ?";
+    private static final String SELECT_ROOTS = "SELECT id, name, parent_id FROM category WHERE parent_id IS NULL ORDER BY name, id";
+    private static final String SELECT_CHILDREN = "SELECT id, name, parent_id FROM category WHERE parent_id = ? ORDER BY name, id";
+    private static final String SELECT_STOCK_SQL =
+            "SELECT COALESCE(SUM(quantity), 0), COALESCE(SUM(stock_value), 0) FROM category_stock WHERE category_id = ?";
+
+    private static final String IS_ANCESTOR_SQL = "SELECT 1 FROM category_path WHERE ancestor_id = ? AND descendant_id = ?";
+    private static final String LOCK_CATEGORY_SQL = "SELECT name, parent_id FROM category WHERE id = ? FOR UPDATE";
+    private static final String LOCK_STOCK_STRIPES_SQL =
+            "SELECT stripe, quantity, stock_value FROM category_stock WHERE category_id = ? FOR UPDATE";
+    private static final String SELECT_SUBTREE_SQL = "SELECT descendant_id, depth FROM category_path WHERE ancestor_id = ?";
+    // the rows linking a subtree node to ancestors outside the subtree are the ones deeper than the node is below its root
+    private static final String DELETE_OUTER_PATHS_SQL = "DELETE FROM category_path WHERE descendant_id = ? AND depth > ?";
+    private static final String INSERT_OUTER_PATHS_SQL =
+            "INSERT INTO category_path (ancestor_id, descendant_id, depth) " +
+                    "SELECT up.ancestor_id, down.descendant_id, up.depth + down.depth + 1 " +
+                    "FROM category_path up, category_path down WHERE up.descendant_id = ? AND down.ancestor_id = ?";
+    private static final String UPDATE_PARENT_SQL = "UPDATE category SET parent_id = ? WHERE id = ?";
+
+    private static final String ADD_ITEM_STOCK_SQL =
+            "INSERT INTO category_stock (category_id, stripe, quantity, stock_value) " +
+                    "SELECT p.ancestor_id, ?, ?, ? * i.purchase_price FROM item i " +
+                    "JOIN category_path p ON p.descendant_id = i.category_id WHERE i.id = ? " +
+                    "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), stock_value = stock_value + VALUES(stock_value)";
+    private static final String ADD_CATEGORY_STOCK_SQL =
+            "INSERT INTO category_stock (category_id, stripe, quantity, stock_value) " +
+                    "SELECT ancestor_id, ?, ?, ? FROM category_path WHERE descendant_id = ? AND depth >= ? " +
+                    "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), stock_value = stock_value + VALUES(stock_value)";
+    // value change of the stock of items repriced by one change, read from the price history it wrote
+    private static final String REPRICE_STOCK_SQL =
+            "INSERT INTO category_stock (category_id, stripe, quantity, stock_value) " +
+                    "SELECT p.ancestor_id, MOD(h.item_id, " + STRIPES + "), 0, SUM(s.quantity * (h.new_purchase_price - h.old_purchase_price)) " +
+                    "FROM item_price_history h JOIN stock s ON s.item_id = h.item_id JOIN item i ON i.id = h.item_id " +
+                    "JOIN category_path p ON p.descendant_id = i.category_id " +
+                    "WHERE h.change_id = ? AND h.item_id BETWEEN ? AND ? AND h.new_purchase_price <> h.old_purchase_price " +
+                    "GROUP BY p.ancestor_id, MOD(h.item_id, " + STRIPES + ") " +
+                    "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), stock_value = stock_value + VALUES(stock_value)";
+    private static final String LOCK_ITEM_STOCK_SQL = "SELECT quantity FROM stock WHERE item_id = ? FOR UPDATE";
+    // items may already point at the id a new category gets (category ids used to be free-form)
+    private static final String ADOPT_ITEMS_SQL =
+            "INSERT INTO category_stock (category_id, stripe, quantity, stock_value) " +
+                    "SELECT p.ancestor_id, MOD(i.id, " + STRIPES + "), SUM(s.quantity), SUM(s.quantity * i.purchase_price) " +
+                    "FROM stock s JOIN item i ON i.id = s.item_id JOIN category_path p ON p.descendant_id = i.category_id " +
+                    "WHERE i.category_id = ? GROUP BY p.ancestor_id, MOD(i.id, " + STRIPES + ") " +
+                    "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), stock_value = stock_value + VALUES(stock_value)";
+    private static final String CLEAR_STOCK_SQL = "DELETE FROM category_stock";
+    private static final String REBUILD_STOCK_SQL =
+            "INSERT INTO category_stock (category_id, stripe, quantity, stock_value) " +
+                    "SELECT p.ancestor_id, MOD(i.id, " + STRIPES + "), SUM(s.quantity), SUM(s.quantity * i.purchase_price) " +
+                    "FROM stock s JOIN item i ON i.id = s.item_id JOIN category_path p ON p.descendant_id = i.category_id " +
+                    "GROUP BY p.ancestor_id, MOD(i.id, " + STRIPES + ")";
+
+    private record StripeTotal(int stripe, long quantity, double value) {}
+
+    private final TransactionTemplate tx = TransactionTemplate.defaults();
+
+    @Override
+    public Category create(Category category) {
+        Category created = tx.execute("Failed to create category", c -> {
+            long id;
+            try (PreparedStatement ps = c.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, category.getName());
+                if (category.getParentId() == null) ps.setNull(2, Types.BIGINT); else ps.setLong(2, category.getParentId());
+                ps.executeUpdate();
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (!rs.next()) throw new DataAccessException("Failed to retrieve generated id for category");
+                    id = rs.getLong(1);
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(INSERT_SELF_PATH_SQL)) {
+                ps.setLong(1, id);
+                ps.setLong(2, id);
+                ps.executeUpdate();
+            }
+            if (category.getParentId() != null) {
+                try (PreparedStatement ps = c.prepareStatement(INSERT_PARENT_PATHS_SQL)) {
+                    ps.setLong(1, id);
+                    ps.setLong(2, category.getParentId());
+                    ps.executeUpdate();
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(ADOPT_ITEMS_SQL)) {
+                ps.setLong(1, id);
+                ps.executeUpdate();
+            }
+            return new Category(id, category.getName(), category.getParentId());
+        });
+        DbConnectionManager.markWrite();
+        return created;
+    }
+
+    @Override
+    public Optional<Category> findById(Long id) {
+        try (Connection c = DbConnectionManager.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_BY_ID)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Optional.of(map(rs)) : Optional.empty();
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    @Override
+    public List<Category> listChildren(Long parentId) {
+        try (Connection c = DbConnectionManager.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(parentId == null ? SELECT_ROOTS : SELECT_CHILDREN)) {
+            if (parentId != null) ps.setLong(1, parentId);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Category> res = new ArrayList<>();
+                while (rs.next()) res.add(map(rs));
+                return res;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    @Override
+    public Category move(Long id, Long newParentId) {
+        Category moved = tx.execute("Failed to move category " + id, c -> {
+            String name;
+            Long oldParentId;
+            try (PreparedStatement ps = c.prepareStatement(LOCK_CATEGORY_SQL)) {
+                ps.setLong(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) throw new DataAccessException("No category with id " + id);
+                    name = rs.getString(1);
+                    long parent = rs.getLong(2);
+                    oldParentId = rs.wasNull() ? null : parent;
+                }
+            }
+            if (Objects.equals(oldParentId, newParentId)) return new Category(id, name, oldParentId);
+            if (newParentId != null && exists(c, IS_ANCESTOR_SQL, id, newParentId)) {
+                throw new IllegalArgumentException("Cannot move category " + id + " under itself or one of its subcategories");
+            }
+
+            // the subtree totals leave the old ancestors and join the new ones; locking them keeps
+            // stock writes below this category from changing them in between
+            List<StripeTotal> stripes = new ArrayList<>();
+            try (PreparedStatement ps = c.prepareStatement(LOCK_STOCK_STRIPES_SQL)) {
+                ps.setLong(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) stripes.add(new StripeTotal(rs.getInt(1), rs.getLong(2), rs.getDouble(3)));
+                }
+            }
+            addToAncestors(c, id, stripes, -1);
+
+            List<long[]> subtree = new ArrayList<>(); // [descendantId, depth]
+            try (PreparedStatement ps = c.prepareStatement(SELECT_SUBTREE_SQL)) {
+                ps.setLong(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) subtree.add(new long[]{rs.getLong(1), rs.getInt(2)});
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(DELETE_OUTER_PATHS_SQL)) {
+                for (long[] node : subtree) {
+                    ps.setLong(1, node[0]);
+                    ps.setInt(2, (int) node[1]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            if (newParentId != null) {
+                try (PreparedStatement ps = c.prepareStatement(INSERT_OUTER_PATHS_SQL)) {
+                    ps.setLong(1, newParentId);
+                    ps.setLong(2, id);
+                    ps.executeUpdate();
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(UPDATE_PARENT_SQL)) {
+                if (newParentId == null) ps.setNull(1, Types.BIGINT); else ps.setLong(1, newParentId);
+                ps.setLong(2, id);
+                ps.executeUpdate();
+            }
+            addToAncestors(c, id, stripes, 1);
+            return new Category(id, name, newParentId);
+        });
+        DbConnectionManager.markWrite();
+        return moved;
+    }
+
+    // adds sign * the given stripe totals to every strict ancestor of the category
+    private static void addToAncestors(Connection c, long categoryId, List<StripeTotal> stripes, int sign) throws SQLException {
+        if (stripes.isEmpty()) return;
+        try (PreparedStatement ps = c.prepareStatement(ADD_CATEGORY_STOCK_SQL)) {
+            for (StripeTotal s : stripes) {
+                bindCategoryStock(ps, s.stripe(), sign * s.quantity(), sign * s.value(), categoryId, 1);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    @Override
+    public CategoryStock getStock(Long categoryId) {
+        try (Connection c = DbConnectionManager.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_STOCK_SQL)) {
+            ps.setLong(1, categoryId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return new CategoryStock(categoryId, rs.getLong(1), rs.getDouble(2));
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    @Override
+    public void rebuildStockTotals() {
+        tx.execute("Failed to rebuild category stock totals", c -> {
+            try (Statement s = c.createStatement()) {
+                s.executeUpdate(CLEAR_STOCK_SQL);
+                return s.executeUpdate(REBUILD_STOCK_SQL);
+            }
+        });
+        DbConnectionManager.markWrite();
+    }
+
+    // ----------------------------
+    // Maintenance from the stock writers, in their transaction
+    // ----------------------------
+
+    /**
+     * Adds a stock change of an item to the totals of its category and all ancestors, using the
+     * caller's transaction. Call it after the stock row has been written (and so locked).
+     * Items without a category, or with one that is not in the tree, are not counted anywhere.
+     */
+    public static void recordStockTx(Connection conn, long itemId, int qtyDelta) throws SQLException {
+        if (qtyDelta == 0) return;
+        try (PreparedStatement ps = conn.prepareStatement(ADD_ITEM_STOCK_SQL)) {
+            bindStock(ps, itemId, qtyDelta);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Prepared statement for recording many stock changes with {@code addBatch}; see {@link #bindStock}.
+     */
+    public static PreparedStatement prepareStockBatch(Connection conn) throws SQLException {
+        return conn.prepareStatement(ADD_ITEM_STOCK_SQL);
+    }
+
+    public static void bindStock(PreparedStatement ps, long itemId, int qtyDelta) throws SQLException {
+        ps.setInt(1, stripe(itemId));
+        ps.setLong(2, qtyDelta);
+        ps.setLong(3, qtyDelta);
+        ps.setLong(4, itemId);
+    }
+
+    /**
+     * Moves an item's stock between category totals after its category or purchase price
+     * changed, using the caller's transaction (which has already updated the item row).
+     * The stock row is locked so that a concurrent stock change is counted exactly once:
+     * it either committed before this reads the quantity, or it waits and then sees the new category.
+     */
+    public static void moveItemTx(Connection conn, long itemId, Long oldCategoryId, double oldPrice,
+                                  Long newCategoryId, double newPrice) throws SQLException {
+        if (Objects.equals(oldCategoryId, newCategoryId) && oldPrice == newPrice) return;
+        long qty = 0;
+        try (PreparedStatement ps = conn.prepareStatement(LOCK_ITEM_STOCK_SQL)) {
+            ps.setLong(1, itemId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) qty = rs.getInt(1);
+            }
+        }
+        if (qty == 0) return;
+        int stripe = stripe(itemId);
+        try (PreparedStatement ps = conn.prepareStatement(ADD_CATEGORY_STOCK_SQL)) {
+            if (oldCategoryId != null) {
+                bindCategoryStock(ps, stripe, -qty, -qty * oldPrice, oldCategoryId, 0);
+                ps.addBatch();
+            }
+            if (newCategoryId != null) {
+                bindCategoryStock(ps, stripe, qty, qty * newPrice, newCategoryId, 0);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Revalues the stock of the items in {@code [fromItemId, toItemId]} whose purchase price the
+     * given price change recorded, using the caller's transaction. Like {@link #moveItemTx}, the
+     * caller must hold the locks on those items' stock rows.
+     */
+    public static void repriceTx(Connection conn, long changeId, long fromItemId, long toItemId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(REPRICE_STOCK_SQL)) {
+            ps.setLong(1, changeId);
+            ps.setLong(2, fromItemId);
+            ps.setLong(3, toItemId);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void bindCategoryStock(PreparedStatement ps, int stripe, long qty, double value,
+                                          long categoryId, int minDepth) throws SQLException {
+        ps.setInt(1, stripe);
+        ps.setLong(2, qty);
+        ps.setDouble(3, value);
+        ps.setLong(4, categoryId);
+        ps.setInt(5, minDepth);
+    }
+
+    private static int stripe(long itemId) {
+        return (int) Math.floorMod(itemId, (long) STRIPES);
+    }
+
+    private static boolean exists(Connection c, String sql, long a, long b) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, a);
+            ps.setLong(2, b);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static Category map(ResultSet rs) throws SQLException {
+        long parent = rs.getLong(3);
+        return new Category(rs.getLong(1), rs.getString(2), rs.wasNull() ? null : parent);
+    }
+}
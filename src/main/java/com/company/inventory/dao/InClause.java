@@ -0,0 +1,39 @@
+package com.company.inventory.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Helpers for multi-key lookups with chunked {@code IN (...)} lists.
+ */
+final class InClause {
+
+    /** Keys per IN list; keeps statements well under driver/database parameter limits. */
+    static final int CHUNK_SIZE = 500;
+
+    private InClause() {}
+
+    static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder(n * 2);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('?');
+        }
+        return sb.toString();
+    }
+
+    static <T> List<List<T>> chunks(Collection<T> keys) {
+        List<List<T>> chunks = new ArrayList<>();
+        List<T> current = new ArrayList<>(Math.min(keys.size(), CHUNK_SIZE));
+        for (T key : keys) {
+            current.add(key);
+            if (current.size() == CHUNK_SIZE) {
+                chunks.add(current);
+                current = new ArrayList<>(CHUNK_SIZE);
+            }
+        }
+        if (!current.isEmpty()) chunks.add(current);
+        return chunks;
+    }
+}
@@ -0,0 +1,251 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.model.ItemColumns;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Point-in-time copy of the item catalog and stock quantities in a compact binary file,
+ * used to start with a warm cache instead of reading every row from the database.
+ * <p>
+ * Layout (big-endian): a header {@code [magic int][version int][count int][maxItemId long]
+ * [movementHighWater long][createdAt long]}, then one array per column (ids, category ids,
+ * supplier ids, purchase prices, sale prices, reorder levels, row versions, quantities, SKU sort order),
+ * then name and SKU of every row as {@code [length int][UTF-8 bytes]}, and finally a CRC32
+ * of everything before it. Rows are in ascending id order.
+ * <p>
+ * The movement high-water mark is the largest stock_movement id seen before the rows were
+ * read, so every stock change after the snapshot has a movement with a larger id.
+ */
+public final class InventorySnapshot {
+
+    /** Quantity of an item that has no stock row. */
+    public static final int NO_STOCK = Integer.MIN_VALUE;
+
+    private static final int MAGIC = 0x494E5653; // "INVS"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 8 + 8;
+
+    private static final String MAX_MOVEMENT_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM stock_movement";
+    private static final String ALL_STOCK_SQL = "SELECT item_id, quantity FROM stock ORDER BY item_id";
+
+    private final ItemColumns items;
+    private final int[] quantities;
+    private final int[] skuOrder;
+    private final long maxItemId;
+    private final long movementHighWater;
+    private final long createdAt;
+
+    private InventorySnapshot(ItemColumns items, int[] quantities, int[] skuOrder,
+                              long maxItemId, long movementHighWater, long createdAt) {
+        this.items = items;
+        this.quantities = quantities;
+        this.skuOrder = skuOrder;
+        this.maxItemId = maxItemId;
+        this.movementHighWater = movementHighWater;
+        this.createdAt = createdAt;
+    }
+
+    public ItemColumns getItems() { return items; }
+
+    /** Quantity per item row, {@link #NO_STOCK} when the item has no stock row. */
+    public int[] getQuantities() { return quantities; }
+
+    /** Item rows sorted by SKU, for binary search. */
+    public int[] getSkuOrder() { return skuOrder; }
+
+    public long getMaxItemId() { return maxItemId; }
+
+    public long getMovementHighWater() { return movementHighWater; }
+
+    public long getCreatedAt() { return createdAt; }
+
+    /**
+     * Reads the current catalog and stock from the primary database.
+     */
+    public static InventorySnapshot capture(ItemDaoJdbc itemDao) {
+        long highWater = maxMovementId();
+        ItemColumns items = itemDao.loadAllColumns();
+        int[] quantities = new int[items.size()];
+        Arrays.fill(quantities, NO_STOCK);
+        try (Connection c = DbConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(ALL_STOCK_SQL)) {
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+                int row = 0;
+                while (rs.next()) {
+                    long itemId = rs.getLong(1);
+                    while (row < items.size() && items.id(row) < itemId) row++;
+                    if (row < items.size() && items.id(row) == itemId) quantities[row] = rs.getInt(2);
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to read stock for snapshot", e);
+        }
+        long maxItemId = items.size() == 0 ? 0 : items.id(items.size() - 1);
+        return new InventorySnapshot(items, quantities, sortBySku(items), maxItemId, highWater, System.currentTimeMillis());
+    }
+
+    public static long maxMovementId() {
+        try (Connection c = DbConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(MAX_MOVEMENT_ID_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    private static int[] sortBySku(ItemColumns items) {
+        Integer[] rows = new Integer[items.size()];
+        for (int i = 0; i < rows.length; i++) rows[i] = i;
+        Arrays.sort(rows, Comparator.comparing(items::sku));
+        int[] order = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) order[i] = rows[i];
+        return order;
+    }
+
+    /**
+     * Writes the snapshot to a temporary file next to {@code file} and moves it into place,
+     * so a crash while writing never leaves a half-written snapshot behind.
+     */
+    public void write(Path file) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            CRC32 crc = new CRC32();
+            try (CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16), crc);
+                 DataOutputStream out = new DataOutputStream(checked)) {
+                int n = items.size();
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(n);
+                out.writeLong(maxItemId);
+                out.writeLong(movementHighWater);
+                out.writeLong(createdAt);
+                for (int i = 0; i < n; i++) out.writeLong(items.id(i));
+                for (int i = 0; i < n; i++) out.writeLong(items.categoryId(i));
+                for (int i = 0; i < n; i++) out.writeLong(items.supplierId(i));
+                for (int i = 0; i < n; i++) out.writeDouble(items.purchasePrice(i));
+                for (int i = 0; i < n; i++) out.writeDouble(items.salePrice(i));
+                for (int i = 0; i < n; i++) out.writeInt(items.reorderLevel(i));
+                for (int i = 0; i < n; i++) out.writeLong(items.version(i));
+                for (int i = 0; i < n; i++) out.writeInt(quantities[i]);
+                for (int i = 0; i < n; i++) out.writeInt(skuOrder[i]);
+                for (int i = 0; i < n; i++) {
+                    writeString(out, items.name(i));
+                    writeString(out, items.sku(i));
+                }
+                out.flush();
+                out.writeLong(crc.getValue());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new DataAccessException("Failed to write inventory snapshot " + file, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Loads a snapshot through a read-only memory mapping. Returns empty when the file is
+     * missing, has an unknown format, or fails its checksum.
+     */
+    public static Optional<InventorySnapshot> read(Path file) {
+        if (!Files.isRegularFile(file)) return Optional.empty();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES + 8 || size > Integer.MAX_VALUE) return Optional.empty();
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            CRC32 crc = new CRC32();
+            crc.update(map.slice(0, (int) size - 8));
+            if (crc.getValue() != map.getLong((int) size - 8)) return Optional.empty();
+
+            if (map.getInt() != MAGIC || map.getInt() != VERSION) return Optional.empty();
+            int n = map.getInt();
+            long maxItemId = map.getLong();
+            long highWater = map.getLong();
+            long createdAt = map.getLong();
+
+            long[] ids = new long[n];
+            long[] categoryIds = new long[n];
+            long[] supplierIds = new long[n];
+            double[] purchasePrices = new double[n];
+            double[] salePrices = new double[n];
+            int[] reorderLevels = new int[n];
+            long[] versions = new long[n];
+            int[] quantities = new int[n];
+            int[] skuOrder = new int[n];
+            readLongs(map, ids);
+            readLongs(map, categoryIds);
+            readLongs(map, supplierIds);
+            readDoubles(map, purchasePrices);
+            readDoubles(map, salePrices);
+            readInts(map, reorderLevels);
+            readLongs(map, versions);
+            readInts(map, quantities);
+            readInts(map, skuOrder);
+
+            ItemColumns items = new ItemColumns(n);
+            for (int i = 0; i < n; i++) {
+                String name = readString(map);
+                String sku = readString(map);
+                items.add(ids[i], name, sku, categoryIds[i], supplierIds[i],
+                        purchasePrices[i], salePrices[i], reorderLevels[i], versions[i]);
+            }
+            return Optional.of(new InventorySnapshot(items, quantities, skuOrder, maxItemId, highWater, createdAt));
+        } catch (IOException | RuntimeException e) {
+            // unreadable or truncated snapshot: the caller falls back to a cold load
+            return Optional.empty();
+        }
+    }
+
+    private static void readLongs(ByteBuffer buf, long[] dst) {
+        buf.asLongBuffer().get(dst);
+        buf.position(buf.position() + dst.length * 8);
+    }
+
+    private static void readDoubles(ByteBuffer buf, double[] dst) {
+        buf.asDoubleBuffer().get(dst);
+        buf.position(buf.position() + dst.length * 8);
+    }
+
+    private static void readInts(ByteBuffer buf, int[] dst) {
+        buf.asIntBuffer().get(dst);
+        buf.position(buf.position() + dst.length * 4);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = buf.getInt();
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
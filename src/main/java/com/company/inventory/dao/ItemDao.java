@@ -1,15 +1,47 @@
 package com.company.inventory.dao;
 
 import com.company.inventory.model.Item;
+import com.company.inventory.model.ItemPatch;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface ItemDao {
     Item create(Item item) ;
+
+    /**
+     * Inserts several items in one batch. Returns them with generated ids, in input order.
+     */
+    List<Item> createAll(List<Item> items);
+    /**
+     * Writes all fields if the stored version still equals {@code item.getVersion()}.
+     * Returns the item with its new version.
+     *
+     * @throws OptimisticLockException when the item was changed since it was read
+     */
     Item update(Item item) ;
+
+    /**
+     * Writes only the fields in the patch, if the stored version still equals {@code expectedVersion}.
+     * Returns the updated item.
+     *
+     * @throws OptimisticLockException when the item was changed since it was read
+     */
+    Item patch(Long id, long expectedVersion, ItemPatch patch);
     Optional<Item> findById(Long id) ;
     Optional<Item> findBySku(String sku) ;
     List<Item> search(String query);
 
+    /**
+     * Resolves many SKUs at once. SKUs that do not exist are absent from the map.
+     */
+    Map<String, Item> findBySkus(Collection<String> skus);
+
+    /**
+     * Loads many items at once, keyed by id. Ids that do not exist are absent from the map.
+     */
+    Map<Long, Item> findByIds(Collection<Long> ids);
+
 }
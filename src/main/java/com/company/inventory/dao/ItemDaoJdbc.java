@@ -2,11 +2,16 @@ package com.company.inventory.dao;
 
 import com.company.inventory.config.DbConnectionManager;
 import com.company.inventory.model.Item;
+import com.company.inventory.model.ItemColumns;
+import com.company.inventory.model.ItemPatch;
 import com.company.inventory.model.Sku;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class ItemDaoJdbc implements ItemDao {
@@ -15,13 +20,22 @@ public class ItemDaoJdbc implements ItemDao {
             "INSERT INTO item (name, sku, category_id, supplier_id, purchase_price, sale_price, reorder_level) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
 
+    // compare-and-set on version: fails when the row changed since the caller read it
     private static final String UPDATE_SQL =
-            "UPDATE item SET name=?, sku=?, category_id=?, supplier_id=?, purchase_price=?, sale_price=?, reorder_level=? WHERE id=?";
+            "UPDATE item SET name=?, sku=?, category_id=?, supplier_id=?, purchase_price=?, sale_price=?, reorder_level=?, version=version+1 " +
+                    "WHERE id=? AND version=?";
+    private static final String SELECT_VERSION = "SELECT version FROM item WHERE id = ?";
+    // what the category stock totals and the price history depend on, read before the update in the same transaction
+    private static final String LOCK_TOTALS_COLUMNS = "SELECT category_id, purchase_price, sale_price FROM item WHERE id = ? FOR UPDATE";
 
     private static final String SELECT_BY_ID = "SELECT * FROM item WHERE id = ?";
     private static final String SELECT_BY_SKU = "SELECT * FROM item WHERE sku = ?";
     private static final String SEARCH_SQL =
             "SELECT * FROM item WHERE LOWER(name) LIKE ? OR LOWER(sku) LIKE ? LIMIT 100";
+    private static final String SELECT_ALL_COLUMNS =
+            "SELECT id, name, sku, category_id, supplier_id, purchase_price, sale_price, reorder_level, version FROM item ORDER BY id";
+
+    private final TransactionTemplate tx = TransactionTemplate.defaults();
 
     @Override
     public Item create(Item item) {
@@ -30,6 +44,7 @@ public class ItemDaoJdbc implements ItemDao {
 
             bindInsert(ps, item);
             ps.executeUpdate();
+            DbConnectionManager.markWrite();
 
             try (ResultSet rs = ps.getGeneratedKeys()) {
                 if (rs.next()) {
@@ -53,36 +68,135 @@ public class ItemDaoJdbc implements ItemDao {
         }
     }
 
+    @Override
+    public List<Item> createAll(List<Item> items) {
+        if (items.isEmpty()) return List.of();
+        List<Item> created = tx.execute("Failed to create items", c -> {
+            try (PreparedStatement ps = c.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Item item : items) {
+                    bindInsert(ps, item);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Item> res = new ArrayList<>(items.size());
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    for (Item item : items) {
+                        if (!rs.next()) throw new DataAccessException("Failed to retrieve generated ids for item batch");
+                        res.add(new Item(rs.getLong(1), item.getName(), item.getSku(), item.getCategoryId(),
+                                item.getSupplierId(), item.getPurchasePrice(), item.getSalePrice(), item.getReorderLevel()));
+                    }
+                }
+                return res;
+            }
+        });
+        DbConnectionManager.markWrite();
+        return created;
+    }
+
     @Override
     public Item update(Item item) {
-        try (Connection c = DbConnectionManager.getConnection();
-             PreparedStatement ps = c.prepareStatement(UPDATE_SQL)) {
+        Item updated = tx.execute("Failed to update item " + item.getId(), c -> {
+            TotalsColumns before = lockTotalsColumns(c, item.getId());
+            try (PreparedStatement ps = c.prepareStatement(UPDATE_SQL)) {
+                bindUpdate(ps, item);
+                if (ps.executeUpdate() == 0) throw conflictOrMissing(c, item.getId(), item.getVersion());
+            }
+            CategoryDaoJdbc.moveItemTx(c, item.getId(), before.categoryId(), before.purchasePrice(),
+                    item.getCategoryId(), item.getPurchasePrice());
+            PriceHistoryDaoJdbc.recordTx(c, item.getId(), before.purchasePrice(), before.salePrice(),
+                    item.getPurchasePrice(), item.getSalePrice(), "item edit");
+            return new Item(item.getId(), item.getName(), item.getSku(), item.getCategoryId(), item.getSupplierId(),
+                    item.getPurchasePrice(), item.getSalePrice(), item.getReorderLevel(), item.getVersion() + 1);
+        });
+        DbConnectionManager.markWrite();
+        return updated;
+    }
 
-            ps.setString(1, item.getName());
-            ps.setString(2, item.getSku().value());
+    private static void bindUpdate(PreparedStatement ps, Item item) throws SQLException {
+        ps.setString(1, item.getName());
+        ps.setString(2, item.getSku().value());
 
-            if (item.getCategoryId() == null)
-                ps.setNull(3, Types.BIGINT);
-            else
-                ps.setLong(3, item.getCategoryId());
+        if (item.getCategoryId() == null)
+            ps.setNull(3, Types.BIGINT);
+        else
+            ps.setLong(3, item.getCategoryId());
 
-            if (item.getSupplierId() == null)
-                ps.setNull(4, Types.BIGINT);
-            else
-                ps.setLong(4, item.getSupplierId());
+        if (item.getSupplierId() == null)
+            ps.setNull(4, Types.BIGINT);
+        else
+            ps.setLong(4, item.getSupplierId());
 
-            ps.setDouble(5, item.getPurchasePrice());
-            ps.setDouble(6, item.getSalePrice());
-            ps.setInt(7, item.getReorderLevel());
-            ps.setLong(8, item.getId());
+        ps.setDouble(5, item.getPurchasePrice());
+        ps.setDouble(6, item.getSalePrice());
+        ps.setInt(7, item.getReorderLevel());
+        ps.setLong(8, item.getId());
+        ps.setLong(9, item.getVersion());
+    }
 
-            int updated = ps.executeUpdate();
-            if (updated == 0) throw new DataAccessException("No item updated with id " + item.getId());
+    @Override
+    public Item patch(Long id, long expectedVersion, ItemPatch patch) {
+        if (patch.isEmpty()) {
+            return findById(id).orElseThrow(() -> new DataAccessException("No item with id " + id));
+        }
+        StringBuilder sql = new StringBuilder("UPDATE item SET ");
+        for (ItemPatch.Field field : patch.getChanges().keySet()) sql.append(field.column()).append("=?, ");
+        sql.append("version=version+1 WHERE id=? AND version=?");
+
+        Item patched = tx.execute("Failed to update item " + id, c -> {
+            TotalsColumns before = lockTotalsColumns(c, id);
+            try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                int i = 1;
+                for (Map.Entry<ItemPatch.Field, Object> e : patch.getChanges().entrySet()) {
+                    Object value = e.getValue();
+                    if (value == null) ps.setNull(i++, Types.BIGINT); // only the id fields can be cleared
+                    else if (value instanceof Sku sku) ps.setString(i++, sku.value());
+                    else ps.setObject(i++, value);
+                }
+                ps.setLong(i++, id);
+                ps.setLong(i, expectedVersion);
+                if (ps.executeUpdate() == 0) throw conflictOrMissing(c, id, expectedVersion);
+            }
+            Item after;
+            try (PreparedStatement ps = c.prepareStatement(SELECT_BY_ID)) {
+                ps.setLong(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) throw new DataAccessException("No item with id " + id);
+                    after = new ItemRowMapper(rs).map(rs);
+                }
+            }
+            CategoryDaoJdbc.moveItemTx(c, id, before.categoryId(), before.purchasePrice(),
+                    after.getCategoryId(), after.getPurchasePrice());
+            PriceHistoryDaoJdbc.recordTx(c, id, before.purchasePrice(), before.salePrice(),
+                    after.getPurchasePrice(), after.getSalePrice(), "item edit");
+            return after;
+        });
+        DbConnectionManager.markWrite();
+        return patched;
+    }
 
-            return item;
+    private record TotalsColumns(Long categoryId, double purchasePrice, double salePrice) {}
 
-        } catch (SQLException e) {
-            throw new DataAccessException(e);
+    private static TotalsColumns lockTotalsColumns(Connection c, Long id) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(LOCK_TOTALS_COLUMNS)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new DataAccessException("No item updated with id " + id);
+                long category = rs.getLong(1);
+                Long categoryId = rs.wasNull() ? null : category;
+                return new TotalsColumns(categoryId, rs.getDouble(2), rs.getDouble(3));
+            }
+        }
+    }
+
+    private static DataAccessException conflictOrMissing(Connection c, Long id, long expectedVersion) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(SELECT_VERSION)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return new DataAccessException("No item updated with id " + id);
+                return new OptimisticLockException("Item " + id + " was changed by someone else (expected version "
+                        + expectedVersion + ", current " + rs.getLong(1) + ")", expectedVersion);
+            }
         }
     }
 
@@ -94,7 +208,7 @@ public class ItemDaoJdbc implements ItemDao {
             ps.setLong(1, id);
 
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return Optional.of(mapRow(rs));
+                if (rs.next()) return Optional.of(new ItemRowMapper(rs).map(rs));
                 return Optional.empty();
             }
 
@@ -105,13 +219,13 @@ public class ItemDaoJdbc implements ItemDao {
 
     @Override
     public Optional<Item> findBySku(String sku) {
-        try (Connection c = DbConnectionManager.getConnection();
+        try (Connection c = DbConnectionManager.getReadConnection();
              PreparedStatement ps = c.prepareStatement(SELECT_BY_SKU)) {
 
             ps.setString(1, sku);
 
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return Optional.of(mapRow(rs));
+                if (rs.next()) return Optional.of(new ItemRowMapper(rs).map(rs));
                 return Optional.empty();
             }
 
@@ -122,7 +236,7 @@ public class ItemDaoJdbc implements ItemDao {
 
     @Override
     public List<Item> search(String query) {
-        try (Connection c = DbConnectionManager.getConnection();
+        try (Connection c = DbConnectionManager.getReadConnection();
              PreparedStatement ps = c.prepareStatement(SEARCH_SQL)) {
 
             String like = "%" + query.toLowerCase() + "%";
@@ -131,7 +245,8 @@ public class ItemDaoJdbc implements ItemDao {
 
             try (ResultSet rs = ps.executeQuery()) {
                 List<Item> items = new ArrayList<>();
-                while (rs.next()) items.add(mapRow(rs));
+                ItemRowMapper mapper = new ItemRowMapper(rs);
+                while (rs.next()) items.add(mapper.map(rs));
                 return items;
             }
 
@@ -140,6 +255,79 @@ public class ItemDaoJdbc implements ItemDao {
         }
     }
 
+    @Override
+    public Map<String, Item> findBySkus(Collection<String> skus) {
+        Map<String, Item> result = new HashMap<>(Math.max(16, skus.size() * 2));
+        if (skus.isEmpty()) return result;
+        try (Connection c = DbConnectionManager.getReadConnection()) {
+            for (List<String> chunk : InClause.chunks(skus)) {
+                String sql = "SELECT * FROM item WHERE sku IN (" + InClause.placeholders(chunk.size()) + ")";
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) ps.setString(i + 1, chunk.get(i));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        ItemRowMapper mapper = new ItemRowMapper(rs);
+                        while (rs.next()) {
+                            Item item = mapper.map(rs);
+                            result.put(item.getSku().value(), item);
+                        }
+                    }
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    @Override
+    public Map<Long, Item> findByIds(Collection<Long> ids) {
+        Map<Long, Item> result = new HashMap<>(Math.max(16, ids.size() * 2));
+        if (ids.isEmpty()) return result;
+        try (Connection c = DbConnectionManager.getReadConnection()) {
+            for (List<Long> chunk : InClause.chunks(ids)) {
+                String sql = "SELECT * FROM item WHERE id IN (" + InClause.placeholders(chunk.size()) + ")";
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) ps.setLong(i + 1, chunk.get(i));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        ItemRowMapper mapper = new ItemRowMapper(rs);
+                        while (rs.next()) {
+                            Item item = mapper.map(rs);
+                            result.put(item.getId(), item);
+                        }
+                    }
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    /**
+     * Loads the whole catalog into a column container, ordered by id.
+     * Meant for bulk work (reports, exports, cache warm-up) where a List of Item would be too heavy.
+     */
+    public ItemColumns loadAllColumns() {
+        try (Connection c = DbConnectionManager.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_ALL_COLUMNS)) {
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+                ItemColumns cols = new ItemColumns();
+                while (rs.next()) {
+                    long categoryId = rs.getLong(4);
+                    if (rs.wasNull()) categoryId = ItemColumns.NO_ID;
+                    long supplierId = rs.getLong(5);
+                    if (rs.wasNull()) supplierId = ItemColumns.NO_ID;
+                    cols.add(rs.getLong(1), rs.getString(2), rs.getString(3), categoryId, supplierId,
+                            rs.getDouble(6), rs.getDouble(7), rs.getInt(8), rs.getLong(9));
+                }
+                return cols;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
     private void bindInsert(PreparedStatement ps, Item item) throws SQLException {
         ps.setString(1, item.getName());
         ps.setString(2, item.getSku().value());
@@ -158,25 +346,4 @@ public class ItemDaoJdbc implements ItemDao {
         ps.setDouble(6, item.getSalePrice());
         ps.setInt(7, item.getReorderLevel());
     }
-
-    private Item mapRow(ResultSet rs) throws SQLException {
-        Long id = rs.getLong("id");
-        String name = rs.getString("name");
-        Sku sku = new Sku(rs.getString("sku"));
-
-        Long categoryId = (rs.getObject("category_id") == null)
-                ? null
-                : rs.getLong("category_id");
-
-        Long supplierId = (rs.getObject("supplier_id") == null)
-                ? null
-                : rs.getLong("supplier_id");
-
-        double purchasePrice = rs.getDouble("purchase_price");
-        double salePrice = rs.getDouble("sale_price");
-
-        int reorder = rs.getInt("reorder_level");
-
-        return new Item(id, name, sku, categoryId, supplierId, purchasePrice, salePrice, reorder);
-    }
 }
@@ -0,0 +1,53 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.model.Item;
+import com.company.inventory.model.Sku;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps item rows by column index. Indexes are looked up once per ResultSet
+ * instead of by name on every row, and nullable ids are read with a single getLong + wasNull.
+ */
+final class ItemRowMapper {
+
+    private final int id;
+    private final int name;
+    private final int sku;
+    private final int categoryId;
+    private final int supplierId;
+    private final int purchasePrice;
+    private final int salePrice;
+    private final int reorderLevel;
+    private final int version;
+
+    ItemRowMapper(ResultSet rs) throws SQLException {
+        this.id = rs.findColumn("id");
+        this.name = rs.findColumn("name");
+        this.sku = rs.findColumn("sku");
+        this.categoryId = rs.findColumn("category_id");
+        this.supplierId = rs.findColumn("supplier_id");
+        this.purchasePrice = rs.findColumn("purchase_price");
+        this.salePrice = rs.findColumn("sale_price");
+        this.reorderLevel = rs.findColumn("reorder_level");
+        this.version = rs.findColumn("version");
+    }
+
+    Item map(ResultSet rs) throws SQLException {
+        long cat = rs.getLong(categoryId);
+        Long category = rs.wasNull() ? null : cat;
+        long sup = rs.getLong(supplierId);
+        Long supplier = rs.wasNull() ? null : sup;
+
+        return new Item(rs.getLong(id),
+                rs.getString(name),
+                new Sku(rs.getString(sku)),
+                category,
+                supplier,
+                rs.getDouble(purchasePrice),
+                rs.getDouble(salePrice),
+                rs.getInt(reorderLevel),
+                rs.getLong(version));
+    }
+}
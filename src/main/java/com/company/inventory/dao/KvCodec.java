@@ -0,0 +1,155 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.model.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Keys and binary values of the records the key-value DAOs keep in a {@link LogStore}.
+ * <p>
+ * Ids in keys are zero-padded to a fixed width, so the store's key order is id order:
+ * {@code item/<id>}, {@code sku/<sku>}, {@code stock/<itemId>}, {@code move/<itemId>/<id>},
+ * and {@code seq/<name>} for the last id handed out per table.
+ */
+final class KvCodec {
+
+    static final String ITEM = "item/";
+    static final String SKU = "sku/";
+    static final String STOCK = "stock/";
+    static final String MOVE = "move/";
+    static final String ITEM_SEQ = "seq/item";
+    static final String MOVE_SEQ = "seq/move";
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private KvCodec() {}
+
+    static String key(String prefix, long id) {
+        String digits = Long.toString(id);
+        StringBuilder sb = new StringBuilder(prefix.length() + 19).append(prefix);
+        for (int i = digits.length(); i < 19; i++) sb.append('0');
+        return sb.append(digits).toString();
+    }
+
+    static String moveKey(long itemId, long movementId) {
+        return key(key(MOVE, itemId) + "/", movementId);
+    }
+
+    static String movePrefix(long itemId) {
+        return key(MOVE, itemId) + "/";
+    }
+
+    /** Next id of a sequence, written back through the same transaction. */
+    static long nextId(LogStore.Txn txn, String seqKey) {
+        byte[] last = txn.get(seqKey);
+        long id = (last == null ? 0 : ByteBuffer.wrap(last).getLong()) + 1;
+        txn.put(seqKey, ByteBuffer.allocate(8).putLong(id).array());
+        return id;
+    }
+
+    static byte[] encodeId(long id) {
+        return ByteBuffer.allocate(8).putLong(id).array();
+    }
+
+    static long decodeId(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    static byte[] encodeItem(Item item) {
+        byte[] name = utf8(item.getName());
+        byte[] sku = utf8(item.getSku() == null ? null : item.getSku().value());
+        ByteBuffer b = ByteBuffer.allocate(8 + sized(name) + sized(sku) + 8 + 8 + 8 + 8 + 4 + 8);
+        b.putLong(item.getId());
+        putBytes(b, name);
+        putBytes(b, sku);
+        b.putLong(item.getCategoryId() == null ? NONE : item.getCategoryId());
+        b.putLong(item.getSupplierId() == null ? NONE : item.getSupplierId());
+        b.putDouble(item.getPurchasePrice() == null ? Double.NaN : item.getPurchasePrice());
+        b.putDouble(item.getSalePrice() == null ? Double.NaN : item.getSalePrice());
+        b.putInt(item.getReorderLevel() == null ? 0 : item.getReorderLevel());
+        b.putLong(item.getVersion());
+        return b.array();
+    }
+
+    static Item decodeItem(byte[] bytes) {
+        ByteBuffer b = ByteBuffer.wrap(bytes);
+        long id = b.getLong();
+        String name = getString(b);
+        String sku = getString(b);
+        long category = b.getLong();
+        long supplier = b.getLong();
+        double purchase = b.getDouble();
+        double sale = b.getDouble();
+        int reorder = b.getInt();
+        long version = b.getLong();
+        return new Item(id, name, sku == null ? null : new Sku(sku),
+                category == NONE ? null : category, supplier == NONE ? null : supplier,
+                Double.isNaN(purchase) ? null : purchase, Double.isNaN(sale) ? null : sale, reorder, version);
+    }
+
+    static byte[] encodeQuantity(int quantity) {
+        return ByteBuffer.allocate(4).putInt(quantity).array();
+    }
+
+    static int decodeQuantity(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+
+    static byte[] encodeMovement(long id, StockMovement m) {
+        byte[] reason = utf8(m.getReason());
+        ByteBuffer b = ByteBuffer.allocate(8 + 8 + 4 + 1 + sized(reason) + 8 + 4 + 8);
+        b.putLong(id);
+        b.putLong(m.getItemId());
+        b.putInt(m.getQty());
+        b.put((byte) m.getType().ordinal());
+        putBytes(b, reason);
+        b.putLong(m.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+        b.putInt(m.getTimestamp().getNano());
+        b.putLong(m.getLotId() == null ? NONE : m.getLotId());
+        return b.array();
+    }
+
+    static StockMovement decodeMovement(byte[] bytes) {
+        ByteBuffer b = ByteBuffer.wrap(bytes);
+        long id = b.getLong();
+        long itemId = b.getLong();
+        int qty = b.getInt();
+        MovementType type = MovementType.values()[b.get()];
+        String reason = getString(b);
+        LocalDateTime ts = LocalDateTime.ofEpochSecond(b.getLong(), b.getInt(), ZoneOffset.UTC);
+        long lot = b.getLong();
+        Long lotId = lot == NONE ? null : lot;
+        return type == MovementType.IN
+                ? new StockInMovement(id, itemId, qty, reason, ts, lotId)
+                : new StockOutMovement(id, itemId, qty, reason, ts, lotId);
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int sized(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    // null is stored as length -1
+    private static void putBytes(ByteBuffer b, byte[] bytes) {
+        if (bytes == null) {
+            b.putInt(-1);
+        } else {
+            b.putInt(bytes.length);
+            b.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer b) {
+        int len = b.getInt();
+        if (len < 0) return null;
+        byte[] bytes = new byte[len];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,133 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.model.Item;
+import com.company.inventory.model.ItemPatch;
+
+import java.util.*;
+
+/**
+ * {@link ItemDao} on the embedded {@link LogStore}. Items are stored by id with a second
+ * key per SKU pointing at the id; both are written in one record so they never disagree.
+ * Search scans all items, which is fine for the catalog size of a single store.
+ */
+public class KvItemDao implements ItemDao {
+
+    private static final int SEARCH_LIMIT = 100;
+
+    private final LogStore store;
+
+    public KvItemDao(LogStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public Item create(Item item) {
+        return store.atomically(txn -> insert(txn, item));
+    }
+
+    @Override
+    public List<Item> createAll(List<Item> items) {
+        if (items.isEmpty()) return List.of();
+        return store.atomically(txn -> {
+            List<Item> created = new ArrayList<>(items.size());
+            for (Item item : items) created.add(insert(txn, item));
+            return created;
+        });
+    }
+
+    private static Item insert(LogStore.Txn txn, Item item) {
+        if (item.getSku() == null) throw new DataAccessException("Item has no SKU");
+        String skuKey = KvCodec.SKU + item.getSku().value();
+        if (txn.get(skuKey) != null) throw new DataAccessException("Duplicate SKU: " + item.getSku().value());
+        long id = KvCodec.nextId(txn, KvCodec.ITEM_SEQ);
+        Item created = new Item(id, item.getName(), item.getSku(), item.getCategoryId(), item.getSupplierId(),
+                item.getPurchasePrice(), item.getSalePrice(), item.getReorderLevel());
+        txn.put(KvCodec.key(KvCodec.ITEM, id), KvCodec.encodeItem(created));
+        txn.put(skuKey, KvCodec.encodeId(id));
+        return created;
+    }
+
+    @Override
+    public Item update(Item item) {
+        return store.atomically(txn -> {
+            Item current = current(txn, item.getId(), item.getVersion());
+            Item updated = new Item(item.getId(), item.getName(), item.getSku(), item.getCategoryId(), item.getSupplierId(),
+                    item.getPurchasePrice(), item.getSalePrice(), item.getReorderLevel(), current.getVersion() + 1);
+            write(txn, current, updated);
+            return updated;
+        });
+    }
+
+    @Override
+    public Item patch(Long id, long expectedVersion, ItemPatch patch) {
+        if (patch.isEmpty()) return findById(id).orElseThrow(() -> new DataAccessException("No item with id " + id));
+        return store.atomically(txn -> {
+            Item current = current(txn, id, expectedVersion);
+            Item updated = patch.applyTo(current, current.getVersion() + 1);
+            write(txn, current, updated);
+            return updated;
+        });
+    }
+
+    // same failures as the JDBC compare-and-set: missing row, or a version that moved on
+    private static Item current(LogStore.Txn txn, Long id, long expectedVersion) {
+        byte[] bytes = txn.get(KvCodec.key(KvCodec.ITEM, id));
+        if (bytes == null) throw new DataAccessException("No item updated with id " + id);
+        Item current = KvCodec.decodeItem(bytes);
+        if (current.getVersion() != expectedVersion) {
+            throw new OptimisticLockException("Item " + id + " was changed by someone else (expected version "
+                    + expectedVersion + ", current " + current.getVersion() + ")", expectedVersion);
+        }
+        return current;
+    }
+
+    private static void write(LogStore.Txn txn, Item current, Item updated) {
+        String oldSku = current.getSku().value();
+        String newSku = updated.getSku().value();
+        if (!oldSku.equals(newSku)) {
+            if (txn.get(KvCodec.SKU + newSku) != null) throw new DataAccessException("Duplicate SKU: " + newSku);
+            txn.delete(KvCodec.SKU + oldSku);
+            txn.put(KvCodec.SKU + newSku, KvCodec.encodeId(updated.getId()));
+        }
+        txn.put(KvCodec.key(KvCodec.ITEM, updated.getId()), KvCodec.encodeItem(updated));
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        byte[] bytes = store.get(KvCodec.key(KvCodec.ITEM, id));
+        return bytes == null ? Optional.empty() : Optional.of(KvCodec.decodeItem(bytes));
+    }
+
+    @Override
+    public Optional<Item> findBySku(String sku) {
+        byte[] id = store.get(KvCodec.SKU + sku);
+        return id == null ? Optional.empty() : findById(KvCodec.decodeId(id));
+    }
+
+    @Override
+    public List<Item> search(String query) {
+        String q = query.toLowerCase();
+        List<Item> res = new ArrayList<>();
+        store.scan(KvCodec.ITEM, (key, bytes) -> {
+            if (res.size() >= SEARCH_LIMIT) return;
+            Item item = KvCodec.decodeItem(bytes);
+            String name = item.getName() == null ? "" : item.getName().toLowerCase();
+            if (name.contains(q) || item.getSku().value().toLowerCase().contains(q)) res.add(item);
+        });
+        return res;
+    }
+
+    @Override
+    public Map<String, Item> findBySkus(Collection<String> skus) {
+        Map<String, Item> res = new HashMap<>(Math.max(16, skus.size() * 2));
+        for (String sku : skus) findBySku(sku).ifPresent(item -> res.put(sku, item));
+        return res;
+    }
+
+    @Override
+    public Map<Long, Item> findByIds(Collection<Long> ids) {
+        Map<Long, Item> res = new HashMap<>(Math.max(16, ids.size() * 2));
+        for (Long id : ids) findById(id).ifPresent(item -> res.put(id, item));
+        return res;
+    }
+}
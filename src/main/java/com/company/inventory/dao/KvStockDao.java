@@ -0,0 +1,67 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.model.*;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * {@link StockDao} on the embedded {@link LogStore}, keyed by item id.
+ * <p>
+ * {@link #adjust} is the key-value counterpart of the service's stock transactions: the
+ * quantity check, the new quantity and the movement are one atomic write.
+ */
+public class KvStockDao implements StockDao {
+
+    private final LogStore store;
+
+    public KvStockDao(LogStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public Stock upsertStock(Stock stock) {
+        store.put(KvCodec.key(KvCodec.STOCK, stock.getItemId()), KvCodec.encodeQuantity(stock.getQuantity()));
+        return stock;
+    }
+
+    @Override
+    public Optional<Stock> getStock(Long itemId) {
+        byte[] bytes = store.get(KvCodec.key(KvCodec.STOCK, itemId));
+        return bytes == null ? Optional.empty() : Optional.of(new Stock(itemId, KvCodec.decodeQuantity(bytes)));
+    }
+
+    @Override
+    public Map<Long, Stock> getStocks(Collection<Long> itemIds) {
+        Map<Long, Stock> res = new HashMap<>(Math.max(16, itemIds.size() * 2));
+        for (Long itemId : itemIds) getStock(itemId).ifPresent(s -> res.put(itemId, s));
+        return res;
+    }
+
+    /**
+     * Adds {@code delta} (negative to take stock out) to the item's quantity and records the
+     * movement. Throws IllegalStateException, and writes nothing, if the result would be negative.
+     */
+    public Stock adjust(Long itemId, int delta, String reason) {
+        if (delta == 0) throw new IllegalArgumentException("delta must not be 0");
+        int quantity = store.atomically(txn -> {
+            if (txn.get(KvCodec.key(KvCodec.ITEM, itemId)) == null) {
+                throw new DataAccessException("No item with id " + itemId);
+            }
+            String key = KvCodec.key(KvCodec.STOCK, itemId);
+            byte[] bytes = txn.get(key);
+            int current = bytes == null ? 0 : KvCodec.decodeQuantity(bytes);
+            int newQty = Math.addExact(current, delta);
+            if (newQty < 0) {
+                throw new IllegalStateException("Insufficient stock: current=" + current + ", requested=" + -delta);
+            }
+            txn.put(key, KvCodec.encodeQuantity(newQty));
+            LocalDateTime now = LocalDateTime.now();
+            KvStockMovementDao.append(txn, delta > 0
+                    ? new StockInMovement(null, itemId, delta, reason, now)
+                    : new StockOutMovement(null, itemId, -delta, reason, now));
+            return newQty;
+        });
+        return new Stock(itemId, quantity);
+    }
+}
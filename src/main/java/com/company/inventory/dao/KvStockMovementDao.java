@@ -0,0 +1,46 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.model.StockMovement;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@link StockMovementDao} on the embedded {@link LogStore}. Movements are keyed by item and
+ * then by id, so listing the movements of an item is a prefix scan.
+ */
+public class KvStockMovementDao implements StockMovementDao {
+
+    private static final Comparator<StockMovement> NEWEST_FIRST =
+            Comparator.comparing(StockMovement::getTimestamp).thenComparing(StockMovement::getId).reversed();
+
+    private final LogStore store;
+
+    public KvStockMovementDao(LogStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void recordMovement(StockMovement movement) {
+        store.atomically(txn -> {
+            append(txn, movement);
+            return null;
+        });
+    }
+
+    /** Writes the movement with the next movement id as part of a larger write. */
+    static long append(LogStore.Txn txn, StockMovement movement) {
+        long id = KvCodec.nextId(txn, KvCodec.MOVE_SEQ);
+        txn.put(KvCodec.moveKey(movement.getItemId(), id), KvCodec.encodeMovement(id, movement));
+        return id;
+    }
+
+    @Override
+    public List<StockMovement> listByItem(Long itemId) {
+        List<StockMovement> res = new ArrayList<>();
+        store.scan(KvCodec.movePrefix(itemId), (key, bytes) -> res.add(KvCodec.decodeMovement(bytes)));
+        res.sort(NEWEST_FIRST);
+        return res;
+    }
+}
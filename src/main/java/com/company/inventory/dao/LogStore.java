@@ -0,0 +1,512 @@
+package com.company.inventory.dao;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * Embedded key-value store on an append-only log, for installations without a database server.
+ * <p>
+ * Data lives in segment files of a fixed size that are memory-mapped; writes append to the
+ * newest segment and a new one is started when it is full. Every write is one record
+ * {@code [crc int][bodyLength int][count int][seq long]} followed by {@code count} entries
+ * {@code [keyLength int][valueLength int][key][value]} (value length -1 is a delete), so a
+ * multi-key write is applied completely or not at all. A sorted in-memory index maps each key
+ * to the position of its latest value; it is rebuilt by scanning the segments on open, where a
+ * record with a bad checksum marks the end of the log (a write torn by a crash), and the rest of
+ * that segment is zeroed so that nothing after it can be mistaken for a record later.
+ * <p>
+ * Overwritten values stay in the log until compaction, which runs in the background when more
+ * than half of the sealed bytes are dead: it copies the live entries of all sealed segments into
+ * new segments and deletes the old files. Copies keep their original sequence number, so on
+ * recovery the newest version of a key wins no matter which file it is in.
+ * <p>
+ * Reads run in parallel; writes and the final step of a compaction are exclusive. Without
+ * {@code sync} the log is flushed to disk only when a segment is sealed and on close, so a
+ * process crash loses nothing but a power failure may lose the most recent writes.
+ */
+public final class LogStore implements AutoCloseable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER = 4 + 4 + 4 + 8;
+    private static final int ENTRY_HEADER = 4 + 4;
+    private static final int TOMBSTONE = -1;
+
+    /** Where the latest value of a key lives; length -1 is a delete (only seen during recovery). */
+    private record Location(Segment segment, int offset, int length, long seq) {}
+
+    private static final class Segment {
+        final long id;
+        final Path file;
+        final FileChannel channel;
+        final MappedByteBuffer map;
+        int writePos;
+        long deadBytes;
+
+        Segment(long id, Path file, FileChannel channel, MappedByteBuffer map) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.map = map;
+        }
+
+        int capacity() { return map.capacity(); }
+    }
+
+    /** Reads and buffered writes of one {@link #atomically} call. */
+    public interface Txn {
+        byte[] get(String key);
+        void put(String key, byte[] value);
+        void delete(String key);
+    }
+
+    private final Path dir;
+    private final int segmentSize;
+    private final boolean sync;
+    private final ConcurrentSkipListMap<String, Location> index = new ConcurrentSkipListMap<>();
+    private final NavigableMap<Long, Segment> segments = new TreeMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService compactor;
+    private Segment active;
+    private long nextSegmentId;
+    private long seq;
+    private boolean compacting;
+    private volatile boolean closed;
+
+    /**
+     * Opens (or creates) the store in {@code dir}.
+     *
+     * @param segmentSize     bytes per segment file; also the largest single write
+     * @param sync            force every write to disk before returning
+     * @param compactInterval how often to check whether compaction is worth it
+     */
+    public LogStore(Path dir, int segmentSize, boolean sync, Duration compactInterval) {
+        if (segmentSize < 4096) throw new IllegalArgumentException("segmentSize must be >= 4096");
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        try {
+            Files.createDirectories(dir);
+            recover();
+        } catch (IOException e) {
+            throw new DataAccessException("Failed to open key-value store in " + dir, e);
+        }
+        this.compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "kv-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        long ms = compactInterval.toMillis();
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                if (needsCompaction()) compact();
+            } catch (RuntimeException e) {
+                System.err.println("Key-value store compaction failed: " + e.getMessage());
+            }
+        }, ms, ms, TimeUnit.MILLISECONDS);
+    }
+
+    // ----------------------------
+    // Reads
+    // ----------------------------
+
+    public byte[] get(String key) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return read(index.get(key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Calls {@code consumer} for every key starting with {@code prefix}, in key order.
+     */
+    public void scan(String prefix, BiConsumer<String, byte[]> consumer) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (Map.Entry<String, Location> e : index.tailMap(prefix, true).entrySet()) {
+                if (!e.getKey().startsWith(prefix)) break;
+                consumer.accept(e.getKey(), read(e.getValue()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Last key starting with {@code prefix}, or null.
+     */
+    public String lastKey(String prefix) {
+        String key = index.lowerKey(prefix + Character.MAX_VALUE);
+        return key != null && key.startsWith(prefix) ? key : null;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private static byte[] read(Location loc) {
+        if (loc == null) return null;
+        byte[] value = new byte[loc.length()];
+        loc.segment().map.get(loc.offset(), value);
+        return value;
+    }
+
+    // ----------------------------
+    // Writes
+    // ----------------------------
+
+    public void put(String key, byte[] value) {
+        atomically(txn -> {
+            txn.put(key, value);
+            return null;
+        });
+    }
+
+    public void delete(String key) {
+        atomically(txn -> {
+            txn.delete(key);
+            return null;
+        });
+    }
+
+    /**
+     * Runs {@code work} with exclusive access and writes everything it put or deleted as one
+     * record. If it throws, nothing is written. Reads inside see the transaction's own writes.
+     */
+    public <T> T atomically(Function<Txn, T> work) {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            Map<String, byte[]> writes = new LinkedHashMap<>();
+            T result = work.apply(new Txn() {
+                @Override
+                public byte[] get(String key) {
+                    if (writes.containsKey(key)) return writes.get(key);
+                    return read(index.get(key));
+                }
+
+                @Override
+                public void put(String key, byte[] value) {
+                    writes.put(key, Objects.requireNonNull(value, "value"));
+                }
+
+                @Override
+                public void delete(String key) {
+                    writes.put(key, null);
+                }
+            });
+            if (!writes.isEmpty()) append(writes);
+            return result;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(Map<String, byte[]> writes) {
+        List<byte[]> keys = new ArrayList<>(writes.size());
+        int size = HEADER;
+        for (Map.Entry<String, byte[]> e : writes.entrySet()) {
+            byte[] k = e.getKey().getBytes(StandardCharsets.UTF_8);
+            keys.add(k);
+            size += ENTRY_HEADER + k.length + (e.getValue() == null ? 0 : e.getValue().length);
+        }
+        if (size > segmentSize) throw new DataAccessException("Write of " + size + " bytes exceeds the segment size");
+        if (active.writePos + size > active.capacity()) roll();
+
+        long recordSeq = ++seq;
+        Segment seg = active;
+        int start = seg.writePos;
+        int pos = start + HEADER;
+        int i = 0;
+        List<Location> locations = new ArrayList<>(writes.size());
+        for (byte[] value : writes.values()) {
+            byte[] k = keys.get(i++);
+            seg.map.putInt(pos, k.length);
+            seg.map.putInt(pos + 4, value == null ? TOMBSTONE : value.length);
+            seg.map.put(pos + ENTRY_HEADER, k);
+            pos += ENTRY_HEADER + k.length;
+            if (value != null) {
+                seg.map.put(pos, value);
+                locations.add(new Location(seg, pos, value.length, recordSeq));
+                pos += value.length;
+            } else {
+                locations.add(null);
+            }
+        }
+        writeHeader(seg, start, pos - start - HEADER, writes.size(), recordSeq);
+        seg.writePos = pos;
+        if (sync) seg.map.force();
+
+        i = 0;
+        for (String key : writes.keySet()) {
+            Location loc = locations.get(i++);
+            Location old = loc == null ? index.remove(key) : index.put(key, loc);
+            if (old != null) old.segment().deadBytes += entrySize(key, old.length());
+        }
+    }
+
+    private static void writeHeader(Segment seg, int start, int bodyLength, int count, long recordSeq) {
+        seg.map.putInt(start + 4, bodyLength);
+        seg.map.putInt(start + 8, count);
+        seg.map.putLong(start + 12, recordSeq);
+        // the checksum goes in last: until it matches, recovery treats the record as torn
+        seg.map.putInt(start, checksum(seg.map, start, bodyLength));
+    }
+
+    private static int checksum(MappedByteBuffer map, int start, int bodyLength) {
+        CRC32C crc = new CRC32C();
+        crc.update(map.slice(start + 4, HEADER - 4 + bodyLength));
+        return (int) crc.getValue();
+    }
+
+    private static long entrySize(String key, int valueLength) {
+        return ENTRY_HEADER + key.getBytes(StandardCharsets.UTF_8).length + Math.max(0, valueLength);
+    }
+
+    private void roll() {
+        active.map.force();
+        active = createSegment(segmentSize);
+    }
+
+    private Segment createSegment(int capacity) {
+        long id = nextSegmentId++;
+        Path file = dir.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(capacity);
+            }
+            Segment seg = open(id, file);
+            segments.put(id, seg);
+            return seg;
+        } catch (IOException e) {
+            throw new DataAccessException("Failed to create segment " + file, e);
+        }
+    }
+
+    private static Segment open(long id, Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(id, file, ch, ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size()));
+    }
+
+    // ----------------------------
+    // Recovery
+    // ----------------------------
+
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(id, open(id, file));
+            }
+        }
+        for (Segment seg : segments.values()) replay(seg);
+        // deletes were kept as locations while replaying so that older values could not resurface
+        index.values().removeIf(loc -> loc.length() == TOMBSTONE);
+        nextSegmentId = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        active = last != null && last.capacity() == segmentSize ? last : createSegment(segmentSize);
+    }
+
+    private void replay(Segment seg) {
+        MappedByteBuffer map = seg.map;
+        int pos = 0;
+        while (pos + HEADER <= seg.capacity()) {
+            int bodyLength = map.getInt(pos + 4);
+            if (bodyLength <= 0 || pos + HEADER + bodyLength > seg.capacity()) break;
+            if (map.getInt(pos) != checksum(map, pos, bodyLength)) break;
+            int count = map.getInt(pos + 8);
+            long recordSeq = map.getLong(pos + 12);
+            seq = Math.max(seq, recordSeq);
+            int p = pos + HEADER;
+            for (int i = 0; i < count; i++) {
+                int keyLength = map.getInt(p);
+                int valueLength = map.getInt(p + 4);
+                byte[] k = new byte[keyLength];
+                map.get(p + ENTRY_HEADER, k);
+                String key = new String(k, StandardCharsets.UTF_8);
+                p += ENTRY_HEADER + keyLength;
+                Location loc = new Location(seg, p, valueLength, recordSeq);
+                Location old = index.get(key);
+                if (old == null || old.seq() < recordSeq) {
+                    index.put(key, loc);
+                    if (old != null) old.segment().deadBytes += entrySize(key, old.length());
+                } else {
+                    seg.deadBytes += entrySize(key, valueLength);
+                }
+                p += Math.max(0, valueLength);
+            }
+            pos += HEADER + bodyLength;
+        }
+        seg.writePos = pos;
+        // Clear everything after the last good record. Pages of a mapped file can reach the disk
+        // in any order, so intact records may follow a torn one; left in place, they would be
+        // replayed on the next open once new appends had run past the torn bytes.
+        boolean cleared = false;
+        for (int i = pos; i < seg.capacity(); i++) {
+            if (map.get(i) != 0) {
+                map.put(i, (byte) 0);
+                cleared = true;
+            }
+        }
+        if (cleared) map.force();
+    }
+
+    // ----------------------------
+    // Compaction
+    // ----------------------------
+
+    private boolean needsCompaction() {
+        lock.readLock().lock();
+        try {
+            if (closed || compacting) return false;
+            long dead = 0, used = 0;
+            for (Segment seg : segments.values()) {
+                if (seg == active) continue;
+                dead += seg.deadBytes;
+                used += seg.writePos;
+            }
+            return used > 0 && dead * 2 > used;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the live entries of all sealed segments into new segments and deletes the old
+     * files. Writers are blocked only while the index is switched to the copies.
+     */
+    public void compact() {
+        List<Segment> sealed;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            if (compacting) return;
+            compacting = true;
+            // seal the active segment too, so that everything written so far can be compacted
+            if (active.writePos > 0) roll();
+            sealed = new ArrayList<>(segments.headMap(active.id, false).values());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            compactSegments(sealed);
+        } finally {
+            lock.writeLock().lock();
+            compacting = false;
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactSegments(List<Segment> sealed) {
+        if (sealed.isEmpty()) return;
+        Set<Segment> old = Collections.newSetFromMap(new IdentityHashMap<>());
+        old.addAll(sealed);
+
+        // sealed segments never change, so the live entries can be collected without the lock
+        List<Map.Entry<String, Location>> live = new ArrayList<>();
+        for (Map.Entry<String, Location> e : index.entrySet()) {
+            if (old.contains(e.getValue().segment())) live.add(Map.entry(e.getKey(), e.getValue()));
+        }
+
+        Map<Location, Location> moved = new IdentityHashMap<>();
+        List<Segment> outputs = new ArrayList<>();
+        Segment out = null;
+        for (Map.Entry<String, Location> e : live) {
+            byte[] k = e.getKey().getBytes(StandardCharsets.UTF_8);
+            Location from = e.getValue();
+            int size = HEADER + ENTRY_HEADER + k.length + from.length();
+            if (out == null || out.writePos + size > out.capacity()) {
+                lock.writeLock().lock(); // segment ids and the segment map belong to the writers
+                try {
+                    if (out != null) out.map.force();
+                    out = createSegment(segmentSize);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                outputs.add(out);
+            }
+            int start = out.writePos;
+            int p = start + HEADER;
+            out.map.putInt(p, k.length);
+            out.map.putInt(p + 4, from.length());
+            out.map.put(p + ENTRY_HEADER, k);
+            p += ENTRY_HEADER + k.length;
+            out.map.put(p, read(from));
+            writeHeader(out, start, p + from.length() - start - HEADER, 1, from.seq());
+            out.writePos = p + from.length();
+            moved.put(from, new Location(out, p, from.length(), from.seq()));
+        }
+        if (out != null) out.map.force();
+
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, Location> e : live) {
+                Location copy = moved.get(e.getValue());
+                // skip keys that were overwritten or deleted while copying
+                if (!index.replace(e.getKey(), e.getValue(), copy)) copy.segment().deadBytes += entrySize(e.getKey(), copy.length());
+            }
+            for (Segment seg : sealed) {
+                segments.remove(seg.id);
+                try {
+                    seg.channel.close();
+                    Files.deleteIfExists(seg.file);
+                } catch (IOException e) {
+                    // a leftover file is harmless: its entries are older than the copies
+                    System.err.println("Failed to delete compacted segment " + seg.file + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ----------------------------
+    // Lifecycle
+    // ----------------------------
+
+    private void checkOpen() {
+        if (closed) throw new DataAccessException("Key-value store is closed");
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+            for (Segment seg : segments.values()) {
+                try {
+                    seg.map.force();
+                    seg.channel.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close segment " + seg.file + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.model.MovementBatch;
+import com.company.inventory.model.MovementType;
+import com.company.inventory.model.StockInMovement;
+import com.company.inventory.model.StockMovement;
+import com.company.inventory.model.StockOutMovement;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only, compressed cold storage for archived stock movements.
+ * <p>
+ * The file is a sequence of blocks, each holding the movements of one item:
+ * {@code [itemId long][count int][payloadLength int][deflated payload]}.
+ * The top bit of {@code count} marks blocks whose records carry a lot id; blocks written
+ * before lot ids were archived don't have it and read back without lots. The next bit marks
+ * blocks whose records flag a missing reason; older blocks stored it as an empty reason.
+ * Block headers are scanned once on open to build an in-memory item index;
+ * reads go through read-only memory mappings of fixed-size segments of the file, addressed
+ * with long offsets, so the archive can grow past the 2 GiB a single mapping allows.
+ */
+public class MovementArchive {
+
+    private static final int HEADER_BYTES = 8 + 4 + 4;
+    private static final int WITH_LOTS = 0x8000_0000;
+    private static final int NULLABLE_REASONS = 0x4000_0000;
+    private static final long NO_LOT = Long.MIN_VALUE;
+    private static final int SEGMENT_BYTES = 1 << 30;
+
+    private final Path file;
+    private final Map<Long, List<long[]>> index = new HashMap<>(); // itemId -> [payloadOffset, payloadLength, count, withLots, nullableReasons]
+    private long length;
+    private final List<MappedByteBuffer> segments = new ArrayList<>(); // segment i maps [i * SEGMENT_BYTES, ...)
+
+    public MovementArchive(Path file) {
+        this.file = file;
+        if (Files.exists(file)) loadIndex();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    private void loadIndex() {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            long pos = 0;
+            while (pos + HEADER_BYTES <= size) {
+                header.clear();
+                ch.read(header, pos);
+                header.flip();
+                long itemId = header.getLong();
+                int count = header.getInt();
+                int payload = header.getInt();
+                if (payload < 0 || pos + HEADER_BYTES + payload > size) break; // torn tail from an interrupted append
+                index.computeIfAbsent(itemId, k -> new ArrayList<>())
+                        .add(new long[]{pos + HEADER_BYTES, payload, count & ~(WITH_LOTS | NULLABLE_REASONS),
+                                (count & WITH_LOTS) != 0 ? 1 : 0, (count & NULLABLE_REASONS) != 0 ? 1 : 0});
+                pos += HEADER_BYTES + payload;
+            }
+            length = pos;
+        } catch (IOException e) {
+            throw new DataAccessException("Failed to read movement archive " + file, e);
+        }
+    }
+
+    /**
+     * Appends all movements of the batch, one compressed block per item, and forces them to disk.
+     * Returns the archive length before the append so a caller can {@link #truncate} on failure.
+     */
+    public synchronized long append(MovementBatch batch) {
+        long before = length;
+        Map<Long, List<Integer>> rowsByItem = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) rowsByItem.computeIfAbsent(batch.itemId(i), k -> new ArrayList<>()).add(i);
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (ch.size() > length) ch.truncate(length); // drop a torn tail before appending
+            ch.position(length);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                for (Map.Entry<Long, List<Integer>> e : rowsByItem.entrySet()) {
+                    byte[] payload = compress(deflater, encode(batch, e.getValue()));
+                    ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+                    buf.putLong(e.getKey()).putInt(e.getValue().size() | WITH_LOTS | NULLABLE_REASONS).putInt(payload.length).put(payload).flip();
+                    long offset = ch.position();
+                    while (buf.hasRemaining()) ch.write(buf);
+                    index.computeIfAbsent(e.getKey(), k -> new ArrayList<>())
+                            .add(new long[]{offset + HEADER_BYTES, payload.length, e.getValue().size(), 1, 1});
+                }
+            } finally {
+                deflater.end();
+            }
+            ch.force(false);
+            length = ch.position();
+            return before;
+        } catch (IOException e) {
+            throw new DataAccessException("Failed to append to movement archive " + file, e);
+        }
+    }
+
+    /**
+     * Drops everything written after {@code newLength} (used when the DB side of an archive run fails).
+     */
+    public synchronized void truncate(long newLength) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(newLength);
+        } catch (IOException e) {
+            throw new DataAccessException("Failed to truncate movement archive " + file, e);
+        }
+        index.clear();
+        segments.clear();
+        length = 0;
+        loadIndex();
+    }
+
+    /**
+     * All archived movements of one item, in the order they were archived.
+     */
+    public synchronized List<StockMovement> read(long itemId) {
+        List<long[]> blocks = index.get(itemId);
+        if (blocks == null) return List.of();
+        List<StockMovement> res = new ArrayList<>();
+        Inflater inflater = new Inflater();
+        try {
+            for (long[] block : blocks) {
+                byte[] compressed = readBytes(block[0], (int) block[1]);
+                decode(itemId, inflate(inflater, compressed), (int) block[2], block[3] != 0, block[4] != 0, res);
+            }
+        } catch (IOException | DataFormatException e) {
+            throw new DataAccessException("Corrupt block in movement archive " + file, e);
+        } finally {
+            inflater.end();
+        }
+        return res;
+    }
+
+    public synchronized boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    // copies length bytes at a file offset, across a segment boundary if the block straddles one
+    private byte[] readBytes(long offset, int length) {
+        byte[] bytes = new byte[length];
+        int done = 0;
+        while (done < length) {
+            long pos = offset + done;
+            MappedByteBuffer segment = segment((int) (pos / SEGMENT_BYTES));
+            int at = (int) (pos % SEGMENT_BYTES);
+            int n = Math.min(length - done, segment.limit() - at);
+            segment.get(at, bytes, done, n);
+            done += n;
+        }
+        return bytes;
+    }
+
+    // full segments are mapped once; the last one is remapped when appends have grown it
+    private MappedByteBuffer segment(int i) {
+        long start = (long) i * SEGMENT_BYTES;
+        long size = Math.min(SEGMENT_BYTES, length - start);
+        while (segments.size() <= i) segments.add(null);
+        MappedByteBuffer segment = segments.get(i);
+        if (segment == null || segment.capacity() != size) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                segment = ch.map(FileChannel.MapMode.READ_ONLY, start, size);
+                segments.set(i, segment);
+            } catch (IOException e) {
+                throw new DataAccessException("Failed to map movement archive " + file, e);
+            }
+        }
+        return segment;
+    }
+
+    // record: id long, qty int, type byte, epochSecond long, hasReason boolean, reason UTF (if any),
+    // lotId long (Long.MIN_VALUE for none)
+    private static byte[] encode(MovementBatch batch, List<Integer> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows.size() * 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (int row : rows) {
+                out.writeLong(batch.id(row));
+                out.writeInt(batch.qty(row));
+                out.writeByte(batch.type(row).ordinal());
+                out.writeLong(batch.epochSecond(row));
+                String reason = batch.reason(row);
+                out.writeBoolean(reason != null);
+                if (reason != null) out.writeUTF(reason);
+                Long lotId = batch.lotId(row);
+                out.writeLong(lotId == null ? NO_LOT : lotId);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void decode(long itemId, byte[] raw, int count, boolean withLots, boolean nullableReasons,
+                               List<StockMovement> out) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        for (int i = 0; i < count; i++) {
+            long id = in.readLong();
+            int qty = in.readInt();
+            MovementType type = MovementType.values()[in.readByte()];
+            LocalDateTime ts = LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC);
+            String reason = !nullableReasons || in.readBoolean() ? in.readUTF() : null;
+            long lot = withLots ? in.readLong() : NO_LOT;
+            Long lotId = lot == NO_LOT ? null : lot;
+            out.add(type == MovementType.IN
+                    ? new StockInMovement(id, itemId, qty, reason, ts, lotId)
+                    : new StockOutMovement(id, itemId, qty, reason, ts, lotId));
+        }
+    }
+
+    private static byte[] compress(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+        byte[] buf = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buf);
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(Inflater inflater, byte[] compressed) throws DataFormatException {
+        inflater.reset();
+        inflater.setInput(compressed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 3);
+        byte[] buf = new byte[8192];
+        while (!inflater.finished()) {
+            int n = inflater.inflate(buf);
+            if (n == 0 && inflater.needsInput()) throw new DataFormatException("truncated block");
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+}
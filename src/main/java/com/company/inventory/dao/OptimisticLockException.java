@@ -0,0 +1,18 @@
+package com.company.inventory.dao;
+
+/**
+ * Thrown when a row was changed by someone else since it was read
+ * (its version no longer matches the expected one).
+ */
+public class OptimisticLockException extends DataAccessException {
+    private final long expectedVersion;
+
+    public OptimisticLockException(String message, long expectedVersion) {
+        super(message);
+        this.expectedVersion = expectedVersion;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+}
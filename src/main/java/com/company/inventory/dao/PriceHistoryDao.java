@@ -0,0 +1,32 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.model.dto.ItemPrice;
+import com.company.inventory.model.dto.PriceChange;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface PriceHistoryDao {
+
+    /**
+     * Price changes of an item, newest first.
+     */
+    List<PriceChange> listByItem(Long itemId);
+
+    /**
+     * Prices of an item in force at the given time; empty when there is no such item.
+     */
+    Optional<ItemPrice> priceAsOf(Long itemId, LocalDateTime at);
+
+    Map<Long, ItemPrice> pricesAsOf(Collection<Long> itemIds, LocalDateTime at);
+
+    /**
+     * Today's on-hand stock of all items valued at the purchase prices in force at the given time
+     * ("what would current stock have been worth at last quarter's prices"). Quantities are not
+     * replayed to that time, so this is not the stock value on that date.
+     */
+    double currentStockValueAtPricesAsOf(LocalDateTime at);
+}
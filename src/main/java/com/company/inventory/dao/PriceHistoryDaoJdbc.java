@@ -0,0 +1,145 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.model.dto.ItemPrice;
+import com.company.inventory.model.dto.PriceChange;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Price history in item_price_history. Rows are only ever inserted: each records the prices
+ * before and after a change and when the change took effect.
+ * <p>
+ * The price in force at time T is the "after" side of the latest change at or before T. When
+ * the item has no change that early, it is the "before" side of its first change after T, and
+ * when it never changed, the current price on the item row. Both lookups are a single seek on
+ * (item_id, effective_from), so no baseline row per item is needed. Items created after T are
+ * reported at their first known price.
+ */
+public class PriceHistoryDaoJdbc implements PriceHistoryDao {
+
+    private static final String NEXT_CHANGE_ID_SQL = "SELECT NEXT VALUE FOR price_change_seq";
+    private static final String INSERT_SQL =
+            "INSERT INTO item_price_history (change_id, item_id, effective_from, old_purchase_price, old_sale_price, " +
+                    "new_purchase_price, new_sale_price, reason) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_BY_ITEM =
+            "SELECT change_id, item_id, effective_from, old_purchase_price, old_sale_price, new_purchase_price, " +
+                    "new_sale_price, reason FROM item_price_history WHERE item_id = ? ORDER BY effective_from DESC, change_id DESC";
+
+    // price column as of ? for the item aliased i; binds the time twice
+    private static String priceAsOf(String column) {
+        return "COALESCE(" +
+                "(SELECT h.new_" + column + " FROM item_price_history h WHERE h.item_id = i.id AND h.effective_from <= ? " +
+                "ORDER BY h.effective_from DESC, h.change_id DESC LIMIT 1), " +
+                "(SELECT h.old_" + column + " FROM item_price_history h WHERE h.item_id = i.id AND h.effective_from > ? " +
+                "ORDER BY h.effective_from, h.change_id LIMIT 1), " +
+                "i." + column + ")";
+    }
+
+    private static final String SELECT_PRICES_AS_OF =
+            "SELECT i.id, " + priceAsOf("purchase_price") + ", " + priceAsOf("sale_price") + " FROM item i WHERE i.id IN ";
+    // today's quantities, historical prices
+    private static final String CURRENT_STOCK_AT_PRICES_AS_OF_SQL =
+            "SELECT COALESCE(SUM(s.quantity * " + priceAsOf("purchase_price") + "), 0) " +
+                    "FROM stock s JOIN item i ON i.id = s.item_id";
+
+    @Override
+    public List<PriceChange> listByItem(Long itemId) {
+        try (Connection c = DbConnectionManager.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_BY_ITEM)) {
+            ps.setLong(1, itemId);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<PriceChange> res = new ArrayList<>();
+                while (rs.next()) {
+                    res.add(new PriceChange(rs.getLong(1), rs.getLong(2), rs.getTimestamp(3).toLocalDateTime(),
+                            rs.getDouble(4), rs.getDouble(5), rs.getDouble(6), rs.getDouble(7), rs.getString(8)));
+                }
+                return res;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    @Override
+    public Optional<ItemPrice> priceAsOf(Long itemId, LocalDateTime at) {
+        return Optional.ofNullable(pricesAsOf(List.of(itemId), at).get(itemId));
+    }
+
+    @Override
+    public Map<Long, ItemPrice> pricesAsOf(Collection<Long> itemIds, LocalDateTime at) {
+        Map<Long, ItemPrice> result = new HashMap<>(Math.max(16, itemIds.size() * 2));
+        if (itemIds.isEmpty()) return result;
+        Timestamp ts = Timestamp.valueOf(at);
+        try (Connection c = DbConnectionManager.getReadConnection()) {
+            for (List<Long> chunk : InClause.chunks(itemIds)) {
+                String sql = SELECT_PRICES_AS_OF + "(" + InClause.placeholders(chunk.size()) + ")";
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    for (int i = 1; i <= 4; i++) ps.setTimestamp(i, ts);
+                    for (int i = 0; i < chunk.size(); i++) ps.setLong(i + 5, chunk.get(i));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            result.put(rs.getLong(1), new ItemPrice(rs.getLong(1), rs.getDouble(2), rs.getDouble(3)));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+        return result;
+    }
+
+    @Override
+    public double currentStockValueAtPricesAsOf(LocalDateTime at) {
+        try (Connection c = DbConnectionManager.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(CURRENT_STOCK_AT_PRICES_AS_OF_SQL)) {
+            Timestamp ts = Timestamp.valueOf(at);
+            ps.setTimestamp(1, ts);
+            ps.setTimestamp(2, ts);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getDouble(1);
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    // ----------------------------
+    // Recording, in the writer's transaction
+    // ----------------------------
+
+    /**
+     * New id grouping the history rows of one change.
+     */
+    public static long nextChangeId(Connection conn) throws SQLException {
+        try (Statement s = conn.createStatement();
+             ResultSet rs = s.executeQuery(NEXT_CHANGE_ID_SQL)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Records a price change of one item, effective now, using the caller's transaction (which
+     * holds the lock on the item row). Does nothing when neither price changed.
+     */
+    public static void recordTx(Connection conn, long itemId, double oldPurchasePrice, double oldSalePrice,
+                                double newPurchasePrice, double newSalePrice, String reason) throws SQLException {
+        if (oldPurchasePrice == newPurchasePrice && oldSalePrice == newSalePrice) return;
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            ps.setLong(1, nextChangeId(conn));
+            ps.setLong(2, itemId);
+            ps.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setDouble(4, oldPurchasePrice);
+            ps.setDouble(5, oldSalePrice);
+            ps.setDouble(6, newPurchasePrice);
+            ps.setDouble(7, newSalePrice);
+            ps.setString(8, reason);
+            ps.executeUpdate();
+        }
+    }
+}
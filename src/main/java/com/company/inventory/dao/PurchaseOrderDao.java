@@ -0,0 +1,21 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.model.PurchaseOrder;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface PurchaseOrderDao {
+
+    /**
+     * Inserts the header and all lines in one transaction. Returns the order with generated ids.
+     */
+    PurchaseOrder create(PurchaseOrder order);
+
+    Optional<PurchaseOrder> findById(Long id);
+
+    /**
+     * Orders that are not fully received yet, oldest first.
+     */
+    List<PurchaseOrder> listOpen();
+}
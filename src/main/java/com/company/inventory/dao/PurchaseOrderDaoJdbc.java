@@ -0,0 +1,127 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.model.PurchaseOrder;
+import com.company.inventory.model.PurchaseOrderLine;
+import com.company.inventory.model.PurchaseOrderStatus;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class PurchaseOrderDaoJdbc implements PurchaseOrderDao {
+
+    private static final String INSERT_ORDER_SQL =
+            "INSERT INTO purchase_order (supplier_id, status, created_at) VALUES (?, ?, ?)";
+    private static final String INSERT_LINE_SQL =
+            "INSERT INTO purchase_order_line (po_id, item_id, qty_ordered, qty_received, unit_cost) VALUES (?, ?, ?, 0, ?)";
+    private static final String SELECT_ORDER_SQL = "SELECT * FROM purchase_order WHERE id = ?";
+    private static final String SELECT_LINES_SQL = "SELECT * FROM purchase_order_line WHERE po_id = ? ORDER BY id";
+    private static final String SELECT_OPEN_ORDERS_SQL = "SELECT * FROM purchase_order WHERE status <> ? ORDER BY id";
+    private static final String SELECT_OPEN_LINES_SQL =
+            "SELECT l.* FROM purchase_order_line l JOIN purchase_order o ON o.id = l.po_id WHERE o.status <> ? ORDER BY l.id";
+
+    private final TransactionTemplate tx = TransactionTemplate.defaults();
+
+    @Override
+    public PurchaseOrder create(PurchaseOrder order) {
+        if (order.getLines().isEmpty()) throw new IllegalArgumentException("purchase order has no lines");
+        PurchaseOrder created = tx.execute("Failed to create purchase order", c -> {
+            long poId;
+            try (PreparedStatement ps = c.prepareStatement(INSERT_ORDER_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setLong(1, order.getSupplierId());
+                ps.setString(2, order.getStatus().name());
+                ps.setTimestamp(3, Timestamp.valueOf(order.getCreatedAt()));
+                ps.executeUpdate();
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (!rs.next()) throw new DataAccessException("Failed to retrieve generated id for purchase order");
+                    poId = rs.getLong(1);
+                }
+            }
+            List<PurchaseOrderLine> lines = new ArrayList<>(order.getLines().size());
+            try (PreparedStatement ps = c.prepareStatement(INSERT_LINE_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (PurchaseOrderLine line : order.getLines()) {
+                    ps.setLong(1, poId);
+                    ps.setLong(2, line.getItemId());
+                    ps.setInt(3, line.getQtyOrdered());
+                    ps.setDouble(4, line.getUnitCost());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    for (PurchaseOrderLine line : order.getLines()) {
+                        if (!rs.next()) throw new DataAccessException("Failed to retrieve generated ids for purchase order lines");
+                        lines.add(new PurchaseOrderLine(rs.getLong(1), poId, line.getItemId(),
+                                line.getQtyOrdered(), 0, line.getUnitCost()));
+                    }
+                }
+            }
+            return new PurchaseOrder(poId, order.getSupplierId(), order.getStatus(), lines, order.getCreatedAt());
+        });
+        DbConnectionManager.markWrite();
+        return created;
+    }
+
+    // from the primary: receiving computes outstanding quantities from it, and a lagging replica
+    // would miss a receipt that was just committed
+    @Override
+    public Optional<PurchaseOrder> findById(Long id) {
+        try (Connection c = DbConnectionManager.getConnection()) {
+            List<PurchaseOrderLine> lines = new ArrayList<>();
+            try (PreparedStatement ps = c.prepareStatement(SELECT_LINES_SQL)) {
+                ps.setLong(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) lines.add(mapLine(rs));
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(SELECT_ORDER_SQL)) {
+                ps.setLong(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? Optional.of(mapOrder(rs, lines)) : Optional.empty();
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    @Override
+    public List<PurchaseOrder> listOpen() {
+        try (Connection c = DbConnectionManager.getReadConnection()) {
+            Map<Long, List<PurchaseOrderLine>> linesByOrder = new HashMap<>();
+            try (PreparedStatement ps = c.prepareStatement(SELECT_OPEN_LINES_SQL)) {
+                ps.setString(1, PurchaseOrderStatus.RECEIVED.name());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        PurchaseOrderLine line = mapLine(rs);
+                        linesByOrder.computeIfAbsent(line.getPurchaseOrderId(), k -> new ArrayList<>()).add(line);
+                    }
+                }
+            }
+            List<PurchaseOrder> orders = new ArrayList<>();
+            try (PreparedStatement ps = c.prepareStatement(SELECT_OPEN_ORDERS_SQL)) {
+                ps.setString(1, PurchaseOrderStatus.RECEIVED.name());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) orders.add(mapOrder(rs, linesByOrder.getOrDefault(rs.getLong("id"), List.of())));
+                }
+            }
+            return orders;
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    private static PurchaseOrder mapOrder(ResultSet rs, List<PurchaseOrderLine> lines) throws SQLException {
+        return new PurchaseOrder(rs.getLong("id"), rs.getLong("supplier_id"),
+                PurchaseOrderStatus.valueOf(rs.getString("status")), lines,
+                rs.getTimestamp("created_at").toLocalDateTime());
+    }
+
+    private static PurchaseOrderLine mapLine(ResultSet rs) throws SQLException {
+        return new PurchaseOrderLine(rs.getLong("id"), rs.getLong("po_id"), rs.getLong("item_id"),
+                rs.getInt("qty_ordered"), rs.getInt("qty_received"), rs.getDouble("unit_cost"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.config.ShardRouter;
+import com.company.inventory.model.Stock;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Stock DAO that keeps each item's stock row on the shard chosen by {@link ShardRouter}.
+ * Single-item operations touch exactly one shard and batch lookups query each shard once for
+ * its items; reports over all items scatter to every shard and merge (see AnalyticsService).
+ */
+public class ShardedStockDao implements StockDao {
+
+    private static final String SELECT_SQL = "SELECT quantity FROM stock WHERE item_id = ?";
+
+    private final ShardRouter router;
+    private final TransactionTemplate tx = TransactionTemplate.defaults();
+
+    public ShardedStockDao(ShardRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public Optional<Stock> getStock(Long itemId) {
+        try (Connection c = router.getConnection(itemId);
+             PreparedStatement ps = c.prepareStatement(SELECT_SQL)) {
+            ps.setLong(1, itemId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return Optional.of(new Stock(itemId, rs.getInt(1)));
+                return Optional.empty();
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    @Override
+    public Map<Long, Stock> getStocks(Collection<Long> itemIds) {
+        Map<Integer, List<Long>> byShard = new HashMap<>();
+        for (Long id : itemIds) byShard.computeIfAbsent(router.shardFor(id), k -> new ArrayList<>()).add(id);
+
+        Map<Long, Stock> result = new HashMap<>(Math.max(16, itemIds.size() * 2));
+        for (Map.Entry<Integer, List<Long>> shard : byShard.entrySet()) {
+            try (Connection c = router.getConnectionForShard(shard.getKey())) {
+                for (List<Long> chunk : InClause.chunks(shard.getValue())) {
+                    String sql = "SELECT item_id, quantity FROM stock WHERE item_id IN (" + InClause.placeholders(chunk.size()) + ")";
+                    try (PreparedStatement ps = c.prepareStatement(sql)) {
+                        for (int i = 0; i < chunk.size(); i++) ps.setLong(i + 1, chunk.get(i));
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) result.put(rs.getLong(1), new Stock(rs.getLong(1), rs.getInt(2)));
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                throw new DataAccessException(e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets the quantity on the item's shard with a movement for the difference, like
+     * {@link StockDaoJdbc#upsertStock}; category totals live in the primary and are not kept for shards.
+     */
+    @Override
+    public Stock upsertStock(Stock stock) {
+        return tx.execute(() -> router.getConnection(stock.getItemId()), "Failed to upsert stock", c -> {
+            StockDaoJdbc.setStockTx(c, stock.getItemId(), stock.getQuantity());
+            return stock;
+        });
+    }
+
+    public ShardRouter getRouter() {
+        return router;
+    }
+}
@@ -0,0 +1,56 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.config.ShardRouter;
+import com.company.inventory.model.StockMovement;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Movement DAO that writes each movement to the shard owning its item.
+ * Per-item history is a single-shard read.
+ */
+public class ShardedStockMovementDao implements StockMovementDao {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO stock_movement (item_id, qty, type, reason, timestamp) VALUES (?, ?, ?, ?, ?)";
+    private static final String SELECT_BY_ITEM =
+            "SELECT id, item_id, qty, type, reason, timestamp, lot_id FROM stock_movement WHERE item_id = ? ORDER BY timestamp DESC";
+
+    private final ShardRouter router;
+
+    public ShardedStockMovementDao(ShardRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public void recordMovement(StockMovement movement) {
+        try (Connection c = router.getConnection(movement.getItemId());
+             PreparedStatement ps = c.prepareStatement(INSERT_SQL)) {
+            ps.setLong(1, movement.getItemId());
+            ps.setInt(2, movement.getQty());
+            ps.setString(3, movement.getType().name());
+            ps.setString(4, movement.getReason());
+            ps.setTimestamp(5, Timestamp.valueOf(movement.getTimestamp()));
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    @Override
+    public List<StockMovement> listByItem(Long itemId) {
+        try (Connection c = router.getConnection(itemId);
+             PreparedStatement ps = c.prepareStatement(SELECT_BY_ITEM)) {
+            ps.setLong(1, itemId);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<StockMovement> res = new ArrayList<>();
+                while (rs.next()) res.add(StockMovementDaoJdbc.mapRow(rs));
+                return res;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.company.inventory.dao;
 
 import com.company.inventory.model.Stock;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 public interface StockDao {
@@ -10,4 +12,9 @@ public interface StockDao {
 
 
     Optional<Stock> getStock(Long itemId);
+
+    /**
+     * Stock rows for many items at once, keyed by item id. Items without a stock row are absent.
+     */
+    Map<Long, Stock> getStocks(Collection<Long> itemIds);
 }
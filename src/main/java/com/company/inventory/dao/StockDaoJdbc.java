@@ -4,6 +4,10 @@ import com.company.inventory.config.DbConnectionManager;
 import com.company.inventory.model.Stock;
 
 import java.sql.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -15,10 +19,18 @@ public class StockDaoJdbc implements StockDao {
     private static final String SELECT_SQL = "SELECT * FROM stock WHERE item_id = ?";
     private static final String INSERT_SQL = "INSERT INTO stock (item_id, quantity) VALUES (?, ?)";
     private static final String UPDATE_SQL = "UPDATE stock SET quantity = ? WHERE item_id = ?";
+    private static final String LOCK_SQL = "SELECT quantity FROM stock WHERE item_id = ? FOR UPDATE";
+    private static final String INSERT_MOVEMENT_SQL =
+            "INSERT INTO stock_movement (item_id, qty, type, reason, timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    /** Reason of the movement that records a quantity set with {@link #upsertStock}. */
+    public static final String SET_REASON = "stock set";
+
+    private final TransactionTemplate tx = TransactionTemplate.defaults();
 
     @Override
     public Optional<Stock> getStock(Long itemId) {
-        try (Connection c = DbConnectionManager.getConnection();
+        try (Connection c = DbConnectionManager.getReadConnection();
              PreparedStatement ps = c.prepareStatement(SELECT_SQL)) {
             ps.setLong(1, itemId);
             try (ResultSet rs = ps.executeQuery()) {
@@ -35,41 +47,77 @@ public class StockDaoJdbc implements StockDao {
     }
 
     @Override
-    public Stock upsertStock(Stock stock) {
-        // Try update first
-        try (Connection c = DbConnectionManager.getConnection()) {
-            c.setAutoCommit(false);
-            try (PreparedStatement update = c.prepareStatement(UPDATE_SQL)) {
-                update.setInt(1, stock.getQuantity());
-                update.setLong(2, stock.getItemId());
-                int updated = update.executeUpdate();
-                if (updated == 0) {
-                    try (PreparedStatement insert = c.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
-                        insert.setLong(1, stock.getItemId());
-                        insert.setInt(2, stock.getQuantity());
-                        insert.executeUpdate();
-                        try (ResultSet rs = insert.getGeneratedKeys()) {
-                            if (rs.next()) {
-                                long id = rs.getLong(1);
-                                c.commit();
-                                return new Stock(stock.getItemId(), stock.getQuantity()); // id not stored in Stock model here
-                            }
+    public Map<Long, Stock> getStocks(Collection<Long> itemIds) {
+        Map<Long, Stock> result = new HashMap<>(Math.max(16, itemIds.size() * 2));
+        if (itemIds.isEmpty()) return result;
+        try (Connection c = DbConnectionManager.getReadConnection()) {
+            for (List<Long> chunk : InClause.chunks(itemIds)) {
+                String sql = "SELECT item_id, quantity FROM stock WHERE item_id IN (" + InClause.placeholders(chunk.size()) + ")";
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) ps.setLong(i + 1, chunk.get(i));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            long itemId = rs.getLong(1);
+                            result.put(itemId, new Stock(itemId, rs.getInt(2)));
                         }
                     }
-                } else {
-                    c.commit();
-                    return stock;
                 }
-            } catch (SQLException ex) {
-                c.rollback();
-                throw ex;
-            } finally {
-                c.setAutoCommit(true);
             }
+            return result;
         } catch (SQLException e) {
             throw new DataAccessException(e);
         }
-        throw new DataAccessException("Unexpected error in upsertStock");
+    }
+
+    /**
+     * Sets the quantity and records the difference as a {@link #SET_REASON} movement (and in the
+     * category totals), so the movement ledger, the integrity check and the inventory cache's
+     * catch-up see it like any other stock change.
+     */
+    @Override
+    public Stock upsertStock(Stock stock) {
+        Stock saved = tx.execute("Failed to upsert stock", c -> {
+            int delta = setStockTx(c, stock.getItemId(), stock.getQuantity());
+            CategoryDaoJdbc.recordStockTx(c, stock.getItemId(), delta);
+            return new Stock(stock.getItemId(), stock.getQuantity()); // id not stored in Stock model here
+        });
+        DbConnectionManager.markWrite();
+        return saved;
+    }
 
+    /**
+     * Locks and sets an item's stock row, creating it if needed, and writes the movement for the
+     * difference, using the caller's transaction. Returns the difference.
+     */
+    static int setStockTx(Connection c, long itemId, int quantity) throws SQLException {
+        Integer before = null;
+        try (PreparedStatement ps = c.prepareStatement(LOCK_SQL)) {
+            ps.setLong(1, itemId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) before = rs.getInt(1);
+            }
+        }
+        try (PreparedStatement ps = c.prepareStatement(before == null ? INSERT_SQL : UPDATE_SQL)) {
+            if (before == null) {
+                ps.setLong(1, itemId);
+                ps.setInt(2, quantity);
+            } else {
+                ps.setInt(1, quantity);
+                ps.setLong(2, itemId);
+            }
+            ps.executeUpdate();
+        }
+        int delta = quantity - (before == null ? 0 : before);
+        if (delta != 0) {
+            try (PreparedStatement ps = c.prepareStatement(INSERT_MOVEMENT_SQL)) {
+                ps.setLong(1, itemId);
+                ps.setInt(2, Math.abs(delta));
+                ps.setString(3, delta > 0 ? "IN" : "OUT");
+                ps.setString(4, SET_REASON);
+                ps.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+                ps.executeUpdate();
+            }
+        }
+        return delta;
     }
 }
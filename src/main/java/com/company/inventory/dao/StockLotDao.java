@@ -0,0 +1,13 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.model.StockLot;
+
+import java.util.List;
+
+public interface StockLotDao {
+
+    /**
+     * Lots of an item that still hold stock, in allocation (first-expired-first-out) order.
+     */
+    List<StockLot> listByItem(Long itemId);
+}
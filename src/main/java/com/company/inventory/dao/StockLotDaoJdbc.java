@@ -0,0 +1,130 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.config.ShardRouter;
+import com.company.inventory.model.StockLot;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StockLotDaoJdbc implements StockLotDao {
+
+    /** Expiry date before every real one, for allocations that include expired lots. */
+    public static final LocalDate ANY_EXPIRY = LocalDate.of(1, 1, 1);
+
+    // ordered like idx_stock_lot_fefo so the index delivers rows already sorted
+    private static final String SELECT_BY_ITEM =
+            "SELECT id, item_id, lot_code, expiry_date, quantity FROM stock_lot WHERE item_id = ? AND depleted = FALSE " +
+                    "ORDER BY item_id, depleted, expiry_date, id";
+
+    // open lots in FEFO order, one page at a time; the ORDER BY matches idx_stock_lot_fefo so no sort is needed
+    private static final String FEFO_LOTS_SQL =
+            "SELECT id, quantity, expiry_date FROM stock_lot WHERE item_id = ? AND depleted = FALSE " +
+                    "AND (expiry_date > ? OR (expiry_date = ? AND id > ?)) ORDER BY item_id, depleted, expiry_date, id LIMIT ?";
+    private static final String OPEN_UNITS_SQL =
+            "SELECT COALESCE(SUM(quantity), 0) FROM stock_lot WHERE item_id = ? AND depleted = FALSE";
+    private static final String TAKE_FROM_LOT_SQL =
+            "UPDATE stock_lot SET quantity = quantity - ?, depleted = (quantity - ? = 0) WHERE id = ?";
+    private static final int LOT_PAGE = 32;
+
+    private final ShardRouter router; // null when stock lives in the primary database
+
+    public StockLotDaoJdbc() {
+        this(null);
+    }
+
+    public StockLotDaoJdbc(ShardRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public List<StockLot> listByItem(Long itemId) {
+        try (Connection c = router == null ? DbConnectionManager.getReadConnection() : router.getConnection(itemId);
+             PreparedStatement ps = c.prepareStatement(SELECT_BY_ITEM)) {
+            ps.setLong(1, itemId);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<StockLot> res = new ArrayList<>();
+                while (rs.next()) {
+                    res.add(new StockLot(rs.getLong(1), rs.getLong(2), rs.getString(3),
+                            rs.getDate(4).toLocalDate(), rs.getInt(5)));
+                }
+                return res;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    /**
+     * Picks up to {@code qty} units from the item's open lots, first-expired-first-out, among
+     * lots expiring on or after {@code earliestExpiry} ({@link #ANY_EXPIRY} for all of them).
+     * Returns [lotId, units] per lot in allocation order; the units may add up to less than
+     * qty. Nothing is written; pass the result to {@link #takeTx}. The caller must hold the
+     * item's stock row lock so that its lots do not change in between.
+     */
+    public static List<long[]> allocateFefoTx(Connection conn, long itemId, int qty, LocalDate earliestExpiry)
+            throws SQLException {
+        int remaining = qty;
+        LocalDate afterExpiry = earliestExpiry;
+        long afterId = 0; // ids start at 1, so the first page includes lots expiring on earliestExpiry
+        List<long[]> takes = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(FEFO_LOTS_SQL)) {
+            while (remaining > 0) {
+                ps.setLong(1, itemId);
+                ps.setDate(2, Date.valueOf(afterExpiry));
+                ps.setDate(3, Date.valueOf(afterExpiry));
+                ps.setLong(4, afterId);
+                ps.setInt(5, LOT_PAGE);
+                int rows = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next() && remaining > 0) {
+                        rows++;
+                        afterId = rs.getLong(1);
+                        afterExpiry = rs.getDate(3).toLocalDate();
+                        int take = Math.min(remaining, rs.getInt(2));
+                        if (take <= 0) continue;
+                        takes.add(new long[]{afterId, take});
+                        remaining -= take;
+                    }
+                }
+                if (rows < LOT_PAGE) break; // no more open lots
+            }
+        }
+        return takes;
+    }
+
+    /**
+     * Units in the item's open lots, expired or not. The rest of its stock is not tracked by lot.
+     */
+    public static int openUnitsTx(Connection conn, long itemId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(OPEN_UNITS_SQL)) {
+            ps.setLong(1, itemId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Takes the allocated units out of their lots, marking emptied lots depleted.
+     */
+    public static void takeTx(Connection conn, List<long[]> takes) throws SQLException {
+        if (takes.isEmpty()) return;
+        try (PreparedStatement ps = conn.prepareStatement(TAKE_FROM_LOT_SQL)) {
+            for (long[] t : takes) {
+                ps.setInt(1, (int) t[1]);
+                ps.setInt(2, (int) t[1]);
+                ps.setLong(3, t[0]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+}
@@ -17,7 +17,9 @@ public class StockMovementDaoJdbc implements StockMovementDao {
     private static final String INSERT_SQL =
             "INSERT INTO stock_movement (item_id, qty, type, reason, timestamp) VALUES (?, ?, ?, ?, ?)";
     private static final String SELECT_BY_ITEM =
-            "SELECT id, item_id, qty, type, reason, timestamp FROM stock_movement WHERE item_id = ? ORDER BY timestamp DESC";
+            "SELECT id, item_id, qty, type, reason, timestamp, lot_id FROM stock_movement WHERE item_id = ? ORDER BY timestamp DESC";
+    private static final String SELECT_OLDER_PAGE =
+            "SELECT id, item_id, qty, type, reason, timestamp, lot_id FROM stock_movement WHERE timestamp < ? AND id > ? ORDER BY id LIMIT ?";
 
     @Override
     public void recordMovement(StockMovement movement) {
@@ -29,6 +31,7 @@ public class StockMovementDaoJdbc implements StockMovementDao {
             ps.setString(4, movement.getReason());
             ps.setTimestamp(5, Timestamp.valueOf(movement.getTimestamp()));
             ps.executeUpdate();
+            DbConnectionManager.markWrite();
         } catch (SQLException e) {
             throw new DataAccessException(e);
         }
@@ -36,32 +39,67 @@ public class StockMovementDaoJdbc implements StockMovementDao {
 
     @Override
     public List<StockMovement> listByItem(Long itemId) {
-        try (Connection c = DbConnectionManager.getConnection();
+        try (Connection c = DbConnectionManager.getReadConnection();
              PreparedStatement ps = c.prepareStatement(SELECT_BY_ITEM)) {
             ps.setLong(1, itemId);
             try (ResultSet rs = ps.executeQuery()) {
                 List<StockMovement> res = new ArrayList<>();
-                while (rs.next()) {
-                    Long id = rs.getLong("id");
-                    int qty = rs.getInt("qty");
-                    String type = rs.getString("type");
-                    String reason = rs.getString("reason");
-                    Timestamp ts = rs.getTimestamp("timestamp");
-                    LocalDateTime time = ts == null ? LocalDateTime.now() : ts.toLocalDateTime();
+                while (rs.next()) res.add(mapRow(rs));
+                return res;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
 
-                    MovementType mt = MovementType.valueOf(type);
-                    StockMovement movement;
-                    if (mt == MovementType.IN) {
-                        movement = new StockInMovement(id, itemId, qty, reason, time);
-                    } else {
-                        movement = new StockOutMovement(id, itemId, qty, reason, time);
-                    }
-                    res.add(movement);
+    /**
+     * Loads up to {@code limit} movements older than {@code before} with id greater than
+     * {@code afterId}, in id order, into a column container. Pass {@link MovementBatch#lastId()}
+     * back in to read the next page. Reads the primary, since callers such as the archiver
+     * delete what they loaded and must not miss rows a lagging replica lacks.
+     */
+    public MovementBatch loadBatch(LocalDateTime before, long afterId, int limit) {
+        try (Connection c = DbConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_OLDER_PAGE)) {
+            ps.setTimestamp(1, Timestamp.valueOf(before));
+            ps.setLong(2, afterId);
+            ps.setInt(3, limit);
+            ps.setFetchSize(Math.min(limit, 1000));
+            try (ResultSet rs = ps.executeQuery()) {
+                MovementBatch batch = new MovementBatch(Math.min(limit, 1 << 16));
+                while (rs.next()) {
+                    Timestamp ts = rs.getTimestamp(6);
+                    long lot = rs.getLong(7);
+                    Long lotId = rs.wasNull() ? null : lot;
+                    batch.add(rs.getLong(1), rs.getLong(2), rs.getInt(3),
+                            MovementType.valueOf(rs.getString(4)), rs.getString(5),
+                            ts == null ? LocalDateTime.now() : ts.toLocalDateTime(), lotId);
                 }
-                return res;
+                return batch;
             }
         } catch (SQLException e) {
             throw new DataAccessException(e);
         }
     }
+
+    /**
+     * Maps a row with columns id, item_id, qty, type, reason, timestamp.
+     */
+    static StockMovement mapRow(ResultSet rs) throws SQLException {
+        Long id = rs.getLong("id");
+        Long itemId = rs.getLong("item_id");
+        int qty = rs.getInt("qty");
+        String type = rs.getString("type");
+        String reason = rs.getString("reason");
+        Timestamp ts = rs.getTimestamp("timestamp");
+        LocalDateTime time = ts == null ? LocalDateTime.now() : ts.toLocalDateTime();
+        long lot = rs.getLong("lot_id");
+        Long lotId = rs.wasNull() ? null : lot;
+
+        MovementType mt = MovementType.valueOf(type);
+        if (mt == MovementType.IN) {
+            return new StockInMovement(id, itemId, qty, reason, time, lotId);
+        }
+        return new StockOutMovement(id, itemId, qty, reason, time, lotId);
+    }
 }
@@ -0,0 +1,18 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.model.Supplier;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface SupplierDao {
+
+    Supplier create(Supplier supplier);
+
+    Optional<Supplier> findById(Long id);
+
+    /**
+     * All suppliers, by name.
+     */
+    List<Supplier> findAll();
+}
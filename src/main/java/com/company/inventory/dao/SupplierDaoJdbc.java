@@ -0,0 +1,63 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.model.Supplier;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class SupplierDaoJdbc implements SupplierDao {
+
+    private static final String INSERT_SQL = "INSERT INTO supplier (name, contact_email) VALUES (?, ?)";
+    private static final String SELECT_BY_ID = "SELECT id, name, contact_email FROM supplier WHERE id = ?";
+    private static final String SELECT_ALL = "SELECT id, name, contact_email FROM supplier ORDER BY name, id";
+
+    @Override
+    public Supplier create(Supplier supplier) {
+        try (Connection c = DbConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, supplier.getName());
+            if (supplier.getContactEmail() == null) ps.setNull(2, Types.VARCHAR); else ps.setString(2, supplier.getContactEmail());
+            ps.executeUpdate();
+            DbConnectionManager.markWrite();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (!rs.next()) throw new DataAccessException("Failed to retrieve generated id for supplier");
+                return new Supplier(rs.getLong(1), supplier.getName(), supplier.getContactEmail());
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    @Override
+    public Optional<Supplier> findById(Long id) {
+        try (Connection c = DbConnectionManager.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_BY_ID)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Optional.of(map(rs)) : Optional.empty();
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    @Override
+    public List<Supplier> findAll() {
+        try (Connection c = DbConnectionManager.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_ALL);
+             ResultSet rs = ps.executeQuery()) {
+            List<Supplier> res = new ArrayList<>();
+            while (rs.next()) res.add(map(rs));
+            return res;
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    private static Supplier map(ResultSet rs) throws SQLException {
+        return new Supplier(rs.getLong(1), rs.getString(2), rs.getString(3));
+    }
+}
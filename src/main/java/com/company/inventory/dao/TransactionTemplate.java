@@ -0,0 +1,310 @@
+package com.company.inventory.dao;
+
+import com.company.inventory.config.AppConfig;
+import com.company.inventory.config.DbConnectionManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a unit of work in one JDBC transaction and retries it when the database aborted it
+ * because of contention: deadlocks, serialization failures and lock wait timeouts. Between
+ * attempts it sleeps a random time up to an exponentially growing cap ("full jitter"), so
+ * transactions that collided do not collide again in lockstep.
+ * <p>
+ * The work is re-run from the start on a fresh transaction, so it must not have side effects
+ * outside the connection (cache updates and the like belong after {@link #execute} returns).
+ * Any other failure, including exceptions thrown by the work itself such as an insufficient
+ * stock check, rolls back and is passed on without a retry.
+ * <p>
+ * Retries stop after {@code maxAttempts} attempts or when the next attempt could not start
+ * before the deadline ({@code timeout} after the first attempt started), whichever comes first.
+ * The deadline also bounds each attempt: every statement the work creates gets the time left
+ * as its query timeout (rounded up to whole seconds, as JDBC counts them), so an attempt stuck
+ * behind a lock or a slow query is cancelled by the driver instead of running past the budget.
+ * H2 does not apply query timeouts to row lock waits, so on H2 the session's lock timeout is
+ * also lowered to the time left, for the attempt only, when that is shorter.
+ */
+public final class TransactionTemplate {
+
+    /** SQLStates that mean "the transaction was rolled back, try again". */
+    private static final Set<String> RETRYABLE_STATES = Set.of(
+            "40001", // serialization failure / deadlock (H2, MySQL, most drivers)
+            "40P01", // deadlock detected (PostgreSQL)
+            "HYT00", // lock wait timeout (H2)
+            "90131"  // concurrent update of the same row (H2)
+    );
+    private static final int MYSQL_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int MYSQL_DEADLOCK = 1213;
+
+    /** Isolation value meaning "leave the connection's isolation level alone". */
+    public static final int DEFAULT_ISOLATION = -1;
+
+    private static final TransactionTemplate DEFAULT = fromConfig();
+
+    private static final String H2_LOCK_TIMEOUT_SQL = "SELECT LOCK_TIMEOUT()";
+    private static final String H2_SET_LOCK_TIMEOUT_SQL = "SET LOCK_TIMEOUT ";
+    // the lock timeout new sessions start with, per H2 database url; -1 for other databases
+    private static final Map<String, Integer> LOCK_TIMEOUTS = new ConcurrentHashMap<>();
+
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration timeout;
+    private final int isolation;
+    private final Metrics metrics;
+
+    @FunctionalInterface
+    public interface TransactionCallback<T> {
+        T doInTransaction(Connection connection) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection getConnection() throws SQLException;
+    }
+
+    /**
+     * Counters of one template.
+     */
+    public static final class Metrics {
+        private final LongAdder transactions = new LongAdder();
+        private final LongAdder commits = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final Map<String, LongAdder> retriesByState = new ConcurrentHashMap<>();
+
+        public long transactions() { return transactions.sum(); }
+        public long commits() { return commits.sum(); }
+        public long retries() { return retries.sum(); }
+        /** Transactions that still hit contention on their last allowed attempt. */
+        public long exhausted() { return exhausted.sum(); }
+        /** Transactions that ended with any exception, including {@link #exhausted}. */
+        public long failures() { return failures.sum(); }
+
+        public Map<String, Long> retriesBySqlState() {
+            Map<String, Long> res = new TreeMap<>();
+            retriesByState.forEach((state, n) -> res.put(state, n.sum()));
+            return res;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("transactions=%d commits=%d retries=%d exhausted=%d failures=%d byState=%s",
+                    transactions(), commits(), retries(), exhausted(), failures(), retriesBySqlState());
+        }
+    }
+
+    public TransactionTemplate(int maxAttempts, Duration initialBackoff, Duration maxBackoff, Duration timeout, int isolation) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be >= 1");
+        if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+            throw new IllegalArgumentException("backoff must satisfy 0 <= initial <= max");
+        }
+        if (timeout.isNegative() || timeout.isZero()) throw new IllegalArgumentException("timeout must be > 0");
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.timeout = timeout;
+        this.isolation = isolation;
+        this.metrics = new Metrics();
+    }
+
+    /**
+     * The shared template used by the DAOs and services, configured by the "tx.maxAttempts",
+     * "tx.backoff.initialMs", "tx.backoff.maxMs", "tx.timeoutMs" and "tx.isolation" settings
+     * (see {@link AppConfig}).
+     */
+    public static TransactionTemplate defaults() {
+        return DEFAULT;
+    }
+
+    private static TransactionTemplate fromConfig() {
+        return new TransactionTemplate(
+                AppConfig.getInt("tx.maxAttempts", 5),
+                Duration.ofMillis(AppConfig.getLong("tx.backoff.initialMs", 5)),
+                Duration.ofMillis(AppConfig.getLong("tx.backoff.maxMs", 200)),
+                Duration.ofMillis(AppConfig.getLong("tx.timeoutMs", 5000)),
+                isolationLevel(AppConfig.get("tx.isolation", "default").trim()));
+    }
+
+    // "default" keeps the connection's level; otherwise a level name such as read_committed
+    private static int isolationLevel(String name) {
+        return switch (name.toLowerCase()) {
+            case "default" -> DEFAULT_ISOLATION;
+            case "read_uncommitted" -> Connection.TRANSACTION_READ_UNCOMMITTED;
+            case "read_committed" -> Connection.TRANSACTION_READ_COMMITTED;
+            case "repeatable_read" -> Connection.TRANSACTION_REPEATABLE_READ;
+            case "serializable" -> Connection.TRANSACTION_SERIALIZABLE;
+            default -> throw new IllegalArgumentException("Unknown tx.isolation: " + name
+                    + " (expected default, read_uncommitted, read_committed, repeatable_read or serializable)");
+        };
+    }
+
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Runs the work on a primary database connection.
+     */
+    public <T> T execute(String failureMessage, TransactionCallback<T> work) {
+        return execute(DbConnectionManager::getConnection, failureMessage, work);
+    }
+
+    /**
+     * Runs the work in a transaction on a connection from {@code source}, retrying on contention.
+     * SQL failures are thrown as DataAccessException with {@code failureMessage}; runtime
+     * exceptions from the work are rethrown as they are.
+     */
+    public <T> T execute(ConnectionSource source, String failureMessage, TransactionCallback<T> work) {
+        metrics.transactions.increment();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = runOnce(source, work, deadline);
+                metrics.commits.increment();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                String state = retryableState(e);
+                if (state == null) {
+                    metrics.failures.increment();
+                    throw e instanceof SQLException sql ? new DataAccessException(failureMessage, sql) : (RuntimeException) e;
+                }
+                long pause = backoffNanos(attempt);
+                if (attempt >= maxAttempts || System.nanoTime() + pause >= deadline) {
+                    metrics.exhausted.increment();
+                    metrics.failures.increment();
+                    throw new DataAccessException(failureMessage + " (gave up after " + attempt + " attempts)", e);
+                }
+                metrics.retries.increment();
+                metrics.retriesByState.computeIfAbsent(state, k -> new LongAdder()).increment();
+                sleep(pause, failureMessage);
+            }
+        }
+    }
+
+    private <T> T runOnce(ConnectionSource source, TransactionCallback<T> work, long deadline) throws SQLException {
+        try (Connection conn = source.getConnection()) {
+            int previousIsolation = isolation == DEFAULT_ISOLATION ? DEFAULT_ISOLATION : conn.getTransactionIsolation();
+            int lockTimeout = h2LockTimeout(conn);
+            long leftMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            boolean lowered = lockTimeout > 0 && leftMs < lockTimeout;
+            try {
+                if (lowered) setLockTimeout(conn, Math.max(1, leftMs));
+                if (isolation != DEFAULT_ISOLATION) conn.setTransactionIsolation(isolation);
+                conn.setAutoCommit(false);
+                T result = work.doInTransaction(withDeadline(conn, deadline));
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                try { conn.rollback(); } catch (SQLException ignore) {}
+                throw e;
+            } finally {
+                try {
+                    conn.setAutoCommit(true);
+                    if (previousIsolation != DEFAULT_ISOLATION) conn.setTransactionIsolation(previousIsolation);
+                    if (lowered) setLockTimeout(conn, lockTimeout); // pooled connections keep session settings
+                } catch (SQLException ignore) {}
+            }
+        }
+    }
+
+    /**
+     * The connection, with the time left until the deadline applied as query timeout to every
+     * statement created through it. Once the time is up no further statement can be created.
+     */
+    private static Connection withDeadline(Connection conn, long deadline) {
+        return (Connection) Proxy.newProxyInstance(TransactionTemplate.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    String name = method.getName();
+                    boolean creates = name.equals("createStatement") || name.equals("prepareStatement")
+                            || name.equals("prepareCall");
+                    long left = deadline - System.nanoTime();
+                    if (creates && left <= 0) {
+                        throw new SQLTimeoutException("Transaction timeout reached before the statement could run", "57014");
+                    }
+                    Object res;
+                    try {
+                        res = method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (creates) {
+                        long seconds = TimeUnit.NANOSECONDS.toSeconds(left + 999_999_999L);
+                        ((Statement) res).setQueryTimeout((int) Math.min(Integer.MAX_VALUE, seconds));
+                    }
+                    return res;
+                });
+    }
+
+    private static int h2LockTimeout(Connection conn) throws SQLException {
+        String url = conn.getMetaData().getURL();
+        Integer known = LOCK_TIMEOUTS.get(url);
+        if (known != null) return known;
+        int timeout = -1;
+        if ("H2".equals(conn.getMetaData().getDatabaseProductName())) {
+            try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(H2_LOCK_TIMEOUT_SQL)) {
+                if (rs.next()) timeout = rs.getInt(1);
+            }
+        }
+        LOCK_TIMEOUTS.put(url, timeout);
+        return timeout;
+    }
+
+    private static void setLockTimeout(Connection conn, long millis) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute(H2_SET_LOCK_TIMEOUT_SQL + millis);
+        }
+    }
+
+    /** Random pause in [0, min(max, initial * 2^(attempt-1))]. */
+    private long backoffNanos(int attempt) {
+        long cap = initialBackoff.toNanos() << Math.min(attempt - 1, 20);
+        cap = Math.min(cap, maxBackoff.toNanos());
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    private static void sleep(long nanos, String failureMessage) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException(failureMessage + " (interrupted while waiting to retry)", e);
+        }
+    }
+
+    /**
+     * SQLState (or vendor code) of the first retryable SQLException in the cause chain, so that
+     * failures wrapped by a DAO call inside the work are recognised too. Null if there is none.
+     */
+    static String retryableState(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause() == c ? null : c.getCause()) {
+            if (c instanceof SQLException sql) {
+                for (SQLException s = sql; s != null; s = s.getNextException()) {
+                    String state = s.getSQLState();
+                    if (state != null && RETRYABLE_STATES.contains(state)) return state;
+                    if (s.getErrorCode() == MYSQL_LOCK_WAIT_TIMEOUT || s.getErrorCode() == MYSQL_DEADLOCK) {
+                        return "mysql-" + s.getErrorCode();
+                    }
+                    if (s instanceof SQLTransactionRollbackException) return state == null ? "40000" : state;
+                }
+            }
+        }
+        return null;
+    }
+}
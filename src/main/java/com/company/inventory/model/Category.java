@@ -0,0 +1,30 @@
+package com.company.inventory.model;
+
+/**
+ * Node of the category tree. Root categories have no parent.
+ */
+public class Category {
+    private final Long id;
+    private final String name;
+    private final Long parentId;
+
+    public Category(Long id, String name, Long parentId) {
+        if (name == null || name.isBlank()) throw new IllegalArgumentException("name is blank");
+        this.id = id;
+        this.name = name.trim();
+        this.parentId = parentId;
+    }
+
+    public Long getId() { return id; }
+    public String getName() { return name; }
+    public Long getParentId() { return parentId; }
+
+    public boolean isRoot() {
+        return parentId == null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Category[id=%s, name=%s, parentId=%s]", id, name, parentId);
+    }
+}
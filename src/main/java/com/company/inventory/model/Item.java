@@ -8,6 +8,7 @@ public class Item extends BaseEntity {
     private Double purchasePrice;
     private Double salePrice;
     private Integer reorderLevel;
+    private long version; // incremented by every update; used for optimistic locking
 
     public Item() {}
 
@@ -16,6 +17,10 @@ public class Item extends BaseEntity {
     }
 
     public Item(Long id, String name, Sku sku,Long categoryId,Long supplierId, Double purchasePrice, Double salePrice, Integer reorderLevel) {
+        this(id, name, sku, categoryId, supplierId, purchasePrice, salePrice, reorderLevel, 0L);
+    }
+
+    public Item(Long id, String name, Sku sku,Long categoryId,Long supplierId, Double purchasePrice, Double salePrice, Integer reorderLevel, long version) {
         this.id=id;
         this.name = name;
         this.sku = sku;
@@ -24,6 +29,7 @@ public class Item extends BaseEntity {
         this.purchasePrice=purchasePrice;
         this.salePrice=salePrice;
         this.reorderLevel=reorderLevel;
+        this.version=version;
     }
 
     // getters and setters
@@ -49,8 +55,11 @@ public class Item extends BaseEntity {
     public Integer getReorderLevel() { return reorderLevel; }
     public void setReorderLevel(Integer reorderLevel) { this.reorderLevel = reorderLevel; }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
     @Override
     public String toString() {
-        return String.format("Item[id=%s, name=%s, sku=%s, categoryId=%s, supplierId=%s, purchasePrice=%s, salePrice=%s, reorderLevel=%s]", id, name, sku,categoryId,supplierId,purchasePrice,salePrice,reorderLevel);
+        return String.format("Item[id=%s, name=%s, sku=%s, categoryId=%s, supplierId=%s, purchasePrice=%s, salePrice=%s, reorderLevel=%s, version=%d]", id, name, sku,categoryId,supplierId,purchasePrice,salePrice,reorderLevel,version);
     }
 }
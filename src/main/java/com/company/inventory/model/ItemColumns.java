@@ -0,0 +1,104 @@
+package com.company.inventory.model;
+
+import java.util.Arrays;
+
+/**
+ * Column-oriented container for many items (struct of arrays).
+ * Used by bulk paths instead of a List of Item, which boxes every numeric field.
+ * Missing category/supplier ids are stored as {@link #NO_ID}.
+ */
+public final class ItemColumns {
+
+    public static final long NO_ID = -1L;
+
+    private long[] ids;
+    private String[] names;
+    private String[] skus;
+    private long[] categoryIds;
+    private long[] supplierIds;
+    private double[] purchasePrices;
+    private double[] salePrices;
+    private int[] reorderLevels;
+    private long[] versions;
+    private int size;
+
+    public ItemColumns() {
+        this(1024);
+    }
+
+    public ItemColumns(int initialCapacity) {
+        int cap = Math.max(16, initialCapacity);
+        ids = new long[cap];
+        names = new String[cap];
+        skus = new String[cap];
+        categoryIds = new long[cap];
+        supplierIds = new long[cap];
+        purchasePrices = new double[cap];
+        salePrices = new double[cap];
+        reorderLevels = new int[cap];
+        versions = new long[cap];
+    }
+
+    public void add(long id, String name, String sku, long categoryId, long supplierId,
+                    double purchasePrice, double salePrice, int reorderLevel) {
+        add(id, name, sku, categoryId, supplierId, purchasePrice, salePrice, reorderLevel, 0L);
+    }
+
+    public void add(long id, String name, String sku, long categoryId, long supplierId,
+                    double purchasePrice, double salePrice, int reorderLevel, long version) {
+        if (size == ids.length) grow();
+        ids[size] = id;
+        names[size] = name;
+        skus[size] = sku;
+        categoryIds[size] = categoryId;
+        supplierIds[size] = supplierId;
+        purchasePrices[size] = purchasePrice;
+        salePrices[size] = salePrice;
+        reorderLevels[size] = reorderLevel;
+        versions[size] = version;
+        size++;
+    }
+
+    private void grow() {
+        int cap = ids.length * 2;
+        ids = Arrays.copyOf(ids, cap);
+        names = Arrays.copyOf(names, cap);
+        skus = Arrays.copyOf(skus, cap);
+        categoryIds = Arrays.copyOf(categoryIds, cap);
+        supplierIds = Arrays.copyOf(supplierIds, cap);
+        purchasePrices = Arrays.copyOf(purchasePrices, cap);
+        salePrices = Arrays.copyOf(salePrices, cap);
+        reorderLevels = Arrays.copyOf(reorderLevels, cap);
+        versions = Arrays.copyOf(versions, cap);
+    }
+
+    public int size() { return size; }
+
+    public long id(int row) { return ids[row]; }
+    public String name(int row) { return names[row]; }
+    public String sku(int row) { return skus[row]; }
+    public long categoryId(int row) { return categoryIds[row]; }
+    public long supplierId(int row) { return supplierIds[row]; }
+    public double purchasePrice(int row) { return purchasePrices[row]; }
+    public double salePrice(int row) { return salePrices[row]; }
+    public int reorderLevel(int row) { return reorderLevels[row]; }
+    public long version(int row) { return versions[row]; }
+
+    /**
+     * Row index of the given id, assuming rows were added in ascending id order. -1 if absent.
+     */
+    public int rowOf(long id) {
+        int idx = Arrays.binarySearch(ids, 0, size, id);
+        return idx < 0 ? -1 : idx;
+    }
+
+    /**
+     * Materializes one row as an Item.
+     */
+    public Item toItem(int row) {
+        return new Item(ids[row], names[row], new Sku(skus[row]),
+                categoryIds[row] == NO_ID ? null : categoryIds[row],
+                supplierIds[row] == NO_ID ? null : supplierIds[row],
+                purchasePrices[row], salePrices[row], reorderLevels[row], versions[row]);
+    }
+}
@@ -0,0 +1,120 @@
+package com.company.inventory.model;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The fields of an item that an edit actually changes. Only these columns are written,
+ * so e.g. a price change does not rewrite the name or the SKU (and its unique index).
+ */
+public final class ItemPatch {
+
+    public enum Field {
+        NAME("name"),
+        SKU("sku"),
+        CATEGORY_ID("category_id"),
+        SUPPLIER_ID("supplier_id"),
+        PURCHASE_PRICE("purchase_price"),
+        SALE_PRICE("sale_price"),
+        REORDER_LEVEL("reorder_level");
+
+        private final String column;
+
+        Field(String column) {
+            this.column = column;
+        }
+
+        public String column() {
+            return column;
+        }
+    }
+
+    private final Map<Field, Object> changes = new EnumMap<>(Field.class);
+
+    public ItemPatch name(String name) {
+        changes.put(Field.NAME, Objects.requireNonNull(name, "name"));
+        return this;
+    }
+
+    public ItemPatch sku(Sku sku) {
+        changes.put(Field.SKU, Objects.requireNonNull(sku, "sku"));
+        return this;
+    }
+
+    /** Null clears the category. */
+    public ItemPatch categoryId(Long categoryId) {
+        changes.put(Field.CATEGORY_ID, categoryId);
+        return this;
+    }
+
+    /** Null clears the supplier. */
+    public ItemPatch supplierId(Long supplierId) {
+        changes.put(Field.SUPPLIER_ID, supplierId);
+        return this;
+    }
+
+    public ItemPatch purchasePrice(double purchasePrice) {
+        changes.put(Field.PURCHASE_PRICE, purchasePrice);
+        return this;
+    }
+
+    public ItemPatch salePrice(double salePrice) {
+        changes.put(Field.SALE_PRICE, salePrice);
+        return this;
+    }
+
+    public ItemPatch reorderLevel(int reorderLevel) {
+        changes.put(Field.REORDER_LEVEL, reorderLevel);
+        return this;
+    }
+
+    /**
+     * Patch with the fields of {@code edited} that differ from {@code original}.
+     */
+    public static ItemPatch diff(Item original, Item edited) {
+        ItemPatch patch = new ItemPatch();
+        if (!Objects.equals(original.getName(), edited.getName())) patch.name(edited.getName());
+        if (!Objects.equals(original.getSku(), edited.getSku())) patch.sku(edited.getSku());
+        if (!Objects.equals(original.getCategoryId(), edited.getCategoryId())) patch.categoryId(edited.getCategoryId());
+        if (!Objects.equals(original.getSupplierId(), edited.getSupplierId())) patch.supplierId(edited.getSupplierId());
+        if (!Objects.equals(original.getPurchasePrice(), edited.getPurchasePrice())) patch.purchasePrice(edited.getPurchasePrice());
+        if (!Objects.equals(original.getSalePrice(), edited.getSalePrice())) patch.salePrice(edited.getSalePrice());
+        if (!Objects.equals(original.getReorderLevel(), edited.getReorderLevel())) patch.reorderLevel(edited.getReorderLevel());
+        return patch;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public boolean changes(Field field) {
+        return changes.containsKey(field);
+    }
+
+    /** Changed fields with their new values, in column order. */
+    public Map<Field, Object> getChanges() {
+        return Collections.unmodifiableMap(changes);
+    }
+
+    /**
+     * Copy of {@code item} with this patch applied and the given version.
+     */
+    public Item applyTo(Item item, long version) {
+        return new Item(item.getId(),
+                changes.containsKey(Field.NAME) ? (String) changes.get(Field.NAME) : item.getName(),
+                changes.containsKey(Field.SKU) ? (Sku) changes.get(Field.SKU) : item.getSku(),
+                changes.containsKey(Field.CATEGORY_ID) ? (Long) changes.get(Field.CATEGORY_ID) : item.getCategoryId(),
+                changes.containsKey(Field.SUPPLIER_ID) ? (Long) changes.get(Field.SUPPLIER_ID) : item.getSupplierId(),
+                changes.containsKey(Field.PURCHASE_PRICE) ? (Double) changes.get(Field.PURCHASE_PRICE) : item.getPurchasePrice(),
+                changes.containsKey(Field.SALE_PRICE) ? (Double) changes.get(Field.SALE_PRICE) : item.getSalePrice(),
+                changes.containsKey(Field.REORDER_LEVEL) ? (Integer) changes.get(Field.REORDER_LEVEL) : item.getReorderLevel(),
+                version);
+    }
+
+    @Override
+    public String toString() {
+        return "ItemPatch" + changes;
+    }
+}
@@ -0,0 +1,122 @@
+package com.company.inventory.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented container for many stock movements.
+ * Timestamps are kept as epoch seconds of the local date-time, and reasons are
+ * interned into a small dictionary since most movements share a handful of reasons;
+ * a movement without a reason keeps a null reason.
+ */
+public final class MovementBatch {
+
+    private static final MovementType[] TYPES = MovementType.values();
+    private static final long NO_LOT = Long.MIN_VALUE;
+    private static final int NO_REASON = -1;
+
+    private long[] ids;
+    private long[] itemIds;
+    private int[] qtys;
+    private byte[] types;
+    private long[] epochSeconds;
+    private int[] reasonCodes;
+    private long[] lotIds;
+    private int size;
+
+    private final List<String> reasons = new ArrayList<>();
+    private final Map<String, Integer> reasonIndex = new HashMap<>();
+
+    public MovementBatch() {
+        this(1024);
+    }
+
+    public MovementBatch(int initialCapacity) {
+        int cap = Math.max(16, initialCapacity);
+        ids = new long[cap];
+        itemIds = new long[cap];
+        qtys = new int[cap];
+        types = new byte[cap];
+        epochSeconds = new long[cap];
+        reasonCodes = new int[cap];
+        lotIds = new long[cap];
+    }
+
+    public void add(long id, long itemId, int qty, MovementType type, String reason, LocalDateTime timestamp) {
+        add(id, itemId, qty, type, reason, timestamp, null);
+    }
+
+    public void add(long id, long itemId, int qty, MovementType type, String reason, LocalDateTime timestamp, Long lotId) {
+        if (size == ids.length) grow();
+        ids[size] = id;
+        itemIds[size] = itemId;
+        qtys[size] = qty;
+        types[size] = (byte) type.ordinal();
+        epochSeconds[size] = timestamp.toEpochSecond(ZoneOffset.UTC);
+        reasonCodes[size] = reason == null ? NO_REASON : reasonCode(reason);
+        lotIds[size] = lotId == null ? NO_LOT : lotId;
+        size++;
+    }
+
+    private int reasonCode(String reason) {
+        Integer code = reasonIndex.get(reason);
+        if (code == null) {
+            code = reasons.size();
+            reasons.add(reason);
+            reasonIndex.put(reason, code);
+        }
+        return code;
+    }
+
+    private void grow() {
+        int cap = ids.length * 2;
+        ids = Arrays.copyOf(ids, cap);
+        itemIds = Arrays.copyOf(itemIds, cap);
+        qtys = Arrays.copyOf(qtys, cap);
+        types = Arrays.copyOf(types, cap);
+        epochSeconds = Arrays.copyOf(epochSeconds, cap);
+        reasonCodes = Arrays.copyOf(reasonCodes, cap);
+        lotIds = Arrays.copyOf(lotIds, cap);
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public long id(int row) { return ids[row]; }
+    public long itemId(int row) { return itemIds[row]; }
+    public int qty(int row) { return qtys[row]; }
+    public MovementType type(int row) { return TYPES[types[row]]; }
+    public String reason(int row) { return reasonCodes[row] == NO_REASON ? null : reasons.get(reasonCodes[row]); }
+    public long epochSecond(int row) { return epochSeconds[row]; }
+    public Long lotId(int row) { return lotIds[row] == NO_LOT ? null : lotIds[row]; }
+
+    public LocalDateTime timestamp(int row) {
+        return LocalDateTime.ofEpochSecond(epochSeconds[row], 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Signed quantity: positive for IN, negative for OUT.
+     */
+    public int signedQty(int row) {
+        return types[row] == MovementType.IN.ordinal() ? qtys[row] : -qtys[row];
+    }
+
+    /**
+     * Id of the last row, handy for keyset paging. -1 when empty.
+     */
+    public long lastId() {
+        return size == 0 ? -1L : ids[size - 1];
+    }
+
+    public StockMovement toMovement(int row) {
+        if (type(row) == MovementType.IN) {
+            return new StockInMovement(ids[row], itemIds[row], qtys[row], reason(row), timestamp(row), lotId(row));
+        }
+        return new StockOutMovement(ids[row], itemIds[row], qtys[row], reason(row), timestamp(row), lotId(row));
+    }
+}
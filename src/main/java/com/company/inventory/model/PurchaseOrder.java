@@ -0,0 +1,35 @@
+package com.company.inventory.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Purchase order header with its lines.
+ */
+public class PurchaseOrder extends BaseEntity {
+    private final Long supplierId;
+    private final PurchaseOrderStatus status;
+    private final List<PurchaseOrderLine> lines;
+
+    public PurchaseOrder(Long supplierId, List<PurchaseOrderLine> lines) {
+        this(null, supplierId, PurchaseOrderStatus.OPEN, lines, LocalDateTime.now());
+    }
+
+    public PurchaseOrder(Long id, Long supplierId, PurchaseOrderStatus status, List<PurchaseOrderLine> lines, LocalDateTime createdAt) {
+        super(id, createdAt);
+        if (supplierId == null) throw new IllegalArgumentException("supplierId is null");
+        this.supplierId = supplierId;
+        this.status = status;
+        this.lines = List.copyOf(lines);
+    }
+
+    public Long getSupplierId() { return supplierId; }
+    public PurchaseOrderStatus getStatus() { return status; }
+    public List<PurchaseOrderLine> getLines() { return lines; }
+
+    @Override
+    public String toString() {
+        return String.format("PurchaseOrder[id=%s, supplierId=%s, status=%s, lines=%d, createdAt=%s]",
+                id, supplierId, status, lines.size(), createdAt);
+    }
+}
@@ -0,0 +1,45 @@
+package com.company.inventory.model;
+
+/**
+ * One item on a purchase order with the quantity ordered and the quantity received so far.
+ */
+public class PurchaseOrderLine {
+    private final Long id;
+    private final Long purchaseOrderId;
+    private final Long itemId;
+    private final int qtyOrdered;
+    private final int qtyReceived;
+    private final double unitCost;
+
+    public PurchaseOrderLine(Long itemId, int qtyOrdered, double unitCost) {
+        this(null, null, itemId, qtyOrdered, 0, unitCost);
+    }
+
+    public PurchaseOrderLine(Long id, Long purchaseOrderId, Long itemId, int qtyOrdered, int qtyReceived, double unitCost) {
+        if (itemId == null) throw new IllegalArgumentException("itemId is null");
+        if (qtyOrdered <= 0) throw new IllegalArgumentException("qtyOrdered must be > 0");
+        this.id = id;
+        this.purchaseOrderId = purchaseOrderId;
+        this.itemId = itemId;
+        this.qtyOrdered = qtyOrdered;
+        this.qtyReceived = qtyReceived;
+        this.unitCost = unitCost;
+    }
+
+    public Long getId() { return id; }
+    public Long getPurchaseOrderId() { return purchaseOrderId; }
+    public Long getItemId() { return itemId; }
+    public int getQtyOrdered() { return qtyOrdered; }
+    public int getQtyReceived() { return qtyReceived; }
+    public double getUnitCost() { return unitCost; }
+
+    public int getQtyOutstanding() {
+        return Math.max(0, qtyOrdered - qtyReceived);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PurchaseOrderLine[id=%s, itemId=%s, ordered=%d, received=%d, unitCost=%s]",
+                id, itemId, qtyOrdered, qtyReceived, unitCost);
+    }
+}
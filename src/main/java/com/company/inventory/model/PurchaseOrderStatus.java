@@ -0,0 +1,7 @@
+package com.company.inventory.model;
+
+public enum PurchaseOrderStatus {
+    OPEN,
+    PARTIALLY_RECEIVED,
+    RECEIVED
+}
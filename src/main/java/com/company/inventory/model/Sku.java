@@ -4,17 +4,30 @@ import java.util.Objects;
 
 
 public record Sku(String value) {
+
     public Sku(String value) {
         Objects.requireNonNull(value, "sku");
         String trimmed = value.trim();
         if (trimmed.isEmpty()) throw new IllegalArgumentException("SKU cannot be empty");
         // example validation: alphanumeric + hyphen
-        if (!trimmed.matches("[A-Za-z0-9-]+")) {
+        if (!isValidFormat(trimmed)) {
             throw new IllegalArgumentException("Invalid SKU format");
         }
         this.value = trimmed;
     }
 
+    /**
+     * Same check as the regex [A-Za-z0-9-]+ without compiling a pattern per call.
+     */
+    static boolean isValidFormat(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            boolean ok = (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '-';
+            if (!ok) return false;
+        }
+        return !s.isEmpty();
+    }
+
     @Override
     public String toString() {
         return value;
@@ -7,6 +7,10 @@ public final class StockInMovement extends StockMovement {
         super(id, itemId, qty, MovementType.IN, reason, timestamp);
     }
 
+    public StockInMovement(Long id, Long itemId, int qty, String reason, LocalDateTime timestamp, Long lotId) {
+        super(id, itemId, qty, MovementType.IN, reason, timestamp, lotId);
+    }
+
     @Override
     public void applyTo(Stock stock) {
         stock.increase(getQty());
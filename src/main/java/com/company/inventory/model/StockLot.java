@@ -0,0 +1,41 @@
+package com.company.inventory.model;
+
+import java.time.LocalDate;
+
+/**
+ * Stock of one item received under one lot code. Lots without a real expiry date
+ * use {@link #NO_EXPIRY}, so they are allocated after every dated lot.
+ */
+public class StockLot {
+    public static final LocalDate NO_EXPIRY = LocalDate.of(9999, 12, 31);
+
+    private final Long id;
+    private final Long itemId;
+    private final String lotCode;
+    private final LocalDate expiryDate;
+    private final int quantity;
+
+    public StockLot(Long id, Long itemId, String lotCode, LocalDate expiryDate, int quantity) {
+        this.id = id;
+        this.itemId = itemId;
+        this.lotCode = lotCode;
+        this.expiryDate = expiryDate == null ? NO_EXPIRY : expiryDate;
+        this.quantity = quantity;
+    }
+
+    public Long getId() { return id; }
+    public Long getItemId() { return itemId; }
+    public String getLotCode() { return lotCode; }
+    public LocalDate getExpiryDate() { return expiryDate; }
+    public int getQuantity() { return quantity; }
+
+    public boolean hasExpiry() {
+        return !NO_EXPIRY.equals(expiryDate);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StockLot[id=%s, itemId=%s, lot=%s, expiry=%s, quantity=%d]",
+                id, itemId, lotCode, hasExpiry() ? expiryDate : "-", quantity);
+    }
+}
@@ -11,14 +11,20 @@ public abstract sealed class StockMovement permits StockInMovement, StockOutMove
     private final String reason;
     private final LocalDateTime timestamp;
     private final MovementType type;
+    private final Long lotId; // null for stock that is not tracked by lot
 
     protected StockMovement(Long id, Long itemId, int qty, MovementType type, String reason, LocalDateTime timestamp) {
+        this(id, itemId, qty, type, reason, timestamp, null);
+    }
+
+    protected StockMovement(Long id, Long itemId, int qty, MovementType type, String reason, LocalDateTime timestamp, Long lotId) {
         this.id = id;
         this.itemId = Objects.requireNonNull(itemId);
         this.qty = qty;
         this.type = Objects.requireNonNull(type);
         this.reason = reason == null ? "" : reason;
         this.timestamp = timestamp == null ? LocalDateTime.now() : timestamp;
+        this.lotId = lotId;
     }
 
     public Long getId() { return id; }
@@ -27,6 +33,7 @@ public abstract sealed class StockMovement permits StockInMovement, StockOutMove
     public MovementType getType() { return type; }
     public String getReason() { return reason; }
     public LocalDateTime getTimestamp() { return timestamp; } // LocalDateTime is immutable
+    public Long getLotId() { return lotId; }
 
     /**
      * Apply this movement to the provided stock (IN adds, OUT subtracts).
@@ -43,6 +50,7 @@ public abstract sealed class StockMovement permits StockInMovement, StockOutMove
                 ", type=" + type +
                 ", reason='" + reason + '\'' +
                 ", timestamp=" + timestamp +
+                (lotId == null ? "" : ", lotId=" + lotId) +
                 '}';
     }
 }
@@ -7,6 +7,10 @@ public final class StockOutMovement extends StockMovement {
         super(id, itemId, qty, MovementType.OUT, reason, timestamp);
     }
 
+    public StockOutMovement(Long id, Long itemId, int qty, String reason, LocalDateTime timestamp, Long lotId) {
+        super(id, itemId, qty, MovementType.OUT, reason, timestamp, lotId);
+    }
+
         @Override
         public void applyTo (Stock stock){
             stock.decrease(getQty());
@@ -0,0 +1,23 @@
+package com.company.inventory.model;
+
+public class Supplier {
+    private final Long id;
+    private final String name;
+    private final String contactEmail;
+
+    public Supplier(Long id, String name, String contactEmail) {
+        if (name == null || name.isBlank()) throw new IllegalArgumentException("name is blank");
+        this.id = id;
+        this.name = name.trim();
+        this.contactEmail = contactEmail == null || contactEmail.isBlank() ? null : contactEmail.trim();
+    }
+
+    public Long getId() { return id; }
+    public String getName() { return name; }
+    public String getContactEmail() { return contactEmail; }
+
+    @Override
+    public String toString() {
+        return String.format("Supplier[id=%s, name=%s, contact=%s]", id, name, contactEmail == null ? "-" : contactEmail);
+    }
+}
@@ -0,0 +1,6 @@
+package com.company.inventory.model.dto;
+
+/**
+ * On-hand units and their value at purchase price, over all items in a category and its subcategories.
+ */
+public record CategoryStock(long categoryId, long quantity, double value) {}
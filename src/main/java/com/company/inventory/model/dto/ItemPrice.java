@@ -0,0 +1,6 @@
+package com.company.inventory.model.dto;
+
+/**
+ * Purchase and sale price of an item at some point in time.
+ */
+public record ItemPrice(long itemId, double purchasePrice, double salePrice) {}
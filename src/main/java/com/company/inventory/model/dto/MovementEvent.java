@@ -0,0 +1,9 @@
+package com.company.inventory.model.dto;
+
+import com.company.inventory.model.MovementType;
+
+/**
+ * A committed stock movement as seen by a movement listener: the item's quantity right after
+ * it ({@code stockAfter}) and when it was made, in epoch milliseconds.
+ */
+public record MovementEvent(long itemId, int qty, MovementType type, String reason, Long lotId, int stockAfter, long timeMillis) {}
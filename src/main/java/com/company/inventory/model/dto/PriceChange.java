@@ -0,0 +1,11 @@
+package com.company.inventory.model.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of an item's price history: the prices before and after a change, and when the
+ * new prices took effect. Changes made together (one repricing run, one item edit) share a changeId.
+ */
+public record PriceChange(long changeId, long itemId, LocalDateTime effectiveFrom,
+                          double oldPurchasePrice, double oldSalePrice,
+                          double newPurchasePrice, double newSalePrice, String reason) {}
@@ -0,0 +1,6 @@
+package com.company.inventory.model.dto;
+
+/**
+ * One requested stock adjustment: positive delta = IN, negative delta = OUT.
+ */
+public record StockChange(Long itemId, int delta, String reason) {}
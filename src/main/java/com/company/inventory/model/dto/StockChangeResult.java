@@ -0,0 +1,10 @@
+package com.company.inventory.model.dto;
+
+/**
+ * Outcome of one {@link StockChange} in a batch: the resulting quantity, or the reason it was rejected.
+ */
+public record StockChangeResult(StockChange change, int quantity, String error) {
+    public boolean ok() {
+        return error == null;
+    }
+}
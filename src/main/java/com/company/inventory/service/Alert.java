@@ -0,0 +1,15 @@
+package com.company.inventory.service;
+
+import java.time.Instant;
+
+/**
+ * An alert fired by {@link AlertEngine}: which rule, for which item (null for rules over all
+ * items), the observed amount and the threshold it crossed.
+ */
+public record Alert(Instant at, String rule, Long itemId, double observed, double threshold, String message) {
+
+    @Override
+    public String toString() {
+        return at + " [" + rule + "] " + message;
+    }
+}
@@ -0,0 +1,318 @@
+package com.company.inventory.service;
+
+import com.company.inventory.config.AppConfig;
+import com.company.inventory.model.Item;
+import com.company.inventory.model.MovementType;
+import com.company.inventory.model.dto.MovementEvent;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Evaluates {@link AlertRule}s against every committed movement, as a {@link MovementListener}
+ * of {@link InventoryService}, and hands the alerts to pluggable {@link AlertSink}s.
+ * <p>
+ * Rules never query stock_movement. A windowed rule keeps, per item (or once for all items),
+ * the amounts of the last window in {@value #WINDOW_BUCKETS} time buckets, so the window slides
+ * in steps of 1/{@value #WINDOW_BUCKETS} of its length and each tracked item costs a few hundred
+ * bytes. At most {@code maxKeysPerRule} items are tracked per rule; beyond that the least
+ * recently moved item is dropped (and counted in {@link Stats#evictedKeys}), which can only
+ * delay an alert for an item that has been quiet. State is split over lock stripes so writers
+ * of different items rarely meet.
+ * <p>
+ * Value and reorder-level rules look the item up through the service, from memory when the
+ * inventory cache is enabled, and only for movements the rule's direction and reason match.
+ * Without the cache each such lookup is a database query on the thread that made the movement,
+ * so every matching stock write pays one more round trip; {@link #needsItemLookups} tells
+ * whether any rule does this.
+ * Alerts go through a bounded queue to one dispatcher thread; when the sinks fall behind and
+ * the queue is full, further alerts are dropped and counted rather than slowing down writers.
+ * The last {@value #RECENT_SIZE} alerts are kept for {@link #recentAlerts}. State is in memory
+ * only and starts empty on every start.
+ */
+public class AlertEngine implements MovementListener, AutoCloseable {
+
+    private static final int WINDOW_BUCKETS = 12;
+    private static final int STRIPE_BITS = 4;
+    private static final int RECENT_SIZE = 100;
+
+    private final List<RuleState> rules = new ArrayList<>();
+    private final Function<Long, Optional<Item>> items;
+    private final List<AlertSink> sinks;
+    private final BlockingQueue<Alert> queue;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final Alert[] recent = new Alert[RECENT_SIZE];
+    private final AtomicLong recentNext = new AtomicLong();
+    private final LongAdder movements = new LongAdder();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sinkFailures = new LongAdder();
+    private final LongAdder evictedKeys = new LongAdder();
+
+    public record Stats(long movements, long alerts, long dropped, long sinkFailures, long evictedKeys,
+                        Map<String, Integer> trackedKeys) {
+
+        @Override
+        public String toString() {
+            return "movements=" + movements + " alerts=" + alerts + " dropped=" + dropped + " sinkFailures=" + sinkFailures
+                    + " evictedKeys=" + evictedKeys + " trackedKeys=" + trackedKeys;
+        }
+    }
+
+    public AlertEngine(List<AlertRule> rules, Function<Long, Optional<Item>> items, List<AlertSink> sinks,
+                       int maxKeysPerRule, int queueSize) {
+        if (maxKeysPerRule < 1) throw new IllegalArgumentException("maxKeysPerRule must be >= 1");
+        if (queueSize < 1) throw new IllegalArgumentException("queueSize must be >= 1");
+        Set<String> names = new HashSet<>();
+        for (AlertRule rule : rules) {
+            if (!names.add(rule.name())) throw new IllegalArgumentException("Duplicate alert rule " + rule.name());
+            this.rules.add(new RuleState(rule, maxKeysPerRule));
+        }
+        this.items = Objects.requireNonNull(items, "items");
+        this.sinks = new CopyOnWriteArrayList<>(sinks);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.dispatcher = new Thread(this::dispatch, "alert-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Engine for the {@code alerts.*} settings: one rule per {@code alerts.rule.<name>} (see
+     * {@link AlertRule#parse}), alerts on standard error unless {@code alerts.console=false}
+     * and appended to {@code alerts.logFile} when set.
+     */
+    public static AlertEngine fromConfig(Function<Long, Optional<Item>> items) {
+        List<AlertRule> rules = new ArrayList<>();
+        AppConfig.getByPrefix("alerts.rule.").forEach((name, spec) -> rules.add(AlertRule.parse(name, spec)));
+        List<AlertSink> sinks = new ArrayList<>();
+        if (AppConfig.getBoolean("alerts.console", true)) sinks.add(AlertSink.console());
+        String logFile = AppConfig.get("alerts.logFile", "").trim();
+        if (!logFile.isEmpty()) sinks.add(AlertSink.file(Path.of(logFile)));
+        return new AlertEngine(rules, items, sinks,
+                AppConfig.getInt("alerts.maxKeysPerRule", 10_000), AppConfig.getInt("alerts.queueSize", 10_000));
+    }
+
+    public void addSink(AlertSink sink) {
+        sinks.add(Objects.requireNonNull(sink, "sink"));
+    }
+
+    /** Whether a rule measures value or compares against the reorder level, and so reads the item. */
+    public boolean needsItemLookups() {
+        return rules.stream().anyMatch(r -> r.rule.measure() == AlertRule.Measure.VALUE || r.rule.belowReorderLevel());
+    }
+
+    public List<AlertRule> rules() {
+        return rules.stream().map(r -> r.rule).toList();
+    }
+
+    @Override
+    public void onMovements(List<MovementEvent> events) {
+        for (MovementEvent e : events) {
+            movements.increment();
+            Optional<Item> item = null; // looked up at most once per movement, and only when a matching rule needs it
+            for (RuleState r : rules) {
+                AlertRule rule = r.rule;
+                if (rule.type() != null && rule.type() != e.type()) continue;
+                if (rule.reason() != null && !rule.reason().matcher(e.reason() == null ? "" : e.reason()).matches()) continue;
+                switch (rule.measure()) {
+                    case UNITS -> checkAmount(r, e, e.qty());
+                    case VALUE -> {
+                        if (item == null) item = items.apply(e.itemId());
+                        Double price = item.map(Item::getPurchasePrice).orElse(null);
+                        if (price != null) checkAmount(r, e, e.qty() * price);
+                    }
+                    case STOCK -> {
+                        if (e.type() != MovementType.OUT) continue;
+                        double level = rule.threshold();
+                        if (rule.belowReorderLevel()) {
+                            if (item == null) item = items.apply(e.itemId());
+                            Integer reorderLevel = item.map(Item::getReorderLevel).orElse(null);
+                            if (reorderLevel == null) continue;
+                            level = reorderLevel;
+                        }
+                        int before = e.stockAfter() + e.qty();
+                        if (before >= level && e.stockAfter() < level) {
+                            fire(r, e.itemId(), e.stockAfter(), level, String.format(Locale.ROOT,
+                                    "item %d: stock fell from %d to %d, below %s", e.itemId(), before, e.stockAfter(),
+                                    rule.belowReorderLevel() ? "its reorder level " + (int) level : amount(rule, level)));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void checkAmount(RuleState r, MovementEvent e, double amount) {
+        AlertRule rule = r.rule;
+        if (!rule.isWindowed()) {
+            if (amount > rule.threshold()) {
+                fire(r, e.itemId(), amount, rule.threshold(), String.format(Locale.ROOT,
+                        "item %d: one %s movement of %s (%d units, reason '%s'), over %s", e.itemId(), e.type(),
+                        amount(rule, amount), e.qty(), e.reason(), amount(rule, rule.threshold())));
+            }
+            return;
+        }
+        long key = rule.perItem() ? e.itemId() : 0L;
+        long now = e.timeMillis();
+        double total;
+        Stripe stripe = r.stripeFor(key);
+        synchronized (stripe) {
+            Window w = stripe.computeIfAbsent(key, k -> new Window());
+            total = w.add(now / r.bucketMillis, amount);
+            if (total <= rule.threshold() || (w.fired && now - w.lastFired < r.cooldownMillis)) return;
+            w.fired = true;
+            w.lastFired = now;
+        }
+        String moved = rule.type() == null ? "moved" : rule.type().name();
+        fire(r, rule.perItem() ? e.itemId() : null, total, rule.threshold(), String.format(Locale.ROOT,
+                "%s: %s %s within %ds, over %s", rule.perItem() ? "item " + e.itemId() : "all items",
+                amount(rule, total), moved, rule.window().toSeconds(), amount(rule, rule.threshold())));
+    }
+
+    private static String amount(AlertRule rule, double v) {
+        return rule.measure() == AlertRule.Measure.VALUE
+                ? String.format(Locale.ROOT, "%.2f", v)
+                : String.format(Locale.ROOT, "%.0f units", v);
+    }
+
+    private void fire(RuleState r, Long itemId, double observed, double threshold, String message) {
+        Alert alert = new Alert(Instant.now(), r.rule.name(), itemId, observed, threshold, message);
+        fired.increment();
+        recent[(int) (recentNext.getAndIncrement() % RECENT_SIZE)] = alert;
+        if (!queue.offer(alert)) dropped.increment();
+    }
+
+    private void dispatch() {
+        while (running || !queue.isEmpty()) {
+            Alert alert;
+            try {
+                alert = queue.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (alert == null) continue;
+            for (AlertSink sink : sinks) {
+                try {
+                    sink.send(alert);
+                } catch (RuntimeException e) {
+                    // keep going with the other sinks; only the first failure is printed, the rest are counted
+                    sinkFailures.increment();
+                    if (sinkFailures.sum() == 1) System.err.println("Alert sink failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** The most recent alerts, newest first, whether or not the sinks got them. */
+    public List<Alert> recentAlerts() {
+        long next = recentNext.get();
+        List<Alert> res = new ArrayList<>();
+        for (long i = next - 1; i >= Math.max(0, next - RECENT_SIZE); i--) {
+            Alert a = recent[(int) (i % RECENT_SIZE)];
+            if (a != null) res.add(a);
+        }
+        return res;
+    }
+
+    public Stats stats() {
+        Map<String, Integer> tracked = new LinkedHashMap<>();
+        for (RuleState r : rules) {
+            if (!r.rule.isWindowed()) continue;
+            int n = 0;
+            for (Stripe s : r.stripes) {
+                synchronized (s) {
+                    n += s.size();
+                }
+            }
+            tracked.put(r.rule.name(), n);
+        }
+        return new Stats(movements.sum(), fired.sum(), dropped.sum(), sinkFailures.sum(), evictedKeys.sum(), tracked);
+    }
+
+    /** Delivers the alerts still queued and stops the dispatcher. */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            dispatcher.join(Duration.ofSeconds(5).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class RuleState {
+        final AlertRule rule;
+        final long bucketMillis;
+        final long cooldownMillis;
+        final Stripe[] stripes;
+
+        RuleState(AlertRule rule, int maxKeys) {
+            this.rule = rule;
+            this.bucketMillis = Math.max(1, rule.window().toMillis() / WINDOW_BUCKETS);
+            this.cooldownMillis = rule.cooldown().toMillis();
+            int perStripe = Math.max(1, (maxKeys + (1 << STRIPE_BITS) - 1) >> STRIPE_BITS);
+            this.stripes = new Stripe[rule.isWindowed() ? 1 << STRIPE_BITS : 0];
+            for (int i = 0; i < stripes.length; i++) stripes[i] = new Stripe(perStripe);
+        }
+
+        Stripe stripeFor(long key) {
+            return stripes[(Long.hashCode(key) * 0x9E3779B9) >>> (32 - STRIPE_BITS)];
+        }
+    }
+
+    // windows of one lock stripe, least recently moved first
+    private final class Stripe extends LinkedHashMap<Long, Window> {
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Window> eldest) {
+            if (size() <= capacity) return false;
+            evictedKeys.increment();
+            return true;
+        }
+    }
+
+    // amounts of the last WINDOW_BUCKETS buckets, indexed by bucket number modulo WINDOW_BUCKETS
+    private static final class Window {
+        final long[] buckets = new long[WINDOW_BUCKETS];
+        final double[] sums = new double[WINDOW_BUCKETS];
+        boolean fired;
+        long lastFired;
+
+        Window() {
+            Arrays.fill(buckets, Long.MIN_VALUE);
+        }
+
+        // adds the amount to its bucket and returns the total over the window ending at that bucket
+        double add(long bucket, double amount) {
+            int i = (int) Math.floorMod(bucket, (long) WINDOW_BUCKETS);
+            if (buckets[i] < bucket) {
+                buckets[i] = bucket;
+                sums[i] = 0;
+            }
+            if (buckets[i] == bucket) sums[i] += amount; // a movement older than the window is ignored
+            double total = 0;
+            for (int j = 0; j < WINDOW_BUCKETS; j++) {
+                if (buckets[j] > bucket - WINDOW_BUCKETS && buckets[j] <= bucket) total += sums[j];
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.company.inventory.service;
+
+import com.company.inventory.model.MovementType;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * One alert rule of {@link AlertEngine}. A rule looks at the movements of one direction
+ * ({@code type}, null for both) whose reason matches {@code reason} (null for any), and
+ * measures them in units, in value at the item's purchase price, or by the stock they leave:
+ * <ul>
+ *   <li>UNITS or VALUE without a window: fires for a single movement over the threshold
+ *       ("a negative adjustment over $500").</li>
+ *   <li>UNITS or VALUE with a window: fires when the movements within the window add up to
+ *       more than the threshold, per item or over all items ("more than 100 units out within
+ *       10 minutes"), then stays quiet for that item for {@code cooldown}.</li>
+ *   <li>STOCK: fires when a movement takes an item from at or above the threshold, or its
+ *       reorder level when {@code belowReorderLevel} is set, to below it.</li>
+ * </ul>
+ */
+public record AlertRule(String name, MovementType type, Pattern reason, Measure measure, double threshold,
+                        boolean belowReorderLevel, Duration window, boolean perItem, Duration cooldown) {
+
+    public enum Measure { UNITS, VALUE, STOCK }
+
+    public AlertRule {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(measure, "measure");
+        Objects.requireNonNull(window, "window");
+        Objects.requireNonNull(cooldown, "cooldown");
+        if (window.isNegative() || cooldown.isNegative()) throw new IllegalArgumentException("Alert rule " + name + ": negative duration");
+        if (threshold < 0) throw new IllegalArgumentException("Alert rule " + name + ": threshold cannot be negative");
+        if (belowReorderLevel && measure != Measure.STOCK) {
+            throw new IllegalArgumentException("Alert rule " + name + ": threshold=reorder needs measure=stock");
+        }
+        if (measure == Measure.STOCK && type == MovementType.IN) {
+            throw new IllegalArgumentException("Alert rule " + name + ": stock only falls on OUT movements");
+        }
+    }
+
+    public boolean isWindowed() {
+        return measure != Measure.STOCK && !window.isZero();
+    }
+
+    /**
+     * Parses a rule from whitespace-separated {@code key=value} settings:
+     * {@code when} (in, out or any; default any), {@code reason} (regular expression matched
+     * against the whole reason), {@code measure} (units, value or stock; default units),
+     * {@code threshold} (a number, or "reorder" for stock rules), {@code window} and
+     * {@code cooldown} (e.g. 30s, 10m, 1h; window 0 means single movements, cooldown defaults
+     * to the window) and {@code per} (item or all; default item).
+     * Example: {@code when=out window=10m threshold=100}.
+     */
+    public static AlertRule parse(String name, String spec) {
+        MovementType type = null;
+        Pattern reason = null;
+        Measure measure = Measure.UNITS;
+        Double threshold = null;
+        boolean reorder = false;
+        Duration window = Duration.ZERO;
+        Duration cooldown = null;
+        boolean perItem = true;
+        for (String token : spec.trim().split("\\s+")) {
+            int eq = token.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Alert rule " + name + ": expected key=value, got " + token);
+            String key = token.substring(0, eq);
+            String value = token.substring(eq + 1);
+            try {
+                switch (key) {
+                    case "when" -> type = value.equalsIgnoreCase("any") ? null : MovementType.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "reason" -> reason = Pattern.compile(value);
+                    case "measure" -> measure = Measure.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "threshold" -> {
+                        reorder = value.equalsIgnoreCase("reorder");
+                        threshold = reorder ? 0 : Double.parseDouble(value);
+                    }
+                    case "window" -> window = parseDuration(value);
+                    case "cooldown" -> cooldown = parseDuration(value);
+                    case "per" -> {
+                        if (!value.equals("item") && !value.equals("all")) throw new IllegalArgumentException("expected item or all");
+                        perItem = value.equals("item");
+                    }
+                    default -> throw new IllegalArgumentException("unknown setting");
+                }
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Alert rule " + name + ": invalid reason pattern " + value, e);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Alert rule " + name + ": invalid " + key + "=" + value
+                        + (e.getMessage() == null ? "" : " (" + e.getMessage() + ")"), e);
+            }
+        }
+        if (threshold == null) throw new IllegalArgumentException("Alert rule " + name + ": threshold is required");
+        return new AlertRule(name, type, reason, measure, threshold, reorder, window, perItem,
+                cooldown == null ? window : cooldown);
+    }
+
+    // 30s, 10m, 2h or a plain number of seconds
+    private static Duration parseDuration(String s) {
+        char unit = s.isEmpty() ? ' ' : s.charAt(s.length() - 1);
+        String number = Character.isDigit(unit) ? s : s.substring(0, s.length() - 1);
+        long n = Long.parseLong(number);
+        return switch (unit) {
+            case 's' -> Duration.ofSeconds(n);
+            case 'm' -> Duration.ofMinutes(n);
+            case 'h' -> Duration.ofHours(n);
+            default -> {
+                if (!Character.isDigit(unit)) throw new IllegalArgumentException("unit must be s, m or h");
+                yield Duration.ofSeconds(n);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(name).append(": ");
+        sb.append(type == null ? "any" : type).append(" movements");
+        if (reason != null) sb.append(" with reason ~ ").append(reason.pattern());
+        switch (measure) {
+            case STOCK -> sb.append(", stock falling below ")
+                    .append(belowReorderLevel ? "the reorder level" : String.format(Locale.ROOT, "%.0f", threshold));
+            case UNITS, VALUE -> {
+                sb.append(isWindowed() ? ", total " : ", single movement ").append(measure == Measure.UNITS ? "units" : "value")
+                  .append(String.format(Locale.ROOT, " over %.2f", threshold));
+                if (isWindowed()) {
+                    sb.append(" within ").append(window.toSeconds()).append("s ").append(perItem ? "per item" : "over all items")
+                      .append(", cooldown ").append(cooldown.toSeconds()).append('s');
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
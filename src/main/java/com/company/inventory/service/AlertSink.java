@@ -0,0 +1,38 @@
+package com.company.inventory.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Where {@link AlertEngine} delivers alerts. Sinks are called one alert at a time from the
+ * engine's dispatcher thread, never from the thread that made the movement, so a slow sink
+ * (mail, a webhook) delays other alerts but not stock writes.
+ */
+@FunctionalInterface
+public interface AlertSink {
+
+    void send(Alert alert);
+
+    /** Prints each alert on standard error, out of the way of batch and server output. */
+    static AlertSink console() {
+        return alert -> System.err.println("ALERT " + alert);
+    }
+
+    /** Appends each alert as one line to the file, creating it and its directory if needed. */
+    static AlertSink file(Path file) {
+        return alert -> {
+            try {
+                Path dir = file.toAbsolutePath().getParent();
+                if (dir != null) Files.createDirectories(dir);
+                Files.writeString(file, alert + System.lineSeparator(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write alert to " + file, e);
+            }
+        };
+    }
+}
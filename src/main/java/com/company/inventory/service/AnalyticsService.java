@@ -0,0 +1,279 @@
+package com.company.inventory.service;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.config.ShardRouter;
+import com.company.inventory.dao.DataAccessException;
+import com.company.inventory.dao.KvStockDao;
+import com.company.inventory.dao.ShardedStockDao;
+import com.company.inventory.dao.StockDao;
+import com.company.inventory.dao.StockDaoJdbc;
+import com.company.inventory.model.MovementType;
+
+import java.sql.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Demand analytics answered from movement_daily_rollup instead of raw stock_movement rows.
+ * The rollup holds units in/out per item per day and is maintained in the same transaction
+ * that writes each movement (see {@link #recordTx}). It counts demand only: stock corrections
+ * (cycle count, integrity correction and stock set movements) are not rolled up, so a count
+ * that finds stock missing does not show up as units sold.
+ * <p>
+ * With sharded stock the rollups are written on the shard that holds each item, so single-item
+ * queries go to that shard and the others are scattered over all shards and merged.
+ */
+public class AnalyticsService {
+
+    private static final String UPSERT_ROLLUP_SQL =
+            "INSERT INTO movement_daily_rollup (item_id, bucket_day, qty_in, qty_out) VALUES (?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE qty_in = qty_in + VALUES(qty_in), qty_out = qty_out + VALUES(qty_out)";
+    private static final String DAILY_SQL =
+            "SELECT bucket_day, qty_in, qty_out FROM movement_daily_rollup WHERE item_id = ? AND bucket_day >= ? ORDER BY bucket_day";
+    private static final String TOP_MOVERS_SQL =
+            "SELECT item_id, SUM(qty_out) AS units_out FROM movement_daily_rollup WHERE bucket_day >= ? " +
+                    "GROUP BY item_id ORDER BY units_out DESC LIMIT ?";
+    private static final String COVER_BELOW_REORDER_SQL =
+            "SELECT i.id, COALESCE(s.quantity, 0) AS qty, i.reorder_level, COALESCE(SUM(r.qty_out), 0) AS units_out " +
+                    "FROM item i " +
+                    "LEFT JOIN stock s ON s.item_id = i.id " +
+                    "LEFT JOIN movement_daily_rollup r ON r.item_id = i.id AND r.bucket_day >= ? " +
+                    "WHERE COALESCE(s.quantity, 0) < i.reorder_level " +
+                    "GROUP BY i.id, s.quantity, i.reorder_level";
+    private static final String CLEAR_ROLLUP_SQL = "DELETE FROM movement_daily_rollup";
+    // movements without a reason are demand too; NOT IN alone is never true for a NULL reason
+    private static final String REBUILD_ROLLUP_SQL =
+            "INSERT INTO movement_daily_rollup (item_id, bucket_day, qty_in, qty_out) " +
+                    "SELECT item_id, CAST(timestamp AS DATE), " +
+                    "SUM(CASE WHEN type = 'IN' THEN qty ELSE 0 END), SUM(CASE WHEN type = 'OUT' THEN qty ELSE 0 END) " +
+                    "FROM stock_movement WHERE (reason IS NULL OR reason NOT IN ('" + CycleCountService.REASON + "', '" +
+                    IntegrityVerifier.CORRECTION_REASON + "', '" + StockDaoJdbc.SET_REASON + "')) " +
+                    "GROUP BY item_id, CAST(timestamp AS DATE)";
+    // sharded: reorder levels come from the primary, stock and units out from each shard
+    private static final String REORDER_LEVELS_SQL = "SELECT id, reorder_level FROM item";
+    private static final String SHARD_STOCK_SQL = "SELECT item_id, quantity FROM stock";
+    private static final String SHARD_UNITS_OUT_SQL =
+            "SELECT item_id, SUM(qty_out) FROM movement_daily_rollup WHERE bucket_day >= ? GROUP BY item_id";
+
+    private final ShardRouter shardRouter; // null when stock lives in the primary database
+
+    /**
+     * Analytics over the rollup in the primary database.
+     */
+    public AnalyticsService() {
+        this.shardRouter = null;
+    }
+
+    /**
+     * With a {@link ShardedStockDao} the rollups are read from the shards; the kv backend keeps no rollups.
+     */
+    public AnalyticsService(StockDao stockDao) {
+        if (stockDao instanceof KvStockDao) {
+            throw new IllegalStateException("Analytics need the movement rollups of a database; not available with kv stock");
+        }
+        this.shardRouter = stockDao instanceof ShardedStockDao sharded ? sharded.getRouter() : null;
+    }
+
+    public record DailyUsage(LocalDate day, long unitsIn, long unitsOut) {}
+
+    public record Mover(long itemId, long unitsOut) {}
+
+    /**
+     * Days of cover = on-hand / average daily units out over the look-back window.
+     * Infinite when the item had no outbound movement in the window.
+     */
+    public record Cover(long itemId, int quantity, int reorderLevel, double averageDailyOut, double daysOfCover) {}
+
+    /**
+     * Adds one movement to the daily rollup using the caller's transaction.
+     */
+    static void recordTx(Connection conn, long itemId, int qty, MovementType type, LocalDate day) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(UPSERT_ROLLUP_SQL)) {
+            bindRollup(ps, itemId, qty, type, day);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Prepared statement for adding many movements to the rollup with {@code addBatch}; see {@link #bindRollup}.
+     */
+    static PreparedStatement prepareRollupBatch(Connection conn) throws SQLException {
+        return conn.prepareStatement(UPSERT_ROLLUP_SQL);
+    }
+
+    static void bindRollup(PreparedStatement ps, long itemId, int qty, MovementType type, LocalDate day) throws SQLException {
+        ps.setLong(1, itemId);
+        ps.setDate(2, Date.valueOf(day));
+        ps.setLong(3, type == MovementType.IN ? qty : 0);
+        ps.setLong(4, type == MovementType.OUT ? qty : 0);
+    }
+
+    /**
+     * Recomputes the rollup from the live stock_movement table (on every shard), e.g. for
+     * movements written before the rollup existed. Archived movements are not included.
+     */
+    public void rebuildRollups() {
+        if (shardRouter == null) {
+            rebuildRollups(-1);
+        } else {
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) rebuildRollups(shard);
+        }
+    }
+
+    private void rebuildRollups(int shard) {
+        try (Connection c = shard < 0 ? DbConnectionManager.getConnection() : shardRouter.getConnectionForShard(shard);
+             Statement s = c.createStatement()) {
+            c.setAutoCommit(false);
+            try {
+                s.executeUpdate(CLEAR_ROLLUP_SQL);
+                s.executeUpdate(REBUILD_ROLLUP_SQL);
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to rebuild movement rollups", e);
+        }
+    }
+
+    /**
+     * Units in/out per day for the last {@code days} days (days without movement are omitted).
+     */
+    public List<DailyUsage> dailyUsage(long itemId, int days) {
+        try (Connection c = shardRouter == null ? DbConnectionManager.getReadConnection() : shardRouter.getConnection(itemId);
+             PreparedStatement ps = c.prepareStatement(DAILY_SQL)) {
+            ps.setLong(1, itemId);
+            ps.setDate(2, Date.valueOf(LocalDate.now().minusDays(days - 1L)));
+            try (ResultSet rs = ps.executeQuery()) {
+                List<DailyUsage> res = new ArrayList<>();
+                while (rs.next()) res.add(new DailyUsage(rs.getDate(1).toLocalDate(), rs.getLong(2), rs.getLong(3)));
+                return res;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    /**
+     * Units in/out per ISO week (keyed by the Monday) for the last {@code weeks} weeks.
+     */
+    public List<DailyUsage> weeklyUsage(long itemId, int weeks) {
+        Map<LocalDate, long[]> byWeek = new TreeMap<>();
+        for (DailyUsage d : dailyUsage(itemId, weeks * 7)) {
+            LocalDate monday = d.day().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            long[] acc = byWeek.computeIfAbsent(monday, k -> new long[2]);
+            acc[0] += d.unitsIn();
+            acc[1] += d.unitsOut();
+        }
+        List<DailyUsage> res = new ArrayList<>(byWeek.size());
+        byWeek.forEach((week, acc) -> res.add(new DailyUsage(week, acc[0], acc[1])));
+        return res;
+    }
+
+    /**
+     * Rolling average of units out per day over the last {@code days} days.
+     */
+    public double averageDailyOut(long itemId, int days) {
+        long out = 0;
+        for (DailyUsage d : dailyUsage(itemId, days)) out += d.unitsOut();
+        return (double) out / days;
+    }
+
+    /**
+     * Items with the most units out over the last {@code days} days.
+     */
+    public List<Mover> topMovers(int days, int limit) {
+        if (shardRouter == null) {
+            try (Connection c = DbConnectionManager.getReadConnection()) {
+                return topMovers(c, days, limit);
+            } catch (SQLException e) {
+                throw new DataAccessException(e);
+            }
+        }
+        // each item lives on one shard, so the overall top N is among the shards' top N
+        List<Mover> all = shardRouter.scatter(c -> topMovers(c, days, limit));
+        all.sort(Comparator.comparingLong(Mover::unitsOut).reversed());
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    private static List<Mover> topMovers(Connection c, int days, int limit) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(TOP_MOVERS_SQL)) {
+            ps.setDate(1, Date.valueOf(LocalDate.now().minusDays(days - 1L)));
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Mover> res = new ArrayList<>();
+                while (rs.next()) res.add(new Mover(rs.getLong(1), rs.getLong(2)));
+                return res;
+            }
+        }
+    }
+
+    /**
+     * Days of cover for every item whose stock is below its reorder level, lowest cover first.
+     */
+    public List<Cover> daysOfCoverBelowReorder(int lookbackDays) {
+        if (shardRouter != null) return daysOfCoverBelowReorderSharded(lookbackDays);
+        try (Connection c = DbConnectionManager.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(COVER_BELOW_REORDER_SQL)) {
+            ps.setDate(1, Date.valueOf(LocalDate.now().minusDays(lookbackDays - 1L)));
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Cover> res = new ArrayList<>();
+                while (rs.next()) {
+                    int qty = rs.getInt(2);
+                    double avg = (double) rs.getLong(4) / lookbackDays;
+                    double cover = avg == 0 ? Double.POSITIVE_INFINITY : qty / avg;
+                    res.add(new Cover(rs.getLong(1), qty, rs.getInt(3), avg, cover));
+                }
+                res.sort((a, b) -> Double.compare(a.daysOfCover(), b.daysOfCover()));
+                return res;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    // the join of COVER_BELOW_REORDER_SQL done in memory: items are in the primary, stock and rollups on the shards
+    private List<Cover> daysOfCoverBelowReorderSharded(int lookbackDays) {
+        Date since = Date.valueOf(LocalDate.now().minusDays(lookbackDays - 1L));
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (long[] row : shardRouter.scatter(c -> pairs(c, SHARD_STOCK_SQL, null))) quantities.put(row[0], (int) row[1]);
+        Map<Long, Long> unitsOut = new HashMap<>();
+        for (long[] row : shardRouter.scatter(c -> pairs(c, SHARD_UNITS_OUT_SQL, since))) unitsOut.put(row[0], row[1]);
+        try (Connection c = DbConnectionManager.getReadConnection()) {
+            List<Cover> res = new ArrayList<>();
+            for (long[] item : pairs(c, REORDER_LEVELS_SQL, null)) {
+                int qty = quantities.getOrDefault(item[0], 0);
+                if (qty >= item[1]) continue;
+                double avg = (double) unitsOut.getOrDefault(item[0], 0L) / lookbackDays;
+                double cover = avg == 0 ? Double.POSITIVE_INFINITY : qty / avg;
+                res.add(new Cover(item[0], qty, (int) item[1], avg, cover));
+            }
+            res.sort((a, b) -> Double.compare(a.daysOfCover(), b.daysOfCover()));
+            return res;
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    // rows of a two-column (id, number) query, with an optional date parameter
+    private static List<long[]> pairs(Connection c, String sql, Date since) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            if (since != null) ps.setDate(1, since);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<long[]> res = new ArrayList<>();
+                while (rs.next()) res.add(new long[]{rs.getLong(1), rs.getLong(2)});
+                return res;
+            }
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.company.inventory.service;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.config.ShardRouter;
+import com.company.inventory.dao.CategoryDaoJdbc;
+import com.company.inventory.dao.ItemDao;
+import com.company.inventory.dao.ShardedStockDao;
+import com.company.inventory.dao.StockDao;
+import com.company.inventory.dao.StockLotDaoJdbc;
+import com.company.inventory.dao.TransactionTemplate;
+import com.company.inventory.model.Item;
+import com.company.inventory.model.MovementType;
+import com.company.inventory.model.dto.MovementEvent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Reconciles a physical stock count (sku, counted qty) against the stock table.
+ * SKUs are resolved in bulk; then, in chunked transactions on the primary database (or on each
+ * shard), the stock rows are locked and read, the differences computed, and the stock and
+ * adjusting movements written with JDBC batches. A shortfall is taken from the item's lots
+ * first-expired-first-out, expired lots included, before stock that is not tracked by lot.
+ */
+public class CycleCountService {
+
+    public static final String REASON = "cycle count";
+
+    // items per transaction; also the length of the IN list that locks their stock rows
+    private static final int WRITE_CHUNK = 500;
+
+    private static final String LOCK_STOCK_SQL = "SELECT item_id, quantity FROM stock WHERE item_id IN ";
+    private static final String SET_STOCK_SQL = "UPDATE stock SET quantity = ? WHERE item_id = ?";
+    private static final String INSERT_STOCK_SQL = "INSERT INTO stock (item_id, quantity) VALUES (?, ?)";
+    private static final String INSERT_MOVEMENT_SQL =
+            "INSERT INTO stock_movement (item_id, qty, type, reason, timestamp, lot_id) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final ItemDao itemDao;
+    private final ShardRouter shardRouter; // null when stock lives in the primary database
+    private final TransactionTemplate tx = TransactionTemplate.defaults();
+    private MovementListener movementListener; // null when nobody listens
+    private HotItemCoordinator hotItems; // null unless hot-item handling is enabled
+
+    /**
+     * With a {@link ShardedStockDao} the adjustments are written on the shard that holds each
+     * item's stock; otherwise on the primary database.
+     */
+    public CycleCountService(ItemDao itemDao, StockDao stockDao) {
+        this.itemDao = itemDao;
+        this.shardRouter = stockDao instanceof ShardedStockDao sharded ? sharded.getRouter() : null;
+    }
+
+    /**
+     * Notifies the listener (e.g. an {@link AlertEngine}) of the adjusting movements of each
+     * chunk once it is committed, so rules on counting losses see them. Pass null to stop.
+     */
+    public void setMovementListener(MovementListener listener) {
+        this.movementListener = listener;
+    }
+
+    /**
+     * Writes each chunk under {@link HotItemCoordinator#guardAll}: counted items that are hot are
+     * consolidated first and cannot be promoted until the counted quantity is written, so no sale
+     * from stale buckets is later subtracted from it. Set it whenever the service has one.
+     */
+    public void setHotItemCoordinator(HotItemCoordinator hotItems) {
+        this.hotItems = hotItems;
+    }
+
+    public record CountLine(String sku, int countedQty) {}
+
+    /**
+     * One item whose counted quantity differs from the system quantity.
+     */
+    public record Adjustment(long itemId, Long categoryId, int systemQty, int countedQty, double unitCost) {
+        public int variance() { return countedQty - systemQty; }
+    }
+
+    /**
+     * Variance totals for one category (null key = uncategorized).
+     */
+    public static final class CategoryVariance {
+        private long unitsOver;
+        private long unitsShort;
+        private double value;
+
+        void add(Adjustment a) {
+            int v = a.variance();
+            if (v > 0) unitsOver += v; else unitsShort += -v;
+            value += v * a.unitCost();
+        }
+
+        public long getUnitsOver() { return unitsOver; }
+        public long getUnitsShort() { return unitsShort; }
+        public long getNetUnits() { return unitsOver - unitsShort; }
+        public double getNetValue() { return value; }
+
+        @Override
+        public String toString() {
+            return String.format("over=%d, short=%d, net=%d, value=%.2f", unitsOver, unitsShort, getNetUnits(), value);
+        }
+    }
+
+    public record Result(int linesRead, int itemsCounted, int itemsAdjusted,
+                         List<String> unknownSkus, Map<Long, CategoryVariance> varianceByCategory) {}
+
+    /**
+     * Reads a count file with one "sku,qty" per line. Blank lines, '#' comments and a
+     * non-numeric header on the first line are skipped.
+     */
+    public static List<CountLine> readCountFile(Path file) {
+        List<CountLine> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                int comma = line.indexOf(',');
+                if (comma < 0) throw new IllegalArgumentException("Line " + lineNo + ": expected sku,qty");
+                String sku = line.substring(0, comma).trim();
+                int qty;
+                try {
+                    qty = Integer.parseInt(line.substring(comma + 1).trim());
+                } catch (NumberFormatException e) {
+                    if (lineNo == 1) continue; // header
+                    throw new IllegalArgumentException("Line " + lineNo + ": invalid quantity", e);
+                }
+                if (qty < 0) throw new IllegalArgumentException("Line " + lineNo + ": negative count");
+                lines.add(new CountLine(sku, qty));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lines;
+    }
+
+    public Result reconcile(Path countFile) {
+        return reconcile(readCountFile(countFile));
+    }
+
+    public Result reconcile(List<CountLine> counts) {
+        if (counts == null) throw new IllegalArgumentException("counts is null");
+
+        // the same SKU may be counted in several locations; sum them
+        Map<String, Integer> countedBySku = new LinkedHashMap<>();
+        for (CountLine line : counts) countedBySku.merge(line.sku().trim(), line.countedQty(), Integer::sum);
+
+        Map<String, Item> items = itemDao.findBySkus(countedBySku.keySet());
+        List<String> unknown = new ArrayList<>();
+        Map<Long, Item> itemsById = new HashMap<>(Math.max(16, items.size() * 2));
+        // counted quantity per item, grouped by the database holding its stock and in id order
+        Map<Integer, TreeMap<Long, Integer>> countedByShard = new TreeMap<>();
+        for (Map.Entry<String, Integer> e : countedBySku.entrySet()) {
+            Item item = items.get(e.getKey());
+            if (item == null) {
+                unknown.add(e.getKey());
+                continue;
+            }
+            itemsById.put(item.getId(), item);
+            int shard = shardRouter == null ? 0 : shardRouter.shardFor(item.getId());
+            countedByShard.computeIfAbsent(shard, k -> new TreeMap<>()).put(item.getId(), e.getValue());
+        }
+
+        List<Adjustment> adjustments = new ArrayList<>();
+        for (Map.Entry<Integer, TreeMap<Long, Integer>> shard : countedByShard.entrySet()) {
+            List<Long> ids = new ArrayList<>(shard.getValue().keySet());
+            for (int from = 0; from < ids.size(); from += WRITE_CHUNK) {
+                List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + WRITE_CHUNK));
+                adjustments.addAll(writeChunk(shard.getKey(), chunk, shard.getValue(), itemsById));
+            }
+        }
+
+        Map<Long, CategoryVariance> byCategory = new HashMap<>();
+        for (Adjustment a : adjustments) byCategory.computeIfAbsent(a.categoryId(), k -> new CategoryVariance()).add(a);
+        return new Result(counts.size(), itemsById.size(), adjustments.size(), unknown, byCategory);
+    }
+
+    /**
+     * Applies one chunk of counts in a single transaction on the database holding their stock.
+     * The stock rows are locked and read first, so the variance is taken against the quantity
+     * at this moment (not a possibly stale earlier read) and sales cannot slip in between.
+     * Returns the adjustments made; items whose count matches are left alone.
+     */
+    private List<Adjustment> writeChunk(int shard, List<Long> itemIds, Map<Long, Integer> counted, Map<Long, Item> items) {
+        List<MovementEvent> events = new ArrayList<>();
+        Supplier<List<Adjustment>> write = () -> tx.execute(() -> connectionFor(shard), "Failed to apply cycle count adjustments", conn -> {
+            events.clear(); // a retry starts over
+            Map<Long, Integer> system = lockStockTx(conn, itemIds);
+            List<Adjustment> chunk = new ArrayList<>();
+            for (Long itemId : itemIds) {
+                int systemQty = system.getOrDefault(itemId, 0);
+                int countedQty = counted.get(itemId);
+                if (systemQty == countedQty) continue;
+                Item item = items.get(itemId);
+                double cost = item.getPurchasePrice() == null ? 0.0 : item.getPurchasePrice();
+                chunk.add(new Adjustment(itemId, item.getCategoryId(), systemQty, countedQty, cost));
+            }
+            if (chunk.isEmpty()) return chunk;
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            long nowMillis = now.getTime();
+
+            try (PreparedStatement update = conn.prepareStatement(SET_STOCK_SQL);
+                 PreparedStatement insert = conn.prepareStatement(INSERT_STOCK_SQL)) {
+                boolean anyUpdate = false, anyInsert = false;
+                for (Adjustment a : chunk) {
+                    PreparedStatement ps = system.containsKey(a.itemId()) ? update : insert;
+                    if (ps == update) {
+                        ps.setInt(1, a.countedQty());
+                        ps.setLong(2, a.itemId());
+                        anyUpdate = true;
+                    } else {
+                        ps.setLong(1, a.itemId());
+                        ps.setInt(2, a.countedQty());
+                        anyInsert = true;
+                    }
+                    ps.addBatch();
+                }
+                if (anyUpdate) update.executeBatch();
+                if (anyInsert) insert.executeBatch();
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_MOVEMENT_SQL)) {
+                for (Adjustment a : chunk) {
+                    int v = a.variance();
+                    if (v > 0) {
+                        addMovement(ps, a.itemId(), v, MovementType.IN, null, now);
+                        events.add(new MovementEvent(a.itemId(), v, MovementType.IN, REASON, null, a.countedQty(), nowMillis));
+                        continue;
+                    }
+                    // the missing units leave the lots they were in, oldest expiry first
+                    List<long[]> takes = StockLotDaoJdbc.allocateFefoTx(conn, a.itemId(), -v, StockLotDaoJdbc.ANY_EXPIRY);
+                    StockLotDaoJdbc.takeTx(conn, takes);
+                    int untracked = -v;
+                    int left = a.systemQty(); // the item's quantity as each movement is taken, for the listener
+                    for (long[] t : takes) {
+                        addMovement(ps, a.itemId(), (int) t[1], MovementType.OUT, t[0], now);
+                        untracked -= (int) t[1];
+                        left -= (int) t[1];
+                        events.add(new MovementEvent(a.itemId(), (int) t[1], MovementType.OUT, REASON, t[0], left, nowMillis));
+                    }
+                    if (untracked > 0) {
+                        addMovement(ps, a.itemId(), untracked, MovementType.OUT, null, now);
+                        events.add(new MovementEvent(a.itemId(), untracked, MovementType.OUT, REASON, null, a.countedQty(), nowMillis));
+                    }
+                }
+                ps.executeBatch();
+            }
+
+            // corrections, not demand: left out of the daily rollup (see AnalyticsService)
+
+            // categories live in the primary database only
+            if (shardRouter == null) {
+                try (PreparedStatement ps = CategoryDaoJdbc.prepareStockBatch(conn)) {
+                    for (Adjustment a : chunk) {
+                        CategoryDaoJdbc.bindStock(ps, a.itemId(), a.variance());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+            return chunk;
+        });
+        List<Adjustment> applied = hotItems == null ? write.get() : hotItems.guardAll(itemIds, write);
+        if (shardRouter == null && !applied.isEmpty()) DbConnectionManager.markWrite();
+        MovementListener.publish(movementListener, events);
+        return applied;
+    }
+
+    private static void addMovement(PreparedStatement ps, long itemId, int qty, MovementType type, Long lotId,
+                                    Timestamp at) throws SQLException {
+        ps.setLong(1, itemId);
+        ps.setInt(2, qty);
+        ps.setString(3, type.name());
+        ps.setString(4, REASON);
+        ps.setTimestamp(5, at);
+        if (lotId == null) ps.setNull(6, Types.BIGINT); else ps.setLong(6, lotId);
+        ps.addBatch();
+    }
+
+    // current quantities of the items that have a stock row, locked until the transaction ends
+    private static Map<Long, Integer> lockStockTx(Connection conn, List<Long> itemIds) throws SQLException {
+        StringBuilder sql = new StringBuilder(LOCK_STOCK_SQL).append('(');
+        for (int i = 0; i < itemIds.size(); i++) sql.append(i == 0 ? "?" : ",?");
+        sql.append(") FOR UPDATE");
+        Map<Long, Integer> quantities = new HashMap<>(Math.max(16, itemIds.size() * 2));
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < itemIds.size(); i++) ps.setLong(i + 1, itemIds.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) quantities.put(rs.getLong(1), rs.getInt(2));
+            }
+        }
+        return quantities;
+    }
+
+    private Connection connectionFor(int shard) throws SQLException {
+        return shardRouter == null ? DbConnectionManager.getConnection() : shardRouter.getConnectionForShard(shard);
+    }
+}
@@ -0,0 +1,441 @@
+package com.company.inventory.service;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.dao.CategoryDaoJdbc;
+import com.company.inventory.dao.DataAccessException;
+import com.company.inventory.model.MovementType;
+
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Takes flash-sale items off the stock row lock.
+ * <p>
+ * Every stock write for an item runs inside {@link #guard}, which counts concurrent writers.
+ * When an item has {@code threshold} or more writers at once it is promoted: its quantity is
+ * read once and split over N in-memory buckets, and from then on decreases are taken from
+ * the buckets with a CAS ({@link #tryDecrease}) instead of a database transaction.
+ * A background thread consolidates sold units back into the stock row and one aggregated
+ * OUT movement per interval, and demotes items that have gone quiet.
+ * <p>
+ * No oversell: buckets never hold more than the quantity read under the promotion lock plus
+ * increases committed while hot, and a take only succeeds if a bucket (or, on the slow path,
+ * the buckets together) can cover it. This assumes every stock write for the item goes through
+ * {@link #guard} or {@link #guardAll}: {@link InventoryService} does so for its own writes, and
+ * cycle counts and purchase-order receipts write their chunks under {@link #guardAll}.
+ */
+public class HotItemCoordinator implements AutoCloseable {
+
+    private static final String LOCK_STOCK_SQL = "SELECT quantity FROM stock WHERE item_id = ? FOR UPDATE";
+    private static final String HAS_LOTS_SQL = "SELECT 1 FROM stock_lot WHERE item_id = ? LIMIT 1";
+    private static final String CONSOLIDATE_STOCK_SQL = "UPDATE stock SET quantity = quantity - ? WHERE item_id = ?";
+    private static final String INSERT_MOVEMENT_SQL = "INSERT INTO stock_movement (item_id, qty, type, reason, timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    private static final int LOCK_STRIPES = 256;
+    private static final int IDLE_FLUSHES_BEFORE_DEMOTION = 50;
+
+    private final int threshold;
+    private final int buckets;
+    private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[LOCK_STRIPES];
+    private final Map<Long, AtomicInteger> writers = new ConcurrentHashMap<>();
+    private final Map<Long, HotCounter> hot = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public HotItemCoordinator() {
+        this(8, Math.max(4, Runtime.getRuntime().availableProcessors()), Duration.ofMillis(200));
+    }
+
+    public HotItemCoordinator(int threshold, int buckets, Duration flushInterval) {
+        if (threshold < 2) throw new IllegalArgumentException("threshold must be >= 2");
+        if (buckets < 1) throw new IllegalArgumentException("buckets must be >= 1");
+        this.threshold = threshold;
+        this.buckets = buckets;
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new ReentrantReadWriteLock();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hot-item-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        long ms = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::consolidateSafely, ms, ms, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a database stock write for the item. Writers for the same item share the guard;
+     * promotion and demotion take it exclusively, so they never overlap a write in flight.
+     */
+    public <T> T guard(long itemId, Supplier<T> dbWrite) {
+        AtomicInteger count = writers.computeIfAbsent(itemId, k -> new AtomicInteger());
+        boolean contended = count.incrementAndGet() >= threshold;
+        ReentrantReadWriteLock.ReadLock lock = lockFor(itemId).readLock();
+        lock.lock();
+        try {
+            return dbWrite.get();
+        } finally {
+            lock.unlock();
+            if (count.decrementAndGet() == 0) writers.remove(itemId, count);
+            if (contended && !hot.containsKey(itemId)) promote(itemId);
+        }
+    }
+
+    /**
+     * Runs a database stock write that covers several items at once, such as a batch of stock
+     * changes. Items that are hot are consolidated and demoted first, and none of the items can
+     * be promoted until the write is done, so it never bypasses buckets. Must not be called
+     * inside {@link #guard}.
+     */
+    public <T> T guardAll(Collection<Long> itemIds, Supplier<T> dbWrite) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (Long itemId : itemIds) stripes.add(stripeOf(itemId));
+        while (true) {
+            for (Long itemId : itemIds) evict(itemId);
+            List<ReentrantReadWriteLock.ReadLock> held = new ArrayList<>(stripes.size());
+            try {
+                for (int stripe : stripes) {
+                    ReentrantReadWriteLock.ReadLock lock = locks[stripe].readLock();
+                    lock.lock();
+                    held.add(lock);
+                }
+                // an item may have been promoted between its eviction and taking the locks
+                if (itemIds.stream().noneMatch(hot::containsKey)) return dbWrite.get();
+            } finally {
+                for (ReentrantReadWriteLock.ReadLock lock : held) lock.unlock();
+            }
+        }
+    }
+
+    public boolean isHot(long itemId) {
+        return hot.containsKey(itemId);
+    }
+
+    /**
+     * Takes {@code qty} from the item's buckets. Returns the estimated remaining quantity,
+     * or -1 if the item is not (or no longer) hot and the caller must use the database path.
+     *
+     * @throws IllegalStateException when the buckets cannot cover the quantity
+     */
+    public int tryDecrease(long itemId, int qty) {
+        HotCounter counter = hot.get(itemId);
+        if (counter == null) return -1;
+        int result = counter.take(qty);
+        if (result == HotCounter.CLOSED) return -1;
+        if (result == HotCounter.INSUFFICIENT) {
+            throw new IllegalStateException("Insufficient stock: available=" + counter.available() + ", requested=" + qty);
+        }
+        return result;
+    }
+
+    /**
+     * Adds committed incoming stock to a hot item's buckets. Must be called inside {@link #guard}.
+     */
+    public void onIncrease(long itemId, int qty) {
+        HotCounter counter = hot.get(itemId);
+        if (counter != null) counter.add(qty);
+    }
+
+    /**
+     * Quantity available for a hot item (stock row minus unconsolidated sales), or -1 if not hot.
+     */
+    public int available(long itemId) {
+        HotCounter counter = hot.get(itemId);
+        return counter == null ? -1 : counter.available();
+    }
+
+    private ReentrantReadWriteLock lockFor(long itemId) {
+        return locks[stripeOf(itemId)];
+    }
+
+    private static int stripeOf(long itemId) {
+        return (int) Math.floorMod(itemId * 0x9E3779B97F4A7C15L >>> 32, (long) LOCK_STRIPES);
+    }
+
+    private void promote(long itemId) {
+        ReentrantReadWriteLock.WriteLock lock = lockFor(itemId).writeLock();
+        lock.lock();
+        try {
+            if (hot.containsKey(itemId)) return;
+            int quantity;
+            try (Connection c = DbConnectionManager.getConnection();
+                 PreparedStatement lots = c.prepareStatement(HAS_LOTS_SQL);
+                 PreparedStatement ps = c.prepareStatement(LOCK_STOCK_SQL)) {
+                // lot-tracked items need FEFO allocation per sale, which buckets cannot do
+                lots.setLong(1, itemId);
+                try (ResultSet rs = lots.executeQuery()) {
+                    if (rs.next()) return;
+                }
+                ps.setLong(1, itemId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return;
+                    quantity = rs.getInt(1);
+                }
+            } catch (SQLException e) {
+                return; // stay on the database path
+            }
+            hot.put(itemId, new HotCounter(buckets, quantity));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Consolidates and demotes the item now if it is hot. Must not be called inside {@link #guard}.
+     */
+    public void evict(long itemId) {
+        HotCounter counter = hot.get(itemId);
+        if (counter != null) {
+            synchronized (this) {
+                if (hot.get(itemId) == counter) demote(itemId, counter);
+            }
+        }
+    }
+
+    private void consolidateSafely() {
+        try {
+            consolidate();
+        } catch (RuntimeException e) {
+            System.err.println("Hot item consolidation failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes sold units of every hot item back to the database and demotes idle items.
+     */
+    public synchronized void consolidate() {
+        for (Map.Entry<Long, HotCounter> e : hot.entrySet()) {
+            long itemId = e.getKey();
+            HotCounter counter = e.getValue();
+            long sold = counter.drainPending();
+            if (sold > 0) {
+                counter.idleFlushes = 0;
+                long sales = counter.sales.sumThenReset();
+                try {
+                    writeBack(itemId, sold, sales);
+                } catch (DataAccessException ex) {
+                    counter.restorePending(sold, sales); // retried on the next run
+                    throw ex;
+                }
+            } else if (++counter.idleFlushes >= IDLE_FLUSHES_BEFORE_DEMOTION) {
+                demote(itemId, counter);
+            }
+        }
+    }
+
+    private void demote(long itemId, HotCounter counter) {
+        ReentrantReadWriteLock.WriteLock lock = lockFor(itemId).writeLock();
+        lock.lock();
+        try {
+            // both totals come from the close: reading available before it could miss a take that
+            // landed in between, and a reopened counter would then sell those units again
+            long[] last = counter.close();
+            long sold = last[0];
+            int available = (int) last[1];
+            long sales = counter.sales.sumThenReset();
+            hot.remove(itemId);
+            if (sold > 0) {
+                try {
+                    writeBack(itemId, sold, sales);
+                } catch (DataAccessException ex) {
+                    // keep the item hot so the unsaved sales are not lost
+                    HotCounter reopened = new HotCounter(buckets, available);
+                    reopened.restorePending(sold, sales);
+                    hot.put(itemId, reopened);
+                    throw ex;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeBack(long itemId, long sold, long sales) {
+        try (Connection conn = DbConnectionManager.getConnection()) {
+            try {
+                conn.setAutoCommit(false);
+                LocalDateTime now = LocalDateTime.now();
+                try (PreparedStatement ps = conn.prepareStatement(CONSOLIDATE_STOCK_SQL)) {
+                    ps.setLong(1, sold);
+                    ps.setLong(2, itemId);
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(INSERT_MOVEMENT_SQL)) {
+                    ps.setLong(1, itemId);
+                    ps.setLong(2, sold);
+                    ps.setString(3, MovementType.OUT.name());
+                    ps.setString(4, "hot-item consolidation (" + sales + " sales)");
+                    ps.setTimestamp(5, Timestamp.valueOf(now));
+                    ps.executeUpdate();
+                }
+                AnalyticsService.recordTx(conn, itemId, (int) sold, MovementType.OUT, now.toLocalDate());
+                CategoryDaoJdbc.recordStockTx(conn, itemId, (int) -sold);
+                conn.commit();
+            } catch (SQLException e) {
+                try { conn.rollback(); } catch (SQLException ignore) {}
+                throw new DataAccessException("Failed to consolidate hot item " + itemId, e);
+            } finally {
+                try { conn.setAutoCommit(true); } catch (SQLException ignore) {}
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    /**
+     * Consolidates everything and stops the background thread.
+     */
+    @Override
+    public synchronized void close() {
+        flusher.shutdown();
+        for (Map.Entry<Long, HotCounter> e : hot.entrySet()) demote(e.getKey(), e.getValue());
+    }
+
+    /**
+     * Quantity split over buckets. Each bucket is one long: the high 32 bits count units sold
+     * since the last consolidation, the low 32 bits the units still available, so a sale moves
+     * units from available to sold in a single CAS. Buckets are spaced 8 longs apart to keep
+     * them on separate cache lines.
+     */
+    static final class HotCounter {
+        static final int INSUFFICIENT = -1;
+        static final int CLOSED = -2;
+        private static final int STRIDE = 8;
+        private static final long CLOSED_BUCKET = -1L;
+
+        private final int n;
+        private final AtomicLongArray slots;
+        private final LongAdder sales = new LongAdder();
+        private volatile boolean closed;
+        private int idleFlushes; // flusher thread only
+
+        HotCounter(int n, int quantity) {
+            this.n = n;
+            this.slots = new AtomicLongArray(n * STRIDE);
+            int share = quantity / n;
+            for (int b = 0; b < n; b++) {
+                int units = share + (b < quantity % n ? 1 : 0);
+                slots.set(b * STRIDE, pack(0, units));
+            }
+        }
+
+        private static long pack(long pending, long available) {
+            return (pending << 32) | (available & 0xFFFFFFFFL);
+        }
+
+        private static int availableOf(long v) {
+            return (int) v;
+        }
+
+        private static long pendingOf(long v) {
+            return v >>> 32;
+        }
+
+        int take(int qty) {
+            int start = ThreadLocalRandom.current().nextInt(n);
+            // fast path: one bucket covers the whole take
+            for (int i = 0; i < n; i++) {
+                int idx = ((start + i) % n) * STRIDE;
+                while (true) {
+                    long v = slots.get(idx);
+                    if (v == CLOSED_BUCKET) return CLOSED;
+                    if (availableOf(v) < qty) break;
+                    if (slots.compareAndSet(idx, v, pack(pendingOf(v) + qty, availableOf(v) - qty))) {
+                        sales.increment();
+                        return available();
+                    }
+                }
+            }
+            return takeAcrossBuckets(qty);
+        }
+
+        // slow path: gather from several buckets; serialized with drainPending() and close(), which must
+        // not see units of a partial take as sold, so the rollback always finds them still pending
+        private synchronized int takeAcrossBuckets(int qty) {
+            if (closed) return CLOSED;
+            int[] taken = new int[n];
+            int remaining = qty;
+            for (int b = 0; b < n && remaining > 0; b++) {
+                int idx = b * STRIDE;
+                while (remaining > 0) {
+                    long v = slots.get(idx);
+                    int part = Math.min(availableOf(v), remaining);
+                    if (part <= 0) break;
+                    if (slots.compareAndSet(idx, v, pack(pendingOf(v) + part, availableOf(v) - part))) {
+                        taken[b] += part;
+                        remaining -= part;
+                    }
+                }
+            }
+            if (remaining > 0) {
+                for (int b = 0; b < n; b++) {
+                    if (taken[b] > 0) slots.getAndAdd(b * STRIDE, pack(0, taken[b]) - pack(taken[b], 0));
+                }
+                return INSUFFICIENT;
+            }
+            sales.increment();
+            return available();
+        }
+
+        void add(int qty) {
+            int idx = ThreadLocalRandom.current().nextInt(n) * STRIDE;
+            slots.getAndAdd(idx, qty);
+        }
+
+        int available() {
+            long sum = 0;
+            for (int b = 0; b < n; b++) {
+                long v = slots.get(b * STRIDE);
+                if (v != CLOSED_BUCKET) sum += availableOf(v);
+            }
+            return (int) Math.min(Integer.MAX_VALUE, sum);
+        }
+
+        /**
+         * Resets the sold units of every bucket and returns their total. Synchronized with the slow
+         * path: a drain between a partial take and its rollback would write those units as sold and
+         * the rollback would then underflow the bucket's sold count.
+         */
+        synchronized long drainPending() {
+            long sold = 0;
+            for (int b = 0; b < n; b++) {
+                int idx = b * STRIDE;
+                long v = slots.getAndUpdate(idx, x -> x == CLOSED_BUCKET ? x : pack(0, availableOf(x)));
+                if (v != CLOSED_BUCKET) sold += pendingOf(v);
+            }
+            return sold;
+        }
+
+        void restorePending(long sold, long salesCount) {
+            slots.getAndAdd(0, pack(sold, 0));
+            sales.add(salesCount);
+        }
+
+        /**
+         * Closes all buckets and returns their final [sold, available] totals, read from the
+         * same values the close replaced, so no take can fall between the two.
+         */
+        synchronized long[] close() {
+            closed = true;
+            long sold = 0;
+            long available = 0;
+            for (int b = 0; b < n; b++) {
+                long v = slots.getAndSet(b * STRIDE, CLOSED_BUCKET);
+                if (v != CLOSED_BUCKET) {
+                    sold += pendingOf(v);
+                    available += availableOf(v);
+                }
+            }
+            return new long[]{sold, Math.min(Integer.MAX_VALUE, available)};
+        }
+    }
+}
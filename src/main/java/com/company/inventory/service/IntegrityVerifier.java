@@ -0,0 +1,444 @@
+package com.company.inventory.service;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.config.ShardRouter;
+import com.company.inventory.dao.DataAccessException;
+import com.company.inventory.model.MovementType;
+import com.company.inventory.model.dto.MovementEvent;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Checks that every stock row equals the replay of its item's movements: archived totals from
+ * stock_movement_summary as the opening balance, then each live movement in id order (IN adds,
+ * OUT subtracts, as {@link com.company.inventory.model.StockMovement#applyTo} does).
+ * <p>
+ * The item id space is split into ranges that run in parallel on a fork-join pool. A range reads
+ * its stock rows and opening balances into arrays, then streams its movements ordered by
+ * (item_id, id) and compares item by item, all inside one repeatable-read transaction so that
+ * concurrent sales do not show up as drift. Memory is bounded by the range size, not by the
+ * number of movements.
+ * <p>
+ * With corrections enabled, each drifting item is re-checked under a lock on its stock row and
+ * gets one IN or OUT movement that makes its movements add up to the stock row again. The stock
+ * row itself is never changed.
+ */
+public class IntegrityVerifier {
+
+    public static final String CORRECTION_REASON = "integrity correction";
+
+    private static final int DEFAULT_RANGE = 20_000;
+    private static final int DEFAULT_MAX_REPORTED = 1000;
+
+    private static final String ID_BOUNDS_SQL =
+            "SELECT MIN(lo), MAX(hi) FROM (" +
+                    "SELECT MIN(item_id) AS lo, MAX(item_id) AS hi FROM stock " +
+                    "UNION ALL SELECT MIN(item_id), MAX(item_id) FROM stock_movement) b";
+    private static final String ID_BOUNDS_WITH_SUMMARY_SQL =
+            "SELECT MIN(lo), MAX(hi) FROM (" +
+                    "SELECT MIN(item_id) AS lo, MAX(item_id) AS hi FROM stock " +
+                    "UNION ALL SELECT MIN(item_id), MAX(item_id) FROM stock_movement " +
+                    "UNION ALL SELECT MIN(item_id), MAX(item_id) FROM stock_movement_summary) b";
+    private static final String RANGE_STOCK_SQL =
+            "SELECT item_id, quantity FROM stock WHERE item_id >= ? AND item_id < ? ORDER BY item_id";
+    private static final String RANGE_OPENING_SQL =
+            "SELECT item_id, SUM(CASE WHEN type = 'IN' THEN total_qty ELSE -total_qty END) " +
+                    "FROM stock_movement_summary WHERE item_id >= ? AND item_id < ? GROUP BY item_id ORDER BY item_id";
+    // the hint keeps the planner on the (item_id, id) index, which streams rows already in order;
+    // on the plain item_id index the range would be sorted in memory first
+    private static final String RANGE_MOVEMENTS_SQL =
+            "SELECT item_id, qty, type FROM stock_movement USE INDEX (idx_stock_movement_item_id) " +
+                    "WHERE item_id >= ? AND item_id < ? ORDER BY item_id, id";
+
+    private static final String LOCK_STOCK_SQL = "SELECT quantity FROM stock WHERE item_id = ? FOR UPDATE";
+    private static final String ITEM_LEDGER_SQL =
+            "SELECT COALESCE(SUM(CASE WHEN type = 'IN' THEN qty ELSE -qty END), 0) FROM stock_movement WHERE item_id = ?";
+    private static final String ITEM_OPENING_SQL =
+            "SELECT COALESCE(SUM(CASE WHEN type = 'IN' THEN total_qty ELSE -total_qty END), 0) " +
+                    "FROM stock_movement_summary WHERE item_id = ?";
+    private static final String INSERT_MOVEMENT_SQL =
+            "INSERT INTO stock_movement (item_id, qty, type, reason, timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * An item whose stock row does not match its movements. {@code expected} is the replayed
+     * quantity, {@code actual} the stock row (0 when there is none). {@code wentNegative} means
+     * the replay dropped below zero at some point, i.e. more was sold than was on hand.
+     */
+    public record Drift(long itemId, long expected, long actual, long movements, boolean wentNegative) {
+        public long difference() { return actual - expected; }
+    }
+
+    /**
+     * Outcome of a run. {@code drifts} holds at most the configured number of entries, lowest
+     * item ids of those found first; {@code driftCount} counts all of them.
+     */
+    public record Report(long itemsChecked, long movementsReplayed, long driftCount, List<Drift> drifts,
+                         long corrections, int ranges, long elapsedMillis) {
+        public boolean isConsistent() { return driftCount == 0; }
+    }
+
+    private final ShardRouter shardRouter; // null when stock lives in the primary database
+    private final int parallelism;
+    private final int rangeSize;
+    private final int maxReported;
+    private volatile MovementListener movementListener; // null when nobody listens
+
+    public IntegrityVerifier() {
+        this(null);
+    }
+
+    public IntegrityVerifier(ShardRouter shardRouter) {
+        this(shardRouter, Math.min(Runtime.getRuntime().availableProcessors(), 8), DEFAULT_RANGE, DEFAULT_MAX_REPORTED);
+    }
+
+    /**
+     * @param parallelism concurrent ranges; each holds one database connection while it runs
+     * @param rangeSize   item ids per range; bounds the memory used by one range
+     * @param maxReported drifts kept in the report
+     */
+    public IntegrityVerifier(ShardRouter shardRouter, int parallelism, int rangeSize, int maxReported) {
+        if (parallelism <= 0 || rangeSize <= 0 || maxReported < 0) {
+            throw new IllegalArgumentException("parallelism and rangeSize must be > 0, maxReported >= 0");
+        }
+        this.shardRouter = shardRouter;
+        this.parallelism = parallelism;
+        this.rangeSize = rangeSize;
+        this.maxReported = maxReported;
+    }
+
+    /**
+     * Notifies the listener (e.g. an {@link AlertEngine}) of each correction movement once it is
+     * committed. Corrections are written from several threads, so the listener sees them
+     * concurrently. Pass null to stop notifying.
+     */
+    public void setMovementListener(MovementListener listener) {
+        this.movementListener = listener;
+    }
+
+    /**
+     * Verifies every item. With {@code correct} set, writes a correction movement for each
+     * item that still drifts when re-checked under lock.
+     */
+    public Report verify(boolean correct) {
+        long start = System.nanoTime();
+        int shards = shardRouter == null ? 1 : shardRouter.shardCount();
+        List<RangeTask> tasks = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            long[] bounds = idBounds(shard);
+            if (bounds != null) tasks.add(new RangeTask(shard, bounds[0], bounds[1] + 1, correct));
+        }
+        Tally total = new Tally();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (RangeTask task : tasks) pool.execute(task);
+            for (RangeTask task : tasks) total.merge(task.join(), maxReported);
+        } finally {
+            pool.shutdown();
+        }
+        total.drifts.sort(Comparator.comparingLong(Drift::itemId));
+        return new Report(total.items, total.movements, total.driftCount, List.copyOf(total.drifts),
+                total.corrections, total.ranges, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Connection connection(int shard) throws SQLException {
+        return shardRouter == null ? DbConnectionManager.getConnection() : shardRouter.getConnectionForShard(shard);
+    }
+
+    // archived totals only exist in the primary database; archiving is not available on shards
+    private boolean hasSummary() {
+        return shardRouter == null;
+    }
+
+    private long[] idBounds(int shard) {
+        try (Connection c = connection(shard);
+             PreparedStatement ps = c.prepareStatement(hasSummary() ? ID_BOUNDS_WITH_SUMMARY_SQL : ID_BOUNDS_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            long lo = rs.getLong(1);
+            if (rs.wasNull()) return null;
+            return new long[]{lo, rs.getLong(2)};
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to read item id bounds", e);
+        }
+    }
+
+    /** Per-range counters, merged up the fork-join tree. */
+    private static final class Tally {
+        long items;
+        long movements;
+        long driftCount;
+        long corrections;
+        int ranges;
+        final List<Drift> drifts = new ArrayList<>();
+
+        void merge(Tally other, int maxReported) {
+            items += other.items;
+            movements += other.movements;
+            driftCount += other.driftCount;
+            corrections += other.corrections;
+            ranges += other.ranges;
+            for (Drift d : other.drifts) {
+                if (drifts.size() >= maxReported) break;
+                drifts.add(d);
+            }
+        }
+    }
+
+    /** Splits [lo, hi) in halves until a range is small enough, then verifies it. */
+    private final class RangeTask extends RecursiveTask<Tally> {
+        private final int shard;
+        private final long lo;
+        private final long hi;
+        private final boolean correct;
+
+        RangeTask(int shard, long lo, long hi, boolean correct) {
+            this.shard = shard;
+            this.lo = lo;
+            this.hi = hi;
+            this.correct = correct;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (hi - lo <= rangeSize) {
+                Tally tally = verifyRange(shard, lo, hi);
+                if (correct) {
+                    for (Drift d : tally.drifts) if (correctItem(shard, d.itemId())) tally.corrections++;
+                }
+                if (tally.drifts.size() > maxReported) tally.drifts.subList(maxReported, tally.drifts.size()).clear();
+                return tally;
+            }
+            long mid = lo + (hi - lo) / 2;
+            RangeTask left = new RangeTask(shard, lo, mid, correct);
+            RangeTask right = new RangeTask(shard, mid, hi, correct);
+            left.fork();
+            Tally rightTally = right.compute();
+            Tally tally = new Tally();
+            tally.merge(left.join(), maxReported); // lower ids first in the report
+            tally.merge(rightTally, maxReported);
+            return tally;
+        }
+    }
+
+    /**
+     * Verifies the items in [lo, hi). Every drift of the range is kept so that all of them
+     * can be corrected; the caller trims the list for the report.
+     */
+    private Tally verifyRange(int shard, long lo, long hi) {
+        Tally tally = new Tally();
+        tally.ranges = 1;
+        try (Connection c = connection(shard)) {
+            c.setAutoCommit(false);
+            c.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                Balances stock = readBalances(c, RANGE_STOCK_SQL, lo, hi);
+                Balances opening = hasSummary() ? readBalances(c, RANGE_OPENING_SQL, lo, hi) : Balances.EMPTY;
+                Replay replay = new Replay(stock, opening, tally);
+
+                try (PreparedStatement ps = c.prepareStatement(RANGE_MOVEMENTS_SQL)) {
+                    ps.setLong(1, lo);
+                    ps.setLong(2, hi);
+                    ps.setFetchSize(1000);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            replay.apply(rs.getLong(1), rs.getInt(2), MovementType.valueOf(rs.getString(3)));
+                        }
+                    }
+                }
+                replay.finish();
+                c.commit();
+            } catch (SQLException e) {
+                try { c.rollback(); } catch (SQLException ignore) {}
+                throw e;
+            } finally {
+                try {
+                    c.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+                    c.setAutoCommit(true);
+                } catch (SQLException ignore) {}
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to verify items " + lo + ".." + (hi - 1), e);
+        }
+        return tally;
+    }
+
+    /** Item ids with one value each, in ascending id order. */
+    private static final class Balances {
+        static final Balances EMPTY = new Balances(new long[0], new long[0], 0);
+
+        final long[] ids;
+        final long[] values;
+        final int size;
+
+        Balances(long[] ids, long[] values, int size) {
+            this.ids = ids;
+            this.values = values;
+            this.size = size;
+        }
+    }
+
+    private static Balances readBalances(Connection c, String sql, long lo, long hi) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, lo);
+            ps.setLong(2, hi);
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+                long[] ids = new long[64];
+                long[] values = new long[64];
+                int n = 0;
+                while (rs.next()) {
+                    if (n == ids.length) {
+                        ids = Arrays.copyOf(ids, n * 2);
+                        values = Arrays.copyOf(values, n * 2);
+                    }
+                    ids[n] = rs.getLong(1);
+                    values[n] = rs.getLong(2);
+                    n++;
+                }
+                return new Balances(ids, values, n);
+            }
+        }
+    }
+
+    /**
+     * Merge of three id-ordered inputs: stock rows, opening balances and the movement stream.
+     * Items that appear in only some of them are compared too (no stock row counts as 0).
+     */
+    private static final class Replay {
+        private final Balances stock;
+        private final Balances opening;
+        private final Tally tally;
+        private int stockPos;
+        private int openingPos;
+
+        private boolean inItem;
+        private long itemId;
+        private long balance;
+        private long movements;
+        private boolean wentNegative;
+
+        Replay(Balances stock, Balances opening, Tally tally) {
+            this.stock = stock;
+            this.opening = opening;
+            this.tally = tally;
+        }
+
+        void apply(long movementItemId, int qty, MovementType type) {
+            if (!inItem || movementItemId != itemId) {
+                if (inItem) closeItem();
+                flushBefore(movementItemId);
+                openItem(movementItemId);
+            }
+            balance += type == MovementType.IN ? qty : -qty;
+            if (balance < 0) wentNegative = true;
+            movements++;
+        }
+
+        void finish() {
+            if (inItem) closeItem();
+            flushBefore(Long.MAX_VALUE);
+        }
+
+        // items without live movements that come before the next movement's item
+        private void flushBefore(long id) {
+            while (true) {
+                long next = Math.min(peek(stock, stockPos), peek(opening, openingPos));
+                if (next >= id) return;
+                openItem(next);
+                closeItem();
+            }
+        }
+
+        private void openItem(long id) {
+            inItem = true;
+            itemId = id;
+            movements = 0;
+            wentNegative = false;
+            balance = 0;
+            if (peek(opening, openingPos) == id) balance = opening.values[openingPos++];
+        }
+
+        private void closeItem() {
+            long actual = 0;
+            if (peek(stock, stockPos) == itemId) actual = stock.values[stockPos++];
+            tally.items++;
+            tally.movements += movements;
+            if (actual != balance) {
+                tally.driftCount++;
+                tally.drifts.add(new Drift(itemId, balance, actual, movements, wentNegative));
+            }
+            inItem = false;
+        }
+
+        private static long peek(Balances b, int pos) {
+            return pos < b.size ? b.ids[pos] : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Re-checks one item with its stock row locked and, if it still drifts, writes the movement
+     * that closes the gap. Returns whether a correction was written.
+     */
+    private boolean correctItem(int shard, long itemId) {
+        try (Connection c = connection(shard)) {
+            c.setAutoCommit(false);
+            try {
+                long actual = 0;
+                try (PreparedStatement ps = c.prepareStatement(LOCK_STOCK_SQL)) {
+                    ps.setLong(1, itemId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) actual = rs.getInt(1);
+                    }
+                }
+                long expected = sum(c, ITEM_LEDGER_SQL, itemId);
+                if (hasSummary()) expected += sum(c, ITEM_OPENING_SQL, itemId);
+                long diff = actual - expected;
+                if (diff == 0) {
+                    c.commit(); // settled by a concurrent write since the scan
+                    return false;
+                }
+                MovementType type = diff > 0 ? MovementType.IN : MovementType.OUT;
+                int qty = Math.toIntExact(Math.abs(diff));
+                LocalDateTime now = LocalDateTime.now();
+                try (PreparedStatement ps = c.prepareStatement(INSERT_MOVEMENT_SQL)) {
+                    ps.setLong(1, itemId);
+                    ps.setInt(2, qty);
+                    ps.setString(3, type.name());
+                    ps.setString(4, CORRECTION_REASON);
+                    ps.setTimestamp(5, Timestamp.valueOf(now));
+                    ps.executeUpdate();
+                }
+                // not rolled up: a correction is not demand (see AnalyticsService)
+                c.commit();
+                if (shardRouter == null) DbConnectionManager.markWrite();
+                MovementListener.publish(movementListener, List.of(new MovementEvent(itemId, qty, type,
+                        CORRECTION_REASON, null, Math.toIntExact(actual), Timestamp.valueOf(now).getTime())));
+                return true;
+            } catch (SQLException | ArithmeticException e) {
+                try { c.rollback(); } catch (SQLException ignore) {}
+                throw new DataAccessException("Failed to correct item " + itemId, e);
+            } finally {
+                try { c.setAutoCommit(true); } catch (SQLException ignore) {}
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    private static long sum(Connection c, String sql, long itemId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, itemId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.company.inventory.service;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.dao.DataAccessException;
+import com.company.inventory.dao.InventorySnapshot;
+import com.company.inventory.dao.ItemDaoJdbc;
+import com.company.inventory.model.Item;
+import com.company.inventory.model.ItemColumns;
+import com.company.inventory.model.Sku;
+import com.company.inventory.model.Stock;
+
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory item and stock lookups, started from a binary snapshot when a valid one exists.
+ * <p>
+ * The snapshot is the read-only base (column arrays, a SKU sort order, quantities). Everything
+ * that changed since it was written lives in overlay maps: items created or updated through
+ * the service, items added to the database after the snapshot, and stock quantities of items
+ * that had movements after its high-water mark. On startup the snapshot is checked against the
+ * database (item count and row versions) and caught up; if it does not match, the cache is
+ * loaded from the database instead.
+ * <p>
+ * Movement ids are allocated when a movement is inserted but become visible when its transaction
+ * commits, so a lower id can appear after a higher one was seen. Catch-up therefore remembers the
+ * ids missing below its high-water mark and looks for them again on every run, until they show
+ * up or are old enough to belong to a rolled-back transaction. On load it also re-reads a trailing
+ * window below the snapshot's mark, for transactions that were in flight when it was captured.
+ * <p>
+ * Each cached quantity carries the id of the movement it reflects, and a quantity from an older
+ * movement never replaces one from a newer: two writers of the same item commit in movement id
+ * order but may publish to the cache in either order.
+ * <p>
+ * Item edits made outside this process while it runs are not detected here; a stale cached item
+ * fails its version check on update, and the service then refreshes it.
+ */
+public class InventoryCache {
+
+    private static final String COUNT_ITEMS_SQL = "SELECT COUNT(*), COALESCE(SUM(version), 0) FROM item WHERE id <= ?";
+    private static final String NEW_ITEMS_SQL =
+            "SELECT id, name, sku, category_id, supplier_id, purchase_price, sale_price, reorder_level, version FROM item WHERE id > ? ORDER BY id";
+    private static final String MOVED_AFTER_SQL =
+            "SELECT m.id, m.item_id, s.quantity FROM stock_movement m LEFT JOIN stock s ON s.item_id = m.item_id " +
+                    "WHERE m.id > ? ORDER BY m.id";
+    private static final String MOVED_BETWEEN_SQL =
+            "SELECT m.id, m.item_id, s.quantity FROM stock_movement m LEFT JOIN stock s ON s.item_id = m.item_id " +
+                    "WHERE m.id BETWEEN ? AND ? ORDER BY m.id";
+
+    // movement ids re-read below the snapshot's high-water mark on load
+    private static final long RESCAN_ON_LOAD = 1000;
+    // a missing id not seen for this long belongs to a rolled-back transaction (well past tx.timeoutMs)
+    private static final long GAP_TIMEOUT_MS = 10 * 60_000L;
+
+    // overlay value meaning "not known here, ask the database"
+    private static final int UNKNOWN = Integer.MIN_VALUE + 1;
+
+    private final InventorySnapshot base;
+    private final boolean warmStart;
+    private final Map<Long, Item> items = new ConcurrentHashMap<>();
+    private final Map<String, Long> skus = new ConcurrentHashMap<>();
+    private final Map<Long, CachedStock> quantities = new ConcurrentHashMap<>();
+    private long movementHighWater;
+    private final TreeMap<Long, long[]> gaps = new TreeMap<>(); // first missing id -> [last missing id, first seen millis]
+
+    // quantity (or UNKNOWN / NO_STOCK) as of the movement with the given id
+    private record CachedStock(long movementId, int quantity) {}
+
+    private InventoryCache(InventorySnapshot base, boolean warmStart) {
+        this.base = base;
+        this.warmStart = warmStart;
+        this.movementHighWater = Math.max(0, base.getMovementHighWater() - RESCAN_ON_LOAD);
+    }
+
+    /**
+     * Opens the cache from the snapshot file if it is readable and matches the database,
+     * catching up on changes made since it was written; otherwise loads from the database.
+     */
+    public static InventoryCache load(Path snapshotFile, ItemDaoJdbc itemDao) {
+        Optional<InventorySnapshot> snapshot = InventorySnapshot.read(snapshotFile);
+        if (snapshot.isPresent() && matchesDatabase(snapshot.get())) {
+            InventoryCache cache = new InventoryCache(snapshot.get(), true);
+            cache.loadNewItems();
+            cache.catchUp();
+            return cache;
+        }
+        InventoryCache cache = new InventoryCache(InventorySnapshot.capture(itemDao), false);
+        cache.catchUp();
+        return cache;
+    }
+
+    /**
+     * The snapshot is usable when no item up to its max id was deleted (or added below it) or
+     * edited, and the movement table has not been reset behind its high-water mark. Every edit
+     * bumps the item's version, so the sum of versions changes with any edit since the snapshot.
+     */
+    private static boolean matchesDatabase(InventorySnapshot snapshot) {
+        ItemColumns cols = snapshot.getItems();
+        long versionSum = 0;
+        for (int row = 0; row < cols.size(); row++) versionSum += cols.version(row);
+        try (Connection c = DbConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(COUNT_ITEMS_SQL)) {
+            ps.setLong(1, snapshot.getMaxItemId());
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                if (rs.getLong(1) != cols.size() || rs.getLong(2) != versionSum) return false;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+        return InventorySnapshot.maxMovementId() >= snapshot.getMovementHighWater();
+    }
+
+    private void loadNewItems() {
+        try (Connection c = DbConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(NEW_ITEMS_SQL)) {
+            ps.setLong(1, base.getMaxItemId());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long categoryId = rs.getLong(4);
+                    Long category = rs.wasNull() ? null : categoryId;
+                    long supplierId = rs.getLong(5);
+                    Long supplier = rs.wasNull() ? null : supplierId;
+                    putItem(new Item(rs.getLong(1), rs.getString(2), new Sku(rs.getString(3)), category, supplier,
+                            rs.getDouble(6), rs.getDouble(7), rs.getInt(8), rs.getLong(9)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to load items added after the snapshot", e);
+        }
+    }
+
+    /**
+     * Re-reads the stock rows of every item that had a movement since the last catch-up,
+     * including movements whose lower ids committed late. Values are absolute, so running this
+     * again is harmless. Use it after writes that bypass the service, such as cycle counts.
+     */
+    public synchronized void catchUp() {
+        long now = System.currentTimeMillis();
+        try (Connection c = DbConnectionManager.getConnection()) {
+            for (Map.Entry<Long, long[]> gap : new ArrayList<>(gaps.entrySet())) {
+                gaps.remove(gap.getKey());
+                long hi = gap.getValue()[0];
+                try (PreparedStatement ps = c.prepareStatement(MOVED_BETWEEN_SQL)) {
+                    ps.setLong(1, gap.getKey());
+                    ps.setLong(2, hi);
+                    long last = scanMovements(ps, gap.getKey() - 1, gap.getValue()[1]);
+                    if (last < hi) gaps.put(last + 1, new long[]{hi, gap.getValue()[1]});
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(MOVED_AFTER_SQL)) {
+                ps.setLong(1, movementHighWater);
+                movementHighWater = scanMovements(ps, movementHighWater, now);
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to catch up stock from movements", e);
+        }
+        gaps.values().removeIf(g -> now - g[1] > GAP_TIMEOUT_MS);
+    }
+
+    // applies movements in id order after id "after", records the ids skipped as gaps; returns the last id seen
+    private long scanMovements(PreparedStatement ps, long after, long seenAt) throws SQLException {
+        long last = after;
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                long id = rs.getLong(1);
+                if (id > last + 1) gaps.put(last + 1, new long[]{id - 1, seenAt});
+                int qty = rs.getInt(3);
+                // the row is read now, so it is at least as new as this movement
+                putStock(rs.getLong(2), rs.wasNull() ? InventorySnapshot.NO_STOCK : qty, id);
+                last = id;
+            }
+        }
+        return last;
+    }
+
+    public boolean isWarmStart() {
+        return warmStart;
+    }
+
+    public Optional<Item> findById(long id) {
+        Item item = items.get(id);
+        if (item != null) return Optional.of(item);
+        ItemColumns cols = base.getItems();
+        int row = cols.rowOf(id);
+        return row < 0 ? Optional.empty() : Optional.of(cols.toItem(row));
+    }
+
+    public Optional<Item> findBySku(String sku) {
+        Long id = skus.get(sku);
+        if (id != null) {
+            Item item = items.get(id);
+            if (item != null && item.getSku().value().equals(sku)) return Optional.of(item);
+        }
+        int row = baseRowOfSku(sku);
+        if (row < 0) return Optional.empty();
+        long baseId = base.getItems().id(row);
+        Item updated = items.get(baseId);
+        if (updated != null) {
+            // the item was edited since the snapshot; its SKU may have changed
+            return updated.getSku().value().equals(sku) ? Optional.of(updated) : Optional.empty();
+        }
+        return Optional.of(base.getItems().toItem(row));
+    }
+
+    private int baseRowOfSku(String sku) {
+        ItemColumns cols = base.getItems();
+        int[] order = base.getSkuOrder();
+        int lo = 0, hi = order.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = cols.sku(order[mid]).compareTo(sku);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return order[mid];
+        }
+        return -1;
+    }
+
+    /**
+     * Cached stock of an item. Returns null when the cache cannot answer and the caller
+     * has to read the database, and an empty Optional when the item has no stock row.
+     */
+    public Optional<Stock> findStock(long itemId) {
+        CachedStock cached = quantities.get(itemId);
+        int qty;
+        if (cached != null) {
+            qty = cached.quantity();
+        } else {
+            int row = base.getItems().rowOf(itemId);
+            if (row < 0) return items.containsKey(itemId) ? Optional.empty() : null;
+            qty = base.getQuantities()[row];
+        }
+        if (qty == UNKNOWN) return null;
+        return qty == InventorySnapshot.NO_STOCK ? Optional.empty() : Optional.of(new Stock(itemId, qty));
+    }
+
+    public void putItem(Item item) {
+        // racing writers may arrive out of order; never replace a newer version
+        items.merge(item.getId(), item, (old, fresh) -> fresh.getVersion() >= old.getVersion() ? fresh : old);
+        skus.put(item.getSku().value(), item.getId());
+    }
+
+    /**
+     * Caches the item's quantity as committed with the movement {@code movementId}, unless a
+     * quantity from a later movement of the item is already cached.
+     */
+    public void putStock(long itemId, int quantity, long movementId) {
+        quantities.merge(itemId, new CachedStock(movementId, quantity),
+                (old, fresh) -> fresh.movementId() >= old.movementId() ? fresh : old);
+    }
+
+    /**
+     * Forgets the cached quantity, e.g. for a hot item whose stock row lags behind. A write with
+     * a later movement caches a quantity again.
+     */
+    public void evictStock(long itemId) {
+        quantities.compute(itemId, (id, old) -> new CachedStock(old == null ? base.getMovementHighWater() : old.movementId(), UNKNOWN));
+    }
+
+    public int size() {
+        int added = 0;
+        for (long id : items.keySet()) if (base.getItems().rowOf(id) < 0) added++;
+        return base.getItems().size() + added;
+    }
+
+    /**
+     * Writes a fresh snapshot of the database for the next start.
+     */
+    public static void saveSnapshot(Path snapshotFile, ItemDaoJdbc itemDao) {
+        InventorySnapshot.capture(itemDao).write(snapshotFile);
+    }
+}
@@ -1,14 +1,24 @@
 package com.company.inventory.service;
 
 import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.config.ShardRouter;
 import com.company.inventory.dao.*;
 import com.company.inventory.model.*;
+import com.company.inventory.model.dto.MovementEvent;
+import com.company.inventory.model.dto.StockChange;
+import com.company.inventory.model.dto.StockChangeResult;
 
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 
 
 public class InventoryService {
@@ -16,17 +26,109 @@ public class InventoryService {
     private final ItemDao itemDao;
     private final StockDao stockDao; // used for non-transactional reads
     private final StockMovementDao stockMovementDao; // used for reads/listing movements
+    private final ShardRouter shardRouter; // null when stock lives in the primary database
+    private final StockLotDao stockLotDao;
+    private final KvStockDao kvStock; // non-null when stock lives in the embedded key-value store
+    private HotItemCoordinator hotItems; // null unless hot-item handling is enabled
+    private InventoryCache cache; // null unless a warm cache is configured
+    private volatile MovementListener movementListener; // null unless alert rules are enabled
+    private TransactionTemplate tx = TransactionTemplate.defaults();
 
     // SQL used for transactional stock & movement writes (kept here so logic is centralized)
-    private static final String SELECT_STOCK_SQL = "SELECT id, quantity FROM stock WHERE item_id = ?";
+    private static final String SELECT_STOCK_SQL = "SELECT id, quantity FROM stock WHERE item_id = ? FOR UPDATE";
     private static final String UPDATE_STOCK_SQL = "UPDATE stock SET quantity = ? WHERE item_id = ?";
     private static final String INSERT_STOCK_SQL = "INSERT INTO stock (item_id, quantity) VALUES (?, ?)";
-    private static final String INSERT_MOVEMENT_SQL = "INSERT INTO stock_movement (item_id, qty, type, reason, timestamp) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_MOVEMENT_SQL = "INSERT INTO stock_movement (item_id, qty, type, reason, timestamp, lot_id) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_LOT_SQL = "SELECT id, expiry_date FROM stock_lot WHERE item_id = ? AND lot_code = ?";
+    private static final String INSERT_LOT_SQL = "INSERT INTO stock_lot (item_id, lot_code, expiry_date, quantity) VALUES (?, ?, ?, ?)";
+    private static final String RECEIVE_LOT_SQL = "UPDATE stock_lot SET quantity = quantity + ?, depleted = FALSE WHERE id = ?";
 
     public InventoryService(ItemDao itemDao, StockDao stockDao, StockMovementDao stockMovementDao) {
+        this(itemDao, stockDao, stockMovementDao, null);
+    }
+
+    /**
+     * Use this constructor when stock and movements are sharded; transactional writes
+     * then run against the shard that owns the item.
+     */
+    public InventoryService(ItemDao itemDao, StockDao stockDao, StockMovementDao stockMovementDao, ShardRouter shardRouter) {
         this.itemDao = itemDao;
         this.stockDao = stockDao;
         this.stockMovementDao = stockMovementDao;
+        this.shardRouter = shardRouter;
+        this.stockLotDao = new StockLotDaoJdbc(shardRouter);
+        this.kvStock = stockDao instanceof KvStockDao kv ? kv : null;
+    }
+
+    /**
+     * Enables hot-item handling: items with many concurrent stock writers are served from
+     * in-memory buckets and consolidated in the background (see {@link HotItemCoordinator}).
+     * Only supported when stock lives in the primary database.
+     */
+    public void setHotItemCoordinator(HotItemCoordinator hotItems) {
+        if (hotItems != null && shardRouter != null) {
+            throw new IllegalStateException("hot-item handling is not supported with sharded stock");
+        }
+        if (hotItems != null && kvStock != null) {
+            throw new IllegalStateException("hot-item handling is not supported with the kv storage backend");
+        }
+        this.hotItems = hotItems;
+    }
+
+    /**
+     * The coordinator set with {@link #setHotItemCoordinator}, or null. Tools that write stock
+     * rows themselves (cycle counts, receipts) run their writes under it.
+     */
+    public HotItemCoordinator getHotItemCoordinator() {
+        return hotItems;
+    }
+
+    /**
+     * Replaces the template that runs stock transactions, e.g. with other retry or isolation settings.
+     */
+    public void setTransactionTemplate(TransactionTemplate tx) {
+        this.tx = Objects.requireNonNull(tx, "tx");
+    }
+
+    public TransactionTemplate.Metrics getTransactionMetrics() {
+        return tx.metrics();
+    }
+
+    /**
+     * Serves item and stock lookups from the given cache and keeps it up to date with the
+     * writes made through this service. Only supported when stock lives in the primary database.
+     */
+    public void setInventoryCache(InventoryCache cache) {
+        if (cache != null && shardRouter != null) {
+            throw new IllegalStateException("the inventory cache is not supported with sharded stock");
+        }
+        if (cache != null && kvStock != null) {
+            throw new IllegalStateException("the inventory cache is not supported with the kv storage backend");
+        }
+        this.cache = cache;
+    }
+
+    /**
+     * Notifies the listener (e.g. an {@link AlertEngine}) of every stock movement made through
+     * this service once it is committed, including hot-item sales taken from memory and writes
+     * to the kv backend. Movements written by other tools are not reported here: cycle counts
+     * and integrity corrections have listeners of their own, receipts are not reported, and
+     * hot-item consolidation only writes sales that were already reported one by one.
+     * Pass null to stop notifying.
+     */
+    public void setMovementListener(MovementListener listener) {
+        this.movementListener = listener;
+    }
+
+    public boolean hasInventoryCache() {
+        return cache != null;
+    }
+
+    /**
+     * Brings the cache up to date with stock writes that did not go through this service.
+     */
+    public void refreshCache() {
+        if (cache != null) cache.catchUp();
     }
 
     // ----------------------------
@@ -35,24 +137,118 @@ public class InventoryService {
     public Item createItem(Item item) {
         // basic validation
         if (item == null) throw new IllegalArgumentException("item is null");
-        return itemDao.create(item);
+        Item created = itemDao.create(item);
+        if (cache != null) cache.putItem(created);
+        return created;
     }
 
+    public List<Item> createItems(List<Item> items) {
+        if (items == null || items.contains(null)) throw new IllegalArgumentException("items is null or contains null");
+        List<Item> created = itemDao.createAll(items);
+        if (cache != null) created.forEach(cache::putItem);
+        return created;
+    }
+
+    /**
+     * Writes every field of the item, provided nobody changed it since it was read
+     * ({@code item.getVersion()} is the version that was read).
+     *
+     * @throws OptimisticLockException when the stored version differs; re-read and retry
+     */
     public Item updateItem(Item item) {
         if (item == null || item.getId() == null) throw new IllegalArgumentException("item or id is null");
-        return itemDao.update(item);
+        try {
+            Item updated = itemDao.update(item);
+            if (cache != null) cache.putItem(updated);
+            return updated;
+        } catch (OptimisticLockException e) {
+            refreshCachedItem(item.getId());
+            throw e;
+        }
+    }
+
+    /**
+     * Writes only the changed fields, provided the item is still at {@code expectedVersion}.
+     * Two editors changing different fields still conflict; the version covers the whole row.
+     *
+     * @throws OptimisticLockException when the stored version differs; re-read and retry
+     */
+    public Item patchItem(Long id, long expectedVersion, ItemPatch patch) {
+        if (id == null || patch == null) throw new IllegalArgumentException("id or patch is null");
+        try {
+            Item updated = itemDao.patch(id, expectedVersion, patch);
+            if (cache != null) cache.putItem(updated);
+            return updated;
+        } catch (OptimisticLockException e) {
+            refreshCachedItem(id);
+            throw e;
+        }
+    }
+
+    /**
+     * Re-reads items that were changed without going through this service (e.g. by a repricing
+     * run) into the cache.
+     */
+    public void refreshCachedItems(Collection<Long> ids) {
+        if (cache != null && !ids.isEmpty()) itemDao.findByIds(ids).values().forEach(cache::putItem);
+    }
+
+    // a conflict means the cached copy may be stale (e.g. edited by another process)
+    private void refreshCachedItem(Long id) {
+        if (cache != null) itemDao.findById(id).ifPresent(cache::putItem);
     }
 
     public Optional<Item> findItemById(Long id) {
         if (id == null) return Optional.empty();
+        if (cache != null) {
+            Optional<Item> cached = cache.findById(id);
+            if (cached.isPresent()) return cached;
+        }
         return itemDao.findById(id);
     }
 
     public Optional<Item> findItemBySku(String sku) {
         if (sku == null || sku.isBlank()) return Optional.empty();
+        if (cache != null) {
+            Optional<Item> cached = cache.findBySku(sku.trim());
+            if (cached.isPresent()) return cached;
+        }
         return itemDao.findBySku(sku);
     }
 
+    /**
+     * Resolves many SKUs with a few chunked queries instead of one round trip per SKU.
+     * SKUs that do not exist are absent from the map.
+     */
+    public Map<String, Item> findItemsBySkus(Collection<String> skus) {
+        if (skus == null || skus.isEmpty()) return Map.of();
+        if (cache == null) return itemDao.findBySkus(skus);
+        Map<String, Item> result = new HashMap<>(Math.max(16, skus.size() * 2));
+        List<String> misses = new ArrayList<>();
+        for (String sku : skus) {
+            Optional<Item> cached = cache.findBySku(sku);
+            if (cached.isPresent()) result.put(sku, cached.get()); else misses.add(sku);
+        }
+        if (!misses.isEmpty()) result.putAll(itemDao.findBySkus(misses));
+        return result;
+    }
+
+    /**
+     * Loads many items by id with a few chunked queries. Ids that do not exist are absent from the map.
+     */
+    public Map<Long, Item> findItemsByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) return Map.of();
+        if (cache == null) return itemDao.findByIds(ids);
+        Map<Long, Item> result = new HashMap<>(Math.max(16, ids.size() * 2));
+        List<Long> misses = new ArrayList<>();
+        for (Long id : ids) {
+            Optional<Item> cached = cache.findById(id);
+            if (cached.isPresent()) result.put(id, cached.get()); else misses.add(id);
+        }
+        if (!misses.isEmpty()) result.putAll(itemDao.findByIds(misses));
+        return result;
+    }
+
     public List<Item> searchItems(String query) {
         if (query == null) query = "";
         return itemDao.search(query);
@@ -67,9 +263,39 @@ public class InventoryService {
      */
     public Optional<Stock> viewStock(Long itemId) {
         if (itemId == null) throw new IllegalArgumentException("itemId is null");
+        if (hotItems != null) {
+            int available = hotItems.available(itemId);
+            if (available >= 0) return Optional.of(new Stock(itemId, available));
+        }
+        if (cache != null) {
+            Optional<Stock> cached = cache.findStock(itemId);
+            if (cached != null) return cached;
+        }
         return stockDao.getStock(itemId);
     }
 
+    /**
+     * Stock of many items at once, keyed by item id. Items without a stock row are absent.
+     */
+    public Map<Long, Stock> viewStocks(Collection<Long> itemIds) {
+        if (itemIds == null || itemIds.isEmpty()) return Map.of();
+        if (hotItems == null && cache == null) return stockDao.getStocks(itemIds);
+        Map<Long, Stock> result = new HashMap<>(Math.max(16, itemIds.size() * 2));
+        List<Long> misses = new ArrayList<>();
+        for (Long itemId : itemIds) {
+            int available = hotItems == null ? -1 : hotItems.available(itemId);
+            if (available >= 0) {
+                result.put(itemId, new Stock(itemId, available));
+                continue;
+            }
+            Optional<Stock> cached = cache == null ? null : cache.findStock(itemId);
+            if (cached == null) misses.add(itemId);
+            else cached.ifPresent(stock -> result.put(itemId, stock));
+        }
+        if (!misses.isEmpty()) result.putAll(stockDao.getStocks(misses));
+        return result;
+    }
+
     /**
      * Lists movements for an item.
      */
@@ -82,61 +308,191 @@ public class InventoryService {
     public Stock increaseStock(Long itemId, int qty, String reason) {
         if (itemId == null) throw new IllegalArgumentException("itemId is null");
         if (qty <= 0) throw new IllegalArgumentException("qty must be > 0");
+        if (kvStock != null) return published(kvStock.adjust(itemId, qty, reason), qty, MovementType.IN, reason);
+        if (hotItems == null) return cacheStock(increaseStockTx(itemId, qty, reason));
+
+        return hotItems.guard(itemId, () -> {
+            Written written = increaseStockTx(itemId, qty, reason);
+            hotItems.onIncrease(itemId, qty);
+            int available = hotItems.available(itemId);
+            return available >= 0 ? hotStock(itemId, available) : cacheStock(written);
+        });
+    }
 
-        try (Connection conn = DbConnectionManager.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
+    /**
+     * Receives stock into a lot. The lot is created on first receipt; receiving the same lot code
+     * again adds to it. A null expiry date means the lot does not expire (allocated last).
+     * Items tracked by lot are never served from hot-item buckets.
+     */
+    public Stock increaseStock(Long itemId, int qty, String reason, String lotCode, LocalDate expiryDate) {
+        if (itemId == null) throw new IllegalArgumentException("itemId is null");
+        if (qty <= 0) throw new IllegalArgumentException("qty must be > 0");
+        if (lotCode == null || lotCode.isBlank()) throw new IllegalArgumentException("lotCode is blank");
+        if (kvStock != null) throw new IllegalStateException("lots are not supported with the kv storage backend");
+        if (hotItems == null) return cacheStock(increaseStockTx(itemId, qty, reason, lotCode.trim(), expiryDate));
+
+        // consolidate a hot item first: its sales would otherwise not be taken from any lot
+        hotItems.evict(itemId);
+        Stock stock = hotItems.guard(itemId, () -> cacheStock(increaseStockTx(itemId, qty, reason, lotCode.trim(), expiryDate)));
+        hotItems.evict(itemId); // in case it was promoted again before the lot existed
+        return stock;
+    }
 
-                int resultingQty = upsertAndAdjustStockTx(conn, itemId, qty); // add qty
-                insertMovementTx(conn, itemId, qty, MovementType.IN, reason);
+    public List<StockLot> listLots(Long itemId) {
+        if (itemId == null) throw new IllegalArgumentException("itemId is null");
+        if (kvStock != null) return List.of();
+        return stockLotDao.listByItem(itemId);
+    }
 
-                conn.commit();
+    private Written increaseStockTx(Long itemId, int qty, String reason) {
+        return increaseStockTx(itemId, qty, reason, null, null);
+    }
 
-                // Return fresh Stock — using StockDao (separate connection) for simplicity
-                return stockDao.getStock(itemId).orElseGet(() -> new Stock(itemId, resultingQty));
-            } catch (SQLException e) {
-                try { conn.rollback(); } catch (SQLException ignore) {}
-                throw new DataAccessException("Failed to increase stock", e);
-            } finally {
-                try { conn.setAutoCommit(true); } catch (SQLException ignore) {}
-            }
-        } catch (SQLException e) {
-            throw new DataAccessException(e);
-        }
+    private Written increaseStockTx(Long itemId, int qty, String reason, String lotCode, LocalDate expiryDate) {
+        List<MovementEvent> events = newEvents();
+        // the quantity this transaction committed; a read-back could hit a lagging replica
+        Written written = tx.execute(() -> stockConnection(itemId), "Failed to increase stock", conn -> {
+            if (events != null) events.clear(); // a retry starts over
+            int newQty = upsertAndAdjustStockTx(conn, itemId, qty); // add qty
+            Long lotId = lotCode == null ? null : receiveLotTx(conn, itemId, lotCode, expiryDate, qty);
+            long movementId = insertMovementTx(conn, itemId, qty, MovementType.IN, reason, lotId, newQty, events);
+            return new Written(new Stock(itemId, newQty), movementId);
+        });
+        DbConnectionManager.markWrite();
+        publish(events);
+        return written;
     }
 
 
     public Stock decreaseStock(Long itemId, int qty, String reason) {
         if (itemId == null) throw new IllegalArgumentException("itemId is null");
         if (qty <= 0) throw new IllegalArgumentException("qty must be > 0");
+        if (kvStock != null) return published(kvStock.adjust(itemId, -qty, reason), qty, MovementType.OUT, reason);
+        if (hotItems == null) return cacheStock(decreaseStockTx(itemId, qty, reason));
+
+        // hot items are decreased in memory; the movement is written by the consolidation
+        int remaining = hotItems.tryDecrease(itemId, qty);
+        if (remaining >= 0) return published(hotStock(itemId, remaining), qty, MovementType.OUT, reason);
+        return hotItems.guard(itemId, () -> {
+            // the item may have been promoted while this call waited for the guard
+            int left = hotItems.tryDecrease(itemId, qty);
+            return left >= 0 ? published(hotStock(itemId, left), qty, MovementType.OUT, reason) : cacheStock(decreaseStockTx(itemId, qty, reason));
+        });
+    }
 
-        try (Connection conn = DbConnectionManager.getConnection()) {
-            try {
-                conn.setAutoCommit(false);
+    private Written decreaseStockTx(Long itemId, int qty, String reason) {
+        List<MovementEvent> events = newEvents();
+        Written written = tx.execute(() -> stockConnection(itemId), "Failed to decrease stock", conn -> {
+            if (events != null) events.clear(); // a retry starts over
+            // read current quantity (for validation)
+            int currentQty = readStockQuantityForUpdate(conn, itemId);
+            int remaining = currentQty - qty;
+            if (remaining < 0) {
+                throw new IllegalStateException("Insufficient stock: current=" + currentQty + ", requested=" + qty);
+            }
 
-                // read current quantity (for validation)
-                int currentQty = readStockQuantityForUpdate(conn, itemId);
-                int newQty = currentQty - qty;
-                if (newQty < 0) {
-                    throw new IllegalStateException("Insufficient stock: current=" + currentQty + ", requested=" + qty);
-                }
+            Taken taken = takeStockTx(conn, itemId, qty, reason, remaining, events);
+            if (taken.shortage() != null) throw new IllegalStateException(taken.shortage());
+            writeStockQuantityTx(conn, itemId, remaining);
+            return new Written(new Stock(itemId, remaining), taken.movementId());
+        });
+        DbConnectionManager.markWrite();
+        publish(events);
+        return written;
+    }
 
-                // update or insert accordingly
-                writeStockQuantityTx(conn, itemId, newQty);
-                insertMovementTx(conn, itemId, qty, MovementType.OUT, reason);
+    /**
+     * Applies many stock changes using one connection and one transaction (per shard), instead of
+     * one transaction per change. Changes run in order; one that would take stock below zero is
+     * rejected on its own and the rest still apply. A database error rolls back the whole group.
+     * Results are returned in the order of the input.
+     * Items that are hot are consolidated first, and none of the items can be promoted while the
+     * changes are written, so the changes never bypass a hot item's buckets.
+     */
+    public List<StockChangeResult> applyStockChanges(List<StockChange> changes) {
+        if (changes == null) throw new IllegalArgumentException("changes is null");
+        if (kvStock != null) return applyKvStockChanges(changes);
+        Map<Integer, List<Integer>> byShard = new LinkedHashMap<>();
+        for (int i = 0; i < changes.size(); i++) {
+            StockChange ch = changes.get(i);
+            if (ch.itemId() == null) throw new IllegalArgumentException("itemId is null");
+            int shard = shardRouter == null ? 0 : shardRouter.shardFor(ch.itemId());
+            byShard.computeIfAbsent(shard, k -> new ArrayList<>()).add(i);
+        }
+        if (hotItems == null) return applyStockChangesTx(changes, byShard);
+        List<Long> itemIds = changes.stream().map(StockChange::itemId).distinct().toList();
+        return hotItems.guardAll(itemIds, () -> applyStockChangesTx(changes, byShard));
+    }
 
-                conn.commit();
+    // changes grouped by shard as indexes into the input; one transaction per group
+    private List<StockChangeResult> applyStockChangesTx(List<StockChange> changes, Map<Integer, List<Integer>> byShard) {
+        StockChangeResult[] results = new StockChangeResult[changes.size()];
+        long[] movementIds = new long[changes.size()]; // last movement of each applied change, for the cache
+        for (List<Integer> group : byShard.values()) {
+            Long firstItem = changes.get(group.get(0)).itemId();
+            List<MovementEvent> events = newEvents();
+            // a retry re-runs the whole group and overwrites its results
+            tx.execute(() -> stockConnection(firstItem), "Failed to apply stock changes", conn -> {
+                if (events != null) events.clear();
+                for (int i : group) {
+                    StockChange ch = changes.get(i);
+                    int current = readStockQuantityForUpdate(conn, ch.itemId());
+                    if (ch.delta() == 0) {
+                        results[i] = new StockChangeResult(ch, current, null);
+                        continue;
+                    }
+                    int newQty = current + ch.delta();
+                    if (newQty < 0) {
+                        results[i] = new StockChangeResult(ch, current,
+                                "Insufficient stock: current=" + current + ", requested=" + -ch.delta());
+                        continue;
+                    }
+                    if (ch.delta() > 0) {
+                        movementIds[i] = insertMovementTx(conn, ch.itemId(), ch.delta(), MovementType.IN, ch.reason(), null, newQty, events);
+                    } else {
+                        Taken taken = takeStockTx(conn, ch.itemId(), -ch.delta(), ch.reason(), newQty, events);
+                        if (taken.shortage() != null) {
+                            results[i] = new StockChangeResult(ch, current, taken.shortage());
+                            continue;
+                        }
+                        movementIds[i] = taken.movementId();
+                    }
+                    writeStockQuantityTx(conn, ch.itemId(), newQty);
+                    results[i] = new StockChangeResult(ch, newQty, null);
+                }
+                return null;
+            });
+            DbConnectionManager.markWrite();
+            publish(events);
+            if (cache != null) {
+                for (int i : group) {
+                    if (results[i].ok() && changes.get(i).delta() != 0) {
+                        cache.putStock(changes.get(i).itemId(), results[i].quantity(), movementIds[i]);
+                    }
+                }
+            }
+        }
+        return List.of(results);
+    }
 
-                return stockDao.getStock(itemId).orElseGet(() -> new Stock(itemId, newQty));
-            } catch (SQLException e) {
-                try { conn.rollback(); } catch (SQLException ignore) {}
-                throw new DataAccessException("Failed to decrease stock", e);
-            } finally {
-                try { conn.setAutoCommit(true); } catch (SQLException ignore) {}
+    // each change is its own atomic write in the key-value store
+    private List<StockChangeResult> applyKvStockChanges(List<StockChange> changes) {
+        List<StockChangeResult> results = new ArrayList<>(changes.size());
+        for (StockChange ch : changes) {
+            if (ch.itemId() == null) throw new IllegalArgumentException("itemId is null");
+            if (ch.delta() == 0) {
+                results.add(new StockChangeResult(ch, stockDao.getStock(ch.itemId()).map(Stock::getQuantity).orElse(0), null));
+                continue;
+            }
+            try {
+                Stock stock = kvStock.adjust(ch.itemId(), ch.delta(), ch.reason());
+                published(stock, Math.abs(ch.delta()), ch.delta() > 0 ? MovementType.IN : MovementType.OUT, ch.reason());
+                results.add(new StockChangeResult(ch, stock.getQuantity(), null));
+            } catch (IllegalStateException e) {
+                results.add(new StockChangeResult(ch, stockDao.getStock(ch.itemId()).map(Stock::getQuantity).orElse(0), e.getMessage()));
             }
-        } catch (SQLException e) {
-            throw new DataAccessException(e);
         }
+        return results;
     }
 
     /**
@@ -151,10 +507,56 @@ public class InventoryService {
         else return decreaseStock(itemId, -delta, reason);
     }
 
+    /**
+     * A committed stock write: the resulting stock and the id of the last movement it inserted.
+     * Movements of one item are inserted under its stock row lock, so their ids follow the
+     * commit order, and the cache keeps the quantity of the highest one however late it arrives.
+     */
+    private record Written(Stock stock, long movementId) {}
+
+    // outcome of takeStockTx: the id of its last movement, or why nothing was taken
+    private record Taken(long movementId, String shortage) {}
+
+    private Stock cacheStock(Written written) {
+        Stock stock = written.stock();
+        if (cache != null) cache.putStock(stock.getItemId(), stock.getQuantity(), written.movementId());
+        return stock;
+    }
+
+    // collects the movements of one transaction for the listener; null when nobody listens
+    private List<MovementEvent> newEvents() {
+        return movementListener == null ? null : new ArrayList<>();
+    }
+
+    private void publish(List<MovementEvent> events) {
+        MovementListener.publish(movementListener, events);
+    }
+
+    // reports a movement that did not go through insertMovementTx (kv backend, hot-item sale) and returns the stock
+    private Stock published(Stock stock, int qty, MovementType type, String reason) {
+        if (movementListener != null) {
+            publish(List.of(new MovementEvent(stock.getItemId(), qty, type, reason, null, stock.getQuantity(), System.currentTimeMillis())));
+        }
+        return stock;
+    }
+
+    // the stock row of a hot item lags behind until consolidation, so the cache must not answer for it
+    private Stock hotStock(Long itemId, int remaining) {
+        if (cache != null) cache.evictStock(itemId);
+        return new Stock(itemId, remaining);
+    }
+
     // ----------------------------
     // Internal JDBC helpers for transactional operations
     // ----------------------------
 
+    /**
+     * Connection to the database holding the stock row of the given item.
+     */
+    private Connection stockConnection(Long itemId) throws SQLException {
+        return shardRouter == null ? DbConnectionManager.getConnection() : shardRouter.getConnection(itemId);
+    }
+
     /**
      * Read current quantity for item for update semantics. If missing returns 0.
      * This method reads the current quantity using a SELECT and returns it.
@@ -204,17 +606,102 @@ public class InventoryService {
     }
 
     /**
-     * Insert stock_movement row in transaction.
+     * Insert stock_movement row in transaction, and count it in the daily analytics rollup
+     * and (unless sharded, where categories are not on the shards) in the category stock totals.
+     * When events is not null the movement is also added to it, with the item's quantity after it.
+     * Returns the id of the new movement.
      */
-    private void insertMovementTx(Connection conn, Long itemId, int qty, MovementType type, String reason) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement(INSERT_MOVEMENT_SQL)) {
+    private long insertMovementTx(Connection conn, Long itemId, int qty, MovementType type, String reason, Long lotId,
+                                  int stockAfter, List<MovementEvent> events) throws SQLException {
+        long movementId;
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_MOVEMENT_SQL, Statement.RETURN_GENERATED_KEYS)) {
             ps.setLong(1, itemId);
             ps.setInt(2, qty);
             ps.setString(3, type.name());
             if (reason == null) ps.setNull(4, Types.VARCHAR); else ps.setString(4, reason);
-            ps.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+            LocalDateTime now = LocalDateTime.now();
+            ps.setTimestamp(5, Timestamp.valueOf(now));
+            if (lotId == null) ps.setNull(6, Types.BIGINT); else ps.setLong(6, lotId);
             ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (!keys.next()) throw new SQLException("No generated id for stock movement");
+                movementId = keys.getLong(1);
+            }
+            AnalyticsService.recordTx(conn, itemId, qty, type, now.toLocalDate());
+            if (shardRouter == null) CategoryDaoJdbc.recordStockTx(conn, itemId, type == MovementType.IN ? qty : -qty);
         }
+        if (events != null) events.add(new MovementEvent(itemId, qty, type, reason, lotId, stockAfter, System.currentTimeMillis()));
+        return movementId;
     }
 
+
+    /**
+     * Adds received units to the item's lot, creating it if needed. Returns the lot id.
+     */
+    private long receiveLotTx(Connection conn, Long itemId, String lotCode, LocalDate expiryDate, int qty) throws SQLException {
+        LocalDate expiry = expiryDate == null ? StockLot.NO_EXPIRY : expiryDate;
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_LOT_SQL)) {
+            ps.setLong(1, itemId);
+            ps.setString(2, lotCode);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    long lotId = rs.getLong(1);
+                    if (!rs.getDate(2).toLocalDate().equals(expiry)) {
+                        throw new IllegalArgumentException("Lot " + lotCode + " already exists with expiry " + rs.getDate(2));
+                    }
+                    try (PreparedStatement up = conn.prepareStatement(RECEIVE_LOT_SQL)) {
+                        up.setInt(1, qty);
+                        up.setLong(2, lotId);
+                        up.executeUpdate();
+                    }
+                    return lotId;
+                }
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_LOT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setLong(1, itemId);
+            ps.setString(2, lotCode);
+            ps.setDate(3, Date.valueOf(expiry));
+            ps.setInt(4, qty);
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (!rs.next()) throw new SQLException("No generated id for stock lot");
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Records an outbound quantity, taking it from the item's open lots first-expired-first-out
+     * with one OUT movement per lot. Lots that expired before today are not shipped from.
+     * Whatever the lots do not cover comes from stock that is not tracked by lot; if that is not
+     * enough either, because the rest sits in expired lots, nothing is written and the reason is
+     * returned. The caller has already locked the stock row and checked the total, so lots of
+     * the item are not changed concurrently. {@code stockAfter} is the item's quantity once all
+     * of qty is taken. Returns the id of the last movement written, or the shortage.
+     */
+    private Taken takeStockTx(Connection conn, Long itemId, int qty, String reason, int stockAfter,
+                               List<MovementEvent> events) throws SQLException {
+        List<long[]> takes = StockLotDaoJdbc.allocateFefoTx(conn, itemId, qty, LocalDate.now());
+        int remaining = qty;
+        for (long[] t : takes) remaining -= (int) t[1];
+        if (remaining > 0) {
+            int lotUnits = StockLotDaoJdbc.openUnitsTx(conn, itemId);
+            int untracked = stockAfter + qty - lotUnits;
+            if (remaining > untracked) {
+                // every unexpired lot is used up by now, so the rest of the lot units have expired
+                return new Taken(0, "Insufficient stock: current=" + (stockAfter + qty) + ", requested=" + qty
+                        + ", in expired lots=" + (lotUnits - (qty - remaining)));
+            }
+        }
+        StockLotDaoJdbc.takeTx(conn, takes);
+        int left = stockAfter + qty; // the item's quantity as each lot movement is taken, for the listener
+        long movementId = 0;
+        for (long[] t : takes) {
+            left -= (int) t[1];
+            movementId = insertMovementTx(conn, itemId, (int) t[1], MovementType.OUT, reason, t[0], left, events);
+        }
+        if (remaining > 0) movementId = insertMovementTx(conn, itemId, remaining, MovementType.OUT, reason, null, stockAfter, events);
+        return new Taken(movementId, null);
+    }
 }
@@ -0,0 +1,110 @@
+package com.company.inventory.service;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.dao.DataAccessException;
+import com.company.inventory.dao.MovementArchive;
+import com.company.inventory.dao.StockMovementDaoJdbc;
+import com.company.inventory.model.MovementBatch;
+import com.company.inventory.model.MovementType;
+
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Moves stock movements older than a retention window out of the live table.
+ * Each chunk is appended to the {@link MovementArchive}, rolled up into per-item monthly
+ * rows in stock_movement_summary, and deleted, all in its own short transaction,
+ * so no lock is held for longer than one chunk.
+ */
+public class MovementArchiver {
+
+    private static final int DEFAULT_CHUNK = 5000;
+
+    private static final String UPSERT_SUMMARY_SQL =
+            "INSERT INTO stock_movement_summary (item_id, period_start, type, total_qty, movement_count) VALUES (?, ?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE total_qty = total_qty + VALUES(total_qty), movement_count = movement_count + VALUES(movement_count)";
+    private static final String DELETE_SQL =
+            "DELETE FROM stock_movement WHERE id BETWEEN ? AND ? AND timestamp < ?";
+
+    private final MovementArchive archive;
+    private final int chunkSize;
+    private final StockMovementDaoJdbc movementDao = new StockMovementDaoJdbc();
+
+    public MovementArchiver(MovementArchive archive) {
+        this(archive, DEFAULT_CHUNK);
+    }
+
+    public MovementArchiver(MovementArchive archive, int chunkSize) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be > 0");
+        this.archive = archive;
+        this.chunkSize = chunkSize;
+    }
+
+    private record SummaryKey(long itemId, LocalDate periodStart, MovementType type) {}
+
+    /**
+     * Archives every movement older than {@code retention}. Returns the number of movements moved.
+     */
+    public long archiveOlderThan(Duration retention) {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        Timestamp cutoff = Timestamp.valueOf(before);
+        long afterId = 0;
+        long moved = 0;
+        while (true) {
+            MovementBatch batch = movementDao.loadBatch(before, afterId, chunkSize);
+            if (batch.isEmpty()) return moved;
+            archiveChunk(batch, cutoff);
+            moved += batch.size();
+            afterId = batch.lastId();
+            if (batch.size() < chunkSize) return moved;
+        }
+    }
+
+    private void archiveChunk(MovementBatch batch, Timestamp cutoff) {
+        Map<SummaryKey, long[]> summaries = new HashMap<>(); // -> [totalQty, count]
+        for (int i = 0; i < batch.size(); i++) {
+            LocalDate period = batch.timestamp(i).toLocalDate().withDayOfMonth(1);
+            long[] acc = summaries.computeIfAbsent(new SummaryKey(batch.itemId(i), period, batch.type(i)), k -> new long[2]);
+            acc[0] += batch.qty(i);
+            acc[1]++;
+        }
+
+        try (Connection conn = DbConnectionManager.getConnection()) {
+            // file first: if the DB part fails the appended blocks are cut off again
+            long archiveLength = archive.append(batch);
+            try {
+                conn.setAutoCommit(false);
+                try (PreparedStatement ps = conn.prepareStatement(UPSERT_SUMMARY_SQL)) {
+                    for (Map.Entry<SummaryKey, long[]> e : summaries.entrySet()) {
+                        ps.setLong(1, e.getKey().itemId());
+                        ps.setDate(2, Date.valueOf(e.getKey().periodStart()));
+                        ps.setString(3, e.getKey().type().name());
+                        ps.setLong(4, e.getValue()[0]);
+                        ps.setLong(5, e.getValue()[1]);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
+                    ps.setLong(1, batch.id(0));
+                    ps.setLong(2, batch.lastId());
+                    ps.setTimestamp(3, cutoff);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                try { conn.rollback(); } catch (SQLException ignore) {}
+                archive.truncate(archiveLength);
+                throw new DataAccessException("Failed to archive movements", e);
+            } finally {
+                try { conn.setAutoCommit(true); } catch (SQLException ignore) {}
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+}
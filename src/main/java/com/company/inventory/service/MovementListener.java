@@ -0,0 +1,30 @@
+package com.company.inventory.service;
+
+import com.company.inventory.model.dto.MovementEvent;
+
+import java.util.List;
+
+/**
+ * Notified of stock movements made through {@link InventoryService} once they are committed,
+ * on the thread that made them. Implementations must be quick and thread-safe: the stock call
+ * returns only after the listener does.
+ */
+@FunctionalInterface
+public interface MovementListener {
+
+    /** The movements of one transaction, in the order they were written. */
+    void onMovements(List<MovementEvent> events);
+
+    /**
+     * Hands committed movements to the listener, if there is one and there are movements. The
+     * write that made them already happened, so a failing listener is reported, not rethrown.
+     */
+    static void publish(MovementListener listener, List<MovementEvent> events) {
+        if (listener == null || events == null || events.isEmpty()) return;
+        try {
+            listener.onMovements(events);
+        } catch (RuntimeException e) {
+            System.err.println("Movement listener failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.company.inventory.service;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.dao.CategoryDaoJdbc;
+import com.company.inventory.dao.DataAccessException;
+import com.company.inventory.dao.ItemDao;
+import com.company.inventory.dao.KvStockDao;
+import com.company.inventory.dao.PurchaseOrderDao;
+import com.company.inventory.dao.ShardedStockDao;
+import com.company.inventory.dao.StockDao;
+import com.company.inventory.model.Item;
+import com.company.inventory.model.MovementType;
+import com.company.inventory.model.PurchaseOrder;
+import com.company.inventory.model.PurchaseOrderLine;
+import com.company.inventory.model.PurchaseOrderStatus;
+
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Receives goods against a purchase order.
+ * <p>
+ * A receipt (e.g. a container manifest) is processed as a two-stage pipeline: a validation
+ * thread resolves SKUs in bulk and matches each received line to the order lines that still
+ * have quantity outstanding, while the calling thread writes the previous chunk: stock
+ * increases, IN movements, rollups and received quantities, all in one transaction per chunk.
+ * Receiving more than is outstanding is rejected per line; the rest of the receipt still applies.
+ * <p>
+ * Received quantities are stored per order line, so if a receipt fails part way it can simply be
+ * run again: the chunks already written show up as over receipts and are not booked twice.
+ * Like cycle counts, receipts write stock directly rather than through {@link InventoryService},
+ * under the service's {@link HotItemCoordinator} when it has one.
+ * Order lines and stock are written in the same transaction, so receipts need stock in the
+ * primary database: sharded stock and the kv backend are refused.
+ */
+public class ReceivingService {
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final int QUEUE_DEPTH = 2;
+
+    private static final String ADJUST_STOCK_SQL = "UPDATE stock SET quantity = quantity + ? WHERE item_id = ?";
+    private static final String INSERT_STOCK_SQL = "INSERT INTO stock (item_id, quantity) VALUES (?, ?)";
+    private static final String INSERT_MOVEMENT_SQL = "INSERT INTO stock_movement (item_id, qty, type, reason, timestamp) VALUES (?, ?, ?, ?, ?)";
+    // guarded so that a concurrent receipt of the same order cannot push a line over its ordered quantity
+    private static final String RECEIVE_LINE_SQL =
+            "UPDATE purchase_order_line SET qty_received = qty_received + ? WHERE id = ? AND qty_received + ? <= qty_ordered";
+    private static final String OUTSTANDING_SQL =
+            "SELECT SUM(qty_received), SUM(CASE WHEN qty_received < qty_ordered THEN 1 ELSE 0 END) FROM purchase_order_line WHERE po_id = ?";
+    private static final String UPDATE_STATUS_SQL = "UPDATE purchase_order SET status = ? WHERE id = ?";
+
+    private final ItemDao itemDao;
+    private final PurchaseOrderDao purchaseOrderDao;
+    private HotItemCoordinator hotItems; // null unless hot-item handling is enabled
+
+    public ReceivingService(ItemDao itemDao, PurchaseOrderDao purchaseOrderDao, StockDao stockDao) {
+        if (stockDao instanceof ShardedStockDao || stockDao instanceof KvStockDao) {
+            throw new IllegalStateException("Receiving needs stock in the primary database; it is not supported with sharded or kv stock");
+        }
+        this.itemDao = itemDao;
+        this.purchaseOrderDao = purchaseOrderDao;
+    }
+
+    /**
+     * Writes each chunk under {@link HotItemCoordinator#guardAll}, so received items that are hot
+     * are consolidated first and their next promotion starts from the received quantity.
+     * Set it whenever the service has one.
+     */
+    public void setHotItemCoordinator(HotItemCoordinator hotItems) {
+        this.hotItems = hotItems;
+    }
+
+    public record ReceiptLine(String sku, int qty) {}
+
+    public record Rejection(int lineNo, String sku, int qty, String reason) {}
+
+    public record Result(long purchaseOrderId, int linesRead, int linesReceived, long unitsReceived,
+                         List<Rejection> rejected, PurchaseOrderStatus status) {}
+
+    // qty of one receipt line booked against one order line
+    private record Allocation(long poLineId, long itemId, int qty) {}
+
+    private record Chunk(List<Allocation> allocations, int linesReceived, List<Rejection> rejected, RuntimeException failure) {}
+
+    private static final Chunk END = new Chunk(List.of(), 0, List.of(), null);
+
+    /**
+     * Reads a receipt file with one "sku,qty" per line (same format as a cycle count file).
+     */
+    public static List<ReceiptLine> readReceiptFile(Path file) {
+        List<ReceiptLine> lines = new ArrayList<>();
+        for (CycleCountService.CountLine line : CycleCountService.readCountFile(file)) {
+            lines.add(new ReceiptLine(line.sku(), line.countedQty()));
+        }
+        return lines;
+    }
+
+    public Result receive(long purchaseOrderId, Path receiptFile) {
+        return receive(purchaseOrderId, readReceiptFile(receiptFile));
+    }
+
+    public Result receive(long purchaseOrderId, List<ReceiptLine> receipt) {
+        if (receipt == null) throw new IllegalArgumentException("receipt is null");
+        PurchaseOrder order = purchaseOrderDao.findById(purchaseOrderId)
+                .orElseThrow(() -> new IllegalArgumentException("Purchase order not found: " + purchaseOrderId));
+        if (order.getStatus() == PurchaseOrderStatus.RECEIVED) {
+            throw new IllegalStateException("Purchase order " + purchaseOrderId + " is already fully received");
+        }
+
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+        Thread validator = new Thread(() -> validate(order, receipt, queue), "po-receipt-validator");
+        validator.setDaemon(true);
+        validator.start();
+
+        String reason = "PO " + purchaseOrderId + " receipt";
+        int linesReceived = 0;
+        long units = 0;
+        List<Rejection> rejected = new ArrayList<>();
+        PurchaseOrderStatus status = order.getStatus();
+        try {
+            while (true) {
+                Chunk chunk = queue.take();
+                if (chunk == END) break;
+                if (chunk.failure() != null) throw chunk.failure();
+                if (!chunk.allocations().isEmpty()) status = writeChunk(purchaseOrderId, chunk.allocations(), reason);
+                linesReceived += chunk.linesReceived();
+                for (Allocation a : chunk.allocations()) units += a.qty();
+                rejected.addAll(chunk.rejected());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Interrupted while receiving purchase order " + purchaseOrderId, e);
+        } finally {
+            validator.interrupt(); // stops the validator if the write stage failed
+        }
+        return new Result(purchaseOrderId, receipt.size(), linesReceived, units, rejected, status);
+    }
+
+    /**
+     * Validation stage: resolves SKUs chunk by chunk and allocates received quantities to the
+     * order lines, first outstanding line first. Runs on its own thread, ahead of the writer.
+     */
+    private void validate(PurchaseOrder order, List<ReceiptLine> receipt, BlockingQueue<Chunk> queue) {
+        try {
+            Map<Long, List<int[]>> outstandingByItem = new HashMap<>(); // itemId -> [lineIndex, outstanding]
+            List<PurchaseOrderLine> poLines = order.getLines();
+            for (int i = 0; i < poLines.size(); i++) {
+                PurchaseOrderLine line = poLines.get(i);
+                outstandingByItem.computeIfAbsent(line.getItemId(), k -> new ArrayList<>())
+                        .add(new int[]{i, line.getQtyOutstanding()});
+            }
+
+            for (int from = 0; from < receipt.size(); from += CHUNK_SIZE) {
+                List<ReceiptLine> lines = receipt.subList(from, Math.min(receipt.size(), from + CHUNK_SIZE));
+                Set<String> skus = new HashSet<>();
+                for (ReceiptLine line : lines) skus.add(line.sku().trim());
+                Map<String, Item> items = itemDao.findBySkus(skus);
+
+                List<Allocation> allocations = new ArrayList<>(lines.size());
+                List<Rejection> rejected = new ArrayList<>();
+                int received = 0;
+                for (int i = 0; i < lines.size(); i++) {
+                    ReceiptLine line = lines.get(i);
+                    int lineNo = from + i + 1;
+                    Item item = items.get(line.sku().trim());
+                    if (line.qty() <= 0) {
+                        rejected.add(new Rejection(lineNo, line.sku(), line.qty(), "quantity must be > 0"));
+                        continue;
+                    }
+                    if (item == null) {
+                        rejected.add(new Rejection(lineNo, line.sku(), line.qty(), "unknown SKU"));
+                        continue;
+                    }
+                    List<int[]> open = outstandingByItem.get(item.getId());
+                    if (open == null) {
+                        rejected.add(new Rejection(lineNo, line.sku(), line.qty(), "item is not on the purchase order"));
+                        continue;
+                    }
+                    int remaining = line.qty();
+                    for (int[] poLine : open) {
+                        int take = Math.min(remaining, poLine[1]);
+                        if (take <= 0) continue;
+                        allocations.add(new Allocation(poLines.get(poLine[0]).getId(), item.getId(), take));
+                        poLine[1] -= take;
+                        remaining -= take;
+                        if (remaining == 0) break;
+                    }
+                    if (remaining < line.qty()) received++;
+                    if (remaining > 0) {
+                        rejected.add(new Rejection(lineNo, line.sku(), remaining, "over receipt: "
+                                + (line.qty() - remaining) + " of " + line.qty() + " units were outstanding"));
+                    }
+                }
+                queue.put(new Chunk(allocations, received, rejected, null));
+            }
+            queue.put(END);
+        } catch (InterruptedException e) {
+            // the writer gave up; nothing left to do
+        } catch (RuntimeException e) {
+            try {
+                queue.put(new Chunk(List.of(), 0, List.of(), e));
+            } catch (InterruptedException ignore) {}
+        }
+    }
+
+    /**
+     * Write stage: applies one chunk of allocations in a single transaction and returns the
+     * order status after it.
+     */
+    private PurchaseOrderStatus writeChunk(long purchaseOrderId, List<Allocation> allocations, String reason) {
+        // one stock update per item, even if it appears on several receipt lines
+        Map<Long, Integer> unitsByItem = new LinkedHashMap<>();
+        for (Allocation a : allocations) unitsByItem.merge(a.itemId(), a.qty(), Integer::sum);
+        if (hotItems == null) return writeChunkTx(purchaseOrderId, allocations, unitsByItem, reason);
+        return hotItems.guardAll(unitsByItem.keySet(), () -> writeChunkTx(purchaseOrderId, allocations, unitsByItem, reason));
+    }
+
+    private PurchaseOrderStatus writeChunkTx(long purchaseOrderId, List<Allocation> allocations, Map<Long, Integer> unitsByItem,
+                                             String reason) {
+        try (Connection conn = DbConnectionManager.getConnection()) {
+            try {
+                conn.setAutoCommit(false);
+                LocalDateTime now = LocalDateTime.now();
+
+                try (PreparedStatement ps = conn.prepareStatement(RECEIVE_LINE_SQL)) {
+                    for (Allocation a : allocations) {
+                        ps.setInt(1, a.qty());
+                        ps.setLong(2, a.poLineId());
+                        ps.setInt(3, a.qty());
+                        ps.addBatch();
+                    }
+                    for (int updated : ps.executeBatch()) {
+                        if (updated == 0) {
+                            throw new IllegalStateException("Purchase order " + purchaseOrderId + " was received concurrently; retry the receipt");
+                        }
+                    }
+                }
+
+                List<Long> itemIds = new ArrayList<>(unitsByItem.keySet());
+                int[] updated;
+                try (PreparedStatement ps = conn.prepareStatement(ADJUST_STOCK_SQL)) {
+                    for (Long itemId : itemIds) {
+                        ps.setInt(1, unitsByItem.get(itemId));
+                        ps.setLong(2, itemId);
+                        ps.addBatch();
+                    }
+                    updated = ps.executeBatch();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(INSERT_STOCK_SQL)) {
+                    boolean any = false;
+                    for (int i = 0; i < itemIds.size(); i++) {
+                        if (updated[i] != 0) continue;
+                        ps.setLong(1, itemIds.get(i));
+                        ps.setInt(2, unitsByItem.get(itemIds.get(i)));
+                        ps.addBatch();
+                        any = true;
+                    }
+                    if (any) ps.executeBatch();
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement(INSERT_MOVEMENT_SQL)) {
+                    Timestamp ts = Timestamp.valueOf(now);
+                    for (Allocation a : allocations) {
+                        ps.setLong(1, a.itemId());
+                        ps.setInt(2, a.qty());
+                        ps.setString(3, MovementType.IN.name());
+                        ps.setString(4, reason);
+                        ps.setTimestamp(5, ts);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+
+                try (PreparedStatement ps = AnalyticsService.prepareRollupBatch(conn)) {
+                    LocalDate day = now.toLocalDate();
+                    for (Map.Entry<Long, Integer> e : unitsByItem.entrySet()) {
+                        AnalyticsService.bindRollup(ps, e.getKey(), e.getValue(), MovementType.IN, day);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+
+                try (PreparedStatement ps = CategoryDaoJdbc.prepareStockBatch(conn)) {
+                    for (Map.Entry<Long, Integer> e : unitsByItem.entrySet()) {
+                        CategoryDaoJdbc.bindStock(ps, e.getKey(), e.getValue());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+
+                PurchaseOrderStatus status = refreshStatusTx(conn, purchaseOrderId);
+                conn.commit();
+                DbConnectionManager.markWrite();
+                return status;
+            } catch (SQLException | RuntimeException e) {
+                try { conn.rollback(); } catch (SQLException ignore) {}
+                if (e instanceof RuntimeException re) throw re;
+                throw new DataAccessException("Failed to receive purchase order " + purchaseOrderId, e);
+            } finally {
+                try { conn.setAutoCommit(true); } catch (SQLException ignore) {}
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(e);
+        }
+    }
+
+    private PurchaseOrderStatus refreshStatusTx(Connection conn, long purchaseOrderId) throws SQLException {
+        PurchaseOrderStatus status;
+        try (PreparedStatement ps = conn.prepareStatement(OUTSTANDING_SQL)) {
+            ps.setLong(1, purchaseOrderId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                long received = rs.getLong(1);
+                long openLines = rs.getLong(2);
+                status = openLines == 0 ? PurchaseOrderStatus.RECEIVED
+                        : received > 0 ? PurchaseOrderStatus.PARTIALLY_RECEIVED : PurchaseOrderStatus.OPEN;
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(UPDATE_STATUS_SQL)) {
+            ps.setString(1, status.name());
+            ps.setLong(2, purchaseOrderId);
+            ps.executeUpdate();
+        }
+        return status;
+    }
+}
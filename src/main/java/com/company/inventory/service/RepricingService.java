@@ -0,0 +1,327 @@
+package com.company.inventory.service;
+
+import com.company.inventory.config.DbConnectionManager;
+import com.company.inventory.dao.CategoryDaoJdbc;
+import com.company.inventory.dao.DataAccessException;
+import com.company.inventory.dao.PriceHistoryDaoJdbc;
+import com.company.inventory.dao.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Changes the prices of many items at once, from a rule ("sale prices in category 7 up 5%") or
+ * from a price file, with set-based statements instead of one update per item.
+ * <p>
+ * A run first stages the target price of every matched item in price_change_stage with one
+ * INSERT ... SELECT (rules) or a batch insert (files). It then applies the staged prices in
+ * chunks of consecutive item ids, one transaction per chunk. For each chunk it locks the item
+ * rows and their stock rows, appends the old and new prices of the items that actually change to
+ * item_price_history, revalues their stock in the category totals, and updates the items (bumping
+ * their version, so concurrent editors of those items get an optimistic lock conflict).
+ * Committed chunks are re-read into the inventory cache.
+ * <p>
+ * All history rows of a run share one change id. Each chunk's rows are effective from the time
+ * the chunk took its locks, so a price-as-of lookup never reports a new price for a moment when
+ * the item still had the old one. If a run fails part way, the chunks already committed stay applied; running it again
+ * only changes the items that are not yet at their target price.
+ * Like receipts, repricing writes the items directly rather than through {@link InventoryService}.
+ */
+public class RepricingService {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final String STAGE_FROM_FILE_SQL =
+            "INSERT INTO price_change_stage (change_id, item_id, purchase_price, sale_price) " +
+                    "SELECT ?, id, COALESCE(?, purchase_price), COALESCE(?, sale_price) FROM item WHERE sku = ?";
+    private static final String SELECT_STAGED_IDS_SQL =
+            "SELECT item_id FROM price_change_stage WHERE change_id = ? ORDER BY item_id";
+    private static final String STAGED_IN_RANGE =
+            "SELECT item_id FROM price_change_stage WHERE change_id = ? AND item_id BETWEEN ? AND ?";
+    private static final String LOCK_ITEMS_SQL = "SELECT id FROM item WHERE id IN (" + STAGED_IN_RANGE + ") FOR UPDATE";
+    private static final String LOCK_STOCK_SQL = "SELECT item_id FROM stock WHERE item_id IN (" + STAGED_IN_RANGE + ") FOR UPDATE";
+    private static final String INSERT_HISTORY_SQL =
+            "INSERT INTO item_price_history (change_id, item_id, effective_from, old_purchase_price, old_sale_price, " +
+                    "new_purchase_price, new_sale_price, reason) " +
+                    "SELECT st.change_id, i.id, ?, i.purchase_price, i.sale_price, st.purchase_price, st.sale_price, ? " +
+                    "FROM price_change_stage st JOIN item i ON i.id = st.item_id " +
+                    "WHERE st.change_id = ? AND st.item_id BETWEEN ? AND ? " +
+                    "AND (i.purchase_price <> st.purchase_price OR i.sale_price <> st.sale_price)";
+    private static final String UPDATE_ITEMS_SQL =
+            "UPDATE item SET (purchase_price, sale_price) = " +
+                    "(SELECT h.new_purchase_price, h.new_sale_price FROM item_price_history h WHERE h.change_id = ? AND h.item_id = item.id), " +
+                    "version = version + 1 " +
+                    "WHERE id IN (SELECT item_id FROM item_price_history WHERE change_id = ? AND item_id BETWEEN ? AND ?)";
+    private static final String SELECT_CHANGED_IDS_SQL =
+            "SELECT item_id FROM item_price_history WHERE change_id = ? AND item_id BETWEEN ? AND ?";
+    private static final String CLEAR_STAGE_SQL = "DELETE FROM price_change_stage WHERE change_id = ?";
+
+    /** Which items a rule applies to; all but ALL take a value (category id, supplier id, SKU prefix). */
+    public enum Scope {
+        ALL("1 = 1"),
+        // the category and all its subcategories
+        CATEGORY("i.category_id IN (SELECT descendant_id FROM category_path WHERE ancestor_id = ?)"),
+        SUPPLIER("i.supplier_id = ?"),
+        SKU_PREFIX("i.sku LIKE ?");
+
+        private final String where;
+
+        Scope(String where) {
+            this.where = where;
+        }
+    }
+
+    /** Which price a rule changes. */
+    public enum Target { PURCHASE, SALE, BOTH }
+
+    /**
+     * How a rule computes the new price: PERCENT and DELTA adjust it (results are rounded to
+     * cents and never negative), SET replaces it, MARKUP sets the sale price to the purchase
+     * price plus the given percentage.
+     */
+    public enum Adjustment { PERCENT, DELTA, SET, MARKUP }
+
+    public record Rule(Scope scope, String scopeValue, Target target, Adjustment adjustment, double amount) {
+        public Rule {
+            Objects.requireNonNull(scope, "scope");
+            Objects.requireNonNull(target, "target");
+            Objects.requireNonNull(adjustment, "adjustment");
+            if (scope != Scope.ALL && (scopeValue == null || scopeValue.isBlank())) {
+                throw new IllegalArgumentException("Scope " + scope + " needs a value");
+            }
+            if (adjustment == Adjustment.MARKUP && target != Target.SALE) {
+                throw new IllegalArgumentException("A markup rule sets the sale price; use target SALE");
+            }
+            if (adjustment == Adjustment.SET && amount < 0) throw new IllegalArgumentException("Price cannot be negative");
+        }
+    }
+
+    /** New prices for one SKU; a null price is left unchanged. */
+    public record PriceLine(String sku, Double purchasePrice, Double salePrice) {}
+
+    public record Result(long changeId, int itemsMatched, int itemsChanged, List<String> unknownSkus, long elapsedMillis) {}
+
+    private final InventoryService inventoryService;
+    private final TransactionTemplate tx = TransactionTemplate.defaults();
+
+    public RepricingService(InventoryService inventoryService) {
+        this.inventoryService = inventoryService;
+    }
+
+    /**
+     * Reads a price file with one "sku,purchasePrice,salePrice" per line; leave a price empty to
+     * keep it. A header line and lines starting with '#' are skipped; a later line for the same
+     * SKU replaces an earlier one.
+     */
+    public static List<PriceLine> readPriceFile(Path file) {
+        Map<String, PriceLine> bySku = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split(",", -1);
+                if (parts.length != 3) throw new IllegalArgumentException("Line " + lineNo + ": expected sku,purchasePrice,salePrice");
+                String sku = parts[0].trim();
+                Double purchase, sale;
+                try {
+                    purchase = parsePrice(parts[1]);
+                    sale = parsePrice(parts[2]);
+                } catch (NumberFormatException e) {
+                    if (lineNo == 1) continue; // header
+                    throw new IllegalArgumentException("Line " + lineNo + ": invalid price", e);
+                }
+                if ((purchase != null && purchase < 0) || (sale != null && sale < 0)) {
+                    throw new IllegalArgumentException("Line " + lineNo + ": negative price");
+                }
+                bySku.put(sku, new PriceLine(sku, purchase, sale));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new ArrayList<>(bySku.values());
+    }
+
+    private static Double parsePrice(String s) {
+        s = s.trim();
+        return s.isEmpty() ? null : Double.valueOf(s);
+    }
+
+    public Result apply(Path priceFile, String reason) {
+        return apply(readPriceFile(priceFile), reason);
+    }
+
+    public Result apply(List<PriceLine> lines, String reason) {
+        if (lines == null) throw new IllegalArgumentException("lines is null");
+        long start = System.nanoTime();
+        long changeId = newChangeId();
+        List<String> unknown = new ArrayList<>();
+        try {
+            tx.execute("Failed to stage price changes", c -> {
+                unknown.clear();
+                try (PreparedStatement ps = c.prepareStatement(STAGE_FROM_FILE_SQL)) {
+                    for (int from = 0; from < lines.size(); from += CHUNK_SIZE) {
+                        List<PriceLine> chunk = lines.subList(from, Math.min(lines.size(), from + CHUNK_SIZE));
+                        for (PriceLine line : chunk) {
+                            ps.setLong(1, changeId);
+                            if (line.purchasePrice() == null) ps.setNull(2, Types.DOUBLE); else ps.setDouble(2, line.purchasePrice());
+                            if (line.salePrice() == null) ps.setNull(3, Types.DOUBLE); else ps.setDouble(3, line.salePrice());
+                            ps.setString(4, line.sku());
+                            ps.addBatch();
+                        }
+                        int[] counts = ps.executeBatch();
+                        for (int i = 0; i < counts.length; i++) {
+                            if (counts[i] == 0) unknown.add(chunk.get(i).sku());
+                        }
+                    }
+                }
+                return null;
+            });
+            return applyStaged(changeId, reason, unknown, start);
+        } finally {
+            clearStage(changeId);
+        }
+    }
+
+    public Result apply(Rule rule, String reason) {
+        if (rule == null) throw new IllegalArgumentException("rule is null");
+        long start = System.nanoTime();
+        long changeId = newChangeId();
+        String purchase = rule.target() == Target.SALE ? "i.purchase_price" : adjusted(rule.adjustment(), "i.purchase_price");
+        String sale = rule.target() == Target.PURCHASE ? "i.sale_price" : adjusted(rule.adjustment(), "i.sale_price");
+        String sql = "INSERT INTO price_change_stage (change_id, item_id, purchase_price, sale_price) " +
+                "SELECT ?, i.id, " + purchase + ", " + sale + " FROM item i WHERE " + rule.scope().where;
+        try {
+            tx.execute("Failed to stage price changes", c -> {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    int i = 1;
+                    ps.setLong(i++, changeId);
+                    double operand = switch (rule.adjustment()) {
+                        case PERCENT, MARKUP -> 1 + rule.amount() / 100.0;
+                        case DELTA, SET -> rule.amount();
+                    };
+                    if (rule.target() != Target.SALE) ps.setDouble(i++, operand);
+                    if (rule.target() != Target.PURCHASE) ps.setDouble(i++, operand);
+                    switch (rule.scope()) {
+                        case ALL -> { }
+                        case CATEGORY, SUPPLIER -> ps.setLong(i, Long.parseLong(rule.scopeValue().trim()));
+                        case SKU_PREFIX -> ps.setString(i, rule.scopeValue().trim() + "%");
+                    }
+                    return ps.executeUpdate();
+                }
+            });
+            return applyStaged(changeId, reason, List.of(), start);
+        } finally {
+            clearStage(changeId);
+        }
+    }
+
+    // SQL for the new value of a price column; binds one operand
+    private static String adjusted(Adjustment adjustment, String column) {
+        return switch (adjustment) {
+            case PERCENT -> "GREATEST(0, ROUND(" + column + " * ?, 2))";
+            case DELTA -> "GREATEST(0, ROUND(" + column + " + ?, 2))";
+            case SET -> "?";
+            case MARKUP -> "ROUND(i.purchase_price * ?, 2)";
+        };
+    }
+
+    private Result applyStaged(long changeId, String reason, List<String> unknown, long start) {
+        List<Long> staged = new ArrayList<>();
+        try (Connection c = DbConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_STAGED_IDS_SQL)) {
+            ps.setLong(1, changeId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) staged.add(rs.getLong(1));
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to read staged price changes", e);
+        }
+
+        int changed = 0;
+        for (int from = 0; from < staged.size(); from += CHUNK_SIZE) {
+            long lo = staged.get(from);
+            long hi = staged.get(Math.min(staged.size(), from + CHUNK_SIZE) - 1);
+            List<Long> ids = tx.execute("Failed to apply price changes", c -> applyChunk(c, changeId, reason, lo, hi));
+            DbConnectionManager.markWrite();
+            inventoryService.refreshCachedItems(ids);
+            changed += ids.size();
+        }
+        return new Result(changeId, staged.size(), changed, List.copyOf(unknown), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static List<Long> applyChunk(Connection c, long changeId, String reason, long lo, long hi) throws SQLException {
+        // items first, then their stock rows: the same order as item edits (see CategoryDaoJdbc.moveItemTx)
+        lockStaged(c, LOCK_ITEMS_SQL, changeId, lo, hi);
+        lockStaged(c, LOCK_STOCK_SQL, changeId, lo, hi);
+        // taken under the locks, like a single item edit (PriceHistoryDaoJdbc.recordTx): no edit of
+        // these items can commit between this time and ours, so history stays in commit order
+        LocalDateTime effectiveFrom = LocalDateTime.now();
+        try (PreparedStatement ps = c.prepareStatement(INSERT_HISTORY_SQL)) {
+            ps.setTimestamp(1, Timestamp.valueOf(effectiveFrom));
+            ps.setString(2, reason);
+            ps.setLong(3, changeId);
+            ps.setLong(4, lo);
+            ps.setLong(5, hi);
+            if (ps.executeUpdate() == 0) return List.of();
+        }
+        CategoryDaoJdbc.repriceTx(c, changeId, lo, hi);
+        try (PreparedStatement ps = c.prepareStatement(UPDATE_ITEMS_SQL)) {
+            ps.setLong(1, changeId);
+            ps.setLong(2, changeId);
+            ps.setLong(3, lo);
+            ps.setLong(4, hi);
+            ps.executeUpdate();
+        }
+        List<Long> ids = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(SELECT_CHANGED_IDS_SQL)) {
+            ps.setLong(1, changeId);
+            ps.setLong(2, lo);
+            ps.setLong(3, hi);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ids.add(rs.getLong(1));
+            }
+        }
+        return ids;
+    }
+
+    private static void lockStaged(Connection c, String sql, long changeId, long lo, long hi) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, changeId);
+            ps.setLong(2, lo);
+            ps.setLong(3, hi);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // reading the rows takes the locks
+                }
+            }
+        }
+    }
+
+    private long newChangeId() {
+        try (Connection c = DbConnectionManager.getConnection()) {
+            return PriceHistoryDaoJdbc.nextChangeId(c);
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to allocate a price change id", e);
+        }
+    }
+
+    private void clearStage(long changeId) {
+        try (Connection c = DbConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(CLEAR_STAGE_SQL)) {
+            ps.setLong(1, changeId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Failed to clear staged price changes of change " + changeId + ": " + e.getMessage());
+        }
+    }
+}